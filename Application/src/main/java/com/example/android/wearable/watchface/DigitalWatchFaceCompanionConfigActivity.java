@@ -24,9 +24,11 @@ import android.graphics.Color;
 import android.net.Uri;
 import android.os.Bundle;
 import android.support.wearable.companion.WatchFaceCompanion;
+import android.text.TextUtils;
 import android.util.Log;
 import android.view.View;
 import android.widget.AdapterView;
+import android.widget.EditText;
 import android.widget.Spinner;
 import android.widget.TextView;
 
@@ -39,10 +41,13 @@ import com.google.android.gms.wearable.DataMap;
 import com.google.android.gms.wearable.DataMapItem;
 import com.google.android.gms.wearable.Wearable;
 
+import java.util.ArrayList;
+
 /**
  * The phone-side config activity for {@code DigitalWatchFaceService}. Like the watch-side config
  * activity ({@code DigitalWatchFaceWearableConfigActivity}), allows for setting the background
- * color. Additionally, enables setting the color for hour, minute and second digits.
+ * color. Additionally, enables setting the color for hour, minute and second digits, and the
+ * time zones of the world clock rows.
  */
 public class DigitalWatchFaceCompanionConfigActivity extends Activity
         implements GoogleApiClient.ConnectionCallbacks, GoogleApiClient.OnConnectionFailedListener,
@@ -54,6 +59,7 @@ public class DigitalWatchFaceCompanionConfigActivity extends Activity
     private static final String KEY_HOURS_COLOR = "HOURS_COLOR";
     private static final String KEY_MINUTES_COLOR = "MINUTES_COLOR";
     private static final String KEY_SECONDS_COLOR = "SECONDS_COLOR";
+    private static final String KEY_WORLD_CLOCK_ZONES = "WORLD_CLOCK_ZONES";
     private static final String PATH_WITH_FEATURE = "/watch_face_config/Digital";
 
     private GoogleApiClient mGoogleApiClient;
@@ -165,6 +171,39 @@ public class DigitalWatchFaceCompanionConfigActivity extends Activity
         setUpColorPickerListener(R.id.hours, KEY_HOURS_COLOR);
         setUpColorPickerListener(R.id.minutes, KEY_MINUTES_COLOR);
         setUpColorPickerListener(R.id.seconds, KEY_SECONDS_COLOR);
+
+        setUpWorldClockZones(config);
+    }
+
+    /**
+     * Fills the world clock field with the zones in {@code config}, comma separated, and sends
+     * the zones in the field when its button is clicked.
+     */
+    private void setUpWorldClockZones(DataMap config) {
+        final EditText zonesText = (EditText) findViewById(R.id.world_clock_zones);
+        String[] zoneIds = config != null ? config.getStringArray(KEY_WORLD_CLOCK_ZONES) : null;
+        if (zoneIds != null) {
+            zonesText.setText(TextUtils.join(", ", zoneIds));
+        }
+        findViewById(R.id.world_clock_set).setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                sendConfigUpdateMessage(KEY_WORLD_CLOCK_ZONES,
+                        parseZoneIds(zonesText.getText().toString()));
+            }
+        });
+    }
+
+    /** Splits comma separated time zone IDs, e.g. "Asia/Tokyo, Europe/London". */
+    private static String[] parseZoneIds(String text) {
+        ArrayList<String> zoneIds = new ArrayList<>();
+        for (String zoneId : text.split(",")) {
+            zoneId = zoneId.trim();
+            if (!zoneId.isEmpty()) {
+                zoneIds.add(zoneId);
+            }
+        }
+        return zoneIds.toArray(new String[zoneIds.size()]);
     }
 
     private void setUpColorPickerSelection(int spinnerId, final String configKey, DataMap config,
@@ -214,4 +253,18 @@ public class DigitalWatchFaceCompanionConfigActivity extends Activity
             }
         }
     }
+
+    private void sendConfigUpdateMessage(String configKey, String[] values) {
+        if (mPeerId != null) {
+            DataMap config = new DataMap();
+            config.putStringArray(configKey, values);
+            byte[] rawData = config.toByteArray();
+            Wearable.MessageApi.sendMessage(mGoogleApiClient, mPeerId, PATH_WITH_FEATURE, rawData);
+
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, "Sent watch face config message: " + configKey + " -> "
+                        + TextUtils.join(",", values));
+            }
+        }
+    }
 }
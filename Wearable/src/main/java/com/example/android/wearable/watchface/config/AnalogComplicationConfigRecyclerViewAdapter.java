@@ -138,12 +138,14 @@ public class AnalogComplicationConfigRecyclerViewAdapter
 
         mBackgroundComplicationId =
                 AnalogComplicationWatchFaceService.getComplicationId(
-                        ComplicationLocation.BACKGROUND);
+                        context, ComplicationLocation.BACKGROUND);
 
         mLeftComplicationId =
-                AnalogComplicationWatchFaceService.getComplicationId(ComplicationLocation.LEFT);
+                AnalogComplicationWatchFaceService.getComplicationId(
+                        context, ComplicationLocation.LEFT);
         mRightComplicationId =
-                AnalogComplicationWatchFaceService.getComplicationId(ComplicationLocation.RIGHT);
+                AnalogComplicationWatchFaceService.getComplicationId(
+                        context, ComplicationLocation.RIGHT);
 
         mSharedPref =
                 context.getSharedPreferences(
@@ -439,7 +441,8 @@ public class AnalogComplicationConfigRecyclerViewAdapter
                 Activity currentActivity, ComplicationLocation complicationLocation) {
 
             mSelectedComplicationId =
-                    AnalogComplicationWatchFaceService.getComplicationId(complicationLocation);
+                    AnalogComplicationWatchFaceService.getComplicationId(
+                            currentActivity, complicationLocation);
 
             mBackgroundComplicationEnabled = false;
 
@@ -447,7 +450,7 @@ public class AnalogComplicationConfigRecyclerViewAdapter
 
                 int[] supportedTypes =
                         AnalogComplicationWatchFaceService.getSupportedComplicationTypes(
-                                complicationLocation);
+                                currentActivity, complicationLocation);
 
                 ComponentName watchFace =
                         new ComponentName(
@@ -563,7 +566,8 @@ public class AnalogComplicationConfigRecyclerViewAdapter
                     .getBackground()
                     .setColorFilter(backgroundColorFilter);
 
-            final int[] complicationIds = AnalogComplicationWatchFaceService.getComplicationIds();
+            final int[] complicationIds =
+                    AnalogComplicationWatchFaceService.getComplicationIds(mContext);
 
             mProviderInfoRetriever.retrieveProviderInfo(
                     new OnProviderInfoReceivedCallback() {
@@ -771,13 +775,13 @@ public class AnalogComplicationConfigRecyclerViewAdapter
 
             mSelectedComplicationId =
                     AnalogComplicationWatchFaceService.getComplicationId(
-                            ComplicationLocation.BACKGROUND);
+                            currentActivity, ComplicationLocation.BACKGROUND);
 
             if (mSelectedComplicationId >= 0) {
 
                 int[] supportedTypes =
                         AnalogComplicationWatchFaceService.getSupportedComplicationTypes(
-                                ComplicationLocation.BACKGROUND);
+                                currentActivity, ComplicationLocation.BACKGROUND);
 
                 ComponentName watchFace =
                         new ComponentName(
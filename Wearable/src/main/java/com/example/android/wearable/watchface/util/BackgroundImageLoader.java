@@ -0,0 +1,291 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorMatrix;
+import android.graphics.ColorMatrixColorFilter;
+import android.graphics.Paint;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.Icon;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Decodes a full-screen background image off the main thread and pre-scales it to the surface.
+ * <p>
+ * Drawing a {@code TYPE_LARGE_IMAGE} complication through its drawable scales the source image to
+ * the screen on every frame. Here the image is loaded from its {@link Icon} on a worker thread,
+ * center-cropped to the exact surface size once and kept in three variants:
+ * <ul>
+ *     <li>an opaque {@link Bitmap.Config#RGB_565} bitmap for interactive mode, at half the size of
+ *     an ARGB_8888 one,</li>
+ *     <li>an {@link Bitmap.Config#ALPHA_8} bitmap holding the luminance of the image for ambient
+ *     mode, drawn in white over black to give a grayscale picture at a quarter of the size,
+ *     and</li>
+ *     <li>an ALPHA_8 bitmap for low-bit and burn-in protection ambient modes, with every pixel
+ *     either fully on or off and no more than every other pixel on.</li>
+ * </ul>
+ * Each frame then draws one of them with a single unscaled blit. Decode time and memory use are
+ * logged at {@link Log#DEBUG}.
+ */
+public class BackgroundImageLoader {
+    private static final String TAG = "BackgroundImageLoader";
+
+    /** Maps RGB to luminance in the alpha channel and clears the color channels. */
+    private static final float[] LUMINANCE_TO_ALPHA = {
+        0, 0, 0, 0, 0,
+        0, 0, 0, 0, 0,
+        0, 0, 0, 0, 0,
+        0.299f, 0.587f, 0.114f, 0, 0
+    };
+
+    /** Luminance, as alpha, from which a low-bit pixel is on. */
+    private static final int LOW_BIT_THRESHOLD = 128;
+
+    /** Receives callbacks on the main thread when the bitmaps are replaced. */
+    public interface Listener {
+        /** Called before the bitmaps drawn so far are recycled. */
+        void onBackgroundImageReplacing();
+
+        /** Called once new bitmaps are ready to be drawn. */
+        void onBackgroundImageReady();
+    }
+
+    private final Context mContext;
+    private final Listener mListener;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+    private final Paint mBlitPaint = new Paint();
+    private final Paint mAmbientPaint = new Paint();
+
+    private Icon mIcon;
+    private int mWidth;
+    private int mHeight;
+
+    /** Incremented for every request, so results of superseded requests can be dropped. */
+    private int mGeneration;
+
+    private Bitmap mInteractiveBitmap;
+    private Bitmap mAmbientBitmap;
+    private Bitmap mLowBitBitmap;
+
+    public BackgroundImageLoader(Context context, Listener listener) {
+        mContext = context.getApplicationContext();
+        mListener = listener;
+        mAmbientPaint.setColor(Color.WHITE);
+    }
+
+    /** Sets the size to scale to. Call from {@code onSurfaceChanged}. */
+    public void setSize(int width, int height) {
+        if (width == mWidth && height == mHeight) {
+            return;
+        }
+        mWidth = width;
+        mHeight = height;
+        requestDecode();
+    }
+
+    /**
+     * Sets the image to show, or null to clear it. The previous bitmaps stay drawable until the
+     * new ones are ready, unless the image is cleared.
+     */
+    public void setImage(Icon icon) {
+        mIcon = icon;
+        if (icon == null) {
+            mGeneration++;
+            recycleBitmaps();
+            return;
+        }
+        requestDecode();
+    }
+
+    /** Returns whether there is a decoded image to draw. */
+    public boolean isReady() {
+        return mInteractiveBitmap != null;
+    }
+
+    /**
+     * Draws the image for the given mode, unscaled at the origin.
+     *
+     * @param ambient whether to draw one of the ambient variants
+     * @param lowBit whether the ambient variant must suit low-bit or burn-in protection displays
+     * @return false if no image has been decoded yet
+     */
+    public boolean draw(Canvas canvas, boolean ambient, boolean lowBit) {
+        if (mInteractiveBitmap == null) {
+            return false;
+        }
+        if (ambient) {
+            canvas.drawColor(Color.BLACK);
+            canvas.drawBitmap(lowBit ? mLowBitBitmap : mAmbientBitmap, 0, 0, mAmbientPaint);
+        } else {
+            canvas.drawBitmap(mInteractiveBitmap, 0, 0, mBlitPaint);
+        }
+        return true;
+    }
+
+    /** Returns the bytes held by the decoded variants, or 0 if there are none. */
+    public int getAllocationByteCount() {
+        if (mInteractiveBitmap == null) {
+            return 0;
+        }
+        return mInteractiveBitmap.getAllocationByteCount()
+                + mAmbientBitmap.getAllocationByteCount()
+                + mLowBitBitmap.getAllocationByteCount();
+    }
+
+    /** Frees the bitmaps and stops the worker thread. */
+    public void release() {
+        mGeneration++;
+        mIcon = null;
+        mExecutor.shutdownNow();
+        recycleBitmaps();
+    }
+
+    private void recycleBitmaps() {
+        if (mInteractiveBitmap != null || mAmbientBitmap != null) {
+            mListener.onBackgroundImageReplacing();
+        }
+        if (mInteractiveBitmap != null) {
+            mInteractiveBitmap.recycle();
+            mInteractiveBitmap = null;
+        }
+        if (mAmbientBitmap != null) {
+            mAmbientBitmap.recycle();
+            mAmbientBitmap = null;
+        }
+        if (mLowBitBitmap != null) {
+            mLowBitBitmap.recycle();
+            mLowBitBitmap = null;
+        }
+    }
+
+    private void requestDecode() {
+        if (mIcon == null || mWidth <= 0 || mHeight <= 0 || mExecutor.isShutdown()) {
+            return;
+        }
+        final int generation = ++mGeneration;
+        final Icon icon = mIcon;
+        final int width = mWidth;
+        final int height = mHeight;
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                long startMillis = SystemClock.elapsedRealtime();
+                Drawable drawable = icon.loadDrawable(mContext);
+                if (drawable == null) {
+                    Log.w(TAG, "Could not load background image");
+                    return;
+                }
+
+                final Bitmap interactive = renderInteractive(drawable, width, height);
+                final Bitmap ambient = renderAmbient(interactive);
+                final Bitmap lowBit = renderLowBit(ambient);
+
+                if (Log.isLoggable(TAG, Log.DEBUG)) {
+                    Log.d(TAG, "Decoded " + width + "x" + height + " in "
+                            + (SystemClock.elapsedRealtime() - startMillis) + "ms, "
+                            + (interactive.getAllocationByteCount()
+                                    + ambient.getAllocationByteCount()
+                                    + lowBit.getAllocationByteCount()) / 1024 + "KB");
+                }
+
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mGeneration) {
+                            interactive.recycle();
+                            ambient.recycle();
+                            lowBit.recycle();
+                            return;
+                        }
+                        recycleBitmaps();
+                        mInteractiveBitmap = interactive;
+                        mAmbientBitmap = ambient;
+                        mLowBitBitmap = lowBit;
+                        mListener.onBackgroundImageReady();
+                    }
+                });
+            }
+        });
+    }
+
+    /** Draws {@code drawable} center-cropped to fill an opaque bitmap of the given size. */
+    private static Bitmap renderInteractive(Drawable drawable, int width, int height) {
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+        Canvas canvas = new Canvas(bitmap);
+        canvas.drawColor(Color.BLACK);
+
+        int intrinsicWidth = drawable.getIntrinsicWidth();
+        int intrinsicHeight = drawable.getIntrinsicHeight();
+        if (intrinsicWidth <= 0 || intrinsicHeight <= 0) {
+            drawable.setBounds(0, 0, width, height);
+        } else {
+            float scale = Math.max(
+                    (float) width / intrinsicWidth, (float) height / intrinsicHeight);
+            int scaledWidth = Math.round(intrinsicWidth * scale);
+            int scaledHeight = Math.round(intrinsicHeight * scale);
+            int left = (width - scaledWidth) / 2;
+            int top = (height - scaledHeight) / 2;
+            drawable.setBounds(left, top, left + scaledWidth, top + scaledHeight);
+        }
+        drawable.draw(canvas);
+        return bitmap;
+    }
+
+    /** Stores the luminance of {@code source} as the alpha of a new bitmap. */
+    private static Bitmap renderAmbient(Bitmap source) {
+        Bitmap bitmap = Bitmap.createBitmap(
+                source.getWidth(), source.getHeight(), Bitmap.Config.ALPHA_8);
+        Paint paint = new Paint();
+        paint.setColorFilter(new ColorMatrixColorFilter(new ColorMatrix(LUMINANCE_TO_ALPHA)));
+        new Canvas(bitmap).drawBitmap(source, 0, 0, paint);
+        return bitmap;
+    }
+
+    /**
+     * Thresholds the luminance held in {@code ambient} to fully on or off pixels and keeps only
+     * those on a checkerboard, so that no area of the screen is more than half lit. One row at a
+     * time, so the pass needs no full-screen scratch buffer.
+     */
+    static Bitmap renderLowBit(Bitmap ambient) {
+        int width = ambient.getWidth();
+        int height = ambient.getHeight();
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            ambient.getPixels(row, 0, width, 0, y, width, 1);
+            for (int x = 0; x < width; x++) {
+                boolean on = ((x + y) & 1) == 0 && Color.alpha(row[x]) >= LOW_BIT_THRESHOLD;
+                row[x] = on ? Color.WHITE : Color.TRANSPARENT;
+            }
+            bitmap.setPixels(row, 0, width, 0, y, width, 1);
+        }
+        return bitmap;
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+/**
+ * Keeps the previous frame in a bitmap and repaints only the cells of it whose content changed.
+ * <p>
+ * A frame is a fixed set of cells, e.g. the hour, a colon or a line of text, each identified by an
+ * index and described by its bounds and a number standing for its content. Between
+ * {@link #beginFrame} and {@link #endFrame()}, the watch face calls {@link #beginCell} for every
+ * cell, and draws the cell only if that returns a canvas; the canvas is clipped to the cell, which
+ * is already cleared to the background. {@link #draw} then copies the whole frame to the screen;
+ * that copy always covers every pixel and is counted and timed apart from the repainted cells.
+ * <p>
+ * A cell that moves invalidates the whole frame, since its old bounds may overlap its
+ * neighbours: {@link #endFrame()} returns false and the frame has to be drawn again. Anything else
+ * the cells depend on, such as paints or the background, has to be followed by
+ * {@link #invalidate()}.
+ */
+public class CellFrame {
+
+    private final Paint mBackgroundPaint;
+
+    private final Rect[] mBounds;
+    private final long[] mContents;
+
+    /** Whether each cell was drawn with its bounds and content since the last full clear. */
+    private final boolean[] mDrawn;
+
+    private Bitmap mBitmap;
+    private Canvas mCanvas;
+    private boolean mValid;
+
+    /** Whether this frame started with a full clear, so cells need not clear themselves. */
+    private boolean mCleared;
+    private boolean mInFrame;
+    private boolean mMoved;
+    private final Rect mCellBounds = new Rect();
+
+    /** Time spent repainting cells and copying the frame to the screen, logged at DEBUG. */
+    private final FrameTimeStats mRepaintStats;
+    private final FrameTimeStats mBlitStats;
+
+    // Counters for tuning.
+    private long mFrameCount;
+    private long mFullFrameCount;
+    private long mRepaintedPixels;
+    private int mLastRepaintedPixels;
+    private long mBlittedPixels;
+    private int mLastBlittedPixels;
+
+    /**
+     * @param backgroundPaint paint cells are cleared with, which must be opaque
+     */
+    public CellFrame(String tag, int cellCount, Paint backgroundPaint) {
+        mBackgroundPaint = backgroundPaint;
+        mBounds = new Rect[cellCount];
+        mContents = new long[cellCount];
+        mDrawn = new boolean[cellCount];
+        for (int i = 0; i < cellCount; i++) {
+            mBounds[i] = new Rect();
+        }
+        mRepaintStats = new FrameTimeStats(tag, "cell repaint");
+        mBlitStats = new FrameTimeStats(tag, "cell blit");
+    }
+
+    /** Makes the next frame repaint every cell. */
+    public void invalidate() {
+        mValid = false;
+    }
+
+    /** Starts a frame of the given size, clearing the whole frame if it is not valid. */
+    public void beginFrame(int width, int height) {
+        if (!mInFrame) {
+            mInFrame = true;
+            mLastRepaintedPixels = 0;
+            mRepaintStats.beginFrame();
+        }
+        if (mBitmap == null || mBitmap.getWidth() != width || mBitmap.getHeight() != height) {
+            release();
+            mBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            mCanvas = new Canvas(mBitmap);
+        }
+        mMoved = false;
+        mCleared = !mValid;
+        if (!mValid) {
+            mCanvas.drawRect(0, 0, width, height, mBackgroundPaint);
+            for (int i = 0; i < mDrawn.length; i++) {
+                mDrawn[i] = false;
+            }
+            mValid = true;
+            mFullFrameCount++;
+            mLastRepaintedPixels = width * height;
+        }
+    }
+
+    /**
+     * Returns the canvas to draw a cell into if the cell changed since it was last drawn, or null.
+     * Each bound is rounded to the nearest pixel edge, so cells that share an edge never share a
+     * column or row of pixels and clearing one cannot wipe part of the other. Call
+     * {@link #endCell()} after drawing.
+     *
+     * @param content any number that differs whenever the cell looks different
+     */
+    public Canvas beginCell(int cell, long content, float left, float top, float right,
+            float bottom) {
+        if (mMoved) {
+            return null;
+        }
+        mCellBounds.set(Math.round(left), Math.round(top), Math.round(right), Math.round(bottom));
+        Rect bounds = mBounds[cell];
+        if (mDrawn[cell]) {
+            if (!bounds.equals(mCellBounds)) {
+                // Clearing the old bounds could wipe a neighbour; start over instead.
+                mMoved = true;
+                return null;
+            }
+            if (mContents[cell] == content) {
+                return null;
+            }
+        }
+        bounds.set(mCellBounds);
+        mContents[cell] = content;
+        mDrawn[cell] = true;
+
+        mCanvas.save();
+        mCanvas.clipRect(bounds);
+        if (!mCleared) {
+            mCanvas.drawRect(bounds, mBackgroundPaint);
+            mLastRepaintedPixels += bounds.width() * bounds.height();
+        }
+        return mCanvas;
+    }
+
+    /** Finishes a cell started with {@link #beginCell}. */
+    public void endCell() {
+        mCanvas.restore();
+    }
+
+    /**
+     * Finishes the frame.
+     *
+     * @return false if a cell moved, in which case the frame is invalid and has to be drawn again,
+     *         starting with {@link #beginFrame}
+     */
+    public boolean endFrame() {
+        if (mMoved) {
+            mValid = false;
+            return false;
+        }
+        mInFrame = false;
+        mRepaintStats.endFrame();
+        mFrameCount++;
+        mRepaintedPixels += mLastRepaintedPixels;
+        return true;
+    }
+
+    /** Copies the whole frame to {@code canvas}. */
+    public void draw(Canvas canvas) {
+        mBlitStats.beginFrame();
+        canvas.drawBitmap(mBitmap, 0, 0, null);
+        mBlitStats.endFrame();
+        mLastBlittedPixels = mBitmap.getWidth() * mBitmap.getHeight();
+        mBlittedPixels += mLastBlittedPixels;
+    }
+
+    /** Frees the frame. The next frame is drawn in full. */
+    public void release() {
+        if (mBitmap != null) {
+            mBitmap.recycle();
+            mBitmap = null;
+            mCanvas = null;
+        }
+        mValid = false;
+    }
+
+    /**
+     * Returns a one-line summary of how much of each frame was repainted and copied to the
+     * screen, and how fast.
+     */
+    public String dump() {
+        int framePixels = mBitmap != null ? mBitmap.getWidth() * mBitmap.getHeight() : 0;
+        return "frames=" + mFrameCount
+                + " full=" + mFullFrameCount
+                + " avgRepaintedPixels=" + (mFrameCount > 0 ? mRepaintedPixels / mFrameCount : 0)
+                + " lastRepaintedPixels=" + mLastRepaintedPixels
+                + " blittedPixels=" + mBlittedPixels
+                + " lastBlittedPixels=" + mLastBlittedPixels
+                + " framePixels=" + framePixels
+                + " " + mRepaintStats
+                + " " + mBlitStats;
+    }
+}
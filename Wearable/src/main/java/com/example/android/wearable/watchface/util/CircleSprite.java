@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+/**
+ * A circle pre-rendered, together with its blurred shadow, into a small bitmap.
+ * <p>
+ * Like {@link HandSprite}, this saves blurring the shadow on every frame. It also keeps the shadow
+ * on a hardware canvas, which ignores shadow layers on anything but text before API 28.
+ */
+public class CircleSprite {
+
+    /**
+     * Extra room around the circle for the blurred shadow, as a multiple of the shadow radius. The
+     * blur fades out well within two radii.
+     */
+    private static final float SHADOW_PADDING_FACTOR = 2f;
+
+    private final Paint mBlitPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    private Bitmap mSprite;
+
+    /** Position of the circle's center inside {@link #mSprite}. */
+    private float mPivot;
+
+    // Configuration the sprite was rendered for.
+    private int mColor;
+    private float mStrokeWidth;
+    private Paint.Style mStyle;
+    private boolean mAntiAlias;
+    private float mRadius;
+    private float mShadowRadius;
+    private int mShadowColor;
+
+    /** Number of times the sprite has been rendered, for tuning. */
+    private int mRenderCount;
+
+    /**
+     * Renders the sprite again if the configuration changed since the last call.
+     *
+     * @param paint paint the circle is drawn with; only its color, stroke width, style and
+     *              anti-aliasing are used, the shadow is described by the other parameters
+     * @param radius radius of the circle
+     * @param shadowRadius blur radius of the shadow, or 0 for no shadow
+     * @param shadowColor color of the shadow
+     * @return whether the sprite was rendered again
+     */
+    public boolean update(Paint paint, float radius, float shadowRadius, int shadowColor) {
+        if (mSprite != null
+                && paint.getColor() == mColor
+                && paint.getStrokeWidth() == mStrokeWidth
+                && paint.getStyle() == mStyle
+                && paint.isAntiAlias() == mAntiAlias
+                && radius == mRadius
+                && shadowRadius == mShadowRadius
+                && shadowColor == mShadowColor) {
+            return false;
+        }
+        release();
+
+        if (radius <= 0) {
+            return false;
+        }
+
+        mColor = paint.getColor();
+        mStrokeWidth = paint.getStrokeWidth();
+        mStyle = paint.getStyle();
+        mAntiAlias = paint.isAntiAlias();
+        mRadius = radius;
+        mShadowRadius = shadowRadius;
+        mShadowColor = shadowColor;
+
+        // A stroke sticks out by half its width.
+        float padding = (float) Math.ceil(mStrokeWidth / 2f
+                + shadowRadius * SHADOW_PADDING_FACTOR) + 1;
+        int size = (int) Math.ceil((radius + padding) * 2);
+        mPivot = size / 2f;
+
+        Paint spritePaint = new Paint(paint);
+        if (shadowRadius > 0) {
+            spritePaint.setShadowLayer(shadowRadius, 0, 0, shadowColor);
+        } else {
+            spritePaint.clearShadowLayer();
+        }
+
+        mSprite = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        new Canvas(mSprite).drawCircle(mPivot, mPivot, radius, spritePaint);
+        mRenderCount++;
+        return true;
+    }
+
+    /**
+     * Draws the circle around the given center.
+     *
+     * @return false if there is no sprite, in which case the caller should draw the circle
+     *         directly
+     */
+    public boolean draw(Canvas canvas, float centerX, float centerY) {
+        if (mSprite == null) {
+            return false;
+        }
+        canvas.drawBitmap(mSprite, centerX - mPivot, centerY - mPivot, mBlitPaint);
+        return true;
+    }
+
+    /** Frees the sprite. */
+    public void release() {
+        if (mSprite != null) {
+            mSprite.recycle();
+            mSprite = null;
+        }
+    }
+
+    public int getRenderCount() {
+        return mRenderCount;
+    }
+}
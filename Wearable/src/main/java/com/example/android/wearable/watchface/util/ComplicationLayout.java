@@ -0,0 +1,320 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import android.content.res.Resources;
+import android.content.res.XmlResourceParser;
+import android.graphics.Rect;
+import android.support.wearable.complications.ComplicationData;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Positions of the complication slots of a watch face, loaded from an XML resource.
+ * <p>
+ * Each {@code <slot>} element gives the complication id, a name, the supported complication
+ * types, a shape ({@code rect} or {@code circle}) and its bounds as fractions of the screen.
+ * Slots are listed bottom to top. The types are {@code |}-separated names of the
+ * {@code ComplicationData.TYPE_*} constants in lower case, e.g. {@code short_text|icon}.
+ * {@link #setSize} turns the fractions into pixel bounds once per surface size and builds a
+ * coarse grid over the screen that lists, for every cell, the slots overlapping it. Finding the
+ * slots under a tap then only looks at the slots of one cell, however many slots there are.
+ */
+public class ComplicationLayout {
+
+    public static final int SHAPE_RECT = 0;
+    public static final int SHAPE_CIRCLE = 1;
+
+    /** Names of the complication types in the {@code types} attribute, and their values. */
+    private static final String[] TYPE_NAMES = {
+        "short_text", "long_text", "ranged_value", "icon", "small_image", "large_image"
+    };
+    private static final int[] TYPE_VALUES = {
+        ComplicationData.TYPE_SHORT_TEXT,
+        ComplicationData.TYPE_LONG_TEXT,
+        ComplicationData.TYPE_RANGED_VALUE,
+        ComplicationData.TYPE_ICON,
+        ComplicationData.TYPE_SMALL_IMAGE,
+        ComplicationData.TYPE_LARGE_IMAGE
+    };
+
+    /** Number of grid cells along each side of the screen. */
+    private static final int GRID_SIZE = 8;
+
+    private final int mSlotCount;
+    private final int[] mIds;
+    private final String[] mNames;
+    private final int[][] mSupportedTypes;
+    private final int[] mShapes;
+
+    /** Bounds as fractions of the screen, four per slot: left, top, right, bottom. */
+    private final float[] mFractions;
+
+    /** Bounds in pixels, four per slot, valid after {@link #setSize}. */
+    private final int[] mBounds;
+
+    private int mWidth;
+    private int mHeight;
+
+    /**
+     * Slots overlapping each grid cell, topmost first. The slots of cell {@code c} are stored in
+     * {@code mCellSlots} from index {@code mCellStart[c]} up to {@code mCellStart[c + 1]}.
+     */
+    private final int[] mCellStart = new int[GRID_SIZE * GRID_SIZE + 1];
+    private int[] mCellSlots = new int[0];
+
+    private ComplicationLayout(int[] ids, String[] names, int[][] supportedTypes, int[] shapes,
+            float[] fractions) {
+        mSlotCount = ids.length;
+        mIds = ids;
+        mNames = names;
+        mSupportedTypes = supportedTypes;
+        mShapes = shapes;
+        mFractions = fractions;
+        mBounds = new int[mSlotCount * 4];
+    }
+
+    /**
+     * Loads a layout from an XML resource.
+     *
+     * @throws IllegalArgumentException if the resource is malformed
+     */
+    public static ComplicationLayout inflate(Resources resources, int xmlResId) {
+        ArrayList<String[]> slots = new ArrayList<>();
+        XmlResourceParser parser = resources.getXml(xmlResId);
+        try {
+            for (int event = parser.getEventType();
+                    event != XmlPullParser.END_DOCUMENT;
+                    event = parser.next()) {
+                if (event == XmlPullParser.START_TAG && "slot".equals(parser.getName())) {
+                    slots.add(new String[] {
+                        parser.getAttributeValue(null, "id"),
+                        parser.getAttributeValue(null, "name"),
+                        parser.getAttributeValue(null, "types"),
+                        parser.getAttributeValue(null, "shape"),
+                        parser.getAttributeValue(null, "left"),
+                        parser.getAttributeValue(null, "top"),
+                        parser.getAttributeValue(null, "right"),
+                        parser.getAttributeValue(null, "bottom")
+                    });
+                }
+            }
+        } catch (XmlPullParserException | IOException e) {
+            throw new IllegalArgumentException("Could not read complication layout", e);
+        } finally {
+            parser.close();
+        }
+
+        int count = slots.size();
+        int[] ids = new int[count];
+        String[] names = new String[count];
+        int[][] supportedTypes = new int[count][];
+        int[] shapes = new int[count];
+        float[] fractions = new float[count * 4];
+        for (int i = 0; i < count; i++) {
+            String[] slot = slots.get(i);
+            try {
+                ids[i] = Integer.parseInt(slot[0]);
+                names[i] = slot[1];
+                supportedTypes[i] = parseTypes(i, slot[2]);
+                shapes[i] = "circle".equals(slot[3]) ? SHAPE_CIRCLE : SHAPE_RECT;
+                for (int j = 0; j < 4; j++) {
+                    if (slot[4 + j] == null) {
+                        throw new IllegalArgumentException("Complication slot " + i
+                                + " is missing its bounds");
+                    }
+                    fractions[i * 4 + j] = Float.parseFloat(slot[4 + j]);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Malformed complication slot " + i, e);
+            }
+        }
+        return new ComplicationLayout(ids, names, supportedTypes, shapes, fractions);
+    }
+
+    private static int[] parseTypes(int slot, String types) {
+        if (types == null) {
+            throw new IllegalArgumentException("Complication slot " + slot
+                    + " is missing its types");
+        }
+        String[] names = types.split("\\|");
+        int[] values = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            int type = -1;
+            for (int j = 0; j < TYPE_NAMES.length; j++) {
+                if (TYPE_NAMES[j].equals(names[i].trim())) {
+                    type = TYPE_VALUES[j];
+                }
+            }
+            if (type < 0) {
+                throw new IllegalArgumentException("Complication slot " + slot
+                        + " has unknown type " + names[i]);
+            }
+            values[i] = type;
+        }
+        return values;
+    }
+
+    /** Computes the pixel bounds of all slots and the tap grid for a screen of this size. */
+    public void setSize(int width, int height) {
+        if (width == mWidth && height == mHeight) {
+            return;
+        }
+        mWidth = width;
+        mHeight = height;
+
+        for (int i = 0; i < mSlotCount; i++) {
+            mBounds[i * 4] = Math.round(mFractions[i * 4] * width);
+            mBounds[i * 4 + 1] = Math.round(mFractions[i * 4 + 1] * height);
+            mBounds[i * 4 + 2] = Math.round(mFractions[i * 4 + 2] * width);
+            mBounds[i * 4 + 3] = Math.round(mFractions[i * 4 + 3] * height);
+        }
+        buildGrid();
+    }
+
+    private void buildGrid() {
+        int cellCount = GRID_SIZE * GRID_SIZE;
+        if (mWidth <= 0 || mHeight <= 0) {
+            for (int cell = 0; cell <= cellCount; cell++) {
+                mCellStart[cell] = 0;
+            }
+            return;
+        }
+
+        // The first pass counts the entries so the slot list is allocated only once. A cell
+        // covers the pixels that findSlotsAt maps to it, hence the rounding up.
+        for (int pass = 0; pass < 2; pass++) {
+            int next = 0;
+            for (int cell = 0; cell < cellCount; cell++) {
+                int column = cell % GRID_SIZE;
+                int row = cell / GRID_SIZE;
+                int cellLeft = (column * mWidth + GRID_SIZE - 1) / GRID_SIZE;
+                int cellTop = (row * mHeight + GRID_SIZE - 1) / GRID_SIZE;
+                int cellRight = ((column + 1) * mWidth + GRID_SIZE - 1) / GRID_SIZE;
+                int cellBottom = ((row + 1) * mHeight + GRID_SIZE - 1) / GRID_SIZE;
+
+                mCellStart[cell] = next;
+                for (int i = mSlotCount - 1; i >= 0; i--) {
+                    if (mBounds[i * 4] < cellRight
+                            && mBounds[i * 4 + 1] < cellBottom
+                            && mBounds[i * 4 + 2] > cellLeft
+                            && mBounds[i * 4 + 3] > cellTop) {
+                        if (pass == 1) {
+                            mCellSlots[next] = i;
+                        }
+                        next++;
+                    }
+                }
+            }
+            mCellStart[cellCount] = next;
+            if (pass == 0 && mCellSlots.length != next) {
+                mCellSlots = new int[next];
+            }
+        }
+    }
+
+    public int getSlotCount() {
+        return mSlotCount;
+    }
+
+    public int getSlotId(int index) {
+        return mIds[index];
+    }
+
+    /** Returns the ids of all slots, bottom to top, in a new array. */
+    public int[] getSlotIds() {
+        return mIds.clone();
+    }
+
+    /** Returns the name of the slot, or null if it has none. */
+    public String getName(int index) {
+        return mNames[index];
+    }
+
+    /**
+     * Returns the {@code ComplicationData.TYPE_*} values the slot supports, in order of
+     * preference. The array must not be modified.
+     */
+    public int[] getSupportedTypes(int index) {
+        return mSupportedTypes[index];
+    }
+
+    /** Returns the index of the slot with the given name, or -1 if there is none. */
+    public int findSlot(String name) {
+        for (int i = 0; i < mSlotCount; i++) {
+            if (name.equals(mNames[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int getShape(int index) {
+        return mShapes[index];
+    }
+
+    /** Copies the pixel bounds of the slot at {@code index} into {@code outBounds}. */
+    public void getBounds(int index, Rect outBounds) {
+        outBounds.set(
+                mBounds[index * 4],
+                mBounds[index * 4 + 1],
+                mBounds[index * 4 + 2],
+                mBounds[index * 4 + 3]);
+    }
+
+    /**
+     * Finds the slots under a point, topmost first.
+     *
+     * @param outIndices receives the slot indices; must hold at least {@link #getSlotCount()}
+     * @return the number of slots found
+     */
+    public int findSlotsAt(int x, int y, int[] outIndices) {
+        if (x < 0 || y < 0 || x >= mWidth || y >= mHeight) {
+            return 0;
+        }
+        int cell = y * GRID_SIZE / mHeight * GRID_SIZE + x * GRID_SIZE / mWidth;
+        int count = 0;
+        for (int i = mCellStart[cell]; i < mCellStart[cell + 1]; i++) {
+            int slot = mCellSlots[i];
+            if (contains(slot, x, y)) {
+                outIndices[count++] = slot;
+            }
+        }
+        return count;
+    }
+
+    private boolean contains(int slot, int x, int y) {
+        int left = mBounds[slot * 4];
+        int top = mBounds[slot * 4 + 1];
+        int right = mBounds[slot * 4 + 2];
+        int bottom = mBounds[slot * 4 + 3];
+        if (x < left || y < top || x >= right || y >= bottom) {
+            return false;
+        }
+        if (mShapes[slot] == SHAPE_CIRCLE) {
+            float radius = Math.min(right - left, bottom - top) / 2f;
+            float dx = x - (left + right) / 2f;
+            float dy = y - (top + bottom) / 2f;
+            return dx * dx + dy * dy <= radius * radius;
+        }
+        return true;
+    }
+}
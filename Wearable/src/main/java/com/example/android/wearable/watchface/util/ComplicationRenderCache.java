@@ -0,0 +1,303 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.support.wearable.complications.ComplicationData;
+import android.support.wearable.complications.ComplicationText;
+import android.support.wearable.complications.rendering.ComplicationDrawable;
+import android.util.Log;
+import android.util.SparseArray;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the rendering of each complication slot in its own bitmap.
+ * <p>
+ * Most complications show the same thing for minutes at a time, yet
+ * {@link ComplicationDrawable#draw(Canvas, long)} lays out text, tints icons and draws ranged
+ * value arcs on every call. A slot is rendered again only when
+ * <ul>
+ *     <li>its {@link ComplicationData} is replaced by a different instance,</li>
+ *     <li>the bounds of its drawable change,</li>
+ *     <li>the ambient, low-bit or burn-in state changes (see {@link #setAmbientState}),</li>
+ *     <li>its time-dependent text or active period actually changes, or</li>
+ *     <li>it is explicitly invalidated, e.g. because colors changed or an image finished
+ *     loading.</li>
+ * </ul>
+ * Time-dependent text is checked with {@link ComplicationText#returnsSameText} at second,
+ * minute, hour and day boundaries, so text that has not changed never causes a render.
+ */
+public class ComplicationRenderCache {
+    private static final String TAG = "ComplicationCache";
+
+    /**
+     * Boundaries at which time-dependent content is checked for changes, finest first. Content
+     * that stays the same up to the last one is checked again a day later.
+     */
+    private static final long[] CHANGE_CHECK_UNITS_MILLIS = {
+        TimeUnit.SECONDS.toMillis(1),
+        TimeUnit.MINUTES.toMillis(1),
+        TimeUnit.HOURS.toMillis(1),
+        TimeUnit.DAYS.toMillis(1)
+    };
+
+    /** Rendering of one slot and everything it depends on. */
+    private static class Entry {
+        Bitmap bitmap;
+        Canvas canvas;
+        final Rect bounds = new Rect();
+        ComplicationData data;
+        boolean active;
+        boolean valid;
+
+        /** Time the slot was last rendered for. */
+        long renderedAtMillis;
+
+        /** Time until which the content is known not to change. */
+        long checkedUntilMillis;
+    }
+
+    private final SparseArray<Entry> mEntries = new SparseArray<>();
+
+    private boolean mAmbient;
+    private boolean mLowBitAmbient;
+    private boolean mBurnInProtection;
+
+    // Counters for tuning.
+    private int mHitCount;
+    private int mMissCount;
+
+    /**
+     * Updates the display state that all slots are rendered for. Every slot is rendered again if
+     * anything changed.
+     */
+    public void setAmbientState(boolean ambient, boolean lowBitAmbient, boolean burnInProtection) {
+        if (ambient == mAmbient
+                && lowBitAmbient == mLowBitAmbient
+                && burnInProtection == mBurnInProtection) {
+            return;
+        }
+        mAmbient = ambient;
+        mLowBitAmbient = lowBitAmbient;
+        mBurnInProtection = burnInProtection;
+        invalidateAll();
+    }
+
+    /** Forces the slot to be rendered again on its next {@link #draw}. */
+    public void invalidate(int complicationId) {
+        Entry entry = mEntries.get(complicationId);
+        if (entry != null) {
+            entry.valid = false;
+        }
+    }
+
+    /** Forces every slot to be rendered again, e.g. after the complication colors changed. */
+    public void invalidateAll() {
+        for (int i = 0; i < mEntries.size(); i++) {
+            mEntries.valueAt(i).valid = false;
+        }
+    }
+
+    /**
+     * Returns whether any slot would be rendered differently at {@code currentTimeMillis} than
+     * it was last time, i.e. whether a layer holding the complications needs to be redrawn.
+     * Slots whose content turns out not to have changed are revalidated without rendering.
+     */
+    public boolean isStale(long currentTimeMillis) {
+        boolean stale = false;
+        for (int i = 0; i < mEntries.size(); i++) {
+            if (!revalidate(mEntries.valueAt(i), currentTimeMillis)) {
+                stale = true;
+            }
+        }
+        return stale;
+    }
+
+    /**
+     * Draws the slot onto {@code canvas} at the bounds of its drawable, rendering it first if
+     * the cached bitmap is out of date.
+     *
+     * @param data the data last passed to the drawable, or null if there is none
+     */
+    public void draw(Canvas canvas, int complicationId, ComplicationDrawable drawable,
+            ComplicationData data, long currentTimeMillis) {
+        Rect bounds = drawable.getBounds();
+        if (bounds.isEmpty()) {
+            return;
+        }
+
+        Entry entry = mEntries.get(complicationId);
+        if (entry == null) {
+            entry = new Entry();
+            mEntries.put(complicationId, entry);
+        }
+
+        if (entry.data != data || !entry.bounds.equals(bounds)) {
+            entry.valid = false;
+        }
+
+        if (revalidate(entry, currentTimeMillis)) {
+            mHitCount++;
+        } else {
+            render(entry, drawable, data, currentTimeMillis);
+            mMissCount++;
+        }
+        canvas.drawBitmap(entry.bitmap, bounds.left, bounds.top, null);
+
+        if (Log.isLoggable(TAG, Log.VERBOSE) && (mHitCount + mMissCount) % 100 == 0) {
+            Log.v(TAG, toString());
+        }
+    }
+
+    private void render(Entry entry, ComplicationDrawable drawable, ComplicationData data,
+            long currentTimeMillis) {
+        Rect bounds = drawable.getBounds();
+        int width = bounds.width();
+        int height = bounds.height();
+
+        if (entry.bitmap == null
+                || entry.bitmap.getWidth() != width
+                || entry.bitmap.getHeight() != height) {
+            if (entry.bitmap != null) {
+                entry.bitmap.recycle();
+            }
+            entry.bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            entry.canvas = new Canvas(entry.bitmap);
+        } else {
+            entry.bitmap.eraseColor(Color.TRANSPARENT);
+        }
+
+        // The drawable renders at its bounds; shift them to the origin of the bitmap.
+        int saveCount = entry.canvas.save();
+        entry.canvas.translate(-bounds.left, -bounds.top);
+        drawable.draw(entry.canvas, currentTimeMillis);
+        entry.canvas.restoreToCount(saveCount);
+
+        entry.bounds.set(bounds);
+        entry.data = data;
+        entry.active = data == null || data.isActive(currentTimeMillis);
+        entry.renderedAtMillis = currentTimeMillis;
+        entry.checkedUntilMillis = findNextCheckTime(data, currentTimeMillis);
+        entry.valid = true;
+    }
+
+    /**
+     * Returns whether the cached rendering of {@code entry} is still correct at
+     * {@code currentTimeMillis}, extending the time until which it is known to be.
+     */
+    private static boolean revalidate(Entry entry, long currentTimeMillis) {
+        if (!entry.valid) {
+            return false;
+        }
+        if (currentTimeMillis >= entry.renderedAtMillis
+                && currentTimeMillis < entry.checkedUntilMillis) {
+            return true;
+        }
+        if (!rendersSame(entry.data, entry.active, entry.renderedAtMillis, currentTimeMillis)) {
+            entry.valid = false;
+            return false;
+        }
+        entry.checkedUntilMillis = findNextCheckTime(entry.data, currentTimeMillis);
+        return true;
+    }
+
+    /**
+     * Finds the time at which the content of {@code data} has to be checked again. This is the
+     * last second/minute/hour/day boundary up to which it is known not to change.
+     */
+    static long findNextCheckTime(ComplicationData data, long fromMillis) {
+        if (data == null) {
+            return Long.MAX_VALUE;
+        }
+        boolean active = data.isActive(fromMillis);
+        long lastSameBoundary = fromMillis;
+        for (long unit : CHANGE_CHECK_UNITS_MILLIS) {
+            long boundary = (fromMillis / unit + 1) * unit;
+            if (!rendersSame(data, active, fromMillis, boundary)) {
+                // The change happens somewhere before this boundary. If even the next second
+                // differs, there is nothing finer to wait for.
+                return lastSameBoundary > fromMillis ? lastSameBoundary : boundary;
+            }
+            lastSameBoundary = boundary;
+        }
+        return lastSameBoundary;
+    }
+
+    /**
+     * Returns whether {@code data} renders the same at both times, i.e. whether a rendering of
+     * it made at {@code firstMillis} is still correct at {@code secondMillis}. For slots drawn
+     * outside the cache, such as a full-screen background complication.
+     */
+    public static boolean rendersSame(ComplicationData data, long firstMillis,
+            long secondMillis) {
+        return data == null
+                || rendersSame(data, data.isActive(firstMillis), firstMillis, secondMillis);
+    }
+
+    private static boolean rendersSame(ComplicationData data, boolean active, long firstMillis,
+            long secondMillis) {
+        if (data == null) {
+            return true;
+        }
+        return data.isActive(secondMillis) == active
+                && returnsSameText(data.getShortText(), firstMillis, secondMillis)
+                && returnsSameText(data.getShortTitle(), firstMillis, secondMillis)
+                && returnsSameText(data.getLongText(), firstMillis, secondMillis)
+                && returnsSameText(data.getLongTitle(), firstMillis, secondMillis);
+    }
+
+    private static boolean returnsSameText(ComplicationText text, long firstMillis,
+            long secondMillis) {
+        return text == null || text.returnsSameText(firstMillis, secondMillis);
+    }
+
+    /** Frees the cached bitmaps. */
+    public void release() {
+        for (int i = 0; i < mEntries.size(); i++) {
+            Entry entry = mEntries.valueAt(i);
+            if (entry.bitmap != null) {
+                entry.bitmap.recycle();
+            }
+        }
+        mEntries.clear();
+    }
+
+    /** Returns how often a slot was drawn from its cached bitmap. */
+    public int getHitCount() {
+        return mHitCount;
+    }
+
+    /** Returns how often a slot had to be rendered. */
+    public int getMissCount() {
+        return mMissCount;
+    }
+
+    /** Clears the hit and miss counters. */
+    public void resetCounters() {
+        mHitCount = 0;
+        mMissCount = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "slots=" + mEntries.size() + " hits=" + mHitCount + " misses=" + mMissCount;
+    }
+}
@@ -0,0 +1,509 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.Icon;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.wearable.complications.ComplicationData;
+import android.support.wearable.complications.ComplicationText;
+import android.util.AtomicFile;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseLongArray;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the last {@link ComplicationData} of every slot on disk, so that a watch face can show
+ * its complications on the very first frame after a cold start instead of waiting for every
+ * provider to answer.
+ * <p>
+ * Only what is needed to draw a complication is kept, field by field: its type, its texts as
+ * plain strings, its images as compressed bitmaps and its range. Nothing is written as a
+ * {@code Parcel}, whose format may change between platform and library versions, and images are
+ * stored as pixels rather than as resource ids, which a provider update can change. Tap actions
+ * hold binder references that cannot be written to disk, so restored data cannot be tapped until
+ * the provider sends fresh data. A slot that cannot be written or that does not fit in the size
+ * cap is left out, and the others are kept.
+ * <p>
+ * Texts are stored as they read when the data arrived, so each slot is only restored until the
+ * first of its texts would have changed, and never after {@link #MAX_AGE_MS}.
+ * <p>
+ * Updates are written behind: {@link #put} only records the data, and the file is rewritten on a
+ * background thread once updates have been quiet for {@link #WRITE_DELAY_MS}. The file starts
+ * with a format version; a file of any other version is deleted instead of being read.
+ * <p>
+ * All methods must be called on the main thread.
+ */
+public class ComplicationSnapshotStore {
+
+    /** Default cap on the size of the whole file, in bytes. */
+    public static final int DEFAULT_MAX_BYTES = 64 * 1024;
+
+    /** Longest time after it arrived that data is restored. */
+    public static final long MAX_AGE_MS = TimeUnit.HOURS.toMillis(6);
+
+    private static final int MAGIC = 0x43534e50;
+
+    /** Bump whenever the layout written by {@link #writeSlot} changes. */
+    private static final int VERSION = 2;
+
+    private static final long WRITE_DELAY_MS = TimeUnit.SECONDS.toMillis(2);
+
+    /** Largest side of a stored icon or small image, and of a stored large image, in pixels. */
+    private static final int MAX_ICON_SIZE_PX = 128;
+    private static final int MAX_LARGE_IMAGE_SIZE_PX = 480;
+
+    /** Quality of the JPEG a large image is stored as; icons are stored as lossless PNG. */
+    private static final int LARGE_IMAGE_QUALITY = 85;
+
+    // Fields kept for a slot, as a bit mask.
+    private static final int FIELD_SHORT_TEXT = 1;
+    private static final int FIELD_SHORT_TITLE = 1 << 1;
+    private static final int FIELD_LONG_TEXT = 1 << 2;
+    private static final int FIELD_LONG_TITLE = 1 << 3;
+    private static final int FIELD_ICON = 1 << 4;
+    private static final int FIELD_BURN_IN_PROTECTION_ICON = 1 << 5;
+    private static final int FIELD_SMALL_IMAGE = 1 << 6;
+    private static final int FIELD_IMAGE_STYLE = 1 << 7;
+    private static final int FIELD_LARGE_IMAGE = 1 << 8;
+    private static final int FIELD_RANGE = 1 << 9;
+
+    private final Context mContext;
+    private final String mTag;
+    private final AtomicFile mFile;
+    private final int mMaxBytes;
+
+    /** Latest data of every slot, including slots restored from disk, and when it arrived. */
+    private final SparseArray<ComplicationData> mSlots = new SparseArray<>();
+    private final SparseLongArray mArrivalTimes = new SparseLongArray();
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+    private final Runnable mWriteRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mWritePending = false;
+            write();
+        }
+    };
+
+    /** Whether {@link #mWriteRunnable} is scheduled. */
+    private boolean mWritePending;
+
+    // Counters for tuning. Those updated by writes are only read for dumping.
+    private int mRestoredSlotCount;
+    private int mExpiredSlotCount;
+    private int mRestoredBytes;
+    private long mRestoreNanos;
+    private volatile int mWriteCount;
+    private volatile int mWrittenBytes;
+    private volatile int mSkippedSlotCount;
+
+    /**
+     * @param name file name in the app's files directory
+     * @param tag log tag for read and write failures
+     * @param maxBytes cap on the size of the file
+     */
+    public ComplicationSnapshotStore(Context context, String name, String tag, int maxBytes) {
+        mContext = context.getApplicationContext();
+        mFile = new AtomicFile(new File(context.getFilesDir(), name));
+        mTag = tag;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Reads the snapshot synchronously. Call once, before any {@link #put}.
+     *
+     * @return the last known data of every slot that could be restored and is still current;
+     *     empty if there is no usable snapshot
+     */
+    public SparseArray<ComplicationData> restore() {
+        long start = System.nanoTime();
+        long now = System.currentTimeMillis();
+        SparseArray<ComplicationData> slots = new SparseArray<>();
+        byte[] bytes;
+        try {
+            bytes = mFile.readFully();
+        } catch (FileNotFoundException e) {
+            return slots;
+        } catch (IOException e) {
+            Log.w(mTag, "Could not read complication snapshot", e);
+            return slots;
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                mFile.delete();
+                return slots;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                int id = in.readInt();
+                byte[] slot = new byte[in.readInt()];
+                in.readFully(slot);
+                DataInputStream slotIn = new DataInputStream(new ByteArrayInputStream(slot));
+                long arrivalTime = slotIn.readLong();
+                long validUntil = slotIn.readLong();
+                if (now < arrivalTime || now >= validUntil) {
+                    mExpiredSlotCount++;
+                    continue;
+                }
+                ComplicationData data = readSlot(slotIn);
+                if (data != null) {
+                    slots.put(id, data);
+                    mSlots.put(id, data);
+                    mArrivalTimes.put(id, arrivalTime);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // A truncated or corrupt file; whatever was read before is still good.
+            Log.w(mTag, "Discarding corrupt complication snapshot", e);
+            mFile.delete();
+        }
+
+        mRestoredSlotCount = slots.size();
+        mRestoredBytes = bytes.length;
+        mRestoreNanos = System.nanoTime() - start;
+        return slots;
+    }
+
+    /** Records the latest data of a slot and schedules the snapshot to be rewritten. */
+    public void put(int id, ComplicationData data) {
+        if (data == null) {
+            mSlots.remove(id);
+            mArrivalTimes.delete(id);
+        } else {
+            mSlots.put(id, data);
+            mArrivalTimes.put(id, System.currentTimeMillis());
+        }
+        mMainHandler.removeCallbacks(mWriteRunnable);
+        mMainHandler.postDelayed(mWriteRunnable, WRITE_DELAY_MS);
+        mWritePending = true;
+    }
+
+    /** Writes any pending update and stops the background thread once it is written. */
+    public void release() {
+        if (mWritePending) {
+            mWritePending = false;
+            mMainHandler.removeCallbacks(mWriteRunnable);
+            write();
+        }
+        mExecutor.shutdown();
+    }
+
+    private void write() {
+        if (mExecutor.isShutdown()) {
+            return;
+        }
+        // ComplicationData is immutable, so a copy of the arrays is all the thread needs.
+        final SparseArray<ComplicationData> slots = new SparseArray<>(mSlots.size());
+        final SparseLongArray arrivalTimes = new SparseLongArray(mSlots.size());
+        for (int i = 0; i < mSlots.size(); i++) {
+            int id = mSlots.keyAt(i);
+            slots.put(id, mSlots.valueAt(i));
+            arrivalTimes.put(id, mArrivalTimes.get(id));
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                writeFile(slots, arrivalTimes);
+            }
+        });
+    }
+
+    /** Called on the background thread. */
+    private void writeFile(SparseArray<ComplicationData> slots, SparseLongArray arrivalTimes) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        int count = 0;
+        int skipped = 0;
+        byte[][] slotBytes = new byte[slots.size()][];
+        int size = 12;
+        for (int i = 0; i < slots.size(); i++) {
+            int id = slots.keyAt(i);
+            byte[] slot = flattenSlot(slots.valueAt(i), arrivalTimes.get(id));
+            if (slot == null || size + 8 + slot.length > mMaxBytes) {
+                skipped++;
+                continue;
+            }
+            slotBytes[i] = slot;
+            size += 8 + slot.length;
+            count++;
+        }
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(count);
+            for (int i = 0; i < slots.size(); i++) {
+                if (slotBytes[i] != null) {
+                    out.writeInt(slots.keyAt(i));
+                    out.writeInt(slotBytes[i].length);
+                    out.write(slotBytes[i]);
+                }
+            }
+        } catch (IOException e) {
+            // Not thrown by a ByteArrayOutputStream.
+            throw new IllegalStateException(e);
+        }
+        mSkippedSlotCount = skipped;
+
+        FileOutputStream file = null;
+        try {
+            file = mFile.startWrite();
+            bytes.writeTo(file);
+            mFile.finishWrite(file);
+            mWriteCount++;
+            mWrittenBytes = bytes.size();
+        } catch (IOException e) {
+            Log.w(mTag, "Could not write complication snapshot", e);
+            if (file != null) {
+                mFile.failWrite(file);
+            }
+        }
+    }
+
+    /** Flattens one slot on its own, or returns null if it cannot be flattened. */
+    private byte[] flattenSlot(ComplicationData data, long arrivalTime) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        if (!data.isActive(arrivalTime)) {
+            // Start and end times are not kept, so this would be restored as active.
+            return null;
+        }
+        try {
+            // Until the first of the texts changes, or the data stops being active.
+            long validUntil = Math.min(arrivalTime + MAX_AGE_MS,
+                    ComplicationRenderCache.findNextCheckTime(data, arrivalTime));
+            out.writeLong(arrivalTime);
+            out.writeLong(validUntil);
+            writeSlot(out, data, arrivalTime);
+            return bytes.toByteArray();
+        } catch (IOException | RuntimeException e) {
+            // E.g. a text too long for writeUTF, or an image that fails to load.
+            Log.w(mTag, "Could not write complication of type " + data.getType(), e);
+            return null;
+        }
+    }
+
+    private void writeSlot(DataOutputStream out, ComplicationData data, long timeMillis)
+            throws IOException {
+        int type = data.getType();
+        int fields = getFields(type);
+        ComplicationText shortText = has(fields, FIELD_SHORT_TEXT) ? data.getShortText() : null;
+        ComplicationText shortTitle = has(fields, FIELD_SHORT_TITLE) ? data.getShortTitle() : null;
+        ComplicationText longText = has(fields, FIELD_LONG_TEXT) ? data.getLongText() : null;
+        ComplicationText longTitle = has(fields, FIELD_LONG_TITLE) ? data.getLongTitle() : null;
+        Icon icon = has(fields, FIELD_ICON) ? data.getIcon() : null;
+        Icon burnInProtectionIcon =
+                has(fields, FIELD_BURN_IN_PROTECTION_ICON) ? data.getBurnInProtectionIcon() : null;
+        Icon smallImage = has(fields, FIELD_SMALL_IMAGE) ? data.getSmallImage() : null;
+        Icon largeImage = has(fields, FIELD_LARGE_IMAGE) ? data.getLargeImage() : null;
+
+        // Only the fields that are actually set are written.
+        int present = fields & (FIELD_IMAGE_STYLE | FIELD_RANGE);
+        present |= shortText != null ? FIELD_SHORT_TEXT : 0;
+        present |= shortTitle != null ? FIELD_SHORT_TITLE : 0;
+        present |= longText != null ? FIELD_LONG_TEXT : 0;
+        present |= longTitle != null ? FIELD_LONG_TITLE : 0;
+        present |= icon != null ? FIELD_ICON : 0;
+        present |= burnInProtectionIcon != null ? FIELD_BURN_IN_PROTECTION_ICON : 0;
+        present |= smallImage != null ? FIELD_SMALL_IMAGE : 0;
+        present |= largeImage != null ? FIELD_LARGE_IMAGE : 0;
+
+        out.writeInt(type);
+        out.writeInt(present);
+        writeText(out, shortText, timeMillis);
+        writeText(out, shortTitle, timeMillis);
+        writeText(out, longText, timeMillis);
+        writeText(out, longTitle, timeMillis);
+        writeImage(out, icon, MAX_ICON_SIZE_PX, Bitmap.CompressFormat.PNG, 100);
+        writeImage(out, burnInProtectionIcon, MAX_ICON_SIZE_PX, Bitmap.CompressFormat.PNG, 100);
+        writeImage(out, smallImage, MAX_ICON_SIZE_PX, Bitmap.CompressFormat.PNG, 100);
+        if (has(present, FIELD_IMAGE_STYLE)) {
+            out.writeInt(data.getImageStyle());
+        }
+        writeImage(out, largeImage, MAX_LARGE_IMAGE_SIZE_PX, Bitmap.CompressFormat.JPEG,
+                LARGE_IMAGE_QUALITY);
+        if (has(present, FIELD_RANGE)) {
+            out.writeFloat(data.getValue());
+            out.writeFloat(data.getMinValue());
+            out.writeFloat(data.getMaxValue());
+        }
+    }
+
+    /** Rebuilds one slot, or returns null if it was written for a type that no longer exists. */
+    private static ComplicationData readSlot(DataInputStream in) throws IOException {
+        int type = in.readInt();
+        int present = in.readInt();
+
+        ComplicationData.Builder builder;
+        try {
+            builder = new ComplicationData.Builder(type);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (has(present, FIELD_SHORT_TEXT)) {
+            builder.setShortText(ComplicationText.plainText(in.readUTF()));
+        }
+        if (has(present, FIELD_SHORT_TITLE)) {
+            builder.setShortTitle(ComplicationText.plainText(in.readUTF()));
+        }
+        if (has(present, FIELD_LONG_TEXT)) {
+            builder.setLongText(ComplicationText.plainText(in.readUTF()));
+        }
+        if (has(present, FIELD_LONG_TITLE)) {
+            builder.setLongTitle(ComplicationText.plainText(in.readUTF()));
+        }
+        if (has(present, FIELD_ICON)) {
+            builder.setIcon(readImage(in));
+        }
+        if (has(present, FIELD_BURN_IN_PROTECTION_ICON)) {
+            builder.setBurnInProtectionIcon(readImage(in));
+        }
+        if (has(present, FIELD_SMALL_IMAGE)) {
+            builder.setSmallImage(readImage(in));
+        }
+        if (has(present, FIELD_IMAGE_STYLE)) {
+            builder.setImageStyle(in.readInt());
+        }
+        if (has(present, FIELD_LARGE_IMAGE)) {
+            builder.setLargeImage(readImage(in));
+        }
+        if (has(present, FIELD_RANGE)) {
+            builder.setValue(in.readFloat());
+            builder.setMinValue(in.readFloat());
+            builder.setMaxValue(in.readFloat());
+        }
+        try {
+            return builder.build();
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+
+    /** Returns the fields worth keeping for a type; other fields are not valid for it. */
+    private static int getFields(int type) {
+        switch (type) {
+            case ComplicationData.TYPE_SHORT_TEXT:
+                return FIELD_SHORT_TEXT | FIELD_SHORT_TITLE | FIELD_ICON
+                        | FIELD_BURN_IN_PROTECTION_ICON;
+            case ComplicationData.TYPE_LONG_TEXT:
+                return FIELD_LONG_TEXT | FIELD_LONG_TITLE | FIELD_ICON
+                        | FIELD_BURN_IN_PROTECTION_ICON | FIELD_SMALL_IMAGE | FIELD_IMAGE_STYLE;
+            case ComplicationData.TYPE_RANGED_VALUE:
+                return FIELD_RANGE | FIELD_SHORT_TEXT | FIELD_SHORT_TITLE | FIELD_ICON
+                        | FIELD_BURN_IN_PROTECTION_ICON;
+            case ComplicationData.TYPE_ICON:
+                return FIELD_ICON | FIELD_BURN_IN_PROTECTION_ICON;
+            case ComplicationData.TYPE_SMALL_IMAGE:
+                return FIELD_SMALL_IMAGE | FIELD_IMAGE_STYLE;
+            case ComplicationData.TYPE_LARGE_IMAGE:
+                return FIELD_LARGE_IMAGE;
+            default:
+                return 0;
+        }
+    }
+
+    private static boolean has(int fields, int field) {
+        return (fields & field) != 0;
+    }
+
+    /** Writes the text as it reads at {@code timeMillis}. */
+    private void writeText(DataOutputStream out, ComplicationText text, long timeMillis)
+            throws IOException {
+        if (text != null) {
+            CharSequence value = text.getText(mContext, timeMillis);
+            out.writeUTF(value != null ? value.toString() : "");
+        }
+    }
+
+    /**
+     * Draws the icon into a bitmap no larger than {@code maxSizePx} on either side and writes it
+     * compressed, with its length.
+     *
+     * @throws IOException if the icon cannot be loaded
+     */
+    private void writeImage(DataOutputStream out, Icon icon, int maxSizePx,
+            Bitmap.CompressFormat format, int quality) throws IOException {
+        if (icon == null) {
+            return;
+        }
+        Drawable drawable = icon.loadDrawable(mContext);
+        if (drawable == null) {
+            throw new IOException("Could not load complication image");
+        }
+        int width = drawable.getIntrinsicWidth();
+        int height = drawable.getIntrinsicHeight();
+        if (width <= 0 || height <= 0) {
+            width = maxSizePx;
+            height = maxSizePx;
+        }
+        float scale = Math.min(1f, (float) maxSizePx / Math.max(width, height));
+        width = Math.max(1, Math.round(width * scale));
+        height = Math.max(1, Math.round(height * scale));
+
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        try {
+            drawable.setBounds(0, 0, width, height);
+            drawable.draw(new Canvas(bitmap));
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            if (!bitmap.compress(format, quality, compressed)) {
+                throw new IOException("Could not compress complication image");
+            }
+            out.writeInt(compressed.size());
+            compressed.writeTo(out);
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    private static Icon readImage(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return Icon.createWithData(bytes, 0, bytes.length);
+    }
+
+    /** Returns a one-line summary of the last restore and writes. */
+    public String dump() {
+        return "restored=" + mRestoredSlotCount
+                + " expired=" + mExpiredSlotCount
+                + " (" + mRestoredBytes + " bytes in "
+                + TimeUnit.NANOSECONDS.toMicros(mRestoreNanos) + "us)"
+                + " writes=" + mWriteCount
+                + " lastWrite=" + mWrittenBytes + " bytes"
+                + " skipped=" + mSkippedSlotCount
+                + " cap=" + mMaxBytes;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import android.graphics.Paint;
+import android.util.Log;
+
+import java.text.DateFormat;
+import java.util.Date;
+
+/**
+ * The day of week and date lines of a watch face, e.g. "Tuesday" and "10/17/2017".
+ * <p>
+ * Both lines are formatted and measured only when the local day of the {@link WallClock} passed
+ * to {@link #update} changes; every other frame, {@code update} is a single comparison.
+ * <p>
+ * Not thread safe.
+ */
+public class DateLines {
+
+    private final String mTag;
+    private final Paint mPaint;
+    private final Date mDate = new Date();
+
+    private DateFormat mDayOfWeekFormat;
+    private DateFormat mDateFormat;
+
+    private String mDayOfWeek;
+    private String mDateText;
+    private float mDayOfWeekWidth;
+    private float mDateWidth;
+
+    /** Incremented whenever the lines are formatted, so that callers can tell text apart. */
+    private int mVersion;
+
+    /** Local day the lines were formatted for, or {@link Long#MIN_VALUE} if they are stale. */
+    private long mEpochDay = Long.MIN_VALUE;
+
+    // Counters for tuning.
+    private int mFormatCount;
+    private long mFormatNanos;
+
+    /**
+     * @param paint paint the lines are drawn with, used to measure them
+     */
+    public DateLines(String tag, Paint paint) {
+        mTag = tag;
+        mPaint = paint;
+    }
+
+    /**
+     * Sets the formats of the two lines. Their calendars must be in the time zone of the clock
+     * passed to {@link #update}.
+     */
+    public void setFormats(DateFormat dayOfWeekFormat, DateFormat dateFormat) {
+        mDayOfWeekFormat = dayOfWeekFormat;
+        mDateFormat = dateFormat;
+        invalidate();
+    }
+
+    /** Formats and measures the lines again on the next update, e.g. after the paint changed. */
+    public void invalidate() {
+        mEpochDay = Long.MIN_VALUE;
+    }
+
+    /**
+     * Brings the lines up to date with {@code clock}, formatting them if its local day changed.
+     * The clock must already be set to the current time.
+     */
+    public void update(WallClock clock) {
+        long epochDay = clock.getEpochDay();
+        if (epochDay == mEpochDay) {
+            return;
+        }
+        long startNanos = System.nanoTime();
+        mDate.setTime(clock.getTimeInMillis());
+        mDayOfWeek = mDayOfWeekFormat.format(mDate);
+        mDateText = mDateFormat.format(mDate);
+        mDayOfWeekWidth = mPaint.measureText(mDayOfWeek);
+        mDateWidth = mPaint.measureText(mDateText);
+        mEpochDay = epochDay;
+        mVersion++;
+        mFormatCount++;
+        mFormatNanos = System.nanoTime() - startNanos;
+        if (Log.isLoggable(mTag, Log.DEBUG)) {
+            Log.d(mTag, "Formatted date lines in " + mFormatNanos / 1000 + " us, valid until "
+                    + clock.getNextMidnightMillis());
+        }
+    }
+
+    /** Returns the day of week line. Only valid after {@link #update}. */
+    public String getDayOfWeek() {
+        return mDayOfWeek;
+    }
+
+    /** Returns the date line. Only valid after {@link #update}. */
+    public String getDate() {
+        return mDateText;
+    }
+
+    /** Returns the width of the day of week line in the paint. */
+    public float getDayOfWeekWidth() {
+        return mDayOfWeekWidth;
+    }
+
+    /** Returns the width of the date line in the paint. */
+    public float getDateWidth() {
+        return mDateWidth;
+    }
+
+    /** Returns a number that changes whenever the lines are formatted again. */
+    public int getVersion() {
+        return mVersion;
+    }
+
+    /** Returns a one-line summary of how often the lines were formatted. */
+    public String dump() {
+        return "formats=" + mFormatCount + " lastFormatMicros=" + mFormatNanos / 1000;
+    }
+}
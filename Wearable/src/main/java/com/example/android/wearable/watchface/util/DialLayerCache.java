@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+/**
+ * Caches the static hour ticks of an analog dial in a bitmap.
+ * <p>
+ * The ticks never change between frames, but drawing them means twelve rounds of trigonometry and
+ * twelve shadow-layered lines. This class rasterizes them once per configuration (surface size,
+ * background color, tick style and ambient/low-bit/burn-in state) so each frame only needs a
+ * single bitmap blit.
+ * <p>
+ * The layer is transparent outside the ticks, so a background complication drawn underneath it
+ * still shows through.
+ */
+public class DialLayerCache {
+
+    /** Number of hour ticks on the dial. */
+    private static final int TICK_COUNT = 12;
+
+    /** Length of each tick, measured inwards from the edge of the dial. */
+    private static final float TICK_LENGTH = 10f;
+
+    private Bitmap mBitmap;
+
+    // Configuration the current bitmap was rendered for.
+    private int mWidth;
+    private int mHeight;
+    private int mBackgroundColor;
+    private int mTickColor;
+    private int mTickShadowColor;
+    private boolean mTickAntiAlias;
+    private boolean mAmbient;
+    private boolean mLowBitAmbient;
+    private boolean mBurnInProtection;
+
+    /** Number of times the layer has been rasterized, for tuning. */
+    private int mRebuildCount;
+
+    /**
+     * Rebuilds the cached dial if any part of the configuration changed since the last call.
+     *
+     * @param tickPaint paint used for the ticks, already styled for the current mode
+     * @param tickShadowColor color of the shadow layer set on {@code tickPaint}, or
+     *         {@link Color#TRANSPARENT} if it has none. Paint has no getter for it before API 29.
+     * @return whether the layer was rasterized again
+     */
+    public boolean update(int width, int height, int backgroundColor, boolean ambient,
+            boolean lowBitAmbient, boolean burnInProtection, Paint tickPaint,
+            int tickShadowColor) {
+        if (width <= 0 || height <= 0 || tickPaint == null) {
+            // Not enough information to render yet (e.g. before the surface exists).
+            return false;
+        }
+
+        int tickColor = tickPaint.getColor();
+        boolean tickAntiAlias = tickPaint.isAntiAlias();
+        if (mBitmap != null
+                && width == mWidth
+                && height == mHeight
+                && backgroundColor == mBackgroundColor
+                && tickColor == mTickColor
+                && tickShadowColor == mTickShadowColor
+                && tickAntiAlias == mTickAntiAlias
+                && ambient == mAmbient
+                && lowBitAmbient == mLowBitAmbient
+                && burnInProtection == mBurnInProtection) {
+            return false;
+        }
+
+        if (mBitmap == null || mBitmap.getWidth() != width || mBitmap.getHeight() != height) {
+            release();
+            mBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        } else {
+            mBitmap.eraseColor(Color.TRANSPARENT);
+        }
+
+        mWidth = width;
+        mHeight = height;
+        mBackgroundColor = backgroundColor;
+        mTickColor = tickColor;
+        mTickShadowColor = tickShadowColor;
+        mTickAntiAlias = tickAntiAlias;
+        mAmbient = ambient;
+        mLowBitAmbient = lowBitAmbient;
+        mBurnInProtection = burnInProtection;
+
+        drawTicks(new Canvas(mBitmap), width / 2f, height / 2f, tickPaint);
+        mRebuildCount++;
+        return true;
+    }
+
+    /**
+     * Draws the cached dial onto the canvas.
+     *
+     * @return false if nothing is cached yet, in which case the caller should draw the ticks
+     *         directly with {@link #drawTicks}
+     */
+    public boolean draw(Canvas canvas) {
+        if (mBitmap == null) {
+            return false;
+        }
+        canvas.drawBitmap(mBitmap, 0, 0, null);
+        return true;
+    }
+
+    /** Drops the cached bitmap; the next {@link #update} call rasterizes the dial again. */
+    public void release() {
+        if (mBitmap != null) {
+            mBitmap.recycle();
+            mBitmap = null;
+        }
+    }
+
+    /** Returns the cached dial, or null if nothing is cached yet. */
+    public Bitmap getBitmap() {
+        return mBitmap;
+    }
+
+    public int getRebuildCount() {
+        return mRebuildCount;
+    }
+
+    /**
+     * Draws the hour ticks around the given center. The outer end of each tick touches a circle
+     * of radius {@code centerX}.
+     */
+    public static void drawTicks(Canvas canvas, float centerX, float centerY, Paint tickPaint) {
+        float innerTickRadius = centerX - TICK_LENGTH;
+        float outerTickRadius = centerX;
+        for (int tickIndex = 0; tickIndex < TICK_COUNT; tickIndex++) {
+            float tickRot = (float) (tickIndex * Math.PI * 2 / TICK_COUNT);
+            float innerX = (float) Math.sin(tickRot) * innerTickRadius;
+            float innerY = (float) -Math.cos(tickRot) * innerTickRadius;
+            float outerX = (float) Math.sin(tickRot) * outerTickRadius;
+            float outerY = (float) -Math.cos(tickRot) * outerTickRadius;
+            canvas.drawLine(
+                    centerX + innerX,
+                    centerY + innerY,
+                    centerX + outerX,
+                    centerY + outerY,
+                    tickPaint);
+        }
+    }
+}
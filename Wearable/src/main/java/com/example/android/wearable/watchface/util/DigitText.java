@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+/**
+ * Draws the numbers 0 to 59 with one {@link Paint}, without allocating.
+ * <p>
+ * The digits come from a shared table of characters instead of freshly formatted strings, and
+ * the width of every number is measured once by {@link #updateWidths()} instead of on every
+ * frame. Call it whenever the text size or typeface of the paint changes.
+ */
+public class DigitText {
+
+    /** Largest number that can be drawn. */
+    public static final int MAX_VALUE = 59;
+
+    /** "00" to "59", two characters per number. */
+    private static final char[] TWO_DIGITS = new char[(MAX_VALUE + 1) * 2];
+
+    static {
+        for (int i = 0; i <= MAX_VALUE; i++) {
+            TWO_DIGITS[i * 2] = (char) ('0' + i / 10);
+            TWO_DIGITS[i * 2 + 1] = (char) ('0' + i % 10);
+        }
+    }
+
+    private final Paint mPaint;
+
+    /** Widths of the numbers with a leading zero, and without one below ten. */
+    private final float[] mPaddedWidths = new float[MAX_VALUE + 1];
+    private final float[] mWidths = new float[MAX_VALUE + 1];
+
+    public DigitText(Paint paint) {
+        mPaint = paint;
+        updateWidths();
+    }
+
+    /** Measures every number again with the paint's current text size and typeface. */
+    public void updateWidths() {
+        for (int i = 0; i <= MAX_VALUE; i++) {
+            mPaddedWidths[i] = mPaint.measureText(TWO_DIGITS, i * 2, 2);
+            mWidths[i] = i < 10 ? mPaint.measureText(TWO_DIGITS, i * 2 + 1, 1) : mPaddedWidths[i];
+        }
+    }
+
+    /** Returns the width of {@code value} drawn with two digits. */
+    public float getPaddedWidth(int value) {
+        return mPaddedWidths[value];
+    }
+
+    /** Returns the width of {@code value} drawn without a leading zero. */
+    public float getWidth(int value) {
+        return mWidths[value];
+    }
+
+    /**
+     * Draws {@code value} with two digits, e.g. "07".
+     *
+     * @return the width of the text drawn
+     */
+    public float drawPadded(Canvas canvas, int value, float x, float y) {
+        canvas.drawText(TWO_DIGITS, value * 2, 2, x, y, mPaint);
+        return mPaddedWidths[value];
+    }
+
+    /**
+     * Draws {@code value} without a leading zero, e.g. "7".
+     *
+     * @return the width of the text drawn
+     */
+    public float draw(Canvas canvas, int value, float x, float y) {
+        if (value < 10) {
+            canvas.drawText(TWO_DIGITS, value * 2 + 1, 1, x, y, mPaint);
+        } else {
+            canvas.drawText(TWO_DIGITS, value * 2, 2, x, y, mPaint);
+        }
+        return mWidths[value];
+    }
+}
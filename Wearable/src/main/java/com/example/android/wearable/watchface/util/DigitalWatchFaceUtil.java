@@ -59,6 +59,13 @@ public final class DigitalWatchFaceUtil {
      */
     public static final String KEY_SECONDS_COLOR = "SECONDS_COLOR";
 
+    /**
+     * The {@link DataMap} key for the extra time zones {@link DigitalWatchFaceService} shows below
+     * the date. The zones must be a {@link String} array of IDs recognized by
+     * {@link java.util.TimeZone#getTimeZone}, e.g. "Asia/Tokyo".
+     */
+    public static final String KEY_WORLD_CLOCK_ZONES = "WORLD_CLOCK_ZONES";
+
     /**
      * The path for the {@link DataItem} containing {@link DigitalWatchFaceService} configuration.
      */
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import android.view.Choreographer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives continuous animation from {@link Choreographer} frame callbacks, capped at a maximum
+ * frame rate.
+ * <p>
+ * Unlike a {@code Handler} with delayed messages, frames are aligned with the display's vsync, so
+ * a sweeping second hand moves by the same angle on every frame. Callbacks arriving sooner than
+ * the frame interval allows are skipped. How far the delivered frame intervals deviate from the
+ * target interval is recorded as jitter.
+ * <p>
+ * Must be created and used on a thread with a {@code Looper}, normally the main thread.
+ */
+public class FrameClock implements Choreographer.FrameCallback {
+
+    /** Vsync timestamps are this close to the target interval and still count as on time. */
+    private static final long TOLERANCE_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    /** Called once per delivered frame. */
+    public interface Callback {
+        void onFrame();
+    }
+
+    private final Choreographer mChoreographer = Choreographer.getInstance();
+    private final Callback mCallback;
+    private final FrameTimeStats mJitterStats;
+
+    private long mFrameIntervalNanos;
+    private boolean mRunning;
+
+    /** Vsync time of the last delivered frame, or -1 if none since {@link #start()}. */
+    private long mLastFrameNanos = -1;
+
+    /**
+     * @param tag log tag under which the jitter is logged at DEBUG
+     * @param maxFps maximum number of frames per second to deliver
+     */
+    public FrameClock(String tag, int maxFps, Callback callback) {
+        mCallback = callback;
+        mJitterStats = new FrameTimeStats(tag, "sweep jitter");
+        setMaxFps(maxFps);
+    }
+
+    public void setMaxFps(int maxFps) {
+        if (maxFps <= 0) {
+            throw new IllegalArgumentException("maxFps must be positive");
+        }
+        mFrameIntervalNanos = TimeUnit.SECONDS.toNanos(1) / maxFps;
+    }
+
+    /** Starts delivering frames. Does nothing if already running. */
+    public void start() {
+        if (mRunning) {
+            return;
+        }
+        mRunning = true;
+        mLastFrameNanos = -1;
+        mChoreographer.postFrameCallback(this);
+    }
+
+    /** Stops delivering frames. */
+    public void stop() {
+        if (!mRunning) {
+            return;
+        }
+        mRunning = false;
+        mChoreographer.removeFrameCallback(this);
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!mRunning) {
+            return;
+        }
+        mChoreographer.postFrameCallback(this);
+
+        if (mLastFrameNanos >= 0) {
+            long interval = frameTimeNanos - mLastFrameNanos;
+            if (interval < mFrameIntervalNanos - TOLERANCE_NANOS) {
+                return;
+            }
+            mJitterStats.record(Math.abs(interval - mFrameIntervalNanos));
+        }
+        mLastFrameNanos = frameTimeNanos;
+        mCallback.onFrame();
+    }
+
+    /** Returns a summary of how far frame intervals deviated from the target interval. */
+    public FrameTimeStats getJitterStats() {
+        return mJitterStats;
+    }
+}
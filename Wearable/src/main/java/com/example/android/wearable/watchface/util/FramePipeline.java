@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Renders the next interactive frame on a worker thread while the current one is shown, so that
+ * {@code onDraw} only has to blit a finished frame.
+ * <p>
+ * Three buffers change hands without locking the draw path. The main thread owns the front
+ * buffer, the worker owns the back buffer, and the last finished frame sits in between. The
+ * worker publishes a frame by swapping its back buffer with the one in between;
+ * {@link #drawFrame} takes a finished frame by swapping it with the front buffer. Each buffer is
+ * only ever touched by the thread that holds it.
+ * <p>
+ * Rendering still reads the watch face's state, so the worker holds the state lock passed to the
+ * constructor while it renders, and the watch face must hold it whenever it draws. Before
+ * changing any of that state, the watch face calls {@link #discard()}, which waits for a render
+ * in progress to finish, so a change on the main thread can cost up to one render. Renders are
+ * only scheduled from the main thread, so none starts between the discard and the change.
+ */
+public class FramePipeline {
+
+    /** A buffer and the frame it holds. */
+    private static class Frame {
+        final Bitmap mBitmap;
+        final Canvas mCanvas;
+        long mFrameTimeMillis;
+        int mGeneration;
+
+        /** Whether the frame was finished and not yet taken by the main thread. */
+        volatile boolean mFresh;
+
+        Frame(int width, int height) {
+            mBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            mCanvas = new Canvas(mBitmap);
+        }
+
+        boolean hasSize(int width, int height) {
+            return mBitmap.getWidth() == width && mBitmap.getHeight() == height;
+        }
+    }
+
+    private final Object mLock;
+    private final FramePreRenderer.FrameRenderer mRenderer;
+    private final HandlerThread mThread;
+    private final Handler mHandler;
+
+    /** The last finished frame, handed from the worker to the main thread. */
+    private final AtomicReference<Frame> mReady = new AtomicReference<>();
+
+    /** Owned by the main thread. */
+    private Frame mFront;
+    private int mWidth;
+    private int mHeight;
+
+    /** Owned by the worker thread. */
+    private Frame mBack;
+
+    /** Incremented by {@link #discard()}, with the state lock held. */
+    private int mGeneration;
+
+    /** Time spent rendering on the worker, logged at DEBUG. */
+    private final FrameTimeStats mRenderStats;
+
+    // Counters for tuning.
+    private int mHitCount;
+    private int mMissCount;
+    private volatile int mDroppedCount;
+
+    /**
+     * @param lock lock guarding the state frames are rendered from
+     * @param renderer called on the worker thread with {@code lock} held
+     */
+    public FramePipeline(String tag, Object lock, FramePreRenderer.FrameRenderer renderer) {
+        mLock = lock;
+        mRenderer = renderer;
+        mRenderStats = new FrameTimeStats(tag, "pipeline render");
+        mThread = new HandlerThread(tag + ".pipeline", Process.THREAD_PRIORITY_DISPLAY);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+    }
+
+    /**
+     * Sets the size of the buffers. Frames of another size are not drawn. Like
+     * {@link #discard()}, waits for a render in progress to finish, so the caller can resize what
+     * frames are rendered from afterwards.
+     */
+    public void setSize(int width, int height) {
+        discard();
+        mWidth = width;
+        mHeight = height;
+    }
+
+    /**
+     * Starts rendering the frame for {@code frameTimeMillis} on the worker, replacing a render
+     * that has not started yet.
+     */
+    public void scheduleFrame(final long frameTimeMillis) {
+        if (mWidth <= 0 || mHeight <= 0) {
+            return;
+        }
+        final int generation = mGeneration;
+        final int width = mWidth;
+        final int height = mHeight;
+        mHandler.removeCallbacksAndMessages(null);
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                render(generation, frameTimeMillis, width, height);
+            }
+        });
+    }
+
+    /** Called on the worker thread. */
+    private void render(int generation, long frameTimeMillis, int width, int height) {
+        if (mBack == null || !mBack.hasSize(width, height)) {
+            if (mBack != null) {
+                mBack.mBitmap.recycle();
+            }
+            mBack = new Frame(width, height);
+        }
+
+        synchronized (mLock) {
+            if (generation != mGeneration) {
+                return;
+            }
+            mRenderStats.beginFrame();
+            mRenderer.renderFrame(mBack.mCanvas, frameTimeMillis);
+            mRenderStats.endFrame();
+        }
+        mBack.mFrameTimeMillis = frameTimeMillis;
+        mBack.mGeneration = generation;
+        mBack.mFresh = true;
+
+        // Publishes the frame and takes back whatever buffer was in between.
+        Frame previous = mReady.getAndSet(mBack);
+        if (previous != null && previous.mFresh) {
+            previous.mFresh = false;
+            mDroppedCount++;
+        }
+        mBack = previous;
+    }
+
+    /**
+     * Draws the latest finished frame if it was rendered for a time between
+     * {@code earliestMillis} and {@code latestMillis}, inclusive, and nothing changed since.
+     *
+     * @return false if there is no such frame and the caller has to render it itself
+     */
+    public boolean drawFrame(Canvas canvas, long earliestMillis, long latestMillis) {
+        Frame ready = mReady.get();
+        if (ready != null && ready.mFresh) {
+            if (mFront != null) {
+                mFront.mFresh = false;
+            }
+            mFront = mReady.getAndSet(mFront);
+            mFront.mFresh = false;
+        }
+
+        Frame front = mFront;
+        if (front == null
+                || front.mGeneration != mGeneration
+                || !front.hasSize(mWidth, mHeight)
+                || front.mFrameTimeMillis < earliestMillis
+                || front.mFrameTimeMillis > latestMillis) {
+            mMissCount++;
+            return false;
+        }
+        canvas.drawBitmap(front.mBitmap, 0, 0, null);
+        mHitCount++;
+        return true;
+    }
+
+    /**
+     * Makes every frame rendered so far undrawable and cancels any pending render, waiting for
+     * one in progress to finish. Call on the main thread before changing anything frames depend
+     * on.
+     */
+    public void discard() {
+        synchronized (mLock) {
+            mGeneration++;
+        }
+    }
+
+    /** Frees the buffers, e.g. when the interactive frames are no longer needed. */
+    public void releaseBuffers() {
+        discard();
+        mHandler.removeCallbacksAndMessages(null);
+        if (mFront != null) {
+            mFront.mBitmap.recycle();
+            mFront = null;
+        }
+        Frame ready = mReady.getAndSet(null);
+        if (ready != null) {
+            ready.mBitmap.recycle();
+        }
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (mBack != null) {
+                    mBack.mBitmap.recycle();
+                    mBack = null;
+                }
+            }
+        });
+    }
+
+    /** Frees the buffers and stops the worker thread. */
+    public void release() {
+        releaseBuffers();
+        mThread.quitSafely();
+    }
+
+    public int getHitCount() {
+        return mHitCount;
+    }
+
+    public int getMissCount() {
+        return mMissCount;
+    }
+
+    /** Returns a one-line summary of hits, misses and worker render times. */
+    public String dump() {
+        return "hits=" + mHitCount
+                + " misses=" + mMissCount
+                + " dropped=" + mDroppedCount
+                + " " + mRenderStats;
+    }
+}
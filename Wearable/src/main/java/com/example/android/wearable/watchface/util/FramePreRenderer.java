@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+/**
+ * Renders a future frame into a back buffer on a background thread, so that drawing it when its
+ * time comes is a single blit.
+ * <p>
+ * This is meant for ambient mode, where the next frame is known a minute ahead and the device is
+ * just waking up when it has to be shown. The frame is rendered while holding {@link #getLock()};
+ * the watch face must hold the same lock whenever it draws, and must call {@link #discard()}
+ * before changing any state the frame is rendered from. {@code discard()} waits for a render in
+ * progress and cancels a pending one, so afterwards the state can be changed freely until the
+ * next {@link #scheduleFrame}.
+ */
+public class FramePreRenderer {
+
+    /** Renders a complete frame for a given time. */
+    public interface FrameRenderer {
+        /** Called on the background thread, with {@link #getLock()} held. */
+        void renderFrame(Canvas canvas, long frameTimeMillis);
+    }
+
+    private final Object mLock = new Object();
+    private final FrameRenderer mRenderer;
+    private final HandlerThread mThread;
+    private final Handler mHandler;
+
+    private Bitmap mBuffer;
+    private Canvas mBufferCanvas;
+    private int mWidth;
+    private int mHeight;
+
+    /** Time the buffer holds a frame for, or -1 if it holds nothing usable. */
+    private long mFrameTimeMillis = -1;
+
+    /** Incremented by {@link #discard()} so that scheduled renders know they are stale. */
+    private int mGeneration;
+
+    // Counters for tuning.
+    private int mHitCount;
+    private int mMissCount;
+
+    public FramePreRenderer(String name, FrameRenderer renderer) {
+        mRenderer = renderer;
+        mThread = new HandlerThread(name, Process.THREAD_PRIORITY_BACKGROUND);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+    }
+
+    /** Lock held while a frame is rendered; hold it while drawing the same state. */
+    public Object getLock() {
+        return mLock;
+    }
+
+    /** Sets the size of the back buffer, discarding any pre-rendered frame. */
+    public void setSize(int width, int height) {
+        synchronized (mLock) {
+            discard();
+            if (width == mWidth && height == mHeight) {
+                return;
+            }
+            mWidth = width;
+            mHeight = height;
+            recycleBuffer();
+        }
+    }
+
+    /** Starts rendering the frame for {@code frameTimeMillis} in the background. */
+    public void scheduleFrame(final long frameTimeMillis) {
+        synchronized (mLock) {
+            if (mWidth <= 0 || mHeight <= 0 || frameTimeMillis == mFrameTimeMillis) {
+                return;
+            }
+            final int generation = mGeneration;
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    render(generation, frameTimeMillis);
+                }
+            });
+        }
+    }
+
+    private void render(int generation, long frameTimeMillis) {
+        synchronized (mLock) {
+            if (generation != mGeneration) {
+                return;
+            }
+            if (mBuffer == null) {
+                mBuffer = Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.ARGB_8888);
+                mBufferCanvas = new Canvas(mBuffer);
+            }
+            mRenderer.renderFrame(mBufferCanvas, frameTimeMillis);
+            mFrameTimeMillis = frameTimeMillis;
+        }
+    }
+
+    /**
+     * Draws the pre-rendered frame if there is one for {@code frameTimeMillis}. The caller should
+     * hold {@link #getLock()}.
+     *
+     * @return false if there is no such frame and the caller has to render it itself
+     */
+    public boolean drawFrame(Canvas canvas, long frameTimeMillis) {
+        synchronized (mLock) {
+            if (mBuffer == null || mFrameTimeMillis != frameTimeMillis) {
+                mMissCount++;
+                return false;
+            }
+            canvas.drawBitmap(mBuffer, 0, 0, null);
+            mHitCount++;
+            return true;
+        }
+    }
+
+    /**
+     * Throws away the pre-rendered frame and cancels any pending render, waiting for one in
+     * progress to finish. Call before changing anything the frame depends on.
+     */
+    public void discard() {
+        synchronized (mLock) {
+            mGeneration++;
+            mFrameTimeMillis = -1;
+        }
+    }
+
+    /** Frees the back buffer, e.g. when leaving ambient mode. */
+    public void releaseBuffer() {
+        synchronized (mLock) {
+            discard();
+            recycleBuffer();
+        }
+    }
+
+    private void recycleBuffer() {
+        if (mBuffer != null) {
+            mBuffer.recycle();
+            mBuffer = null;
+            mBufferCanvas = null;
+        }
+    }
+
+    /** Stops the background thread and frees the back buffer. */
+    public void release() {
+        releaseBuffer();
+        mThread.quit();
+    }
+
+    public int getHitCount() {
+        return mHitCount;
+    }
+
+    public int getMissCount() {
+        return mMissCount;
+    }
+}
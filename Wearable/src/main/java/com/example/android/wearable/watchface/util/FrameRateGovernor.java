@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picks the frame rate of a continuously animated watch face from what is moving and what the
+ * device can afford, and skips frames that would look the same as the last one.
+ * <p>
+ * Modes, from most to least expensive:
+ * <ol start="0">
+ *     <li>{@link #MODE_FULL}: everything animates, e.g. an orbiting camera, at the full rate.</li>
+ *     <li>{@link #MODE_REDUCED}: only the hands move, at a reduced rate. Used in mute mode, where
+ *     the face should be calm.</li>
+ *     <li>{@link #MODE_TICK}: the hands move once a second. Used while the battery is low and not
+ *     charging.</li>
+ *     <li>{@link #MODE_STOPPED}: no animation, e.g. in ambient mode or while invisible.</li>
+ * </ol>
+ * Frames come from a {@link FrameClock} running at the mode's rate. Before each one, the target
+ * describes the frame it would draw by a number; a frame with the same number as the last one
+ * drawn would be pixel-identical and is skipped.
+ * <p>
+ * Rendered and skipped frames are counted per minute of elapsed time. Must be used on the main
+ * thread.
+ */
+public class FrameRateGovernor implements FrameClock.Callback {
+
+    public static final int MODE_FULL = 0;
+    public static final int MODE_REDUCED = 1;
+    public static final int MODE_TICK = 2;
+    public static final int MODE_STOPPED = 3;
+
+    private static final String[] MODE_NAMES = {"full", "reduced", "tick", "stopped"};
+
+    /**
+     * Frames per second checked in {@link #MODE_TICK}. More than one, so that a tick is drawn
+     * within a quarter of a second of the second changing.
+     */
+    private static final int TICK_CHECK_FPS = 4;
+
+    private static final long MILLIS_PER_MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    /** Draws the frames the governor lets through. */
+    public interface Target {
+        /**
+         * Returns a number that differs whenever a frame drawn now in {@code mode} would look
+         * different from the last one, e.g. the camera position and how many pixels the tip of
+         * the second hand has travelled.
+         */
+        long getFrameContent(int mode);
+
+        /** Asks for a frame to be drawn. */
+        void onGovernedFrame();
+    }
+
+    private final String mTag;
+    private final Target mTarget;
+    private final int mFullFps;
+    private final int mReducedFps;
+    private final FrameClock mFrameClock;
+
+    private int mMode = MODE_STOPPED;
+
+    // Inputs to the mode.
+    private boolean mAnimating;
+    private boolean mMuted;
+    private boolean mBatteryLow;
+
+    /** Content of the last frame let through, or {@link Long#MIN_VALUE} if none. */
+    private long mLastContent = Long.MIN_VALUE;
+
+    // Counters for tuning, per minute of elapsed time.
+    private long mMinuteStartMillis = -1;
+    private int mRenderedThisMinute;
+    private int mSkippedThisMinute;
+    private int mRenderedLastMinute;
+    private int mSkippedLastMinute;
+    private long mRenderedTotal;
+    private long mSkippedTotal;
+    private final int[] mModeChangeCounts = new int[MODE_NAMES.length];
+
+    /**
+     * @param tag log tag under which mode changes are logged at DEBUG
+     * @param fullFps frame rate of {@link #MODE_FULL}
+     * @param reducedFps frame rate of {@link #MODE_REDUCED}
+     */
+    public FrameRateGovernor(String tag, int fullFps, int reducedFps, Target target) {
+        this(tag, fullFps, reducedFps, target, null);
+    }
+
+    /**
+     * @param frameClock clock that delivers the frames, e.g. a stand-in in tests, or null for one
+     *                   driven by the display
+     */
+    FrameRateGovernor(String tag, int fullFps, int reducedFps, Target target,
+            FrameClock frameClock) {
+        mTag = tag;
+        mTarget = target;
+        mFullFps = fullFps;
+        mReducedFps = reducedFps;
+        mFrameClock = frameClock != null ? frameClock : new FrameClock(tag, fullFps, this);
+    }
+
+    /** Sets whether the face animates at all, i.e. is visible and interactive. */
+    public void setAnimating(boolean animating) {
+        mAnimating = animating;
+        updateMode();
+    }
+
+    /** Sets whether the interruption filter mutes the face. */
+    public void setMuted(boolean muted) {
+        mMuted = muted;
+        updateMode();
+    }
+
+    /** Sets whether the battery is low and not charging. */
+    public void setBatteryLow(boolean batteryLow) {
+        mBatteryLow = batteryLow;
+        updateMode();
+    }
+
+    private void updateMode() {
+        int mode;
+        if (!mAnimating) {
+            mode = MODE_STOPPED;
+        } else if (mBatteryLow) {
+            mode = MODE_TICK;
+        } else if (mMuted) {
+            mode = MODE_REDUCED;
+        } else {
+            mode = MODE_FULL;
+        }
+        if (mode == mMode) {
+            return;
+        }
+        mMode = mode;
+        mModeChangeCounts[mode]++;
+        // The target draws differently in each mode, so the next frame is never skipped.
+        mLastContent = Long.MIN_VALUE;
+        switch (mode) {
+            case MODE_FULL:
+                mFrameClock.setMaxFps(mFullFps);
+                mFrameClock.start();
+                break;
+            case MODE_REDUCED:
+                mFrameClock.setMaxFps(mReducedFps);
+                mFrameClock.start();
+                break;
+            case MODE_TICK:
+                mFrameClock.setMaxFps(TICK_CHECK_FPS);
+                mFrameClock.start();
+                break;
+            default:
+                mFrameClock.stop();
+                break;
+        }
+        if (Log.isLoggable(mTag, Log.DEBUG)) {
+            Log.d(mTag, "Frame rate mode: " + MODE_NAMES[mode]);
+        }
+    }
+
+    /** Returns the current {@code MODE_*}. */
+    public int getMode() {
+        return mMode;
+    }
+
+    /** Makes the next frame be drawn even if it looks the same as the last one. */
+    public void invalidate() {
+        mLastContent = Long.MIN_VALUE;
+    }
+
+    @Override // FrameClock.Callback
+    public void onFrame() {
+        onFrame(SystemClock.elapsedRealtime());
+    }
+
+    /** Lets a frame through or skips it, at {@code nowMillis} of elapsed time. */
+    void onFrame(long nowMillis) {
+        rollMinute(nowMillis);
+        long content = mTarget.getFrameContent(mMode);
+        if (content == mLastContent) {
+            mSkippedThisMinute++;
+            mSkippedTotal++;
+            return;
+        }
+        mLastContent = content;
+        mRenderedThisMinute++;
+        mRenderedTotal++;
+        mTarget.onGovernedFrame();
+    }
+
+    /** Starts a new minute of counters if the current one is over. */
+    private void rollMinute(long nowMillis) {
+        if (mMinuteStartMillis < 0) {
+            mMinuteStartMillis = nowMillis;
+            return;
+        }
+        long minutes = (nowMillis - mMinuteStartMillis) / MILLIS_PER_MINUTE;
+        if (minutes == 0) {
+            return;
+        }
+        // A gap of more than a minute, e.g. while stopped, leaves an empty last minute.
+        mRenderedLastMinute = minutes == 1 ? mRenderedThisMinute : 0;
+        mSkippedLastMinute = minutes == 1 ? mSkippedThisMinute : 0;
+        mRenderedThisMinute = 0;
+        mSkippedThisMinute = 0;
+        mMinuteStartMillis += minutes * MILLIS_PER_MINUTE;
+    }
+
+    /** Returns the frames drawn in the last full minute. */
+    public int getRenderedLastMinute() {
+        return mRenderedLastMinute;
+    }
+
+    /** Returns the frames skipped as pixel-identical in the last full minute. */
+    public int getSkippedLastMinute() {
+        return mSkippedLastMinute;
+    }
+
+    /** Stops all frames. Call from {@code onDestroy()}. */
+    public void stop() {
+        mAnimating = false;
+        updateMode();
+    }
+
+    /** Returns a one-line summary of the mode and the frames rendered and skipped. */
+    public String dump() {
+        StringBuilder builder = new StringBuilder()
+                .append("mode=").append(MODE_NAMES[mMode])
+                .append(" muted=").append(mMuted)
+                .append(" batteryLow=").append(mBatteryLow)
+                .append(" renderedLastMinute=").append(mRenderedLastMinute)
+                .append(" skippedLastMinute=").append(mSkippedLastMinute)
+                .append(" renderedThisMinute=").append(mRenderedThisMinute)
+                .append(" skippedThisMinute=").append(mSkippedThisMinute)
+                .append(" rendered=").append(mRenderedTotal)
+                .append(" skipped=").append(mSkippedTotal)
+                .append(" modeChanges:");
+        for (int i = 0; i < MODE_NAMES.length; i++) {
+            builder.append(' ').append(MODE_NAMES[i]).append('=').append(mModeChangeCounts[i]);
+        }
+        return builder.append(' ').append(mFrameClock.getJitterStats()).toString();
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import android.util.Log;
+
+/**
+ * Sliding window of frame render times, used to measure how long a watch face spends in
+ * {@code onDraw}.
+ * <p>
+ * Samples are kept in a fixed-size ring buffer so recording a frame never allocates. When logging
+ * is enabled for the given tag at {@link Log#DEBUG}, a summary is written every time the window
+ * fills up, e.g. {@code adb shell setprop log.tag.AnalogWatchFace DEBUG}.
+ */
+public class FrameTimeStats {
+
+    /** Number of frames kept in the sliding window. */
+    public static final int DEFAULT_WINDOW_SIZE = 60;
+
+    private final String mTag;
+    private final String mName;
+    private final long[] mSamplesNanos;
+
+    /** Index the next sample is written to. */
+    private int mNextIndex;
+
+    /** Number of valid samples in {@link #mSamplesNanos}. */
+    private int mCount;
+
+    /** Running sum of the samples in the window. */
+    private long mSumNanos;
+
+    /** Total frames recorded since creation or the last {@link #reset()}. */
+    private long mTotalFrames;
+
+    /** Start time of the frame currently being measured, or -1 if none. */
+    private long mFrameStartNanos = -1;
+
+    public FrameTimeStats(String tag, String name) {
+        this(tag, name, DEFAULT_WINDOW_SIZE);
+    }
+
+    public FrameTimeStats(String tag, String name, int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("windowSize must be positive");
+        }
+        mTag = tag;
+        mName = name;
+        mSamplesNanos = new long[windowSize];
+    }
+
+    /** Marks the beginning of a frame. */
+    public void beginFrame() {
+        mFrameStartNanos = System.nanoTime();
+    }
+
+    /**
+     * Marks the end of the frame started with {@link #beginFrame()} and records its duration.
+     *
+     * @return the duration of the frame in nanoseconds, or -1 if no frame was started
+     */
+    public long endFrame() {
+        if (mFrameStartNanos < 0) {
+            return -1;
+        }
+        long duration = System.nanoTime() - mFrameStartNanos;
+        mFrameStartNanos = -1;
+        record(duration);
+        return duration;
+    }
+
+    /** Adds one sample to the window. */
+    public void record(long durationNanos) {
+        if (mCount == mSamplesNanos.length) {
+            mSumNanos -= mSamplesNanos[mNextIndex];
+        } else {
+            mCount++;
+        }
+        mSamplesNanos[mNextIndex] = durationNanos;
+        mSumNanos += durationNanos;
+        mNextIndex = (mNextIndex + 1) % mSamplesNanos.length;
+        mTotalFrames++;
+
+        if (mNextIndex == 0 && Log.isLoggable(mTag, Log.DEBUG)) {
+            Log.d(mTag, toString());
+        }
+    }
+
+    /** Returns the average frame time over the current window, in nanoseconds. */
+    public long getAverageNanos() {
+        return mCount == 0 ? 0 : mSumNanos / mCount;
+    }
+
+    /** Returns the slowest frame time in the current window, in nanoseconds. */
+    public long getMaxNanos() {
+        long max = 0;
+        for (int i = 0; i < mCount; i++) {
+            if (mSamplesNanos[i] > max) {
+                max = mSamplesNanos[i];
+            }
+        }
+        return max;
+    }
+
+    /** Returns the number of samples currently in the window. */
+    public int getSampleCount() {
+        return mCount;
+    }
+
+    /** Returns whether the window holds as many samples as it can. */
+    public boolean isWindowFull() {
+        return mCount == mSamplesNanos.length;
+    }
+
+    /** Returns the number of frames recorded since creation or the last reset. */
+    public long getTotalFrames() {
+        return mTotalFrames;
+    }
+
+    /** Clears all samples. */
+    public void reset() {
+        mNextIndex = 0;
+        mCount = 0;
+        mSumNanos = 0;
+        mTotalFrames = 0;
+        mFrameStartNanos = -1;
+    }
+
+    @Override
+    public String toString() {
+        return mName + ": avg=" + (getAverageNanos() / 1000) + "us"
+                + " max=" + (getMaxNanos() / 1000) + "us"
+                + " over " + mCount + " frames (" + mTotalFrames + " total)";
+    }
+}
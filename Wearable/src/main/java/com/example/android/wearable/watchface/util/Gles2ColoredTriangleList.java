@@ -16,9 +16,11 @@
 
 package com.example.android.wearable.watchface.util;
 
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
+import java.util.ArrayList;
 
 import android.opengl.GLES20;
 import android.opengl.GLU;
@@ -27,6 +29,19 @@ import android.util.Log;
 
 /**
  * A list of triangles drawn in a single solid color using OpenGL ES 2.0.
+ * <p>
+ * A {@link Builder} batches triangles of different colors into one list instead, with the color
+ * interleaved into each vertex, so that they are drawn with a single call. Triangles of such a list
+ * can also be rotated about the Z axis by the vertex shader, by an angle set once per frame with
+ * {@link Program#setRotationAngles}, e.g. for hands.
+ * <p>
+ * The vertices are uploaded once into a GPU buffer object when the list is created, so drawing
+ * only binds the buffer by handle. If the buffer cannot be created, the list falls back to passing
+ * its client-side vertex array on every draw, which the driver copies each time. Buffer objects
+ * belong to the GL context, so lists have to be created again in {@code onGlContextCreated()}
+ * after the context is lost.
+ * <p>
+ * Must be used on the GL thread.
  */
 public class Gles2ColoredTriangleList {
     private static final String TAG = "GlColoredTriangleList";
@@ -34,6 +49,12 @@ public class Gles2ColoredTriangleList {
     /** Whether to check for GL errors. This is slow, so not appropriate for production builds. */
     private static final boolean CHECK_GL_ERRORS = false;
 
+    /**
+     * Whether to check the GL state {@link Program} shadows against {@code glGet*} before each
+     * draw. This is slow, so only for debugging the calls the program skips.
+     */
+    private static final boolean CHECK_GL_STATE = false;
+
     /** Number of coordinates per vertex in this array: one for each of x, y, and z. */
     private static final int COORDS_PER_VERTEX = 3;
 
@@ -56,19 +77,62 @@ public class Gles2ColoredTriangleList {
      */
     private static final int NUM_COLOR_COMPONENTS = 4;
 
+    /**
+     * Number of floats per vertex of a list with per-vertex colors: x, y, z, then RGBA, then the
+     * rotation the vertex follows.
+     */
+    private static final int COLORED_FLOATS_PER_VERTEX = COORDS_PER_VERTEX + NUM_COLOR_COMPONENTS
+            + 1;
+
+    /** Number of bytes per vertex of a list with per-vertex colors. */
+    private static final int COLORED_VERTEX_STRIDE = COLORED_FLOATS_PER_VERTEX * BYTES_PER_FLOAT;
+
+    /** Whether to upload vertices into buffer objects rather than draw from client memory. */
+    private static final boolean USE_VERTEX_BUFFER_OBJECTS = true;
+
+    // Counters for all lists, for tuning.
+    private static int sUploadCount;
+    private static long sUploadedBytes;
+    private static long sClientArrayBytes;
+    private static int sDrawCount;
+    private static long sGlCallCount;
+
+    // Kinds of GL calls Program skipped because they would not have changed anything.
+    private static final int ELIDED_USE_PROGRAM = 0;
+    private static final int ELIDED_BIND_BUFFER = 1;
+    private static final int ELIDED_ATTRIB_ARRAY = 2;
+    private static final int ELIDED_ATTRIB_POINTER = 3;
+    private static final int ELIDED_ATTRIB_VALUE = 4;
+    private static final int ELIDED_UNIFORM = 5;
+    private static final String[] ELIDED_NAMES = {
+        "useProgram", "bindBuffer", "attribArray", "attribPointer", "attribValue", "uniform"
+    };
+    private static final long[] sElidedCallCounts = new long[ELIDED_NAMES.length];
+
+    // Attributes whose pointers Program shadows.
+    private static final int ATTRIB_POSITION = 0;
+    private static final int ATTRIB_COLOR = 1;
+    private static final int ATTRIB_ROTATION = 2;
+
     /** Shaders to render this triangle list. */
     private final Program mProgram;
 
-    /** The VBO containing the vertex coordinates. */
+    /** The vertex coordinates in client memory, followed by the color of each vertex if any. */
     private final FloatBuffer mVertexBuffer;
 
+    /** {@link #COORDS_PER_VERTEX} or {@link #COLORED_FLOATS_PER_VERTEX}. */
+    private final int mFloatsPerVertex;
+
+    /** The buffer object holding a copy of {@link #mVertexBuffer}, or 0 if there is none. */
+    private int mBufferId;
+
     /**
      * Color of this triangle list represented as an array of floats in the range [0, 1] in RGBA
-     * order.
+     * order, or null if each vertex has its own color.
      */
     private final float mColor[];
 
-    /** Number of coordinates in this triangle list. */
+    /** Number of vertices in this triangle list. */
     private final int mNumCoords;
 
     /**
@@ -80,17 +144,20 @@ public class Gles2ColoredTriangleList {
      * @param color color in RGBA order, each in the range [0, 1]
      */
     public Gles2ColoredTriangleList(Program program, float[] triangleCoords, float[] color) {
-        if (triangleCoords.length % (VERTICE_PER_TRIANGLE * COORDS_PER_VERTEX) != 0) {
-            throw new IllegalArgumentException("must be multiple"
-                    + " of VERTICE_PER_TRIANGLE * COORDS_PER_VERTEX coordinates");
-        }
-        if (color.length != NUM_COLOR_COMPONENTS) {
-            throw new IllegalArgumentException("wrong number of color components");
-        }
+        this(program, checkTriangles(triangleCoords, color), COORDS_PER_VERTEX, color);
+    }
+
+    /**
+     * @param vertices flat array of vertices, each {@code floatsPerVertex} floats
+     * @param color color of all vertices, or null if {@code vertices} include colors
+     */
+    private Gles2ColoredTriangleList(Program program, float[] vertices, int floatsPerVertex,
+            float[] color) {
         mProgram = program;
         mColor = color;
+        mFloatsPerVertex = floatsPerVertex;
 
-        ByteBuffer bb = ByteBuffer.allocateDirect(triangleCoords.length * BYTES_PER_FLOAT);
+        ByteBuffer bb = ByteBuffer.allocateDirect(vertices.length * BYTES_PER_FLOAT);
 
         // Use the device hardware's native byte order.
         bb.order(ByteOrder.nativeOrder());
@@ -99,12 +166,56 @@ public class Gles2ColoredTriangleList {
         mVertexBuffer = bb.asFloatBuffer();
 
         // Add the coordinates to the FloatBuffer.
-        mVertexBuffer.put(triangleCoords);
+        mVertexBuffer.put(vertices);
 
         // Go back to the start for reading.
         mVertexBuffer.position(0);
 
-        mNumCoords = triangleCoords.length / COORDS_PER_VERTEX;
+        mNumCoords = vertices.length / floatsPerVertex;
+
+        if (USE_VERTEX_BUFFER_OBJECTS) {
+            upload();
+        }
+    }
+
+    /** Checks the arguments of a single-color list, returning {@code triangleCoords}. */
+    private static float[] checkTriangles(float[] triangleCoords, float[] color) {
+        if (triangleCoords.length % (VERTICE_PER_TRIANGLE * COORDS_PER_VERTEX) != 0) {
+            throw new IllegalArgumentException("must be multiple"
+                    + " of VERTICE_PER_TRIANGLE * COORDS_PER_VERTEX coordinates");
+        }
+        if (color.length != NUM_COLOR_COMPONENTS) {
+            throw new IllegalArgumentException("wrong number of color components");
+        }
+        return triangleCoords;
+    }
+
+    /** Copies the vertices into a new buffer object, leaving {@link #mBufferId} 0 on failure. */
+    private void upload() {
+        int[] bufferIds = new int[1];
+        mProgram.mGl.glGenBuffers(1, bufferIds, 0);
+        if (bufferIds[0] == 0) {
+            Log.w(TAG, "glGenBuffers failed, drawing from client memory");
+            return;
+        }
+        int bytes = mVertexBuffer.capacity() * BYTES_PER_FLOAT;
+        // Bound through the program, which keeps track of the binding. Draws bind the buffer
+        // they need, so it can stay bound.
+        mProgram.bindBuffer(bufferIds[0]);
+        mProgram.mGl.glBufferData(GLES20.GL_ARRAY_BUFFER, bytes, mVertexBuffer,
+                GLES20.GL_STATIC_DRAW);
+        int error = mProgram.mGl.glGetError();
+        sGlCallCount += 3;
+        if (error == GLES20.GL_OUT_OF_MEMORY) {
+            Log.w(TAG, "glBufferData ran out of memory, drawing from client memory");
+            mProgram.mGl.glDeleteBuffers(1, bufferIds, 0);
+            mProgram.onBufferDeleted(bufferIds[0]);
+            sGlCallCount++;
+            return;
+        }
+        mBufferId = bufferIds[0];
+        sUploadCount++;
+        sUploadedBytes += bytes;
     }
 
     /**
@@ -113,12 +224,124 @@ public class Gles2ColoredTriangleList {
      * @param mvpMatrix the Model View Project matrix to draw this triangle list
      */
     public void draw(float[] mvpMatrix) {
-        // Pass the MVP matrix, vertex data, and color to OpenGL.
-        mProgram.bind(mvpMatrix, mVertexBuffer, mColor);
+        mProgram.setMvpMatrix(mvpMatrix);
+        draw(mNumCoords);
+    }
+
+    /**
+     * Draws the first {@code vertexCount} vertices of this triangle list with the MVP matrix last
+     * passed to {@link Program#setMvpMatrix}. Lists drawn with the same matrix can share one.
+     */
+    public void draw(int vertexCount) {
+        // Pass the vertex data and color to OpenGL.
+        mProgram.bindVertices(mBufferId, mVertexBuffer, mColor);
+        if (mBufferId == 0) {
+            sClientArrayBytes += vertexCount * mFloatsPerVertex * BYTES_PER_FLOAT;
+        }
+        if (CHECK_GL_STATE) mProgram.checkState();
+        sDrawCount++;
 
         // Draw the triangle list.
-        GLES20.glDrawArrays(GLES20.GL_TRIANGLES, 0, mNumCoords);
+        mProgram.mGl.glDrawArrays(GLES20.GL_TRIANGLES, 0, vertexCount);
         if (CHECK_GL_ERRORS) checkGlError("glDrawArrays");
+        sGlCallCount++;
+    }
+
+    /** Returns the number of vertices in this list. */
+    public int getVertexCount() {
+        return mNumCoords;
+    }
+
+    /**
+     * Returns the number of bytes passed from client memory by all draws, which the driver copies
+     * on each draw.
+     */
+    public static long getClientArrayBytes() {
+        return sClientArrayBytes;
+    }
+
+    /** Returns the number of GL calls made by all lists and programs. */
+    public static long getGlCallCount() {
+        return sGlCallCount;
+    }
+
+    /** Returns a one-line summary of the uploads and draws of all lists. */
+    public static String dumpStats() {
+        return "uploads=" + sUploadCount
+                + " uploadedBytes=" + sUploadedBytes
+                + " draws=" + sDrawCount
+                + " clientArrayBytes=" + sClientArrayBytes
+                + " glCalls=" + sGlCallCount
+                + " elided:" + dumpElidedCalls();
+    }
+
+    private static String dumpElidedCalls() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < ELIDED_NAMES.length; i++) {
+            builder.append(' ').append(ELIDED_NAMES[i]).append('=').append(sElidedCallCounts[i]);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Batches triangles of different colors into one list, which is drawn with a single call.
+     */
+    public static class Builder {
+        private final ArrayList<float[]> mTriangleCoords = new ArrayList<>();
+        private final ArrayList<float[]> mColors = new ArrayList<>();
+        private final ArrayList<Integer> mRotations = new ArrayList<>();
+        private int mVertexCount;
+
+        /**
+         * Adds triangles in one color that are not rotated.
+         *
+         * @param triangleCoords flat array of 3D coordinates of triangle vertices in
+         *                       counterclockwise order
+         * @param color color in RGBA order, each in the range [0, 1]
+         */
+        public void add(float[] triangleCoords, float[] color) {
+            add(triangleCoords, color, 0 /* rotation */);
+        }
+
+        /**
+         * Adds triangles in one color that are rotated about the Z axis by the vertex shader.
+         *
+         * @param triangleCoords flat array of 3D coordinates of triangle vertices in
+         *                       counterclockwise order
+         * @param color color in RGBA order, each in the range [0, 1]
+         * @param rotation which angle passed to {@link Program#setRotationAngles} to rotate the
+         *                 triangles by, from 1 to {@link Program#MAX_ROTATIONS}, or 0 for none
+         */
+        public void add(float[] triangleCoords, float[] color, int rotation) {
+            checkTriangles(triangleCoords, color);
+            if (rotation < 0 || rotation > Program.MAX_ROTATIONS) {
+                throw new IllegalArgumentException("rotation out of range: " + rotation);
+            }
+            mTriangleCoords.add(triangleCoords);
+            mColors.add(color);
+            mRotations.add(rotation);
+            mVertexCount += triangleCoords.length / COORDS_PER_VERTEX;
+        }
+
+        /** Builds a list of the triangles added so far. */
+        public Gles2ColoredTriangleList build(Program program) {
+            float[] vertices = new float[mVertexCount * COLORED_FLOATS_PER_VERTEX];
+            int offset = 0;
+            for (int i = 0; i < mTriangleCoords.size(); i++) {
+                float[] triangleCoords = mTriangleCoords.get(i);
+                float[] color = mColors.get(i);
+                int rotation = mRotations.get(i);
+                for (int j = 0; j < triangleCoords.length; j += COORDS_PER_VERTEX) {
+                    System.arraycopy(triangleCoords, j, vertices, offset, COORDS_PER_VERTEX);
+                    offset += COORDS_PER_VERTEX;
+                    System.arraycopy(color, 0, vertices, offset, NUM_COLOR_COMPONENTS);
+                    offset += NUM_COLOR_COMPONENTS;
+                    vertices[offset++] = rotation;
+                }
+            }
+            return new Gles2ColoredTriangleList(program, vertices, COLORED_FLOATS_PER_VERTEX,
+                    null /* color */);
+        }
     }
 
     /**
@@ -153,43 +376,229 @@ public class Gles2ColoredTriangleList {
     /**
      * Compiles an OpenGL shader.
      *
+     * @param gl the GL calls to make
      * @param type {@link GLES20#GL_VERTEX_SHADER} or {@link GLES20#GL_FRAGMENT_SHADER}
      * @param shaderCode string containing the shader source code
      * @return ID for the shader
      */
-    private static int loadShader(int type, String shaderCode){
+    private static int loadShader(Gl gl, int type, String shaderCode){
         // Create a vertex or fragment shader.
-        int shader = GLES20.glCreateShader(type);
+        int shader = gl.glCreateShader(type);
         if (CHECK_GL_ERRORS) checkGlError("glCreateShader");
         if (shader == 0) {
             throw new IllegalStateException("glCreateShader failed");
         }
 
         // Add the source code to the shader and compile it.
-        GLES20.glShaderSource(shader, shaderCode);
+        gl.glShaderSource(shader, shaderCode);
         if (CHECK_GL_ERRORS) checkGlError("glShaderSource");
-        GLES20.glCompileShader(shader);
+        gl.glCompileShader(shader);
         if (CHECK_GL_ERRORS) checkGlError("glCompileShader");
+        sGlCallCount += 3;
 
         return shader;
     }
 
-    /** OpenGL shaders for drawing solid colored triangle lists. */
+    /**
+     * The OpenGL ES 2.0 calls made by lists and programs, so that a stand-in can record them
+     * instead, e.g. to count the calls a frame makes. {@link #DIRECT} makes them for real. The
+     * {@code glGet*} calls of {@link #CHECK_GL_STATE} and {@link #CHECK_GL_ERRORS} go straight
+     * to GL.
+     */
+    interface Gl {
+        Gl DIRECT = new Gl() {
+            @Override
+            public int glCreateShader(int type) {
+                return GLES20.glCreateShader(type);
+            }
+
+            @Override
+            public void glShaderSource(int shader, String string) {
+                GLES20.glShaderSource(shader, string);
+            }
+
+            @Override
+            public void glCompileShader(int shader) {
+                GLES20.glCompileShader(shader);
+            }
+
+            @Override
+            public int glCreateProgram() {
+                return GLES20.glCreateProgram();
+            }
+
+            @Override
+            public void glAttachShader(int program, int shader) {
+                GLES20.glAttachShader(program, shader);
+            }
+
+            @Override
+            public void glLinkProgram(int program) {
+                GLES20.glLinkProgram(program);
+            }
+
+            @Override
+            public int glGetUniformLocation(int program, String name) {
+                return GLES20.glGetUniformLocation(program, name);
+            }
+
+            @Override
+            public int glGetAttribLocation(int program, String name) {
+                return GLES20.glGetAttribLocation(program, name);
+            }
+
+            @Override
+            public void glEnableVertexAttribArray(int index) {
+                GLES20.glEnableVertexAttribArray(index);
+            }
+
+            @Override
+            public void glDisableVertexAttribArray(int index) {
+                GLES20.glDisableVertexAttribArray(index);
+            }
+
+            @Override
+            public void glUseProgram(int program) {
+                GLES20.glUseProgram(program);
+            }
+
+            @Override
+            public void glUniformMatrix4fv(int location, int count, boolean transpose,
+                    float[] value, int offset) {
+                GLES20.glUniformMatrix4fv(location, count, transpose, value,
+                        offset);
+            }
+
+            @Override
+            public void glUniform1fv(int location, int count, float[] v, int offset) {
+                GLES20.glUniform1fv(location, count, v, offset);
+            }
+
+            @Override
+            public void glBindBuffer(int target, int buffer) {
+                GLES20.glBindBuffer(target, buffer);
+            }
+
+            @Override
+            public void glGenBuffers(int n, int[] buffers, int offset) {
+                GLES20.glGenBuffers(n, buffers, offset);
+            }
+
+            @Override
+            public void glBufferData(int target, int size, Buffer data, int usage) {
+                GLES20.glBufferData(target, size, data, usage);
+            }
+
+            @Override
+            public void glDeleteBuffers(int n, int[] buffers, int offset) {
+                GLES20.glDeleteBuffers(n, buffers, offset);
+            }
+
+            @Override
+            public int glGetError() {
+                return GLES20.glGetError();
+            }
+
+            @Override
+            public void glVertexAttrib1f(int index, float x) {
+                GLES20.glVertexAttrib1f(index, x);
+            }
+
+            @Override
+            public void glVertexAttrib4fv(int index, float[] values, int offset) {
+                GLES20.glVertexAttrib4fv(index, values, offset);
+            }
+
+            @Override
+            public void glVertexAttribPointer(int index, int size, int type, boolean normalized,
+                    int stride, int offset) {
+                GLES20.glVertexAttribPointer(index, size, type, normalized, stride,
+                        offset);
+            }
+
+            @Override
+            public void glVertexAttribPointer(int index, int size, int type, boolean normalized,
+                    int stride, Buffer ptr) {
+                GLES20.glVertexAttribPointer(index, size, type, normalized, stride,
+                        ptr);
+            }
+
+            @Override
+            public void glDrawArrays(int mode, int first, int count) {
+                GLES20.glDrawArrays(mode, first, count);
+            }
+        };
+
+        int glCreateShader(int type);
+        void glShaderSource(int shader, String string);
+        void glCompileShader(int shader);
+        int glCreateProgram();
+        void glAttachShader(int program, int shader);
+        void glLinkProgram(int program);
+        int glGetUniformLocation(int program, String name);
+        int glGetAttribLocation(int program, String name);
+        void glEnableVertexAttribArray(int index);
+        void glDisableVertexAttribArray(int index);
+        void glUseProgram(int program);
+        void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value,
+                int offset);
+        void glUniform1fv(int location, int count, float[] v, int offset);
+        void glBindBuffer(int target, int buffer);
+        void glGenBuffers(int n, int[] buffers, int offset);
+        void glBufferData(int target, int size, Buffer data, int usage);
+        void glDeleteBuffers(int n, int[] buffers, int offset);
+        int glGetError();
+        void glVertexAttrib1f(int index, float x);
+        void glVertexAttrib4fv(int index, float[] values, int offset);
+        void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride,
+                int offset);
+        void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride,
+                Buffer ptr);
+        void glDrawArrays(int mode, int first, int count);
+    }
+
+    /**
+     * OpenGL shaders for drawing colored triangle lists.
+     * <p>
+     * The program remembers the GL state it last set: whether it is in use, the bound buffer, the
+     * enabled attribute arrays and their pointers, the constant color and the uniform values. Calls
+     * that would set the same state again are skipped and counted in {@link #dumpStats()}. This
+     * assumes the program is the only one in its context and nothing else changes that state;
+     * {@link #CHECK_GL_STATE} verifies it before every draw.
+     */
     public static class Program {
-        /** Trivial vertex shader that transforms the input vertex by the MVP matrix. */
+        /** Number of angles triangles can be rotated by, see {@link #setRotationAngles}. */
+        public static final int MAX_ROTATIONS = 3;
+
+        /**
+         * Vertex shader that rotates the input vertex about the Z axis by the angle it follows,
+         * transforms it by the MVP matrix and passes its color on. Angle 0 is always 0, for
+         * triangles that are not rotated.
+         */
         private static final String VERTEX_SHADER_CODE = "" +
                 "uniform mat4 uMvpMatrix;\n" +
+                "uniform float uAngles[" + (MAX_ROTATIONS + 1) + "];\n" +
                 "attribute vec4 aPosition;\n" +
+                "attribute vec4 aColor;\n" +
+                "attribute float aRotation;\n" +
+                "varying vec4 vColor;\n" +
                 "void main() {\n" +
-                "    gl_Position = uMvpMatrix * aPosition;\n" +
+                "    float angle = uAngles[int(aRotation + 0.5)];\n" +
+                "    float c = cos(angle);\n" +
+                "    float s = sin(angle);\n" +
+                "    gl_Position = uMvpMatrix * vec4(\n" +
+                "            c * aPosition.x - s * aPosition.y,\n" +
+                "            s * aPosition.x + c * aPosition.y,\n" +
+                "            aPosition.zw);\n" +
+                "    vColor = aColor;\n" +
                 "}\n";
 
-        /** Trivial fragment shader that draws with a fixed color. */
+        /** Trivial fragment shader that draws with the vertex color. */
         private static final String FRAGMENT_SHADER_CODE = "" +
                 "precision mediump float;\n" +
-                "uniform vec4 uColor;\n" +
+                "varying vec4 vColor;\n" +
                 "void main() {\n" +
-                "    gl_FragColor = uColor;\n" +
+                "    gl_FragColor = vColor;\n" +
                 "}\n";
 
         /** ID OpenGL uses to identify this program. */
@@ -201,50 +610,120 @@ public class Gles2ColoredTriangleList {
         /** Handle for aPosition attribute in vertex shader. */
         private final int mPositionHandle;
 
-        /** Handle for uColor uniform in fragment shader. */
+        /**
+         * Handle for aColor attribute in vertex shader. Single-color lists disable its array and
+         * set it to a constant instead.
+         */
         private final int mColorHandle;
 
+        /**
+         * Handle for aRotation attribute in vertex shader, which is 0 for single-color lists.
+         */
+        private final int mRotationHandle;
+
+        /** Handle for uAngles uniform in vertex shader. */
+        private final int mAnglesHandle;
+
+        /** Angles in radians, the first of which is always 0. */
+        private final float[] mAngles = new float[MAX_ROTATIONS + 1];
+
+        // Shadow of the GL state this program sets, so that calls that would not change it can
+        // be skipped. It assumes nothing else changes that state while the program is in use.
+        /** Whether this program is known to be in use. */
+        private boolean mInUse;
+
+        /** Buffer bound to {@code GL_ARRAY_BUFFER}, or -1 if unknown. */
+        private int mBoundBufferId = -1;
+
+        /** Whether the arrays of {@link #mColorHandle} and {@link #mRotationHandle} are enabled. */
+        private boolean mColorArrayEnabled;
+
+        /**
+         * Buffer, stride and offset in bytes of each attribute's pointer, by {@code ATTRIB_*}.
+         * A buffer of -1 means unknown, e.g. for pointers into client memory, which can move.
+         */
+        private final int[] mPointerBufferIds = {-1, -1, -1};
+        private final int[] mPointerStrides = new int[3];
+        private final int[] mPointerOffsets = new int[3];
+
+        /** Value of {@link #mColorHandle} while its array is disabled, if known. */
+        private final float[] mCurrentColor = new float[NUM_COLOR_COMPONENTS];
+        private boolean mCurrentColorKnown;
+
+        /** Uniform values last sent, if known. */
+        private final float[] mSentMvpMatrix = new float[16];
+        private boolean mSentMvpMatrixKnown;
+        private final float[] mSentAngles = new float[MAX_ROTATIONS + 1];
+        private boolean mSentAnglesKnown;
+
+        /** The GL calls this program and its lists make. */
+        final Gl mGl;
+
         /**
          * Creates a program to draw triangle lists. For optimal drawing efficiency, one program
          * should be used for all triangle lists being drawn.
          */
         public Program() {
+            this(Gl.DIRECT);
+        }
+
+        /**
+         * Creates a program that makes its GL calls, and those of its lists, through {@code gl},
+         * e.g. a stand-in that records them.
+         */
+        Program(Gl gl) {
+            mGl = gl;
+
             // Prepare shaders.
-            int vertexShader = loadShader(GLES20.GL_VERTEX_SHADER, VERTEX_SHADER_CODE);
-            int fragmentShader = loadShader(GLES20.GL_FRAGMENT_SHADER, FRAGMENT_SHADER_CODE);
+            int vertexShader = loadShader(mGl, GLES20.GL_VERTEX_SHADER, VERTEX_SHADER_CODE);
+            int fragmentShader = loadShader(mGl, GLES20.GL_FRAGMENT_SHADER,
+                    FRAGMENT_SHADER_CODE);
 
             // Create empty OpenGL Program.
-            mProgramId = GLES20.glCreateProgram();
+            mProgramId = mGl.glCreateProgram();
             if (CHECK_GL_ERRORS) checkGlError("glCreateProgram");
             if (mProgramId == 0) {
                 throw new IllegalStateException("glCreateProgram failed");
             }
 
             // Add the shaders to the program.
-            GLES20.glAttachShader(mProgramId, vertexShader);
+            mGl.glAttachShader(mProgramId, vertexShader);
             if (CHECK_GL_ERRORS) checkGlError("glAttachShader");
-            GLES20.glAttachShader(mProgramId, fragmentShader);
+            mGl.glAttachShader(mProgramId, fragmentShader);
             if (CHECK_GL_ERRORS) checkGlError("glAttachShader");
 
             // Link the program so it can be executed.
-            GLES20.glLinkProgram(mProgramId);
+            mGl.glLinkProgram(mProgramId);
             if (CHECK_GL_ERRORS) checkGlError("glLinkProgram");
 
             // Get a handle to the uMvpMatrix uniform in the vertex shader.
-            mMvpMatrixHandle = GLES20.glGetUniformLocation(mProgramId, "uMvpMatrix");
+            mMvpMatrixHandle = mGl.glGetUniformLocation(mProgramId, "uMvpMatrix");
             if (CHECK_GL_ERRORS) checkGlError("glGetUniformLocation");
 
             // Get a handle to the vertex shader's aPosition attribute.
-            mPositionHandle = GLES20.glGetAttribLocation(mProgramId, "aPosition");
+            mPositionHandle = mGl.glGetAttribLocation(mProgramId, "aPosition");
             if (CHECK_GL_ERRORS) checkGlError("glGetAttribLocation");
 
-            // Enable vertex array (VBO).
-            GLES20.glEnableVertexAttribArray(mPositionHandle);
+            // Enable vertex array (VBO). Nothing disables it again.
+            mGl.glEnableVertexAttribArray(mPositionHandle);
             if (CHECK_GL_ERRORS) checkGlError("glEnableVertexAttribArray");
 
-            // Get a handle to fragment shader's uColor uniform.
-            mColorHandle = GLES20.glGetUniformLocation(mProgramId, "uColor");
+            // Get a handle to the vertex shader's aColor attribute.
+            mColorHandle = mGl.glGetAttribLocation(mProgramId, "aColor");
+            if (CHECK_GL_ERRORS) checkGlError("glGetAttribLocation");
+
+            // Get handles to the vertex shader's aRotation attribute and uAngles uniform.
+            mRotationHandle = mGl.glGetAttribLocation(mProgramId, "aRotation");
+            if (CHECK_GL_ERRORS) checkGlError("glGetAttribLocation");
+            mAnglesHandle = mGl.glGetUniformLocation(mProgramId, "uAngles");
             if (CHECK_GL_ERRORS) checkGlError("glGetUniformLocation");
+
+            // Start from a known state: the color and rotation arrays disabled.
+            mGl.glDisableVertexAttribArray(mColorHandle);
+            if (CHECK_GL_ERRORS) checkGlError("glDisableVertexAttribArray");
+            mGl.glDisableVertexAttribArray(mRotationHandle);
+            if (CHECK_GL_ERRORS) checkGlError("glDisableVertexAttribArray");
+            sGlCallCount += 12;
         }
 
         /**
@@ -252,27 +731,250 @@ public class Gles2ColoredTriangleList {
          * triangle lists.
          */
         public void use() {
-            GLES20.glUseProgram(mProgramId);
+            if (mInUse) {
+                sElidedCallCounts[ELIDED_USE_PROGRAM]++;
+                return;
+            }
+            mGl.glUseProgram(mProgramId);
             if (CHECK_GL_ERRORS) checkGlError("glUseProgram");
+            mInUse = true;
+            sGlCallCount++;
         }
 
-        /** Sends the given MVP matrix, vertex data, and color to OpenGL. */
-        public void bind(float[] mvpMatrix, FloatBuffer vertexBuffer, float[] color) {
-            // Pass the MVP matrix to OpenGL.
-            GLES20.glUniformMatrix4fv(mMvpMatrixHandle, 1 /* count */, false /* transpose */,
+        /**
+         * Sends the given MVP matrix to OpenGL. It applies to every list drawn until the next
+         * call.
+         */
+        public void setMvpMatrix(float[] mvpMatrix) {
+            if (mSentMvpMatrixKnown && equals(mSentMvpMatrix, mvpMatrix)) {
+                sElidedCallCounts[ELIDED_UNIFORM]++;
+                return;
+            }
+            mGl.glUniformMatrix4fv(mMvpMatrixHandle, 1 /* count */, false /* transpose */,
                     mvpMatrix, 0 /* offset */);
             if (CHECK_GL_ERRORS) checkGlError("glUniformMatrix4fv");
+            System.arraycopy(mvpMatrix, 0, mSentMvpMatrix, 0, mSentMvpMatrix.length);
+            mSentMvpMatrixKnown = true;
+            sGlCallCount++;
+        }
 
-            // Pass the VBO with the triangle list's vertices to OpenGL.
-            GLES20.glEnableVertexAttribArray(mPositionHandle);
-            if (CHECK_GL_ERRORS) checkGlError("glEnableVertexAttribArray");
-            GLES20.glVertexAttribPointer(mPositionHandle, COORDS_PER_VERTEX, GLES20.GL_FLOAT,
-                    false /* normalized */, VERTEX_STRIDE, vertexBuffer);
+        /**
+         * Sends the angles triangles are rotated by to OpenGL. They apply to every list drawn until
+         * the next call. Only call after {@link #use()}.
+         *
+         * @param angles up to {@link #MAX_ROTATIONS} angles in radians, counterclockwise about the
+         *               Z axis, for rotations 1 and up
+         */
+        public void setRotationAngles(float[] angles) {
+            System.arraycopy(angles, 0, mAngles, 1, angles.length);
+            if (mSentAnglesKnown && equals(mSentAngles, mAngles)) {
+                sElidedCallCounts[ELIDED_UNIFORM]++;
+                return;
+            }
+            mGl.glUniform1fv(mAnglesHandle, mAngles.length, mAngles, 0 /* offset */);
+            if (CHECK_GL_ERRORS) checkGlError("glUniform1fv");
+            System.arraycopy(mAngles, 0, mSentAngles, 0, mAngles.length);
+            mSentAnglesKnown = true;
+            sGlCallCount++;
+        }
+
+        /**
+         * Converts a fraction of a full turn, e.g. 0.25 for a quarter turn, to an angle in radians
+         * for {@link #setRotationAngles}. Whole turns are dropped to keep the angle precise.
+         */
+        public static float turnsToRadians(float turns) {
+            return (float) ((turns - Math.floor(turns)) * 2 * Math.PI);
+        }
+
+        /** Binds a buffer object to {@code GL_ARRAY_BUFFER}, or unbinds it if 0. */
+        void bindBuffer(int bufferId) {
+            if (bufferId == mBoundBufferId) {
+                sElidedCallCounts[ELIDED_BIND_BUFFER]++;
+                return;
+            }
+            mGl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, bufferId);
+            if (CHECK_GL_ERRORS) checkGlError("glBindBuffer");
+            mBoundBufferId = bufferId;
+            sGlCallCount++;
+        }
+
+        /**
+         * Forgets a deleted buffer object. Deleting a bound buffer unbinds it, and its ID may be
+         * reused by a new buffer that pointers into the old one know nothing about.
+         */
+        void onBufferDeleted(int bufferId) {
+            if (mBoundBufferId == bufferId) {
+                mBoundBufferId = 0;
+            }
+            for (int i = 0; i < mPointerBufferIds.length; i++) {
+                if (mPointerBufferIds[i] == bufferId) {
+                    mPointerBufferIds[i] = -1;
+                }
+            }
+        }
+
+        /**
+         * Sends the vertex data of a list to OpenGL.
+         *
+         * @param bufferId buffer object holding the vertices, or 0 to read them from
+         *                 {@code vertexBuffer}
+         * @param vertexBuffer the vertices in client memory
+         * @param color color of all vertices in RGBA order, or null if each vertex is followed by
+         *              its own color
+         */
+        void bindVertices(int bufferId, FloatBuffer vertexBuffer, float[] color) {
+            // With a buffer object bound, the pointers are offsets into it. Otherwise they point
+            // into client memory.
+            bindBuffer(bufferId);
+
+            if (color != null) {
+                if (mColorArrayEnabled) {
+                    mGl.glDisableVertexAttribArray(mColorHandle);
+                    if (CHECK_GL_ERRORS) checkGlError("glDisableVertexAttribArray");
+                    mGl.glDisableVertexAttribArray(mRotationHandle);
+                    if (CHECK_GL_ERRORS) checkGlError("glDisableVertexAttribArray");
+                    // Current values are undefined after drawing from an array.
+                    mGl.glVertexAttrib1f(mRotationHandle, 0);
+                    if (CHECK_GL_ERRORS) checkGlError("glVertexAttrib1f");
+                    mColorArrayEnabled = false;
+                    sGlCallCount += 3;
+                } else {
+                    sElidedCallCounts[ELIDED_ATTRIB_ARRAY] += 2;
+                }
+                if (mCurrentColorKnown && equals(mCurrentColor, color)) {
+                    sElidedCallCounts[ELIDED_ATTRIB_VALUE]++;
+                } else {
+                    mGl.glVertexAttrib4fv(mColorHandle, color, 0 /* offset */);
+                    if (CHECK_GL_ERRORS) checkGlError("glVertexAttrib4fv");
+                    System.arraycopy(color, 0, mCurrentColor, 0, NUM_COLOR_COMPONENTS);
+                    mCurrentColorKnown = true;
+                    sGlCallCount++;
+                }
+                setPointer(ATTRIB_POSITION, mPositionHandle, COORDS_PER_VERTEX, VERTEX_STRIDE,
+                        bufferId, vertexBuffer, 0 /* offset */);
+                return;
+            }
+
+            if (!mColorArrayEnabled) {
+                mGl.glEnableVertexAttribArray(mColorHandle);
+                if (CHECK_GL_ERRORS) checkGlError("glEnableVertexAttribArray");
+                mGl.glEnableVertexAttribArray(mRotationHandle);
+                if (CHECK_GL_ERRORS) checkGlError("glEnableVertexAttribArray");
+                mColorArrayEnabled = true;
+                // Drawing from the array leaves the current color undefined.
+                mCurrentColorKnown = false;
+                sGlCallCount += 2;
+            } else {
+                sElidedCallCounts[ELIDED_ATTRIB_ARRAY] += 2;
+            }
+            setPointer(ATTRIB_POSITION, mPositionHandle, COORDS_PER_VERTEX,
+                    COLORED_VERTEX_STRIDE, bufferId, vertexBuffer, 0 /* offset */);
+            setPointer(ATTRIB_COLOR, mColorHandle, NUM_COLOR_COMPONENTS, COLORED_VERTEX_STRIDE,
+                    bufferId, vertexBuffer, COORDS_PER_VERTEX /* offset */);
+            setPointer(ATTRIB_ROTATION, mRotationHandle, 1 /* size */, COLORED_VERTEX_STRIDE,
+                    bufferId, vertexBuffer, COORDS_PER_VERTEX + NUM_COLOR_COMPONENTS /* offset */);
+        }
+
+        /**
+         * Points an attribute at floats of each vertex, at {@code offset} floats into it.
+         *
+         * @param attrib {@code ATTRIB_*} under which the pointer is shadowed
+         */
+        private void setPointer(int attrib, int handle, int size, int stride, int bufferId,
+                FloatBuffer vertexBuffer, int offset) {
+            int byteOffset = offset * BYTES_PER_FLOAT;
+            if (bufferId != 0) {
+                if (mPointerBufferIds[attrib] == bufferId && mPointerStrides[attrib] == stride
+                        && mPointerOffsets[attrib] == byteOffset) {
+                    sElidedCallCounts[ELIDED_ATTRIB_POINTER]++;
+                    return;
+                }
+                mGl.glVertexAttribPointer(handle, size, GLES20.GL_FLOAT,
+                        false /* normalized */, stride, byteOffset);
+            } else {
+                vertexBuffer.position(offset);
+                mGl.glVertexAttribPointer(handle, size, GLES20.GL_FLOAT,
+                        false /* normalized */, stride, vertexBuffer);
+                vertexBuffer.position(0);
+            }
             if (CHECK_GL_ERRORS) checkGlError("glVertexAttribPointer");
+            mPointerBufferIds[attrib] = bufferId != 0 ? bufferId : -1;
+            mPointerStrides[attrib] = stride;
+            mPointerOffsets[attrib] = byteOffset;
+            sGlCallCount++;
+        }
+
+        private static boolean equals(float[] shadow, float[] values) {
+            for (int i = 0; i < shadow.length; i++) {
+                if (shadow[i] != values[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Checks the shadowed state against what {@code glGet*} reports, throwing if they differ.
+         * Call right before drawing. Only used if {@link #CHECK_GL_STATE} is true; it stalls the
+         * pipeline on every call.
+         */
+        void checkState() {
+            int[] intValue = new int[1];
+            GLES20.glGetIntegerv(GLES20.GL_CURRENT_PROGRAM, intValue, 0);
+            checkState("current program", mInUse ? mProgramId : intValue[0], intValue[0]);
+            GLES20.glGetIntegerv(GLES20.GL_ARRAY_BUFFER_BINDING, intValue, 0);
+            checkState("array buffer binding", mBoundBufferId, intValue[0]);
+
+            int[] handles = {mPositionHandle, mColorHandle, mRotationHandle};
+            for (int i = 0; i < handles.length; i++) {
+                boolean enabled = i == ATTRIB_POSITION || mColorArrayEnabled;
+                GLES20.glGetVertexAttribiv(handles[i], GLES20.GL_VERTEX_ATTRIB_ARRAY_ENABLED,
+                        intValue, 0);
+                checkState("array enabled " + i, enabled ? 1 : 0, intValue[0] != 0 ? 1 : 0);
+                if (enabled && mPointerBufferIds[i] != -1) {
+                    GLES20.glGetVertexAttribiv(handles[i],
+                            GLES20.GL_VERTEX_ATTRIB_ARRAY_BUFFER_BINDING, intValue, 0);
+                    checkState("array buffer " + i, mPointerBufferIds[i], intValue[0]);
+                    GLES20.glGetVertexAttribiv(handles[i], GLES20.GL_VERTEX_ATTRIB_ARRAY_STRIDE,
+                            intValue, 0);
+                    checkState("array stride " + i, mPointerStrides[i], intValue[0]);
+                }
+            }
+
+            if (!mColorArrayEnabled && mCurrentColorKnown) {
+                float[] color = new float[4];
+                GLES20.glGetVertexAttribfv(mColorHandle, GLES20.GL_CURRENT_VERTEX_ATTRIB,
+                        color, 0);
+                checkState("current color", mCurrentColor, color);
+            }
+            if (mSentMvpMatrixKnown) {
+                float[] matrix = new float[16];
+                GLES20.glGetUniformfv(mProgramId, mMvpMatrixHandle, matrix, 0);
+                checkState("uMvpMatrix", mSentMvpMatrix, matrix);
+            }
+            if (mSentAnglesKnown) {
+                float[] angle = new float[1];
+                for (int i = 0; i < mSentAngles.length; i++) {
+                    int location = GLES20.glGetUniformLocation(mProgramId, "uAngles[" + i + "]");
+                    GLES20.glGetUniformfv(mProgramId, location, angle, 0);
+                    checkState("uAngles[" + i + "]", mSentAngles[i], angle[0]);
+                }
+            }
+        }
+
+        private static void checkState(String name, float[] shadow, float[] actual) {
+            for (int i = 0; i < shadow.length; i++) {
+                checkState(name + "[" + i + "]", shadow[i], actual[i]);
+            }
+        }
 
-            // Pass the triangle list's color to OpenGL.
-            GLES20.glUniform4fv(mColorHandle, 1 /* count */, color, 0 /* offset */);
-            if (CHECK_GL_ERRORS) checkGlError("glUniform4fv");
+        private static void checkState(String name, float shadow, float actual) {
+            if (shadow != actual) {
+                String message = "Shadowed GL state " + name + " is " + shadow + " but GL has "
+                        + actual;
+                Log.e(TAG, message);
+                throw new IllegalStateException(message);
+            }
         }
     }
 }
@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Typeface;
+import android.util.Log;
+
+import java.util.ArrayList;
+
+/**
+ * Rasterizes a few short strings once, so that they can be drawn as bitmap blits instead of being
+ * shaped and rasterized by {@link Paint} on every frame.
+ * <p>
+ * Strings are added in glyph sets, one per paint, e.g. the ten digits of the hour paint. The atlas
+ * is an {@link Bitmap.Config#ALPHA_8 ALPHA_8} bitmap holding coverage only; {@link #draw} colors
+ * it with the set's paint, so color and alpha changes never require a rebuild. {@link #prepare()}
+ * rebuilds the atlas when the text size, typeface or anti-aliasing of any paint changed since the
+ * last build, and refuses to build an atlas larger than the given number of bytes.
+ * <p>
+ * Blits land on the same baseline and advance as {@link Canvas#drawText}, but a string is always
+ * drawn at a whole pixel, so it may sit up to half a pixel away from where text would be drawn.
+ */
+public class GlyphAtlas {
+
+    /** "0" to "9", so that the index of a digit in the set is its value. */
+    public static final String[] DIGITS = {"0", "1", "2", "3", "4", "5", "6", "7", "8", "9"};
+
+    /** Width of the atlas bitmap; sets are packed into rows of this width. */
+    private static final int MAX_WIDTH = 512;
+
+    /** Empty pixels around each string, so that neighbours do not bleed into each other. */
+    private static final int PADDING = 1;
+
+    /** A paint and the strings rasterized with it. */
+    private static class GlyphSet {
+        final Paint mPaint;
+        final String[] mStrings;
+        final float[] mAdvances;
+
+        /** Where each string is in the atlas. */
+        final Rect[] mCells;
+
+        /** Offsets from the drawing position, i.e. the baseline origin, to the cell. */
+        final int[] mLeftOffsets;
+        int mTopOffset;
+
+        /** The state of the paint the set was rasterized with. */
+        float mTextSize;
+        Typeface mTypeface;
+        boolean mAntiAlias;
+
+        GlyphSet(Paint paint, String[] strings) {
+            mPaint = paint;
+            mStrings = strings;
+            mAdvances = new float[strings.length];
+            mCells = new Rect[strings.length];
+            mLeftOffsets = new int[strings.length];
+            for (int i = 0; i < strings.length; i++) {
+                mCells[i] = new Rect();
+            }
+        }
+
+        boolean isStale() {
+            return mTextSize != mPaint.getTextSize()
+                    || mTypeface != mPaint.getTypeface()
+                    || mAntiAlias != mPaint.isAntiAlias();
+        }
+    }
+
+    private final String mTag;
+    private final int mMaxBytes;
+    private final ArrayList<GlyphSet> mSets = new ArrayList<>();
+
+    private Bitmap mBitmap;
+    private boolean mTooLarge;
+
+    /** Reused by {@link #draw} so that it does not allocate. */
+    private final Rect mSrc = new Rect();
+    private final RectF mDst = new RectF();
+
+    // Counters for tuning.
+    private int mBuildCount;
+    private int mBuildBytes;
+    private long mBuildNanos;
+    private int mBlitCount;
+
+    /**
+     * @param maxBytes largest atlas to build; {@link #prepare()} returns false rather than build a
+     *                 larger one
+     */
+    public GlyphAtlas(String tag, int maxBytes) {
+        mTag = tag;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Adds strings to be drawn with {@code paint}. The atlas is rebuilt by the next
+     * {@link #prepare()}.
+     *
+     * @return the set to pass to {@link #draw}
+     */
+    public int addGlyphSet(Paint paint, String... strings) {
+        GlyphSet set = new GlyphSet(paint, strings);
+        // Never matches a real text size, so the set is rasterized by the next prepare().
+        set.mTextSize = -1;
+        mSets.add(set);
+        return mSets.size() - 1;
+    }
+
+    /**
+     * Rebuilds the atlas if any paint changed since it was built.
+     *
+     * @return whether the atlas can be drawn from; false if it would exceed its size limit, in
+     *         which case the caller should draw text instead
+     */
+    public boolean prepare() {
+        boolean stale = mBitmap == null && !mTooLarge;
+        for (int i = 0; i < mSets.size() && !stale; i++) {
+            stale = mSets.get(i).isStale();
+        }
+        if (stale) {
+            build();
+        }
+        return mBitmap != null;
+    }
+
+    private void build() {
+        long startNanos = System.nanoTime();
+        release();
+
+        // Lays the strings out in rows, left to right.
+        Rect bounds = new Rect();
+        int x = 0;
+        int y = 0;
+        int rowHeight = 0;
+        for (GlyphSet set : mSets) {
+            Paint paint = set.mPaint;
+            set.mTextSize = paint.getTextSize();
+            set.mTypeface = paint.getTypeface();
+            set.mAntiAlias = paint.isAntiAlias();
+
+            Paint.FontMetrics metrics = paint.getFontMetrics();
+            set.mTopOffset = (int) Math.floor(metrics.top) - PADDING;
+            int height = (int) Math.ceil(metrics.bottom) + PADDING - set.mTopOffset;
+            for (int i = 0; i < set.mStrings.length; i++) {
+                String string = set.mStrings[i];
+                set.mAdvances[i] = paint.measureText(string);
+                // Ink can reach past the advance, e.g. for italic or tightly spaced glyphs.
+                paint.getTextBounds(string, 0, string.length(), bounds);
+                int left = Math.min(0, bounds.left) - PADDING;
+                int right = Math.max((int) Math.ceil(set.mAdvances[i]), bounds.right) + PADDING;
+                int width = right - left;
+                if (x + width > MAX_WIDTH && x > 0) {
+                    x = 0;
+                    y += rowHeight;
+                    rowHeight = 0;
+                }
+                set.mLeftOffsets[i] = left;
+                set.mCells[i].set(x, y, x + width, y + height);
+                x += width;
+                rowHeight = Math.max(rowHeight, height);
+            }
+        }
+        int width = y > 0 ? MAX_WIDTH : Math.max(x, 1);
+        int height = Math.max(y + rowHeight, 1);
+
+        mBuildBytes = width * height;
+        mTooLarge = mBuildBytes > mMaxBytes;
+        if (mTooLarge) {
+            Log.w(mTag, "Glyph atlas of " + mBuildBytes + " bytes exceeds " + mMaxBytes);
+            return;
+        }
+
+        mBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+        Canvas canvas = new Canvas(mBitmap);
+        Paint coverage = new Paint();
+        for (GlyphSet set : mSets) {
+            // Only the shape matters; draw() supplies the color and alpha of the set's paint.
+            coverage.set(set.mPaint);
+            coverage.setColor(Color.BLACK);
+            for (int i = 0; i < set.mStrings.length; i++) {
+                Rect cell = set.mCells[i];
+                canvas.drawText(set.mStrings[i], cell.left - set.mLeftOffsets[i],
+                        cell.top - set.mTopOffset, coverage);
+            }
+        }
+
+        mBuildCount++;
+        mBuildNanos = System.nanoTime() - startNanos;
+        if (Log.isLoggable(mTag, Log.DEBUG)) {
+            Log.d(mTag, "Built glyph atlas: " + dump());
+        }
+    }
+
+    /**
+     * Draws a string of a set at {@code x} on the baseline {@code y}, like
+     * {@link Canvas#drawText}. Only valid after {@link #prepare()} returned true.
+     *
+     * @return the advance of the string
+     */
+    public float draw(Canvas canvas, int set, int index, float x, float y) {
+        GlyphSet glyphSet = mSets.get(set);
+        Rect cell = glyphSet.mCells[index];
+        float left = Math.round(x) + glyphSet.mLeftOffsets[index];
+        float top = Math.round(y) + glyphSet.mTopOffset;
+        mSrc.set(cell);
+        mDst.set(left, top, left + cell.width(), top + cell.height());
+        canvas.drawBitmap(mBitmap, mSrc, mDst, glyphSet.mPaint);
+        mBlitCount++;
+        return glyphSet.mAdvances[index];
+    }
+
+    /** Frees the atlas. The next {@link #prepare()} builds it again. */
+    public void release() {
+        if (mBitmap != null) {
+            mBitmap.recycle();
+            mBitmap = null;
+        }
+        mTooLarge = false;
+    }
+
+    /** Returns a one-line summary of the atlas size and how it was used. */
+    public String dump() {
+        return "bytes=" + (mBitmap != null ? mBitmap.getAllocationByteCount() : 0)
+                + " lastBuildBytes=" + mBuildBytes
+                + " maxBytes=" + mMaxBytes
+                + " builds=" + mBuildCount
+                + " lastBuildMicros=" + mBuildNanos / 1000
+                + " blits=" + mBlitCount;
+    }
+}
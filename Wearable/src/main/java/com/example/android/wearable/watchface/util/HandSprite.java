@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+
+/**
+ * A watch hand pre-rendered, together with its blurred shadow, into a small bitmap.
+ * <p>
+ * Blurred shadows are one of the most expensive things the software canvas does. A hand is a
+ * straight line pointing up from the center of the dial, so it can be rendered once per
+ * paint/length configuration and then drawn each frame with a rotation matrix.
+ * <p>
+ * Optionally, the sprite can be pre-rotated into a fixed number of angle buckets. Angles are then
+ * snapped to the nearest bucket and each frame is a plain blit, at the cost of one bitmap per
+ * bucket used.
+ */
+public class HandSprite {
+
+    /**
+     * Extra room around the line for the blurred shadow, as a multiple of the shadow radius. The
+     * blur fades out well within two radii.
+     */
+    private static final float SHADOW_PADDING_FACTOR = 2f;
+
+    private final Matrix mMatrix = new Matrix();
+    private final Paint mBlitPaint = new Paint(Paint.FILTER_BITMAP_FLAG | Paint.ANTI_ALIAS_FLAG);
+
+    private Bitmap mSprite;
+
+    /** Position of the dial center inside {@link #mSprite}. */
+    private float mPivotX;
+    private float mPivotY;
+
+    // Configuration the sprite was rendered for.
+    private int mColor;
+    private float mStrokeWidth;
+    private boolean mAntiAlias;
+    private float mInnerRadius;
+    private float mLength;
+    private float mShadowRadius;
+    private int mShadowColor;
+
+    private int mAngleBucketCount;
+    private Bitmap[] mBucketBitmaps;
+    private float[] mBucketOffsets;
+
+    /** Number of times the sprite has been rendered, for tuning. */
+    private int mRenderCount;
+
+    /**
+     * Pre-rotates the sprite into {@code count} evenly spaced angles, snapping every draw to the
+     * nearest one. Pass 0 to always rotate at draw time (the default).
+     */
+    public void setAngleBuckets(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count must not be negative");
+        }
+        if (count == mAngleBucketCount) {
+            return;
+        }
+        releaseBuckets();
+        mAngleBucketCount = count;
+    }
+
+    /**
+     * Renders the sprite again if the configuration changed since the last call.
+     *
+     * @param paint paint the hand is drawn with; only its color, stroke width and anti-aliasing
+     *              are used, the shadow is described by the other parameters
+     * @param innerRadius distance from the dial center to where the hand starts
+     * @param length distance from the dial center to the tip of the hand
+     * @param shadowRadius blur radius of the shadow, or 0 for no shadow
+     * @param shadowColor color of the shadow
+     * @return whether the sprite was rendered again
+     */
+    public boolean update(Paint paint, float innerRadius, float length, float shadowRadius,
+            int shadowColor) {
+        if (mSprite != null
+                && paint.getColor() == mColor
+                && paint.getStrokeWidth() == mStrokeWidth
+                && paint.isAntiAlias() == mAntiAlias
+                && innerRadius == mInnerRadius
+                && length == mLength
+                && shadowRadius == mShadowRadius
+                && shadowColor == mShadowColor) {
+            return false;
+        }
+        release();
+
+        if (length <= innerRadius) {
+            return false;
+        }
+
+        mColor = paint.getColor();
+        mStrokeWidth = paint.getStrokeWidth();
+        mAntiAlias = paint.isAntiAlias();
+        mInnerRadius = innerRadius;
+        mLength = length;
+        mShadowRadius = shadowRadius;
+        mShadowColor = shadowColor;
+
+        // Round caps stick out by half the stroke width at both ends.
+        float padding = (float) Math.ceil(mStrokeWidth / 2f
+                + shadowRadius * SHADOW_PADDING_FACTOR) + 1;
+        int width = (int) Math.ceil(padding * 2);
+        int height = (int) Math.ceil(length - innerRadius + padding * 2);
+        mPivotX = width / 2f;
+        mPivotY = padding + length;
+
+        Paint spritePaint = new Paint(paint);
+        if (shadowRadius > 0) {
+            spritePaint.setShadowLayer(shadowRadius, 0, 0, shadowColor);
+        } else {
+            spritePaint.clearShadowLayer();
+        }
+
+        mSprite = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        new Canvas(mSprite).drawLine(
+                mPivotX, mPivotY - innerRadius, mPivotX, mPivotY - length, spritePaint);
+        mRenderCount++;
+        return true;
+    }
+
+    /**
+     * Draws the hand rotated clockwise by {@code degrees} around the given center.
+     *
+     * @return false if there is no sprite, in which case the caller should draw the hand directly
+     */
+    public boolean draw(Canvas canvas, float degrees, float centerX, float centerY) {
+        if (mSprite == null) {
+            return false;
+        }
+
+        if (mAngleBucketCount > 0) {
+            drawBucket(canvas, degrees, centerX, centerY);
+            return true;
+        }
+
+        mMatrix.setTranslate(centerX - mPivotX, centerY - mPivotY);
+        mMatrix.postRotate(degrees, centerX, centerY);
+        canvas.drawBitmap(mSprite, mMatrix, mBlitPaint);
+        return true;
+    }
+
+    private void drawBucket(Canvas canvas, float degrees, float centerX, float centerY) {
+        float bucketSize = 360f / mAngleBucketCount;
+        int bucket = Math.round(normalize(degrees) / bucketSize) % mAngleBucketCount;
+
+        if (mBucketBitmaps == null) {
+            mBucketBitmaps = new Bitmap[mAngleBucketCount];
+            mBucketOffsets = new float[mAngleBucketCount * 2];
+        }
+        if (mBucketBitmaps[bucket] == null) {
+            renderBucket(bucket, bucket * bucketSize);
+        }
+        canvas.drawBitmap(mBucketBitmaps[bucket],
+                centerX + mBucketOffsets[bucket * 2],
+                centerY + mBucketOffsets[bucket * 2 + 1],
+                mBlitPaint);
+    }
+
+    /** Renders the sprite rotated by {@code degrees} into a bitmap just big enough to hold it. */
+    private void renderBucket(int bucket, float degrees) {
+        mMatrix.setTranslate(-mPivotX, -mPivotY);
+        mMatrix.postRotate(degrees);
+
+        float[] corners = {
+                0, 0,
+                mSprite.getWidth(), 0,
+                0, mSprite.getHeight(),
+                mSprite.getWidth(), mSprite.getHeight()
+        };
+        mMatrix.mapPoints(corners);
+
+        float minX = corners[0];
+        float minY = corners[1];
+        float maxX = corners[0];
+        float maxY = corners[1];
+        for (int i = 2; i < corners.length; i += 2) {
+            minX = Math.min(minX, corners[i]);
+            maxX = Math.max(maxX, corners[i]);
+            minY = Math.min(minY, corners[i + 1]);
+            maxY = Math.max(maxY, corners[i + 1]);
+        }
+        float left = (float) Math.floor(minX);
+        float top = (float) Math.floor(minY);
+
+        Bitmap bitmap = Bitmap.createBitmap(
+                (int) Math.ceil(maxX - left), (int) Math.ceil(maxY - top), Bitmap.Config.ARGB_8888);
+        mMatrix.postTranslate(-left, -top);
+        new Canvas(bitmap).drawBitmap(mSprite, mMatrix, mBlitPaint);
+
+        mBucketBitmaps[bucket] = bitmap;
+        mBucketOffsets[bucket * 2] = left;
+        mBucketOffsets[bucket * 2 + 1] = top;
+    }
+
+    private static float normalize(float degrees) {
+        float normalized = degrees % 360f;
+        return normalized < 0 ? normalized + 360f : normalized;
+    }
+
+    /** Frees the sprite and any pre-rotated buckets. */
+    public void release() {
+        if (mSprite != null) {
+            mSprite.recycle();
+            mSprite = null;
+        }
+        releaseBuckets();
+    }
+
+    private void releaseBuckets() {
+        if (mBucketBitmaps != null) {
+            for (Bitmap bitmap : mBucketBitmaps) {
+                if (bitmap != null) {
+                    bitmap.recycle();
+                }
+            }
+            mBucketBitmaps = null;
+            mBucketOffsets = null;
+        }
+    }
+
+    public int getRenderCount() {
+        return mRenderCount;
+    }
+}
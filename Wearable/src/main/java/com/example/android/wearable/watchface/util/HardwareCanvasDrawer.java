@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Build;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+
+/**
+ * Draws a canvas watch face through a hardware-accelerated canvas instead of the software canvas
+ * {@code CanvasWatchFaceService} locks for it.
+ * <p>
+ * The engine routes {@code invalidate()} and {@code onSurfaceRedrawNeeded()} here while
+ * {@link #isEnabled()} is true, and to its superclass otherwise. Frames are drawn on the next
+ * vsync with {@link Surface#lockHardwareCanvas()}, which exists from API 26 on, or right away
+ * when asked for from a frame callback that already runs on a vsync.
+ * <p>
+ * Once a surface has been drawn through the GPU it cannot be locked in software any more, so a
+ * failure to lock the hardware canvas only falls back to the software path if no hardware frame
+ * has been posted yet. Later failures, e.g. while the surface is being torn down, drop the frame.
+ * <p>
+ * Hardware canvases ignore shadow layers on anything but text before API 28, so faces using this
+ * should bake their shadows into bitmaps.
+ */
+public class HardwareCanvasDrawer implements Choreographer.FrameCallback {
+
+    /** The watch face being drawn. {@code CanvasWatchFaceService.Engine} already matches this. */
+    public interface Target {
+        void onDraw(Canvas canvas, Rect bounds);
+
+        void invalidate();
+    }
+
+    private final Choreographer mChoreographer = Choreographer.getInstance();
+    private final String mTag;
+    private final Target mTarget;
+
+    /** Time from locking the canvas to posting it, logged at DEBUG. */
+    private final FrameTimeStats mFrameTimeStats;
+
+    private boolean mEnabled;
+    private boolean mDrawRequested;
+    private boolean mFramePosted;
+    private SurfaceHolder mSurfaceHolder;
+
+    // Counters for tuning.
+    private int mDroppedFrameCount;
+
+    /**
+     * @param tag log tag under which frame times are logged at DEBUG
+     * @param enabled whether to draw through the GPU; ignored where that is not supported
+     */
+    public HardwareCanvasDrawer(String tag, boolean enabled, Target target) {
+        mTag = tag;
+        mTarget = target;
+        mFrameTimeStats = new FrameTimeStats(tag, "hardware canvas");
+        mEnabled = enabled && isSupported();
+    }
+
+    /** Returns whether the platform can lock a hardware canvas on a watch face surface. */
+    public static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.O;
+    }
+
+    /** Returns whether frames are drawn here rather than by the software path. */
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Draws a frame right away if {@code onVsync} is true, i.e. when called from a
+     * {@link Choreographer} frame callback such as a {@link FrameClock}'s. A frame posted from
+     * there would only be drawn on the vsync after, a frame late. Otherwise schedules a frame on
+     * the next vsync like {@link #invalidate(SurfaceHolder)}.
+     *
+     * @return false if the hardware canvas could not be used and the software path should draw
+     *     instead
+     */
+    public boolean invalidate(SurfaceHolder holder, boolean onVsync) {
+        if (!onVsync) {
+            invalidate(holder);
+            return true;
+        }
+        cancel();
+        return draw(holder);
+    }
+
+    /** Schedules a frame on the next vsync, unless one is already scheduled. */
+    public void invalidate(SurfaceHolder holder) {
+        mSurfaceHolder = holder;
+        if (!mDrawRequested) {
+            mDrawRequested = true;
+            mChoreographer.postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mDrawRequested = false;
+        if (mEnabled) {
+            draw(mSurfaceHolder);
+        }
+    }
+
+    /**
+     * Draws a frame right away.
+     *
+     * @return false if the hardware canvas could not be used and the software path should draw
+     *     instead, which also turns this drawer off
+     */
+    public boolean draw(SurfaceHolder holder) {
+        if (!mEnabled) {
+            return false;
+        }
+        Surface surface = holder.getSurface();
+        if (surface == null || !surface.isValid()) {
+            return true;
+        }
+
+        mFrameTimeStats.beginFrame();
+        Canvas canvas;
+        try {
+            canvas = surface.lockHardwareCanvas();
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            mFrameTimeStats.endFrame();
+            if (mFramePosted) {
+                mDroppedFrameCount++;
+                return true;
+            }
+            Log.w(mTag, "Hardware canvas unavailable, falling back to software", e);
+            disable();
+            mTarget.invalidate();
+            return false;
+        }
+        try {
+            mTarget.onDraw(canvas, holder.getSurfaceFrame());
+        } finally {
+            surface.unlockCanvasAndPost(canvas);
+        }
+        mFramePosted = true;
+        mFrameTimeStats.endFrame();
+        return true;
+    }
+
+    /** Cancels any scheduled frame. Call from {@code onDestroy()}. */
+    public void cancel() {
+        if (mDrawRequested) {
+            mDrawRequested = false;
+            mChoreographer.removeFrameCallback(this);
+        }
+    }
+
+    private void disable() {
+        cancel();
+        mEnabled = false;
+    }
+
+    /** Returns a one-line summary of the path in use and its frame times. */
+    public String dump() {
+        if (!mEnabled) {
+            return "software";
+        }
+        return "hardware dropped=" + mDroppedFrameCount + " " + mFrameTimeStats;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.os.Handler;
+import android.provider.Settings;
+import android.text.format.DateFormat;
+
+/**
+ * The 12/24-hour setting, so that a watch face can check it on every frame without a settings
+ * lookup each time.
+ * <p>
+ * {@link DateFormat#is24HourFormat(Context)} goes to the settings provider on every call. This
+ * reads it once, again when {@link #register()} is called, and otherwise only when a
+ * {@link ContentObserver} reports that {@link Settings.System#TIME_12_24} changed.
+ * <p>
+ * Must be created and used on the main thread.
+ */
+public class HourFormatSetting {
+
+    /** Told on the main thread when the setting changes while registered. */
+    public interface Listener {
+        void onHourFormatChanged(boolean is24Hour);
+    }
+
+    private final Context mContext;
+    private final Listener mListener;
+
+    final ContentObserver mObserver = new ContentObserver(new Handler()) {
+        @Override
+        public void onChange(boolean selfChange) {
+            if (refresh() && mListener != null) {
+                mListener.onHourFormatChanged(mIs24Hour);
+            }
+        }
+    };
+
+    private boolean mIs24Hour;
+    private boolean mRegistered;
+
+    /** Number of times the setting was read, for tuning. */
+    private int mLookupCount;
+
+    public HourFormatSetting(Context context, Listener listener) {
+        mContext = context;
+        mListener = listener;
+        refresh();
+    }
+
+    /** Returns whether times are shown in 24-hour format. Does not look the setting up. */
+    public boolean is24Hour() {
+        return mIs24Hour;
+    }
+
+    /**
+     * Reads the setting again, since it may have changed while unregistered, and follows its
+     * changes until {@link #unregister()}.
+     */
+    public void register() {
+        if (mRegistered) {
+            return;
+        }
+        mRegistered = true;
+        refresh();
+        mContext.getContentResolver().registerContentObserver(
+                Settings.System.getUriFor(Settings.System.TIME_12_24), false, mObserver);
+    }
+
+    public void unregister() {
+        if (!mRegistered) {
+            return;
+        }
+        mRegistered = false;
+        mContext.getContentResolver().unregisterContentObserver(mObserver);
+    }
+
+    /** Reads the setting. Returns whether it changed. */
+    private boolean refresh() {
+        boolean is24Hour = DateFormat.is24HourFormat(mContext);
+        mLookupCount++;
+        boolean changed = is24Hour != mIs24Hour;
+        mIs24Hour = is24Hour;
+        return changed;
+    }
+
+    /** Returns how often the setting was read. */
+    public int getLookupCount() {
+        return mLookupCount;
+    }
+
+    /** Returns a one-line summary of the setting and how often it was read. */
+    public String dump() {
+        return "is24Hour=" + mIs24Hour + " lookups=" + mLookupCount;
+    }
+}
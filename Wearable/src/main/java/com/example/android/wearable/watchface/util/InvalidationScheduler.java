@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import android.view.Choreographer;
+
+/**
+ * Records why each redraw of a watch face engine was requested, and how many requests shared a
+ * frame.
+ * <p>
+ * The engine routes every {@code invalidate()} through {@link #request} and calls
+ * {@link #beginFrame()} at the start of {@code onDraw}. Only the first request before a vsync
+ * schedules a frame; the rest are counted as coalesced into it. The base classes already draw at
+ * most once per vsync, so this saves no frames; what it adds is the count of requests, and of the
+ * frames drawn, by reason in {@link #dump()}, which shows what keeps a face awake.
+ * <p>
+ * Only the redraw is deferred: the engine applies any state change, such as new complication
+ * data, before requesting the frame, so that taps and other events never see stale state.
+ * <p>
+ * Must be used on the main thread, and the target must schedule its frames with
+ * {@link Choreographer}, as the watch face service base classes do.
+ */
+public class InvalidationScheduler implements Choreographer.FrameCallback {
+
+    public static final int REASON_OTHER = 0;
+    public static final int REASON_TIME_TICK = 1;
+    public static final int REASON_TIMER = 2;
+    public static final int REASON_ANIMATION = 3;
+    public static final int REASON_TIME_ZONE = 4;
+    public static final int REASON_COMPLICATION = 5;
+    public static final int REASON_UNREAD = 6;
+    public static final int REASON_TAP = 7;
+    public static final int REASON_SETTINGS = 8;
+
+    private static final String[] REASON_NAMES = {
+        "other", "time-tick", "timer", "animation", "time-zone", "complication", "unread", "tap",
+        "settings"
+    };
+
+    /** Schedules the frame that requests are coalesced into. */
+    public interface Target {
+        void onScheduleFrame();
+    }
+
+    private final Choreographer mChoreographer = Choreographer.getInstance();
+    private final Target mTarget;
+
+    private boolean mFramePending;
+
+    /** Reasons for the pending frame, as a bit mask of {@code 1 << reason}. */
+    private int mPendingReasons;
+
+    // Counters for tuning.
+    private final int[] mRequestCounts = new int[REASON_NAMES.length];
+    private final int[] mFrameCounts = new int[REASON_NAMES.length];
+    private int mFrameCount;
+    private int mCoalescedCount;
+
+    /** Reasons for the last frame drawn, as a bit mask of {@code 1 << reason}. */
+    private int mLastFrameReasons;
+
+    public InvalidationScheduler(Target target) {
+        mTarget = target;
+    }
+
+    /** Asks for a frame, for the given {@code REASON_*}. */
+    public void request(int reason) {
+        mRequestCounts[reason]++;
+        mPendingReasons |= 1 << reason;
+        if (mFramePending) {
+            mCoalescedCount++;
+            return;
+        }
+        mFramePending = true;
+        // Posted before the target schedules its frame, so that it runs first on the vsync.
+        mChoreographer.postFrameCallback(this);
+        mTarget.onScheduleFrame();
+    }
+
+    /**
+     * Marks the start of a frame. Call at the start of {@code onDraw}.
+     * <p>
+     * Any request from now on needs a frame of its own. This normally already holds once the
+     * vsync has begun, but a target may also draw right away from {@link Target#onScheduleFrame}
+     * when it is called on a vsync.
+     * <p>
+     * The frame is counted under each reason it was requested for. A frame drawn without any
+     * request, e.g. by the base class after a surface change, counts as {@link #REASON_OTHER}.
+     */
+    public void beginFrame() {
+        if (mFramePending) {
+            mChoreographer.removeFrameCallback(this);
+            mFramePending = false;
+        }
+        int reasons = mPendingReasons != 0 ? mPendingReasons : 1 << REASON_OTHER;
+        mPendingReasons = 0;
+        mFrameCount++;
+        mLastFrameReasons = reasons;
+        for (int i = 0; i < REASON_NAMES.length; i++) {
+            if ((reasons & (1 << i)) != 0) {
+                mFrameCounts[i]++;
+            }
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        // The target draws right after this on the same vsync, so any request from now on needs
+        // a frame of its own. A frame that is not drawn, e.g. because the surface is gone, does
+        // not swallow later requests either.
+        mFramePending = false;
+    }
+
+    /** Drops the pending frame. Call from {@code onDestroy()}. */
+    public void cancel() {
+        mChoreographer.removeFrameCallback(this);
+        mFramePending = false;
+    }
+
+    /**
+     * Returns a one-line summary of the requests made, how many were coalesced, the frames drawn
+     * for each reason (a frame with several reasons counts under each) and the reasons of the
+     * last frame.
+     */
+    public String dump() {
+        StringBuilder builder = new StringBuilder()
+                .append("frames=").append(mFrameCount)
+                .append(" coalesced=").append(mCoalescedCount)
+                .append(" requests:");
+        appendCounts(builder, mRequestCounts);
+        builder.append(" frames by reason:");
+        appendCounts(builder, mFrameCounts);
+        builder.append(" last frame:");
+        for (int i = 0; i < REASON_NAMES.length; i++) {
+            if ((mLastFrameReasons & (1 << i)) != 0) {
+                builder.append(' ').append(REASON_NAMES[i]);
+            }
+        }
+        return builder.toString();
+    }
+
+    private static void appendCounts(StringBuilder builder, int[] counts) {
+        for (int i = 0; i < REASON_NAMES.length; i++) {
+            if (counts[i] > 0) {
+                builder.append(' ').append(REASON_NAMES[i]).append('=').append(counts[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.util.Log;
+
+/**
+ * Composites a watch face out of a fixed stack of full-screen layers.
+ * <p>
+ * Each layer is rendered into its own offscreen bitmap and is only rendered again after it has
+ * been marked dirty with {@link #invalidateLayer(int)}. All layers except the topmost one are
+ * additionally flattened into a single base bitmap, so a frame in which only the top layer
+ * changed (e.g. the second hand moving) costs one layer render and two blits.
+ * <p>
+ * A layer whose content is already cached elsewhere can be backed by that bitmap instead with
+ * {@link #setLayerBitmap(int, Bitmap)}, so it costs no buffer of its own and is never rendered.
+ * <p>
+ * Layers are indexed bottom to top, starting at zero.
+ */
+public class LayerCompositor {
+    private static final String TAG = "LayerCompositor";
+
+    /** Draws the content of the layers. */
+    public interface LayerRenderer {
+        /**
+         * Renders one layer onto a cleared, transparent canvas.
+         *
+         * @param layer index of the layer to render
+         * @return whether anything was drawn; empty layers are skipped when compositing
+         */
+        boolean renderLayer(int layer, Canvas canvas);
+    }
+
+    private final LayerRenderer mRenderer;
+    private final int mLayerCount;
+    private final Bitmap[] mLayerBitmaps;
+    private final Canvas[] mLayerCanvases;
+    private final boolean[] mDirty;
+    private final boolean[] mEmpty;
+
+    /** Whether the bitmap of each layer is owned by the caller rather than by the compositor. */
+    private final boolean[] mShared;
+
+    /** Flattened copy of all layers below the top one. */
+    private Bitmap mBaseBitmap;
+    private Canvas mBaseCanvas;
+    private boolean mBaseDirty = true;
+
+    private int mWidth;
+    private int mHeight;
+
+    /** Number of times each layer was rendered, for tuning. */
+    private final int[] mRenderCounts;
+
+    /** Number of frames composited. */
+    private int mFrameCount;
+
+    public LayerCompositor(int layerCount, LayerRenderer renderer) {
+        if (layerCount < 1) {
+            throw new IllegalArgumentException("layerCount must be at least 1");
+        }
+        mRenderer = renderer;
+        mLayerCount = layerCount;
+        mLayerBitmaps = new Bitmap[layerCount];
+        mLayerCanvases = new Canvas[layerCount];
+        mDirty = new boolean[layerCount];
+        mEmpty = new boolean[layerCount];
+        mShared = new boolean[layerCount];
+        mRenderCounts = new int[layerCount];
+        invalidateAll();
+    }
+
+    /**
+     * Resizes all layer buffers. Buffers are reallocated lazily on the next {@link #draw} and
+     * every layer is rendered again.
+     */
+    public void setSize(int width, int height) {
+        if (width == mWidth && height == mHeight) {
+            return;
+        }
+        release();
+        mWidth = width;
+        mHeight = height;
+        invalidateAll();
+    }
+
+    /**
+     * Backs a layer with a bitmap owned by the caller, e.g. a cache that already holds the
+     * layer's content at the full size of the compositor. The layer is composited from it as is
+     * and never rendered; the caller must call this again whenever the bitmap's content changes
+     * and must not recycle it while it is set.
+     *
+     * @param bitmap the layer's content, or null to render the layer into a buffer of its own
+     */
+    public void setLayerBitmap(int index, Bitmap bitmap) {
+        if (!mShared[index] && mLayerBitmaps[index] != null) {
+            mLayerBitmaps[index].recycle();
+        }
+        mLayerBitmaps[index] = bitmap;
+        mLayerCanvases[index] = null;
+        mShared[index] = bitmap != null;
+        mEmpty[index] = false;
+        invalidateLayer(index);
+    }
+
+    /** Marks one layer as needing to be rendered again before the next frame. */
+    public void invalidateLayer(int index) {
+        mDirty[index] = true;
+        if (index < mLayerCount - 1) {
+            mBaseDirty = true;
+        }
+    }
+
+    /** Marks every layer as needing to be rendered again before the next frame. */
+    public void invalidateAll() {
+        for (int i = 0; i < mDirty.length; i++) {
+            mDirty[i] = true;
+        }
+        mBaseDirty = true;
+    }
+
+    public boolean isLayerDirty(int index) {
+        return mDirty[index];
+    }
+
+    /**
+     * Renders any dirty layers and draws the composited result onto {@code canvas}.
+     *
+     * @return false if the compositor has no size yet and nothing was drawn
+     */
+    public boolean draw(Canvas canvas) {
+        if (mWidth <= 0 || mHeight <= 0) {
+            return false;
+        }
+
+        int top = mLayerCount - 1;
+        for (int i = 0; i <= top; i++) {
+            if (mDirty[i]) {
+                if (mShared[i]) {
+                    mDirty[i] = false;
+                } else {
+                    renderLayer(i);
+                }
+            }
+        }
+
+        if (top > 0) {
+            if (mBaseDirty) {
+                if (mBaseBitmap == null) {
+                    mBaseBitmap = Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.ARGB_8888);
+                    mBaseCanvas = new Canvas(mBaseBitmap);
+                } else {
+                    mBaseBitmap.eraseColor(Color.TRANSPARENT);
+                }
+                for (int i = 0; i < top; i++) {
+                    if (!mEmpty[i]) {
+                        mBaseCanvas.drawBitmap(mLayerBitmaps[i], 0, 0, null);
+                    }
+                }
+                mBaseDirty = false;
+            }
+            canvas.drawBitmap(mBaseBitmap, 0, 0, null);
+        }
+
+        if (!mEmpty[top]) {
+            canvas.drawBitmap(mLayerBitmaps[top], 0, 0, null);
+        }
+
+        mFrameCount++;
+        if (Log.isLoggable(TAG, Log.VERBOSE) && mFrameCount % 60 == 0) {
+            Log.v(TAG, dump());
+        }
+        return true;
+    }
+
+    private void renderLayer(int index) {
+        if (mLayerBitmaps[index] == null) {
+            mLayerBitmaps[index] = Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.ARGB_8888);
+            mLayerCanvases[index] = new Canvas(mLayerBitmaps[index]);
+        } else {
+            mLayerBitmaps[index].eraseColor(Color.TRANSPARENT);
+        }
+
+        mEmpty[index] = !mRenderer.renderLayer(index, mLayerCanvases[index]);
+        mDirty[index] = false;
+        mRenderCounts[index]++;
+    }
+
+    /** Frees all layer buffers. Bitmaps set with {@link #setLayerBitmap} are only dropped. */
+    public void release() {
+        for (int i = 0; i < mLayerBitmaps.length; i++) {
+            if (mShared[i]) {
+                mLayerBitmaps[i] = null;
+                mShared[i] = false;
+            } else if (mLayerBitmaps[i] != null) {
+                mLayerBitmaps[i].recycle();
+                mLayerBitmaps[i] = null;
+                mLayerCanvases[i] = null;
+            }
+        }
+        if (mBaseBitmap != null) {
+            mBaseBitmap.recycle();
+            mBaseBitmap = null;
+            mBaseCanvas = null;
+        }
+        invalidateAll();
+    }
+
+    /** Returns how often the layer at {@code index} has been rendered. */
+    public int getRenderCount(int index) {
+        return mRenderCounts[index];
+    }
+
+    /** Returns a one-line summary of per-layer render counts. */
+    public String dump() {
+        StringBuilder builder = new StringBuilder("frames=").append(mFrameCount);
+        builder.append(" renders=[");
+        for (int i = 0; i < mRenderCounts.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(mRenderCounts[i]);
+        }
+        return builder.append(']').toString();
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+/**
+ * Lowers the rendering quality of a canvas watch face when its frames take too long, and raises
+ * it again once there is headroom.
+ * <p>
+ * Frame times are collected in a sliding window. Each time a full window of frames has been
+ * recorded since the last decision, the average is compared with the budget: above it, quality
+ * drops one level; below {@link #HEADROOM_FRACTION} of it, quality rises one level. Waiting for
+ * a full window after every change means each decision is based only on frames rendered at the
+ * current level.
+ * <p>
+ * Levels, from best to cheapest:
+ * <ol start="0">
+ *     <li>{@link #QUALITY_FULL}: everything on.</li>
+ *     <li>{@link #QUALITY_NO_SHADOWS}: no shadow layers.</li>
+ *     <li>{@link #QUALITY_NO_ANTI_ALIAS}: no shadows and no anti-aliasing.</li>
+ *     <li>{@link #QUALITY_NO_SWEEP}: all of the above, and the second hand jumps from second to
+ *     second instead of being interpolated.</li>
+ * </ol>
+ * Only interactive frames should be recorded; ambient mode already renders at minimum quality.
+ */
+public class QualityGovernor {
+
+    public static final int QUALITY_FULL = 0;
+    public static final int QUALITY_NO_SHADOWS = 1;
+    public static final int QUALITY_NO_ANTI_ALIAS = 2;
+    public static final int QUALITY_NO_SWEEP = 3;
+
+    private static final String[] QUALITY_NAMES = {
+        "full", "no-shadows", "no-anti-alias", "no-sweep"
+    };
+
+    /** Quality is only raised when frames take less than this fraction of the budget. */
+    private static final float HEADROOM_FRACTION = 0.5f;
+
+    /** Notified on the thread that records frames whenever the quality level changes. */
+    public interface Listener {
+        void onQualityChanged(int quality);
+    }
+
+    private final long mBudgetNanos;
+    private final Listener mListener;
+    private final FrameTimeStats mStats;
+
+    private int mQuality = QUALITY_FULL;
+
+    /** Value of {@link FrameTimeStats#getTotalFrames()} at the last decision. */
+    private long mLastDecisionFrame;
+
+    // Counters for tuning.
+    private int mDowngradeCount;
+    private int mUpgradeCount;
+
+    /**
+     * @param tag log tag under which the frame window is logged at DEBUG
+     * @param budgetNanos average frame time above which quality is lowered
+     */
+    public QualityGovernor(String tag, long budgetNanos, Listener listener) {
+        mBudgetNanos = budgetNanos;
+        mListener = listener;
+        mStats = new FrameTimeStats(tag, "governed frames");
+    }
+
+    /** Records the duration of one interactive frame and adjusts the quality if needed. */
+    public void record(long frameNanos) {
+        mStats.record(frameNanos);
+
+        if (!mStats.isWindowFull()
+                || mStats.getTotalFrames() - mLastDecisionFrame < mStats.getSampleCount()) {
+            return;
+        }
+        mLastDecisionFrame = mStats.getTotalFrames();
+
+        long average = mStats.getAverageNanos();
+        if (average > mBudgetNanos && mQuality < QUALITY_NO_SWEEP) {
+            mDowngradeCount++;
+            setQuality(mQuality + 1);
+        } else if (average < mBudgetNanos * HEADROOM_FRACTION && mQuality > QUALITY_FULL) {
+            mUpgradeCount++;
+            setQuality(mQuality - 1);
+        }
+    }
+
+    /** Goes back to full quality and forgets all recorded frames. */
+    public void reset() {
+        mStats.reset();
+        mLastDecisionFrame = 0;
+        setQuality(QUALITY_FULL);
+    }
+
+    private void setQuality(int quality) {
+        if (quality == mQuality) {
+            return;
+        }
+        mQuality = quality;
+        mListener.onQualityChanged(quality);
+    }
+
+    public int getQuality() {
+        return mQuality;
+    }
+
+    public boolean isShadowEnabled() {
+        return mQuality < QUALITY_NO_SHADOWS;
+    }
+
+    public boolean isAntiAliasEnabled() {
+        return mQuality < QUALITY_NO_ANTI_ALIAS;
+    }
+
+    public boolean isSweepEnabled() {
+        return mQuality < QUALITY_NO_SWEEP;
+    }
+
+    /** Returns a one-line summary of the current level and the frames it is based on. */
+    public String dump() {
+        return "quality=" + QUALITY_NAMES[mQuality]
+                + " budget=" + (mBudgetNanos / 1000) + "us"
+                + " downgrades=" + mDowngradeCount
+                + " upgrades=" + mUpgradeCount
+                + " " + mStats;
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Splits epoch milliseconds into local wall-clock fields without allocating.
+ * <p>
+ * {@link Calendar#setTimeInMillis} recomputes every field on each call, which is wasteful for a
+ * watch face that only needs a handful of them up to 60 times a second. This class instead caches
+ * the current zone offset together with the window of time in which it is valid (i.e. until the
+ * next daylight saving transition), so decomposing a timestamp is plain integer arithmetic. The
+ * offset is only looked up again when the time leaves that window or the time zone changes.
+ * <p>
+ * Field values follow {@link Calendar} conventions: months are zero-based and days of the week
+ * run from {@link Calendar#SUNDAY} to {@link Calendar#SATURDAY}. Dates use the proleptic
+ * Gregorian calendar.
+ * <p>
+ * Not thread safe.
+ */
+public class WallClock {
+
+    private static final long MILLIS_PER_SECOND = 1000;
+    private static final long MILLIS_PER_MINUTE = 60 * MILLIS_PER_SECOND;
+    private static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+    private static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+
+    /**
+     * How far ahead to look for the next offset transition. Zones without daylight saving time
+     * simply get their offset looked up again once per horizon.
+     */
+    private static final long TRANSITION_SEARCH_HORIZON_MILLIS = 366 * MILLIS_PER_DAY;
+
+    /**
+     * Step used to scan for transitions. Offset changes are never closer together than this, so
+     * stepping by it cannot skip over one.
+     */
+    private static final long TRANSITION_SEARCH_STEP_MILLIS = MILLIS_PER_DAY;
+
+    /** 1970-01-01 was a Thursday. */
+    private static final int EPOCH_DAY_OF_WEEK = Calendar.THURSDAY;
+
+    private TimeZone mTimeZone;
+
+    /** Offset from UTC, valid for times in [mOffsetValidFrom, mOffsetValidUntil). */
+    private int mOffsetMillis;
+    private long mOffsetValidFrom;
+    private long mOffsetValidUntil;
+
+    /** Epoch day of the date fields below, so they are only recomputed when the day changes. */
+    private long mEpochDay = Long.MIN_VALUE;
+
+    private long mTimeMillis;
+    private int mHourOfDay;
+    private int mMinute;
+    private int mSecond;
+    private int mMillisecond;
+    private int mYear;
+    private int mMonth;
+    private int mDayOfMonth;
+    private int mDayOfWeek;
+
+    /** Number of times the zone offset has been looked up, for tuning. */
+    private int mOffsetLookups;
+
+    public WallClock() {
+        this(TimeZone.getDefault());
+    }
+
+    public WallClock(TimeZone timeZone) {
+        setTimeZone(timeZone);
+    }
+
+    /**
+     * Switches to another time zone and drops the cached offset. Call this from
+     * {@code ACTION_TIMEZONE_CHANGED} receivers with {@link TimeZone#getDefault()}.
+     */
+    public void setTimeZone(TimeZone timeZone) {
+        mTimeZone = timeZone;
+        invalidate();
+    }
+
+    public TimeZone getTimeZone() {
+        return mTimeZone;
+    }
+
+    /** Drops the cached offset and date so they are recomputed by the next update. */
+    public void invalidate() {
+        mOffsetValidFrom = Long.MAX_VALUE;
+        mOffsetValidUntil = Long.MIN_VALUE;
+        mEpochDay = Long.MIN_VALUE;
+    }
+
+    /** Updates all fields to the given time. */
+    public void setTimeInMillis(long timeMillis) {
+        mTimeMillis = timeMillis;
+        if (timeMillis < mOffsetValidFrom || timeMillis >= mOffsetValidUntil) {
+            refreshOffset(timeMillis);
+        }
+
+        long localMillis = timeMillis + mOffsetMillis;
+        long epochDay = floorDiv(localMillis, MILLIS_PER_DAY);
+        int millisOfDay = (int) (localMillis - epochDay * MILLIS_PER_DAY);
+
+        mHourOfDay = (int) (millisOfDay / MILLIS_PER_HOUR);
+        mMinute = (int) (millisOfDay / MILLIS_PER_MINUTE % 60);
+        mSecond = (int) (millisOfDay / MILLIS_PER_SECOND % 60);
+        mMillisecond = (int) (millisOfDay % MILLIS_PER_SECOND);
+
+        if (epochDay != mEpochDay) {
+            mEpochDay = epochDay;
+            computeDate(epochDay);
+        }
+    }
+
+    /**
+     * Looks up the offset at {@code timeMillis} and finds how long it stays valid. The window
+     * starts at {@code timeMillis} rather than at the previous transition, so only a clock that
+     * jumps backwards causes an extra lookup.
+     */
+    private void refreshOffset(long timeMillis) {
+        mOffsetLookups++;
+        mOffsetMillis = mTimeZone.getOffset(timeMillis);
+        mOffsetValidFrom = timeMillis;
+
+        long horizon = timeMillis + TRANSITION_SEARCH_HORIZON_MILLIS;
+        long low = timeMillis;
+        while (low < horizon) {
+            long high = Math.min(low + TRANSITION_SEARCH_STEP_MILLIS, horizon);
+            if (mTimeZone.getOffset(high) != mOffsetMillis) {
+                // The transition is in (low, high]; narrow it down to the millisecond.
+                while (high - low > 1) {
+                    long mid = low + (high - low) / 2;
+                    if (mTimeZone.getOffset(mid) == mOffsetMillis) {
+                        low = mid;
+                    } else {
+                        high = mid;
+                    }
+                }
+                mOffsetValidUntil = high;
+                return;
+            }
+            low = high;
+        }
+        mOffsetValidUntil = horizon;
+    }
+
+    /** Converts days since 1970-01-01 to a Gregorian year, month and day. */
+    private void computeDate(long epochDay) {
+        // Days since 0000-03-01, so leap days fall at the end of each year.
+        long days = epochDay + 719468;
+        long era = floorDiv(days, 146097);
+        long dayOfEra = days - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthFromMarch = (5 * dayOfYear + 2) / 153;
+
+        mDayOfMonth = (int) (dayOfYear - (153 * monthFromMarch + 2) / 5 + 1);
+        mMonth = (int) (monthFromMarch < 10 ? monthFromMarch + 2 : monthFromMarch - 10);
+        mYear = (int) (yearOfEra + era * 400 + (mMonth <= Calendar.FEBRUARY ? 1 : 0));
+
+        int dayOfWeek = (int) ((epochDay + EPOCH_DAY_OF_WEEK - Calendar.SUNDAY) % 7);
+        if (dayOfWeek < 0) {
+            dayOfWeek += 7;
+        }
+        mDayOfWeek = dayOfWeek + Calendar.SUNDAY;
+    }
+
+    private static long floorDiv(long x, long y) {
+        long quotient = x / y;
+        if ((x % y != 0) && ((x < 0) != (y < 0))) {
+            quotient--;
+        }
+        return quotient;
+    }
+
+    public long getTimeInMillis() {
+        return mTimeMillis;
+    }
+
+    /** Hour of the day, 0-23, like {@link Calendar#HOUR_OF_DAY}. */
+    public int getHourOfDay() {
+        return mHourOfDay;
+    }
+
+    /** Hour of the morning or afternoon, 0-11, like {@link Calendar#HOUR}. */
+    public int getHour() {
+        return mHourOfDay % 12;
+    }
+
+    /** {@link Calendar#AM} or {@link Calendar#PM}. */
+    public int getAmPm() {
+        return mHourOfDay < 12 ? Calendar.AM : Calendar.PM;
+    }
+
+    public int getMinute() {
+        return mMinute;
+    }
+
+    public int getSecond() {
+        return mSecond;
+    }
+
+    public int getMillisecond() {
+        return mMillisecond;
+    }
+
+    public int getYear() {
+        return mYear;
+    }
+
+    /** Zero-based month, like {@link Calendar#MONTH}. */
+    public int getMonth() {
+        return mMonth;
+    }
+
+    public int getDayOfMonth() {
+        return mDayOfMonth;
+    }
+
+    /** {@link Calendar#SUNDAY} through {@link Calendar#SATURDAY}. */
+    public int getDayOfWeek() {
+        return mDayOfWeek;
+    }
+
+    /** Days since 1970-01-01 in local time. */
+    public long getEpochDay() {
+        return mEpochDay;
+    }
+
+    /** Offset from UTC in effect at the current time, in milliseconds. */
+    public int getOffsetMillis() {
+        return mOffsetMillis;
+    }
+
+    /**
+     * Time at which the cached offset stops being valid, which is the next daylight saving
+     * transition if there is one within a year.
+     */
+    public long getOffsetValidUntil() {
+        return mOffsetValidUntil;
+    }
+
+    /**
+     * Start of the next local day, in epoch milliseconds, taking the zone offset into account.
+     * If a backward transition makes midnight happen twice, this is the first occurrence.
+     */
+    public long getNextMidnightMillis() {
+        long nextMidnightLocal = (mEpochDay + 1) * MILLIS_PER_DAY;
+        long nextMidnight = nextMidnightLocal - mOffsetMillis;
+        if (nextMidnight >= mOffsetValidUntil) {
+            // A transition happens before midnight; use the offset that applies after it. If
+            // midnight falls into the gap of a forward transition, the day starts at the
+            // transition itself.
+            nextMidnight = Math.max(
+                    nextMidnightLocal - mTimeZone.getOffset(nextMidnight), mOffsetValidUntil);
+        }
+        return nextMidnight;
+    }
+
+    public int getOffsetLookups() {
+        return mOffsetLookups;
+    }
+}
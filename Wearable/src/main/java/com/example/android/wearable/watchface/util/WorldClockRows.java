@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import android.graphics.Paint;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * The text of a list of extra time zones, one row per zone, e.g. "Tokyo 09:41".
+ * <p>
+ * Each zone has its own {@link WallClock}, so its offset and next transition are looked up once
+ * and then only again when the transition passes or {@link #invalidate()} is called. All the rows
+ * are formatted and measured again only when the minute changes; every other frame,
+ * {@link #update} is a single comparison, however many zones there are. Rows beyond
+ * {@link #setMaxRows} are neither formatted nor shown.
+ * <p>
+ * Not thread safe.
+ */
+public class WorldClockRows {
+
+    /** Most zones shown; the rest of a longer list is ignored. */
+    public static final int MAX_ZONES = 12;
+
+    private static final long MILLIS_PER_MINUTE = 60 * 1000;
+
+    private final String mTag;
+    private final Paint mPaint;
+    private final String mAmString;
+    private final String mPmString;
+
+    /** Time zone IDs, as last passed to {@link #setZones}. */
+    private String[] mZoneIds = new String[0];
+
+    /** Most rows formatted and shown, e.g. as many as fit on the screen. */
+    private int mMaxRows = MAX_ZONES;
+
+    private final ArrayList<WallClock> mClocks = new ArrayList<>();
+    private final ArrayList<String> mLabels = new ArrayList<>();
+    private final ArrayList<String> mTexts = new ArrayList<>();
+    private float[] mWidths = new float[0];
+
+    /** Incremented whenever the rows are formatted, so that callers can tell text apart. */
+    private int mVersion;
+
+    /** UTC minute the rows were formatted for, or {@link Long#MIN_VALUE} if they are stale. */
+    private long mMinute = Long.MIN_VALUE;
+    private boolean mIs24Hour;
+
+    private final StringBuilder mBuilder = new StringBuilder();
+
+    // Counters for tuning.
+    private int mFormatCount;
+    private long mFormatNanos;
+
+    /**
+     * @param paint paint the rows are drawn with, used to measure them
+     */
+    public WorldClockRows(String tag, Paint paint, String amString, String pmString) {
+        mTag = tag;
+        mPaint = paint;
+        mAmString = amString;
+        mPmString = pmString;
+    }
+
+    /**
+     * Sets the time zones to show, by ID, e.g. "Asia/Tokyo". Unknown IDs are skipped.
+     *
+     * @return whether the list changed
+     */
+    public boolean setZones(String[] zoneIds) {
+        if (zoneIds == null) {
+            zoneIds = new String[0];
+        }
+        if (Arrays.equals(zoneIds, mZoneIds)) {
+            return false;
+        }
+        mZoneIds = zoneIds;
+        mClocks.clear();
+        mLabels.clear();
+        for (int i = 0; i < zoneIds.length && mClocks.size() < MAX_ZONES; i++) {
+            TimeZone timeZone = TimeZone.getTimeZone(zoneIds[i]);
+            // Unknown IDs come back as GMT.
+            if (!timeZone.getID().equals(zoneIds[i])) {
+                Log.w(mTag, "Ignoring unknown time zone: " + zoneIds[i]);
+                continue;
+            }
+            mClocks.add(new WallClock(timeZone));
+            mLabels.add(getLabel(zoneIds[i]));
+        }
+        mTexts.clear();
+        mWidths = new float[mClocks.size()];
+        mMinute = Long.MIN_VALUE;
+        return true;
+    }
+
+    /**
+     * Sets how many rows are formatted and shown at most, e.g. as many as fit on the screen. The
+     * zones after them are kept but skipped.
+     */
+    public void setMaxRows(int maxRows) {
+        maxRows = Math.max(0, Math.min(maxRows, MAX_ZONES));
+        if (maxRows != mMaxRows) {
+            mMaxRows = maxRows;
+            invalidateText();
+        }
+    }
+
+    /** Returns the city of a zone ID, e.g. "New York" for "America/New_York". */
+    private static String getLabel(String zoneId) {
+        return zoneId.substring(zoneId.lastIndexOf('/') + 1).replace('_', ' ');
+    }
+
+    /**
+     * Drops the cached zone offsets and text. Call when the time zone rules or the locale may
+     * have changed, i.e. on {@code ACTION_TIMEZONE_CHANGED} and {@code ACTION_LOCALE_CHANGED}.
+     */
+    public void invalidate() {
+        for (int i = 0; i < mClocks.size(); i++) {
+            mClocks.get(i).invalidate();
+        }
+        invalidateText();
+    }
+
+    /** Formats and measures the rows again on the next update, e.g. after the paint changed. */
+    public void invalidateText() {
+        mMinute = Long.MIN_VALUE;
+    }
+
+    /** Brings the rows up to date with {@code now}, formatting them if the minute changed. */
+    public void update(long now, boolean is24Hour) {
+        // Every zone's minute changes at the same instant, since offsets are whole minutes.
+        long minute = now / MILLIS_PER_MINUTE;
+        if (minute == mMinute && is24Hour == mIs24Hour) {
+            return;
+        }
+        long startNanos = System.nanoTime();
+        mMinute = minute;
+        mIs24Hour = is24Hour;
+        mTexts.clear();
+        for (int i = 0; i < size(); i++) {
+            WallClock clock = mClocks.get(i);
+            clock.setTimeInMillis(now);
+            mBuilder.setLength(0);
+            mBuilder.append(mLabels.get(i)).append(' ');
+            int hour = is24Hour ? clock.getHourOfDay() : clock.getHour();
+            if (!is24Hour && hour == 0) {
+                hour = 12;
+            }
+            if (is24Hour && hour < 10) {
+                mBuilder.append('0');
+            }
+            mBuilder.append(hour).append(':');
+            if (clock.getMinute() < 10) {
+                mBuilder.append('0');
+            }
+            mBuilder.append(clock.getMinute());
+            if (!is24Hour) {
+                mBuilder.append(' ').append(clock.getAmPm() == Calendar.AM ? mAmString : mPmString);
+            }
+            String text = mBuilder.toString();
+            mTexts.add(text);
+            mWidths[i] = mPaint.measureText(text);
+        }
+        mVersion++;
+        mFormatCount++;
+        mFormatNanos = System.nanoTime() - startNanos;
+    }
+
+    /** Returns the number of rows shown. */
+    public int size() {
+        return Math.min(mClocks.size(), mMaxRows);
+    }
+
+    /** Returns the text of a row. Only valid after {@link #update}. */
+    public String getText(int row) {
+        return mTexts.get(row);
+    }
+
+    /** Returns the width of a row in the paint. Only valid after {@link #update}. */
+    public float getWidth(int row) {
+        return mWidths[row];
+    }
+
+    /** Returns a number that changes whenever the rows are formatted again. */
+    public int getVersion() {
+        return mVersion;
+    }
+
+    /** Returns a one-line summary of the zones and how often they were formatted. */
+    public String dump() {
+        int offsetLookups = 0;
+        for (int i = 0; i < mClocks.size(); i++) {
+            offsetLookups += mClocks.get(i).getOffsetLookups();
+        }
+        return "zones=" + mClocks.size()
+                + " shown=" + size()
+                + " formats=" + mFormatCount
+                + " lastFormatMicros=" + mFormatNanos / 1000
+                + " offsetLookups=" + offsetLookups;
+    }
+}
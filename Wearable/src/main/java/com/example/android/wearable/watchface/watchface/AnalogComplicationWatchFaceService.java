@@ -27,6 +27,7 @@ import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
@@ -42,8 +43,26 @@ import android.view.SurfaceHolder;
 
 import com.example.android.wearable.watchface.R;
 import com.example.android.wearable.watchface.config.AnalogComplicationConfigRecyclerViewAdapter;
-
-import java.util.Calendar;
+import com.example.android.wearable.watchface.util.BackgroundImageLoader;
+import com.example.android.wearable.watchface.util.CircleSprite;
+import com.example.android.wearable.watchface.util.ComplicationLayout;
+import com.example.android.wearable.watchface.util.ComplicationRenderCache;
+import com.example.android.wearable.watchface.util.ComplicationSnapshotStore;
+import com.example.android.wearable.watchface.util.DialLayerCache;
+import com.example.android.wearable.watchface.util.FrameClock;
+import com.example.android.wearable.watchface.util.FramePipeline;
+import com.example.android.wearable.watchface.util.FramePreRenderer;
+import com.example.android.wearable.watchface.util.FrameTimeStats;
+import com.example.android.wearable.watchface.util.HandSprite;
+import com.example.android.wearable.watchface.util.HardwareCanvasDrawer;
+import com.example.android.wearable.watchface.util.InvalidationScheduler;
+import com.example.android.wearable.watchface.util.LayerCompositor;
+import com.example.android.wearable.watchface.util.QualityGovernor;
+import com.example.android.wearable.watchface.util.WallClock;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.Locale;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 
@@ -52,63 +71,46 @@ import java.util.concurrent.TimeUnit;
 public class AnalogComplicationWatchFaceService extends CanvasWatchFaceService {
     private static final String TAG = "AnalogWatchFace";
 
-    // Unique IDs for each complication. The settings activity that supports allowing users
-    // 각 complication 에 대한 고유 ID 사용자를 허용하는 설정 활동
-    // to select their complication data provider requires numbers to be >= 0.
-    // complication 데이터 제공자를 선택하려면 숫자가> = 0이어야합니다.
-    private static final int BACKGROUND_COMPLICATION_ID = 0;
-
-    private static final int LEFT_COMPLICATION_ID = 100;
-    private static final int RIGHT_COMPLICATION_ID = 101;
-
-    // Background, Left and right complication IDs as array for Complication API.
-    // 배경, 왼쪽 및 오른쪽 합병증 ID는 Complication API 용 배열입니다.
-    private static final int[] COMPLICATION_IDS = {
-        BACKGROUND_COMPLICATION_ID, LEFT_COMPLICATION_ID, RIGHT_COMPLICATION_ID
-    };
-
-    // Left and right dial supported types.
-    // 좌우 다이얼 지원 유형.
-    private static final int[][] COMPLICATION_SUPPORTED_TYPES = {
-        {ComplicationData.TYPE_LARGE_IMAGE},
-        {
-            ComplicationData.TYPE_RANGED_VALUE,
-            ComplicationData.TYPE_ICON,
-            ComplicationData.TYPE_SHORT_TEXT,
-            ComplicationData.TYPE_SMALL_IMAGE
-        },
-        {
-            ComplicationData.TYPE_RANGED_VALUE,
-            ComplicationData.TYPE_ICON,
-            ComplicationData.TYPE_SHORT_TEXT,
-            ComplicationData.TYPE_SMALL_IMAGE
-        }
-    };
+    // Complication slots for the settings activity, loaded once per process. The ids, names and
+    // supported types of the slots are declared in R.xml.analog_complication_slots only.
+    // 설정 활동을 위한 complication 슬롯으로, 프로세스마다 한 번 로드됩니다. 슬롯의 ID, 이름 및
+    // 지원 유형은 R.xml.analog_complication_slots 에만 선언되어 있습니다.
+    private static ComplicationLayout sComplicationSlots;
+
+    // Name of the background slot in R.xml.analog_complication_slots.
+    // R.xml.analog_complication_slots 에 있는 배경 슬롯의 이름.
+    private static final String BACKGROUND_SLOT_NAME = "background";
+
+    private static synchronized ComplicationLayout getComplicationSlots(Context context) {
+        if (sComplicationSlots == null) {
+            sComplicationSlots = ComplicationLayout.inflate(
+                    context.getResources(), R.xml.analog_complication_slots);
+        }
+        return sComplicationSlots;
+    }
+
+    private static int findSlot(
+            Context context,
+            AnalogComplicationConfigRecyclerViewAdapter.ComplicationLocation complicationLocation) {
+        return getComplicationSlots(context)
+                .findSlot(complicationLocation.name().toLowerCase(Locale.US));
+    }
 
     // Used by {@link AnalogComplicationConfigRecyclerViewAdapter} to check if complication location
     // 복잡한 위치를 확인하기 위해서 {@link AnalogComplicationConfigRecyclerViewAdapter}에 의해 사용됩니다.
-    // is supported in settings config activity.
-    // 설정 구성 활동에서 지원됩니다.
+    // is supported in settings config activity. Returns -1 for locations without a slot.
+    // 설정 구성 활동에서 지원됩니다. 슬롯이 없는 위치에 대해서는 -1 을 반환합니다.
     public static int getComplicationId(
+            Context context,
             AnalogComplicationConfigRecyclerViewAdapter.ComplicationLocation complicationLocation) {
-        // Add any other supported locations here.
-        // 다른 지원되는 위치를 여기에 추가하십시오.
-        switch (complicationLocation) {
-            case BACKGROUND:
-                return BACKGROUND_COMPLICATION_ID;
-            case LEFT:
-                return LEFT_COMPLICATION_ID;
-            case RIGHT:
-                return RIGHT_COMPLICATION_ID;
-            default:
-                return -1;
-        }
+        int slot = findSlot(context, complicationLocation);
+        return slot >= 0 ? getComplicationSlots(context).getSlotId(slot) : -1;
     }
 
     // Used by {@link AnalogComplicationConfigRecyclerViewAdapter} to retrieve all complication ids.
     // 모든 컴플 례티의 ID를 꺼내기 위해서 {@link AnalogComplicationConfigRecyclerViewAdapter}에 의해 사용됩니다.
-    public static int[] getComplicationIds() {
-        return COMPLICATION_IDS;
+    public static int[] getComplicationIds(Context context) {
+        return getComplicationSlots(context).getSlotIds();
     }
 
     // Used by {@link AnalogComplicationConfigRecyclerViewAdapter} to see which complication types
@@ -116,19 +118,10 @@ public class AnalogComplicationWatchFaceService extends CanvasWatchFaceService {
     // are supported in the settings config activity.
     // 설정 구성 활동에서 지원됩니다.
     public static int[] getSupportedComplicationTypes(
+            Context context,
             AnalogComplicationConfigRecyclerViewAdapter.ComplicationLocation complicationLocation) {
-        // Add any other supported locations here.
-        // 다른 지원되는 위치를 여기에 추가하십시오.
-        switch (complicationLocation) {
-            case BACKGROUND:
-                return COMPLICATION_SUPPORTED_TYPES[0];
-            case LEFT:
-                return COMPLICATION_SUPPORTED_TYPES[1];
-            case RIGHT:
-                return COMPLICATION_SUPPORTED_TYPES[2];
-            default:
-                return new int[] {};
-        }
+        int slot = findSlot(context, complicationLocation);
+        return slot >= 0 ? getComplicationSlots(context).getSupportedTypes(slot) : new int[] {};
     }
 
     /*
@@ -138,26 +131,82 @@ public class AnalogComplicationWatchFaceService extends CanvasWatchFaceService {
      */
     private static final long INTERACTIVE_UPDATE_RATE_MS = TimeUnit.SECONDS.toMillis(1);
 
+    /*
+     * Average interactive frame time above which the quality governor lowers quality.
+     * 품질 조정기가 품질을 낮추는 평균 대화 형 프레임 시간.
+     */
+    private static final long FRAME_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(16);
+
+    /*
+     * File in which the last known complication data is kept across restarts.
+     * 재시작 사이에 마지막으로 알려진 complication 데이터를 보관하는 파일.
+     */
+    private static final String COMPLICATION_SNAPSHOT_FILE = "analog_complication_snapshot";
+
     @Override
     public Engine onCreateEngine() {
         return new Engine();
     }
 
-    private class Engine extends CanvasWatchFaceService.Engine {
+    private class Engine extends CanvasWatchFaceService.Engine
+            implements LayerCompositor.LayerRenderer, BackgroundImageLoader.Listener,
+                    FramePreRenderer.FrameRenderer, QualityGovernor.Listener,
+                    FrameClock.Callback, HardwareCanvasDrawer.Target,
+                    InvalidationScheduler.Target {
         private static final int MSG_UPDATE_TIME = 0;
 
+        // Layers of the watch face, bottom to top. Each is only rendered again when the event
+        // that affects it happens; everything else is blitted from the previous frame.
+        // 시계 모드의 레이어 (아래에서 위로). 각 레이어는 영향을 주는 이벤트가 발생할 때만 다시 렌더링되고,
+        // 나머지는 이전 프레임에서 복사됩니다.
+        private static final int LAYER_BACKGROUND = 0;
+        private static final int LAYER_DIAL = 1;
+        private static final int LAYER_COMPLICATIONS = 2;
+        private static final int LAYER_UNREAD = 3;
+        private static final int LAYER_HOUR_MINUTE_HANDS = 4;
+        private static final int LAYER_SECOND_HAND = 5;
+        private static final int LAYER_COUNT = 6;
+
         private static final float HOUR_STROKE_WIDTH = 5f;
         private static final float MINUTE_STROKE_WIDTH = 3f;
         private static final float SECOND_TICK_STROKE_WIDTH = 2f;
 
         private static final float CENTER_GAP_AND_CIRCLE_RADIUS = 4f;
 
+        // The unread notification indicator: a ring with a dot inside, above the bottom edge.
+        // 읽지 않은 알림 표시: 아래쪽 가장자리 위에 있는 안에 점이 있는 고리.
+        private static final float UNREAD_RING_RADIUS = 10f;
+        private static final float UNREAD_DOT_RADIUS = 4f;
+        private static final int UNREAD_BOTTOM_OFFSET = 40;
+
         private static final int SHADOW_RADIUS = 6;
 
-        private Calendar mCalendar;
+        // Number of pre-rotated second hand positions. 0 rotates the sprite at draw time; 60 snaps
+        // the hand to whole seconds and makes each frame a plain blit, at the cost of ~3 MB.
+        // 미리 회전 된 초침 위치의 수. 0 은 그릴 때 스프라이트를 회전하고, 60 은 바늘을 정수 초에 맞추어
+        // 각 프레임을 단순 복사로 만듭니다 (약 3 MB 사용).
+        private static final int SECOND_HAND_ANGLE_BUCKETS = 0;
+
+        // Whether to render the next minute's ambient frame in the background right after one
+        // is shown, so onTimeTick only has to blit it.
+        // 주변 모드 프레임이 표시된 직후 다음 분의 프레임을 백그라운드에서 렌더링할지 여부.
+        // 그러면 onTimeTick 은 복사만 하면 됩니다.
+        private static final boolean PRERENDER_AMBIENT_FRAMES = true;
+
+        // Maximum frame rate of the smoothly sweeping second hand in interactive mode, when
+        // R.bool.smooth_second_hand_sweep opts in. Mute mode always ticks once a second.
+        // R.bool.smooth_second_hand_sweep 가 허용할 때 대화 형 모드에서 부드럽게 움직이는 초침의
+        // 최대 프레임 속도. 음소거 모드에서는 항상 1 초에 한 번 움직입니다.
+        private static final int SMOOTH_SWEEP_MAX_FPS = 30;
+
+
+        private WallClock mWallClock;
         private boolean mRegisteredTimeZoneReceiver = false;
         private boolean mMuteMode;
 
+        private int mSurfaceWidth;
+        private int mSurfaceHeight;
+
         private float mCenterX;
         private float mCenterY;
 
@@ -180,6 +229,113 @@ public class AnalogComplicationWatchFaceService extends CanvasWatchFaceService {
 
         private Paint mBackgroundPaint;
 
+        // Ticks rasterized once per configuration instead of on every frame.
+        // 매 프레임마다가 아니라 구성마다 한 번씩 래스터화되는 눈금.
+        private final DialLayerCache mDialLayerCache = new DialLayerCache();
+
+        private final LayerCompositor mLayerCompositor = new LayerCompositor(LAYER_COUNT, this);
+
+        // Foreground complications, each rendered only when its data, bounds or text changes.
+        // 전경 complication, 각각 데이터, 경계 또는 텍스트가 변경될 때만 렌더링됩니다.
+        private final ComplicationRenderCache mComplicationRenderCache =
+                new ComplicationRenderCache();
+
+        // Background image complication, decoded and scaled to the screen off the main thread.
+        // 메인 스레드 밖에서 디코딩되고 화면 크기로 조정 된 배경 이미지 complication.
+        private BackgroundImageLoader mBackgroundImageLoader;
+
+        // Hands pre-rendered with their shadows, rotated into place each frame.
+        // 그림자와 함께 미리 렌더링 된 바늘, 매 프레임 제자리로 회전됩니다.
+        private final HandSprite mHourHandSprite = new HandSprite();
+        private final HandSprite mMinuteHandSprite = new HandSprite();
+        private final HandSprite mSecondHandSprite = new HandSprite();
+
+        // The center circle and unread indicator, pre-rendered with their shadows, which a
+        // hardware canvas would drop before API 28.
+        // 그림자와 함께 미리 렌더링 된 중앙 원과 읽지 않은 알림 표시. 하드웨어 캔버스는 API 28
+        // 이전에는 그림자를 그리지 않습니다.
+        private final CircleSprite mCenterCircleSprite = new CircleSprite();
+        private final CircleSprite mUnreadRingSprite = new CircleSprite();
+        private final CircleSprite mUnreadDotSprite = new CircleSprite();
+
+        // Time of the frame being drawn, and the minute/second last rendered into the hand layers.
+        // 그려지는 프레임의 시간, 그리고 바늘 레이어에 마지막으로 렌더링 된 분 / 초.
+        private long mCurrentTimeMillis;
+        private long mLastDrawnMinute = -1;
+        private long mLastDrawnSecond = -1;
+
+        // Time the background layer was last rendered for, to catch time-dependent text in the
+        // background complication.
+        // 배경 complication 의 시간에 따라 바뀌는 텍스트를 잡기 위해, 배경 레이어가 마지막으로
+        // 렌더링 된 시간.
+        private long mBackgroundRenderedAtMillis;
+
+        // Time spent in onDraw, logged when the TAG is loggable at DEBUG.
+        // onDraw 에 소요 된 시간. TAG 가 DEBUG 에서 로깅 가능할 때 기록됩니다.
+        private final FrameTimeStats mFrameTimeStats = new FrameTimeStats(TAG, "onDraw");
+
+        // Next ambient frame, rendered on a background thread.
+        // 백그라운드 스레드에서 렌더링 된 다음 주변 모드 프레임.
+        private FramePreRenderer mAmbientFramePreRenderer;
+
+        // Next interactive frame, rendered on a worker thread when
+        // R.bool.pipeline_interactive_frames opts in, so that onDraw only blits it. Costs three
+        // full-screen bitmaps while interactive.
+        // R.bool.pipeline_interactive_frames 가 허용하면 작업자 스레드에서 렌더링 된 다음 대화 형
+        // 프레임. onDraw 는 복사만 합니다. 대화 형 모드에서 전체 화면 비트맵 세 개가 듭니다.
+        private FramePipeline mInteractiveFramePipeline;
+        private boolean mPipelineInteractiveFrames;
+
+        // Interactive onDraw time with and without a pipelined frame, and the time from a tap
+        // until the next frame is drawn (-1 if it has been drawn already).
+        // 파이프라인 프레임이 있을 때와 없을 때의 대화 형 onDraw 시간, 그리고 탭부터 다음 프레임이
+        // 그려질 때까지의 시간 (이미 그려졌으면 -1).
+        private final FrameTimeStats mPipelinedFrameStats =
+                new FrameTimeStats(TAG, "onDraw(pipelined)");
+        private final FrameTimeStats mComposedFrameStats =
+                new FrameTimeStats(TAG, "onDraw(composed)");
+        private final FrameTimeStats mTapToFrameStats =
+                new FrameTimeStats(TAG, "tapToFrame", 10);
+        private long mTapNanos = -1;
+
+        // Draws frames through a hardware canvas when R.bool.use_hardware_canvas opts in.
+        // R.bool.use_hardware_canvas 가 허용하면 하드웨어 캔버스를 통해 프레임을 그립니다.
+        private HardwareCanvasDrawer mHardwareCanvasDrawer;
+
+        // Whether a frame callback of the sweep clock is running.
+        // 초침 시계의 프레임 콜백이 실행 중인지 여부.
+        private boolean mOnVsync;
+
+        // Every redraw request goes through here, so that a burst of them costs one frame.
+        // 모든 다시 그리기 요청이 여기를 거치므로 한꺼번에 온 요청은 한 프레임만 듭니다.
+        private final InvalidationScheduler mInvalidationScheduler =
+                new InvalidationScheduler(this);
+
+        // Time from onTimeTick until the ambient frame is drawn, with and without a pre-rendered
+        // frame, and when the last tick arrived (-1 if it has been drawn already).
+        // onTimeTick 부터 주변 모드 프레임이 그려질 때까지의 시간 (미리 렌더링 된 프레임이 있을 때와
+        // 없을 때), 그리고 마지막 틱이 도착한 시간 (이미 그려졌으면 -1).
+        private final FrameTimeStats mPreRenderedTickStats =
+                new FrameTimeStats(TAG, "tickToFrame(prerendered)", 10);
+        private final FrameTimeStats mDirectTickStats =
+                new FrameTimeStats(TAG, "tickToFrame(direct)", 10);
+        private long mTimeTickNanos = -1;
+
+        // Drops shadows, anti-aliasing and the second hand sweep when frames get too slow.
+        // 프레임이 너무 느려지면 그림자, 안티 앨리어싱 및 초침 스윕을 끕니다.
+        private final QualityGovernor mQualityGovernor =
+                new QualityGovernor(TAG, FRAME_BUDGET_NANOS, this);
+
+        // Vsync-aligned frames for the sweeping second hand, and whether it sweeps at all.
+        // 움직이는 초침을 위한 vsync 에 맞춘 프레임, 그리고 초침이 움직이는지 여부.
+        private FrameClock mSweepFrameClock;
+        private boolean mSmoothSweep;
+
+        // How late the once-a-second ticks arrive, and when the next one is due (-1 if none).
+        // 1 초에 한 번 오는 틱이 얼마나 늦게 도착하는지, 그리고 다음 틱의 예정 시간 (없으면 -1).
+        private final FrameTimeStats mTickJitterStats = new FrameTimeStats(TAG, "tick jitter");
+        private long mNextTickMillis = -1;
+
         /* Maps active complication ids to the data for that complication. 
          * 활성 complication ID를 해당 complication의 데이터에 매핑합니다.
          * Note: Data will only be
@@ -189,12 +345,63 @@ public class AnalogComplicationWatchFaceService extends CanvasWatchFaceService {
          */
         private SparseArray<ComplicationData> mActiveComplicationDataSparseArray;
 
+        // Last known complication data, kept on disk so the first frame is not blank.
+        // 마지막으로 알려진 complication 데이터. 첫 프레임이 비어 있지 않도록 디스크에 보관됩니다.
+        private ComplicationSnapshotStore mComplicationSnapshotStore;
+
+        // When onCreate started, and how long it took until a frame had data for every
+        // complication (-1 until then).
+        // onCreate 가 시작된 시간, 그리고 모든 complication 에 데이터가 있는 프레임까지 걸린 시간
+        // (그 전에는 -1).
+        private long mCreateNanos;
+        private long mFirstCompleteFrameNanos = -1;
+
         /* Maps complication ids to corresponding ComplicationDrawable that renders the
          * the complication data on the watch face.
          * complication ID를 시계 모드에서 렌더링하는 해당 ComplicationDrawable에 문제 ID를 매핑합니다.
          */
         private SparseArray<ComplicationDrawable> mComplicationDrawableSparseArray;
 
+        // Slot positions from R.xml.analog_complication_slots, with a grid index for taps.
+        // R.xml.analog_complication_slots 의 슬롯 위치와 탭을 위한 그리드 인덱스.
+        private ComplicationLayout mComplicationLayout;
+
+        // Ids of all slots, and of the background slot or -1 if there is none.
+        // 모든 슬롯의 ID, 그리고 배경 슬롯의 ID 또는 없으면 -1.
+        private int[] mComplicationIds;
+        private int mBackgroundComplicationId = -1;
+        private int[] mTapSlotIndices;
+        private final Rect mSlotBounds = new Rect();
+
+        // Complications invalidate themselves when an image finishes loading or a tap highlight
+        // starts or ends; their cached rendering has to be dropped then.
+        // complication 은 이미지 로드가 끝나거나 탭 강조 표시가 시작 / 종료될 때 스스로를 무효화합니다.
+        // 그때 캐시 된 렌더링을 버려야 합니다.
+        private final Drawable.Callback mComplicationDrawableCallback =
+                new Drawable.Callback() {
+                    @Override
+                    public void invalidateDrawable(Drawable who) {
+                        discardPreRenderedFrames();
+                        int index = mComplicationDrawableSparseArray.indexOfValue(
+                                (ComplicationDrawable) who);
+                        if (index >= 0) {
+                            invalidateComplication(mComplicationDrawableSparseArray.keyAt(index));
+                            mInvalidationScheduler.request(
+                                    InvalidationScheduler.REASON_COMPLICATION);
+                        }
+                    }
+
+                    @Override
+                    public void scheduleDrawable(Drawable who, Runnable what, long when) {
+                        mUpdateTimeHandler.postAtTime(what, who, when);
+                    }
+
+                    @Override
+                    public void unscheduleDrawable(Drawable who, Runnable what) {
+                        mUpdateTimeHandler.removeCallbacks(what, who);
+                    }
+                };
+
         private boolean mAmbient;
         private boolean mLowBitAmbient;
         private boolean mBurnInProtection;
@@ -213,8 +420,10 @@ public class AnalogComplicationWatchFaceService extends CanvasWatchFaceService {
                 new BroadcastReceiver() {
                     @Override
                     public void onReceive(Context context, Intent intent) {
-                        mCalendar.setTimeZone(TimeZone.getDefault());
-                        invalidate();
+                        discardPreRenderedFrames();
+                        mWallClock.setTimeZone(TimeZone.getDefault());
+                        mLayerCompositor.invalidateLayer(LAYER_HOUR_MINUTE_HANDS);
+                        mInvalidationScheduler.request(InvalidationScheduler.REASON_TIME_ZONE);
                     }
                 };
 
@@ -224,13 +433,20 @@ public class AnalogComplicationWatchFaceService extends CanvasWatchFaceService {
                 new Handler() {
                     @Override
                     public void handleMessage(Message message) {
-                        invalidate();
+                        mInvalidationScheduler.request(InvalidationScheduler.REASON_TIMER);
+                        long timeMs = System.currentTimeMillis();
+                        if (mNextTickMillis >= 0) {
+                            mTickJitterStats.record(TimeUnit.MILLISECONDS.toNanos(
+                                    Math.abs(timeMs - mNextTickMillis)));
+                        }
                         if (shouldTimerBeRunning()) {
-                            long timeMs = System.currentTimeMillis();
                             long delayMs =
                                     INTERACTIVE_UPDATE_RATE_MS
                                             - (timeMs % INTERACTIVE_UPDATE_RATE_MS);
+                            mNextTickMillis = timeMs + delayMs;
                             mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_UPDATE_TIME, delayMs);
+                        } else {
+                            mNextTickMillis = -1;
                         }
                     }
                 };
@@ -238,6 +454,7 @@ public class AnalogComplicationWatchFaceService extends CanvasWatchFaceService {
         @Override
         public void onCreate(SurfaceHolder holder) {
             Log.d(TAG, "onCreate");
+            mCreateNanos = System.nanoTime();
 
             super.onCreate(holder);
 
@@ -249,7 +466,19 @@ public class AnalogComplicationWatchFaceService extends CanvasWatchFaceService {
                             getString(R.string.analog_complication_preference_file_key),
                             Context.MODE_PRIVATE);
 
-            mCalendar = Calendar.getInstance();
+            mWallClock = new WallClock();
+            mBackgroundImageLoader = new BackgroundImageLoader(context, this);
+            mAmbientFramePreRenderer = new FramePreRenderer(TAG, this);
+            mInteractiveFramePipeline =
+                    new FramePipeline(TAG, mAmbientFramePreRenderer.getLock(), this);
+            mPipelineInteractiveFrames =
+                    getResources().getBoolean(R.bool.pipeline_interactive_frames);
+            mSweepFrameClock = new FrameClock(TAG, SMOOTH_SWEEP_MAX_FPS, this);
+            mSmoothSweep = getResources().getBoolean(R.bool.smooth_second_hand_sweep);
+            mHardwareCanvasDrawer = new HardwareCanvasDrawer(TAG,
+                    getResources().getBoolean(R.bool.use_hardware_canvas), this);
+            mComplicationSnapshotStore = new ComplicationSnapshotStore(context,
+                    COMPLICATION_SNAPSHOT_FILE, TAG, ComplicationSnapshotStore.DEFAULT_MAX_BYTES);
 
             setWatchFaceStyle(
                     new WatchFaceStyle.Builder(AnalogComplicationWatchFaceService.this)
@@ -300,35 +529,49 @@ public class AnalogComplicationWatchFaceService extends CanvasWatchFaceService {
             mBackgroundPaint = new Paint();
             mBackgroundPaint.setColor(mBackgroundColor);
 
-            mActiveComplicationDataSparseArray = new SparseArray<>(COMPLICATION_IDS.length);
-
-            // Creates a ComplicationDrawable for each location where the user can render a
-            // complication on the watch face. In this watch face, we create one for left, right,
-            // and background, but you could add many more.
-            // 사용자가 시계 모드에서 complication을 렌더링 할 수있는 각 위치에 대해 ComplicationDrawable을 만듭니다. 
-            // 이 시계 모드에서는 왼쪽, 오른쪽 및 배경으로 하나를 만들지 만 더 많이 추가 할 수 있습니다.
-            ComplicationDrawable leftComplicationDrawable =
-                    new ComplicationDrawable(getApplicationContext());
-
-            ComplicationDrawable rightComplicationDrawable =
-                    new ComplicationDrawable(getApplicationContext());
+            mComplicationLayout = ComplicationLayout.inflate(
+                    getResources(), R.xml.analog_complication_slots);
+            mTapSlotIndices = new int[mComplicationLayout.getSlotCount()];
+            mComplicationIds = mComplicationLayout.getSlotIds();
+            int backgroundSlot = mComplicationLayout.findSlot(BACKGROUND_SLOT_NAME);
+            if (backgroundSlot >= 0) {
+                mBackgroundComplicationId = mComplicationLayout.getSlotId(backgroundSlot);
+            }
 
-            ComplicationDrawable backgroundComplicationDrawable =
-                    new ComplicationDrawable(getApplicationContext());
+            mActiveComplicationDataSparseArray = new SparseArray<>(mComplicationIds.length);
 
+            // Creates a ComplicationDrawable for each location where the user can render a
+            // complication on the watch face. Where they go is defined by the slots in
+            // R.xml.analog_complication_slots, so more can be added there.
+            // 사용자가 시계 모드에서 complication을 렌더링 할 수있는 각 위치에 대해 ComplicationDrawable을 만듭니다.
+            // 위치는 R.xml.analog_complication_slots 의 슬롯으로 정의되므로 거기에 더 추가 할 수 있습니다.
+            //
             // Adds new complications to a SparseArray to simplify setting styles and ambient
             // properties for all complications, i.e., iterate over them all.
             // 새로운 complication을 SparseArray에 추가하여 모든 complication의 스타일 및 앰비언트 속성 설정을 간소화합니다. 
             // 즉, 모든 항목을 반복합니다.
-            mComplicationDrawableSparseArray = new SparseArray<>(COMPLICATION_IDS.length);
+            mComplicationDrawableSparseArray = new SparseArray<>(mComplicationIds.length);
 
-            mComplicationDrawableSparseArray.put(LEFT_COMPLICATION_ID, leftComplicationDrawable);
-            mComplicationDrawableSparseArray.put(RIGHT_COMPLICATION_ID, rightComplicationDrawable);
-            mComplicationDrawableSparseArray.put(
-                    BACKGROUND_COMPLICATION_ID, backgroundComplicationDrawable);
+            for (int i = 0; i < mComplicationIds.length; i++) {
+                ComplicationDrawable complicationDrawable =
+                        new ComplicationDrawable(getApplicationContext());
+                complicationDrawable.setCallback(mComplicationDrawableCallback);
+                mComplicationDrawableSparseArray.put(mComplicationIds[i], complicationDrawable);
+            }
 
             setComplicationsActiveAndAmbientColors(mWatchHandHighlightColor);
-            setActiveComplications(COMPLICATION_IDS);
+
+            // Shows the last known data until the providers answer.
+            // 제공자가 응답할 때까지 마지막으로 알려진 데이터를 표시합니다.
+            SparseArray<ComplicationData> restored = mComplicationSnapshotStore.restore();
+            for (int i = 0; i < restored.size(); i++) {
+                int complicationId = restored.keyAt(i);
+                if (mComplicationDrawableSparseArray.get(complicationId) != null) {
+                    setComplicationData(complicationId, restored.valueAt(i));
+                }
+            }
+
+            setActiveComplications(mComplicationIds);
         }
 
         private void initializeWatchFace() {
@@ -360,6 +603,8 @@ public class AnalogComplicationWatchFaceService extends CanvasWatchFaceService {
             mTickAndCirclePaint.setAntiAlias(true);
             mTickAndCirclePaint.setStyle(Paint.Style.STROKE);
             mTickAndCirclePaint.setShadowLayer(SHADOW_RADIUS, 0, 0, mWatchHandShadowColor);
+
+            mSecondHandSprite.setAngleBuckets(SECOND_HAND_ANGLE_BUCKETS);
         }
 
         /* Sets active/ambient mode colors for all complications.
@@ -377,11 +622,13 @@ public class AnalogComplicationWatchFaceService extends CanvasWatchFaceService {
             int complicationId;
             ComplicationDrawable complicationDrawable;
 
-            for (int i = 0; i < COMPLICATION_IDS.length; i++) {
-                complicationId = COMPLICATION_IDS[i];
+            discardPreRenderedFrames();
+
+            for (int i = 0; i < mComplicationIds.length; i++) {
+                complicationId = mComplicationIds[i];
                 complicationDrawable = mComplicationDrawableSparseArray.get(complicationId);
 
-                if (complicationId == BACKGROUND_COMPLICATION_ID) {
+                if (complicationId == mBackgroundComplicationId) {
                     // It helps for the background color to be black in case the image used for the
                     // watch face's background takes some time to load.
                     // 시계 표면의 배경에 사용 된 이미지가로드되는 데 시간이 걸리는 경우 배경색이 검은 색이됩니다.
@@ -398,11 +645,95 @@ public class AnalogComplicationWatchFaceService extends CanvasWatchFaceService {
                     complicationDrawable.setRangedValuePrimaryColorAmbient(Color.WHITE);
                 }
             }
+            mComplicationRenderCache.invalidateAll();
+            mLayerCompositor.invalidateLayer(LAYER_BACKGROUND);
+            mLayerCompositor.invalidateLayer(LAYER_COMPLICATIONS);
+        }
+
+        /*
+         * Drops the cached rendering of one complication and marks the layer it is drawn in.
+         * complication 하나의 캐시 된 렌더링을 버리고 그것이 그려지는 레이어를 표시합니다.
+         */
+        private void invalidateComplication(int complicationId) {
+            mComplicationRenderCache.invalidate(complicationId);
+            mLayerCompositor.invalidateLayer(complicationId == mBackgroundComplicationId
+                    ? LAYER_BACKGROUND : LAYER_COMPLICATIONS);
+        }
+
+        /*
+         * Rebuilds the cached ticks if the surface size, tick paint or ambient state changed.
+         * The dial layer of the compositor is backed by the cached bitmap rather than a copy.
+         * Must run after updateWatchPaintStyles() has styled mTickAndCirclePaint.
+         * 표면 크기, 눈금 페인트 또는 주변 상태가 변경된 경우 캐시 된 눈금을 다시 만듭니다.
+         * 컴포지터의 눈금 레이어는 복사본이 아니라 캐시 된 비트맵을 사용합니다.
+         * updateWatchPaintStyles() 가 mTickAndCirclePaint 의 스타일을 지정한 후에 실행해야 합니다.
+         */
+        private void updateDialLayerCache() {
+            boolean tickShadow = !mAmbient && mQualityGovernor.isShadowEnabled();
+            boolean rebuilt = mDialLayerCache.update(
+                    mSurfaceWidth,
+                    mSurfaceHeight,
+                    mBackgroundColor,
+                    mAmbient,
+                    mLowBitAmbient,
+                    mBurnInProtection,
+                    mTickAndCirclePaint,
+                    tickShadow ? mWatchHandShadowColor : Color.TRANSPARENT);
+            if (rebuilt) {
+                mLayerCompositor.setLayerBitmap(LAYER_DIAL, mDialLayerCache.getBitmap());
+            }
+        }
+
+        /*
+         * Renders the hand and circle sprites again if the paints or hand lengths changed.
+         * Ambient mode draws them directly since there are no shadows to save on.
+         * 페인트 또는 바늘 길이가 변경된 경우 바늘과 원 스프라이트를 다시 렌더링합니다.
+         * 주변 모드에서는 절약 할 그림자가 없으므로 직접 그립니다.
+         */
+        private void updateHandSprites() {
+            if (mAmbient || mCenterX <= 0) {
+                mHourHandSprite.release();
+                mMinuteHandSprite.release();
+                mSecondHandSprite.release();
+                mCenterCircleSprite.release();
+                mUnreadRingSprite.release();
+                mUnreadDotSprite.release();
+                return;
+            }
+            int shadowRadius = mQualityGovernor.isShadowEnabled() ? SHADOW_RADIUS : 0;
+            mHourHandSprite.update(mHourPaint, CENTER_GAP_AND_CIRCLE_RADIUS, mHourHandLength,
+                    shadowRadius, mWatchHandShadowColor);
+            mMinuteHandSprite.update(mMinutePaint, CENTER_GAP_AND_CIRCLE_RADIUS,
+                    mMinuteHandLength, shadowRadius, mWatchHandShadowColor);
+            mSecondHandSprite.update(mSecondAndHighlightPaint, CENTER_GAP_AND_CIRCLE_RADIUS,
+                    mSecondHandLength, shadowRadius, mWatchHandShadowColor);
+            mCenterCircleSprite.update(mTickAndCirclePaint, CENTER_GAP_AND_CIRCLE_RADIUS,
+                    shadowRadius, mWatchHandShadowColor);
+            mUnreadRingSprite.update(mTickAndCirclePaint, UNREAD_RING_RADIUS, shadowRadius,
+                    mWatchHandShadowColor);
+            mUnreadDotSprite.update(mSecondAndHighlightPaint, UNREAD_DOT_RADIUS, shadowRadius,
+                    mWatchHandShadowColor);
         }
 
         @Override
         public void onDestroy() {
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
+            mSweepFrameClock.stop();
+            mHardwareCanvasDrawer.cancel();
+            mInvalidationScheduler.cancel();
+            mComplicationSnapshotStore.release();
+            mAmbientFramePreRenderer.release();
+            mInteractiveFramePipeline.release();
+            mLayerCompositor.release();
+            mDialLayerCache.release();
+            mComplicationRenderCache.release();
+            mBackgroundImageLoader.release();
+            mHourHandSprite.release();
+            mMinuteHandSprite.release();
+            mSecondHandSprite.release();
+            mCenterCircleSprite.release();
+            mUnreadRingSprite.release();
+            mUnreadDotSprite.release();
             super.onDestroy();
         }
 
@@ -411,6 +742,8 @@ public class AnalogComplicationWatchFaceService extends CanvasWatchFaceService {
             super.onPropertiesChanged(properties);
             Log.d(TAG, "onPropertiesChanged: low-bit ambient = " + mLowBitAmbient);
 
+            discardPreRenderedFrames();
+
             mLowBitAmbient = properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false);
             mBurnInProtection = properties.getBoolean(PROPERTY_BURN_IN_PROTECTION, false);
 
@@ -419,12 +752,13 @@ public class AnalogComplicationWatchFaceService extends CanvasWatchFaceService {
             // 복잡성을 업데이트하여 화면의 기능에 따라 주변 모드로 올바르게 렌더링합니다.
             ComplicationDrawable complicationDrawable;
 
-            for (int i = 0; i < COMPLICATION_IDS.length; i++) {
-                complicationDrawable = mComplicationDrawableSparseArray.get(COMPLICATION_IDS[i]);
+            for (int i = 0; i < mComplicationIds.length; i++) {
+                complicationDrawable = mComplicationDrawableSparseArray.get(mComplicationIds[i]);
 
                 complicationDrawable.setLowBitAmbient(mLowBitAmbient);
                 complicationDrawable.setBurnInProtection(mBurnInProtection);
             }
+            mLayerCompositor.invalidateAll();
         }
 
         /*
@@ -436,6 +770,17 @@ public class AnalogComplicationWatchFaceService extends CanvasWatchFaceService {
                 int complicationId, ComplicationData complicationData) {
             Log.d(TAG, "onComplicationDataUpdate() id: " + complicationId);
 
+            // Applied right away, so that a tap before the next frame acts on the new data; only
+            // the redraw is coalesced.
+            // 다음 프레임 전에 탭해도 새 데이터로 동작하도록 바로 적용합니다. 다시 그리기만 합쳐집니다.
+            mComplicationSnapshotStore.put(complicationId, complicationData);
+            setComplicationData(complicationId, complicationData);
+            mInvalidationScheduler.request(InvalidationScheduler.REASON_COMPLICATION);
+        }
+
+        private void setComplicationData(int complicationId, ComplicationData complicationData) {
+            discardPreRenderedFrames();
+
             // Adds/updates active complication data in the array.
             // 배열에 활성 합병증 데이터를 추가 / 업데이트합니다.
             mActiveComplicationDataSparseArray.put(complicationId, complicationData);
@@ -446,19 +791,37 @@ public class AnalogComplicationWatchFaceService extends CanvasWatchFaceService {
                     mComplicationDrawableSparseArray.get(complicationId);
             complicationDrawable.setComplicationData(complicationData);
 
-            invalidate();
+            if (complicationId == mBackgroundComplicationId) {
+                mBackgroundImageLoader.setImage(complicationData != null
+                        && complicationData.getType() == ComplicationData.TYPE_LARGE_IMAGE
+                                ? complicationData.getLargeImage() : null);
+            }
+
+            invalidateComplication(complicationId);
         }
 
         @Override
         public void onTapCommand(int tapType, int x, int y, long eventTime) {
             Log.d(TAG, "OnTapCommand()");
+            mTapNanos = System.nanoTime();
             switch (tapType) {
                 case TAP_TYPE_TAP:
 
-                    for (int i = 0; i < COMPLICATION_IDS.length; i++) {
-                        int complicationId = COMPLICATION_IDS[i];
+                    // Only the slots under the tap are asked, topmost first. A tap highlights the
+                    // complication's drawable, which a worker may be drawing.
+                    // 탭 아래에 있는 슬롯만 위에서부터 확인합니다. 탭은 작업자가 그리고 있을 수 있는
+                    // complication drawable 을 강조 표시합니다.
+                    int slotCount = mComplicationLayout.findSlotsAt(x, y, mTapSlotIndices);
+                    if (slotCount > 0) {
+                        discardPreRenderedFrames();
+                    }
+                    for (int i = 0; i < slotCount; i++) {
+                        int complicationId = mComplicationLayout.getSlotId(mTapSlotIndices[i]);
                         ComplicationDrawable complicationDrawable =
                                 mComplicationDrawableSparseArray.get(complicationId);
+                        if (complicationDrawable == null) {
+                            continue;
+                        }
 
                         boolean successfulTap = complicationDrawable.onTap(x, y, eventTime);
 
@@ -473,7 +836,8 @@ public class AnalogComplicationWatchFaceService extends CanvasWatchFaceService {
         @Override
         public void onTimeTick() {
             super.onTimeTick();
-            invalidate();
+            mTimeTickNanos = System.nanoTime();
+            mInvalidationScheduler.request(InvalidationScheduler.REASON_TIME_TICK);
         }
 
         @Override
@@ -481,6 +845,13 @@ public class AnalogComplicationWatchFaceService extends CanvasWatchFaceService {
             super.onAmbientModeChanged(inAmbientMode);
             Log.d(TAG, "onAmbientModeChanged: " + inAmbientMode);
 
+            // The ambient back buffer is only needed in ambient mode, the pipeline's buffers only
+            // in interactive mode.
+            // 주변 모드 백 버퍼는 주변 모드에서만, 파이프라인 버퍼는 대화 형 모드에서만 필요합니다.
+            mAmbientFramePreRenderer.releaseBuffer();
+            mInteractiveFramePipeline.releaseBuffers();
+            mTimeTickNanos = -1;
+
             mAmbient = inAmbientMode;
 
             updateWatchPaintStyles();
@@ -492,8 +863,8 @@ public class AnalogComplicationWatchFaceService extends CanvasWatchFaceService {
             // 참고 : ComplicationDrawable은 활성 / 주변 색상 간의 전환을 처리하므로 주변 모드로 전환하기 위해 알려야합니다.
             ComplicationDrawable complicationDrawable;
 
-            for (int i = 0; i < COMPLICATION_IDS.length; i++) {
-                complicationDrawable = mComplicationDrawableSparseArray.get(COMPLICATION_IDS[i]);
+            for (int i = 0; i < mComplicationIds.length; i++) {
+                complicationDrawable = mComplicationDrawableSparseArray.get(mComplicationIds[i]);
                 complicationDrawable.setInAmbientMode(mAmbient);
             }
 
@@ -532,21 +903,39 @@ public class AnalogComplicationWatchFaceService extends CanvasWatchFaceService {
 
                 mSecondAndHighlightPaint.setColor(mWatchHandHighlightColor);
 
-                mHourPaint.setAntiAlias(true);
-                mMinutePaint.setAntiAlias(true);
-                mSecondAndHighlightPaint.setAntiAlias(true);
-                mTickAndCirclePaint.setAntiAlias(true);
-
-                mHourPaint.setShadowLayer(SHADOW_RADIUS, 0, 0, mWatchHandShadowColor);
-                mMinutePaint.setShadowLayer(SHADOW_RADIUS, 0, 0, mWatchHandShadowColor);
-                mSecondAndHighlightPaint.setShadowLayer(SHADOW_RADIUS, 0, 0, mWatchHandShadowColor);
-                mTickAndCirclePaint.setShadowLayer(SHADOW_RADIUS, 0, 0, mWatchHandShadowColor);
+                // Anti-aliasing and shadows may have been turned off by the quality governor.
+                // 안티 앨리어싱과 그림자는 품질 조정기에 의해 꺼져 있을 수 있습니다.
+                boolean antiAlias = mQualityGovernor.isAntiAliasEnabled();
+                mHourPaint.setAntiAlias(antiAlias);
+                mMinutePaint.setAntiAlias(antiAlias);
+                mSecondAndHighlightPaint.setAntiAlias(antiAlias);
+                mTickAndCirclePaint.setAntiAlias(antiAlias);
+
+                if (mQualityGovernor.isShadowEnabled()) {
+                    mHourPaint.setShadowLayer(SHADOW_RADIUS, 0, 0, mWatchHandShadowColor);
+                    mMinutePaint.setShadowLayer(SHADOW_RADIUS, 0, 0, mWatchHandShadowColor);
+                    mSecondAndHighlightPaint.setShadowLayer(
+                            SHADOW_RADIUS, 0, 0, mWatchHandShadowColor);
+                    mTickAndCirclePaint.setShadowLayer(SHADOW_RADIUS, 0, 0, mWatchHandShadowColor);
+                } else {
+                    mHourPaint.clearShadowLayer();
+                    mMinutePaint.clearShadowLayer();
+                    mSecondAndHighlightPaint.clearShadowLayer();
+                    mTickAndCirclePaint.clearShadowLayer();
+                }
             }
+
+            // Every layer depends on the paints or the ambient state.
+            // 모든 레이어는 페인트 또는 주변 상태에 따라 달라집니다.
+            mLayerCompositor.invalidateAll();
+            updateDialLayerCache();
+            updateHandSprites();
         }
 
         @Override
         public void onInterruptionFilterChanged(int interruptionFilter) {
             super.onInterruptionFilterChanged(interruptionFilter);
+            discardPreRenderedFrames();
             boolean inMuteMode = (interruptionFilter == WatchFaceService.INTERRUPTION_FILTER_NONE);
 
             /* Dim display in mute mode. */
@@ -556,7 +945,15 @@ public class AnalogComplicationWatchFaceService extends CanvasWatchFaceService {
                 mHourPaint.setAlpha(inMuteMode ? 100 : 255);
                 mMinutePaint.setAlpha(inMuteMode ? 100 : 255);
                 mSecondAndHighlightPaint.setAlpha(inMuteMode ? 80 : 255);
-                invalidate();
+                updateHandSprites();
+                mLayerCompositor.invalidateLayer(LAYER_UNREAD);
+                mLayerCompositor.invalidateLayer(LAYER_HOUR_MINUTE_HANDS);
+                mLayerCompositor.invalidateLayer(LAYER_SECOND_HAND);
+                mInvalidationScheduler.request(InvalidationScheduler.REASON_SETTINGS);
+
+                // Mute mode ticks once a second instead of sweeping.
+                // 음소거 모드는 부드럽게 움직이는 대신 1 초에 한 번 움직입니다.
+                updateTimer();
             }
         }
 
@@ -564,6 +961,17 @@ public class AnalogComplicationWatchFaceService extends CanvasWatchFaceService {
         public void onSurfaceChanged(SurfaceHolder holder, int format, int width, int height) {
             super.onSurfaceChanged(holder, format, width, height);
 
+            // Stop the workers before any buffer they render from is recycled.
+            // 작업자가 렌더링에 사용하는 버퍼를 재활용하기 전에 작업자를 멈춥니다.
+            discardPreRenderedFrames();
+            mAmbientFramePreRenderer.setSize(width, height);
+            mInteractiveFramePipeline.setSize(width, height);
+
+            mSurfaceWidth = width;
+            mSurfaceHeight = height;
+            mLayerCompositor.setSize(width, height);
+            mBackgroundImageLoader.setSize(width, height);
+
             /*
              * Find the coordinates of the center point on the screen, and ignore the window
              * insets, so that, on round watches with a "chin", the watch face is centered on the
@@ -583,81 +991,265 @@ public class AnalogComplicationWatchFaceService extends CanvasWatchFaceService {
             mHourHandLength = (float) (mCenterX * 0.5);
 
             /*
-             * Calculates location bounds for right and left circular complications. Please note,
-             * 오른쪽 및 왼쪽 순환 합병증의 위치 범위를 계산합니다. 유의하시기 바랍니다,
-             * we are not demonstrating a long text complication in this watch face.
-             * 우리는이 시계면에서 긴 텍스트 complication을 시연하지 않습니다.
-             * 
-             * We suggest using at least 1/4 of the screen width for circular (or squared)
-             * complications and 2/3 of the screen width for wide rectangular complications for
-             * better readability.
-             * 원형 (또는 제곱) 값에 대해 화면 너비의 1/4 이상을 사용하는 것이 좋습니다.
-             * 합병증 및 화면 너비의 2/3을 가독성을 위해 넓은 직사각형 합병증의 경우.
+             * Positions every complication slot. The bounds are computed once per surface size
+             * from the fractions in R.xml.analog_complication_slots.
+             * 모든 complication 슬롯을 배치합니다. 경계는 R.xml.analog_complication_slots 의
+             * 비율에서 표면 크기마다 한 번 계산됩니다.
              */
+            mComplicationLayout.setSize(width, height);
+            for (int i = 0; i < mComplicationLayout.getSlotCount(); i++) {
+                ComplicationDrawable complicationDrawable =
+                        mComplicationDrawableSparseArray.get(mComplicationLayout.getSlotId(i));
+                if (complicationDrawable != null) {
+                    mComplicationLayout.getBounds(i, mSlotBounds);
+                    complicationDrawable.setBounds(mSlotBounds);
+                }
+            }
+
+            updateDialLayerCache();
+            updateHandSprites();
+        }
+
+        @Override
+        public void invalidate() {
+            mInvalidationScheduler.request(InvalidationScheduler.REASON_OTHER);
+        }
 
-            // For most Wear devices, width and height are the same, so we just chose one (width).
-            // 대부분의 Wear 장치의 너비와 높이가 동일하므로 하나 (너비)를 선택했습니다.
-            int sizeOfComplication = width / 4;
-            int midpointOfScreen = width / 2;
-
-            int horizontalOffset = (midpointOfScreen - sizeOfComplication) / 2;
-            int verticalOffset = midpointOfScreen - (sizeOfComplication / 2);
-
-            Rect leftBounds =
-                    // Left, Top, Right, Bottom
-                    // 왼쪽, 위쪽, 오른쪽, 아래쪽
-                    new Rect(
-                            horizontalOffset,
-                            verticalOffset,
-                            (horizontalOffset + sizeOfComplication),
-                            (verticalOffset + sizeOfComplication));
-
-            ComplicationDrawable leftComplicationDrawable =
-                    mComplicationDrawableSparseArray.get(LEFT_COMPLICATION_ID);
-            leftComplicationDrawable.setBounds(leftBounds);
-
-            Rect rightBounds =
-                    // Left, Top, Right, Bottom
-                    // 왼쪽, 위쪽, 오른쪽, 아래쪽
-                    new Rect(
-                            (midpointOfScreen + horizontalOffset),
-                            verticalOffset,
-                            (midpointOfScreen + horizontalOffset + sizeOfComplication),
-                            (verticalOffset + sizeOfComplication));
-
-            ComplicationDrawable rightComplicationDrawable =
-                    mComplicationDrawableSparseArray.get(RIGHT_COMPLICATION_ID);
-            rightComplicationDrawable.setBounds(rightBounds);
-
-            Rect screenForBackgroundBound =
-                    // Left, Top, Right, Bottom
-                    // 왼쪽, 위쪽, 오른쪽, 아래쪽
-                    new Rect(0, 0, width, height);
-
-            ComplicationDrawable backgroundComplicationDrawable =
-                    mComplicationDrawableSparseArray.get(BACKGROUND_COMPLICATION_ID);
-            backgroundComplicationDrawable.setBounds(screenForBackgroundBound);
+        @Override // InvalidationScheduler.Target
+        public void onScheduleFrame() {
+            // Called by the superclass before onCreate, when there is no drawer yet.
+            // 드로어가 아직 없는 onCreate 이전에 슈퍼 클래스에 의해 호출됩니다.
+            if (mHardwareCanvasDrawer == null
+                    || !mHardwareCanvasDrawer.isEnabled()
+                    || !mHardwareCanvasDrawer.invalidate(getSurfaceHolder(), mOnVsync)) {
+                super.invalidate();
+            }
+        }
+
+        @Override
+        public void onSurfaceRedrawNeeded(SurfaceHolder holder) {
+            if (!mHardwareCanvasDrawer.draw(holder)) {
+                super.onSurfaceRedrawNeeded(holder);
+            }
         }
 
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
+            mFrameTimeStats.beginFrame();
+            mInvalidationScheduler.beginFrame();
+
             long now = System.currentTimeMillis();
-            mCalendar.setTimeInMillis(now);
+            long minuteMillis = TimeUnit.MINUTES.toMillis(1);
+            long minuteStart = now - now % minuteMillis;
+
+            // In interactive mode, the worker may have rendered this frame already: the one for
+            // this second, or, while sweeping, one within half a frame of now. Drawing it takes
+            // no lock; composing the frame here instead holds the state lock, and so waits for a
+            // render in progress.
+            // 대화 형 모드에서는 작업자가 이 프레임을 이미 렌더링했을 수 있습니다. 이 초의 프레임,
+            // 또는 움직이는 동안에는 지금부터 반 프레임 이내의 프레임입니다. 그것을 그리는 데는
+            // 잠금이 필요 없습니다. 대신 여기서 프레임을 합성하면 상태 잠금을 잡으므로 렌더링
+            // 중인 프레임을 기다립니다.
+            boolean pipelined = false;
+            long nextFrameMillis = 0;
+            if (!mAmbient && mPipelineInteractiveFrames) {
+                if (mSweepFrameClock.isRunning()) {
+                    long frameMillis = TimeUnit.SECONDS.toMillis(1) / SMOOTH_SWEEP_MAX_FPS;
+                    pipelined = mInteractiveFramePipeline.drawFrame(
+                            canvas, now - frameMillis / 2, now + frameMillis / 2);
+                    nextFrameMillis = now + frameMillis;
+                } else {
+                    long secondStart = now - now % INTERACTIVE_UPDATE_RATE_MS;
+                    pipelined = mInteractiveFramePipeline.drawFrame(
+                            canvas, secondStart, secondStart);
+                    nextFrameMillis = secondStart + INTERACTIVE_UPDATE_RATE_MS;
+                }
+            }
 
-            drawBackground(canvas);
-            drawComplications(canvas, now);
-            drawUnreadNotificationIcon(canvas);
-            drawWatchFace(canvas);
+            // In ambient mode, the frame for this minute may already have been rendered in the
+            // background, unless a complication changed since.
+            // 주변 모드에서는 이 분의 프레임이 이미 백그라운드에서 렌더링되었을 수 있습니다
+            // (그 이후 complication 이 바뀌지 않은 경우).
+            boolean preRendered = pipelined;
+            if (!pipelined) {
+                synchronized (mAmbientFramePreRenderer.getLock()) {
+                    preRendered = mAmbient
+                            && !mComplicationRenderCache.isStale(now)
+                            && mAmbientFramePreRenderer.drawFrame(canvas, minuteStart);
+                    if (!preRendered) {
+                        composeFrame(canvas, now);
+                    }
+                }
+            }
+            if (mAmbient && PRERENDER_AMBIENT_FRAMES) {
+                mAmbientFramePreRenderer.scheduleFrame(minuteStart + minuteMillis);
+            } else if (!mAmbient && mPipelineInteractiveFrames && isVisible()) {
+                mInteractiveFramePipeline.scheduleFrame(nextFrameMillis);
+            }
+
+            // Pipelined frames are rendered on the worker, so only composed frames tell the
+            // governor how expensive a frame is.
+            // 파이프라인 프레임은 작업자에서 렌더링되므로 합성 된 프레임만 프레임 비용을
+            // 조정기에 알려줍니다.
+            long frameNanos = mFrameTimeStats.endFrame();
+            if (!mAmbient) {
+                if (pipelined) {
+                    mPipelinedFrameStats.record(frameNanos);
+                } else {
+                    mComposedFrameStats.record(frameNanos);
+                    mQualityGovernor.record(frameNanos);
+                }
+            }
+            if (mTapNanos >= 0) {
+                mTapToFrameStats.record(System.nanoTime() - mTapNanos);
+                mTapNanos = -1;
+            }
+
+            if (mFirstCompleteFrameNanos < 0 && hasAllComplicationData()) {
+                mFirstCompleteFrameNanos = System.nanoTime() - mCreateNanos;
+                if (Log.isLoggable(TAG, Log.DEBUG)) {
+                    Log.d(TAG, "First complete frame after "
+                            + TimeUnit.NANOSECONDS.toMillis(mFirstCompleteFrameNanos) + "ms");
+                }
+            }
+
+            if (mTimeTickNanos >= 0) {
+                long tickToFrameNanos = System.nanoTime() - mTimeTickNanos;
+                if (preRendered) {
+                    mPreRenderedTickStats.record(tickToFrameNanos);
+                } else {
+                    mDirectTickStats.record(tickToFrameNanos);
+                }
+                mTimeTickNanos = -1;
+            }
+        }
+
+        private boolean hasAllComplicationData() {
+            for (int i = 0; i < mComplicationIds.length; i++) {
+                if (mActiveComplicationDataSparseArray.get(mComplicationIds[i]) == null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /*
+         * Throws away the frames rendered ahead on other threads, waiting for one being rendered.
+         * Call before changing anything composeFrame draws from; no render starts again until
+         * the next onDraw schedules one.
+         * 다른 스레드에서 미리 렌더링 된 프레임을 버리고, 렌더링 중인 프레임을 기다립니다.
+         * composeFrame 이 그리는 데 쓰는 것을 바꾸기 전에 호출하십시오. 다음 onDraw 가 예약할
+         * 때까지 렌더링은 다시 시작되지 않습니다.
+         */
+        private void discardPreRenderedFrames() {
+            mAmbientFramePreRenderer.discard();
+            mInteractiveFramePipeline.discard();
+        }
+
+        @Override // FramePreRenderer.FrameRenderer
+        public void renderFrame(Canvas canvas, long frameTimeMillis) {
+            composeFrame(canvas, frameTimeMillis);
+        }
+
+        /*
+         * Draws the whole watch face as it looks at the given time. Called on the main thread,
+         * or on the ambient pre-renderer's or the interactive pipeline's thread, always with the
+         * pre-renderer's lock held.
+         * 주어진 시간의 시계 모드 전체를 그립니다. 메인 스레드, 또는 주변 모드 미리 렌더링
+         * 스레드나 대화 형 파이프라인 스레드에서 항상 미리 렌더링 잠금을 잡은 상태로 호출됩니다.
+         */
+        private void composeFrame(Canvas canvas, long now) {
+            mWallClock.setTimeInMillis(now);
+            mCurrentTimeMillis = now;
+
+            // The hands only move when the minute (or, in interactive mode, the second) changes.
+            // Complications are only redrawn when their time-dependent text actually changes.
+            // 바늘은 분 (또는 대화 형 모드에서는 초) 이 바뀔 때만 움직입니다.
+            // complication 은 시간에 따라 바뀌는 텍스트가 실제로 바뀔 때만 다시 그려집니다.
+            long minute = TimeUnit.MILLISECONDS.toMinutes(now);
+            if (minute != mLastDrawnMinute) {
+                mLastDrawnMinute = minute;
+                mLayerCompositor.invalidateLayer(LAYER_HOUR_MINUTE_HANDS);
+            }
+            if (mComplicationRenderCache.isStale(now)) {
+                mLayerCompositor.invalidateLayer(LAYER_COMPLICATIONS);
+            }
+            if (!ComplicationRenderCache.rendersSame(
+                    mActiveComplicationDataSparseArray.get(mBackgroundComplicationId),
+                    mBackgroundRenderedAtMillis, now)) {
+                mLayerCompositor.invalidateLayer(LAYER_BACKGROUND);
+            }
+            long second = TimeUnit.MILLISECONDS.toSeconds(now);
+            if (!mAmbient && (second != mLastDrawnSecond || mSweepFrameClock.isRunning())) {
+                mLastDrawnSecond = second;
+                mLayerCompositor.invalidateLayer(LAYER_SECOND_HAND);
+            }
+
+            // On a hardware canvas, every layer bitmap that changed would be uploaded to the GPU
+            // again, a full-screen texture each second. The GPU draws the layers straight from the
+            // dial, sprite and complication bitmaps, which rarely change, for less.
+            // 하드웨어 캔버스에서는 바뀐 레이어 비트맵마다 매초 전체 화면 텍스처가 GPU 에 다시
+            // 업로드됩니다. GPU 는 거의 바뀌지 않는 눈금, 스프라이트, complication 비트맵에서
+            // 레이어를 직접 더 싸게 그립니다.
+            if (canvas.isHardwareAccelerated()) {
+                for (int layer = 0; layer < LAYER_COUNT; layer++) {
+                    renderLayer(layer, canvas);
+                }
+                // The compositor's buffers were not updated.
+                // 컴포지터의 버퍼는 업데이트되지 않았습니다.
+                mLayerCompositor.invalidateAll();
+            } else if (!mLayerCompositor.draw(canvas)) {
+                // No surface size yet; draw every layer straight onto the canvas.
+                // 아직 표면 크기가 없습니다. 모든 레이어를 캔버스에 직접 그립니다.
+                for (int layer = 0; layer < LAYER_COUNT; layer++) {
+                    renderLayer(layer, canvas);
+                }
+            }
+        }
+
+        @Override // LayerCompositor.LayerRenderer
+        public boolean renderLayer(int layer, Canvas canvas) {
+            switch (layer) {
+                case LAYER_BACKGROUND:
+                    mBackgroundRenderedAtMillis = mCurrentTimeMillis;
+                    drawBackground(canvas);
+                    if (!drawBackgroundImage(canvas)) {
+                        drawComplication(canvas, mBackgroundComplicationId, mCurrentTimeMillis);
+                    }
+                    return true;
+                case LAYER_DIAL:
+                    if (!mDialLayerCache.draw(canvas)) {
+                        DialLayerCache.drawTicks(canvas, mCenterX, mCenterY, mTickAndCirclePaint);
+                    }
+                    return true;
+                case LAYER_COMPLICATIONS:
+                    drawComplications(canvas, mCurrentTimeMillis);
+                    return true;
+                case LAYER_UNREAD:
+                    return drawUnreadNotificationIcon(canvas);
+                case LAYER_HOUR_MINUTE_HANDS:
+                    drawHourAndMinuteHands(canvas);
+                    return true;
+                case LAYER_SECOND_HAND:
+                    drawSecondHandAndCenterCircle(canvas);
+                    return true;
+                default:
+                    return false;
+            }
         }
 
-        private void drawUnreadNotificationIcon(Canvas canvas) {
+        private boolean drawUnreadNotificationIcon(Canvas canvas) {
 
             if (mUnreadNotificationsPreference && (mNumberOfUnreadNotifications > 0)) {
 
                 int width = canvas.getWidth();
                 int height = canvas.getHeight();
+                float centerX = width / 2f;
+                float centerY = height - UNREAD_BOTTOM_OFFSET;
 
-                canvas.drawCircle(width / 2, height - 40, 10, mTickAndCirclePaint);
+                if (!mUnreadRingSprite.draw(canvas, centerX, centerY)) {
+                    canvas.drawCircle(centerX, centerY, UNREAD_RING_RADIUS, mTickAndCirclePaint);
+                }
 
                 /*
                  * Ensure center highlight circle is only drawn in interactive mode. This ensures
@@ -665,10 +1257,81 @@ public class AnalogComplicationWatchFaceService extends CanvasWatchFaceService {
                  * we don't burn the screen with a solid circle in ambient mode.
                  * 우리는 주변 모드에서 화면을 단색 원으로 태우지 않습니다.
                  */
-                if (!mAmbient) {
-                    canvas.drawCircle(width / 2, height - 40, 4, mSecondAndHighlightPaint);
+                if (!mAmbient && !mUnreadDotSprite.draw(canvas, centerX, centerY)) {
+                    canvas.drawCircle(
+                            centerX, centerY, UNREAD_DOT_RADIUS, mSecondAndHighlightPaint);
                 }
+                return true;
             }
+            return false;
+        }
+
+        @Override // QualityGovernor.Listener
+        public void onQualityChanged(int quality) {
+            Log.d(TAG, "onQualityChanged: " + mQualityGovernor.dump());
+            discardPreRenderedFrames();
+            updateWatchPaintStyles();
+            updateTimer();
+        }
+
+        @Override // FrameClock.Callback
+        public void onFrame() {
+            // Already on a vsync, so the hardware canvas can draw right away.
+            // 이미 vsync 중이므로 하드웨어 캔버스는 바로 그릴 수 있습니다.
+            mOnVsync = true;
+            try {
+                mInvalidationScheduler.request(InvalidationScheduler.REASON_ANIMATION);
+            } finally {
+                mOnVsync = false;
+            }
+        }
+
+        @Override
+        protected void dump(String prefix, FileDescriptor fd, PrintWriter out, String[] args) {
+            super.dump(prefix, fd, out, args);
+            out.println(prefix + "onDraw: " + mFrameTimeStats);
+            out.println(prefix + "canvas: " + mHardwareCanvasDrawer.dump());
+            out.println(prefix + "invalidations: " + mInvalidationScheduler.dump());
+            out.println(prefix + "governor: " + mQualityGovernor.dump());
+            out.println(prefix + "layers: " + mLayerCompositor.dump());
+            out.println(prefix + "complications: " + mComplicationRenderCache);
+            out.println(prefix + "complication snapshot: " + mComplicationSnapshotStore.dump());
+            out.println(prefix + "first complete frame: " + (mFirstCompleteFrameNanos < 0
+                    ? "pending" : TimeUnit.NANOSECONDS.toMillis(mFirstCompleteFrameNanos) + "ms"));
+            out.println(prefix + "ambient pre-render: hits="
+                    + mAmbientFramePreRenderer.getHitCount()
+                    + " misses=" + mAmbientFramePreRenderer.getMissCount());
+            out.println(prefix + "interactive pipeline: " + mInteractiveFramePipeline.dump());
+            out.println(prefix + mPipelinedFrameStats);
+            out.println(prefix + mComposedFrameStats);
+            out.println(prefix + mTapToFrameStats);
+            out.println(prefix + mPreRenderedTickStats);
+            out.println(prefix + mDirectTickStats);
+            out.println(prefix + mTickJitterStats);
+            out.println(prefix + mSweepFrameClock.getJitterStats());
+        }
+
+        @Override // BackgroundImageLoader.Listener
+        public void onBackgroundImageReplacing() {
+            discardPreRenderedFrames();
+        }
+
+        @Override // BackgroundImageLoader.Listener
+        public void onBackgroundImageReady() {
+            discardPreRenderedFrames();
+            mLayerCompositor.invalidateLayer(LAYER_BACKGROUND);
+            mInvalidationScheduler.request(InvalidationScheduler.REASON_COMPLICATION);
+        }
+
+        /*
+         * Draws the pre-scaled background image, if one is ready. Low-bit and burn-in ambient
+         * modes get the variant with only sparse, fully on pixels.
+         * 미리 크기가 조정 된 배경 이미지가 준비되어 있으면 그립니다. 저 비트 및 번인 주변 모드는
+         * 완전히 켜진 픽셀만 드문드문 있는 변형을 그립니다.
+         */
+        private boolean drawBackgroundImage(Canvas canvas) {
+            return mBackgroundImageLoader.draw(
+                    canvas, mAmbient, mLowBitAmbient || mBurnInProtection);
         }
 
         private void drawBackground(Canvas canvas) {
@@ -681,55 +1344,84 @@ public class AnalogComplicationWatchFaceService extends CanvasWatchFaceService {
             }
         }
 
+        /*
+         * Draws the foreground complications. The background complication has its own layer.
+         * 전경 complication 을 그립니다. 배경 complication 은 자체 레이어가 있습니다.
+         */
         private void drawComplications(Canvas canvas, long currentTimeMillis) {
             int complicationId;
-            ComplicationDrawable complicationDrawable;
-
-            for (int i = 0; i < COMPLICATION_IDS.length; i++) {
-                complicationId = COMPLICATION_IDS[i];
-                complicationDrawable = mComplicationDrawableSparseArray.get(complicationId);
 
-                complicationDrawable.draw(canvas, currentTimeMillis);
+            mComplicationRenderCache.setAmbientState(mAmbient, mLowBitAmbient, mBurnInProtection);
+            for (int i = 0; i < mComplicationIds.length; i++) {
+                complicationId = mComplicationIds[i];
+                if (complicationId != mBackgroundComplicationId) {
+                    mComplicationRenderCache.draw(
+                            canvas,
+                            complicationId,
+                            mComplicationDrawableSparseArray.get(complicationId),
+                            mActiveComplicationDataSparseArray.get(complicationId),
+                            currentTimeMillis);
+                }
             }
         }
 
-        private void drawWatchFace(Canvas canvas) {
-            /*
-             * Draw ticks. Usually you will want to bake this directly into the photo, but in
-             * cases where you want to allow users to select their own photos, this dynamically
-             * creates them on top of the photo.
-             * 일반적으로 사진에 직접 굽고 싶지만
-             * 사용자가 자신의 사진을 선택할 수있게하려는 경우에는 사진 위에 동적으로 생성됩니다.
-             */
-            float innerTickRadius = mCenterX - 10;
-            float outerTickRadius = mCenterX;
-            for (int tickIndex = 0; tickIndex < 12; tickIndex++) {
-                float tickRot = (float) (tickIndex * Math.PI * 2 / 12);
-                float innerX = (float) Math.sin(tickRot) * innerTickRadius;
-                float innerY = (float) -Math.cos(tickRot) * innerTickRadius;
-                float outerX = (float) Math.sin(tickRot) * outerTickRadius;
-                float outerY = (float) -Math.cos(tickRot) * outerTickRadius;
-                canvas.drawLine(
-                        mCenterX + innerX,
-                        mCenterY + innerY,
-                        mCenterX + outerX,
-                        mCenterY + outerY,
-                        mTickAndCirclePaint);
+        private void drawComplication(Canvas canvas, int complicationId, long currentTimeMillis) {
+            ComplicationDrawable complicationDrawable =
+                    mComplicationDrawableSparseArray.get(complicationId);
+            if (complicationDrawable != null) {
+                complicationDrawable.draw(canvas, currentTimeMillis);
             }
+        }
 
+        private void drawHourAndMinuteHands(Canvas canvas) {
             /*
              * These calculations reflect the rotation in degrees per unit of time, e.g.,
              * 360 / 60 = 6 and 360 / 12 = 30.
              * 이러한 계산은 360 / 60 = 6 및 360 / 12 = 30과 같이 단위 시간당 각도로 회전을 반영합니다.
              */
-            final float seconds =
-                    (mCalendar.get(Calendar.SECOND) + mCalendar.get(Calendar.MILLISECOND) / 1000f);
+            final float minutesRotation = mWallClock.getMinute() * 6f;
+
+            final float hourHandOffset = mWallClock.getMinute() / 2f;
+            final float hoursRotation = (mWallClock.getHour() * 30) + hourHandOffset;
+
+            drawHand(canvas, mHourHandSprite, hoursRotation, mHourHandLength, mHourPaint);
+            drawHand(canvas, mMinuteHandSprite, minutesRotation, mMinuteHandLength, mMinutePaint);
+        }
+
+        private void drawSecondHandAndCenterCircle(Canvas canvas) {
+            // Without the sweep, the hand sits exactly on each second.
+            // 스윕이 없으면 바늘은 정확히 각 초에 놓입니다.
+            final float seconds = mSmoothSweep && mQualityGovernor.isSweepEnabled()
+                    ? mWallClock.getSecond() + mWallClock.getMillisecond() / 1000f
+                    : mWallClock.getSecond();
             final float secondsRotation = seconds * 6f;
 
-            final float minutesRotation = mCalendar.get(Calendar.MINUTE) * 6f;
+            /*
+             * Ensure the "seconds" hand is drawn only when we are in interactive mode.
+             * 대화 형 모드 일 때만 "초"가 그려지는지 확인하십시오.
+             * Otherwise, we only update the watch face once a minute.
+             * 그렇지 않은 경우 1 분에 한 번만 시계 모드를 업데이트합니다.
+             */
+            if (!mAmbient) {
+                drawHand(canvas, mSecondHandSprite, secondsRotation, mSecondHandLength,
+                        mSecondAndHighlightPaint);
+            }
+            if (!mCenterCircleSprite.draw(canvas, mCenterX, mCenterY)) {
+                canvas.drawCircle(
+                        mCenterX, mCenterY, CENTER_GAP_AND_CIRCLE_RADIUS, mTickAndCirclePaint);
+            }
+        }
 
-            final float hourHandOffset = mCalendar.get(Calendar.MINUTE) / 2f;
-            final float hoursRotation = (mCalendar.get(Calendar.HOUR) * 30) + hourHandOffset;
+        /*
+         * Draws one hand rotated clockwise by the given degrees, from its pre-rendered sprite if
+         * there is one.
+         * 미리 렌더링 된 스프라이트가 있으면 그것을 사용하여 바늘 하나를 주어진 각도만큼 시계 방향으로 회전하여 그립니다.
+         */
+        private void drawHand(
+                Canvas canvas, HandSprite sprite, float rotation, float length, Paint paint) {
+            if (sprite.draw(canvas, rotation, mCenterX, mCenterY)) {
+                return;
+            }
 
             /*
              * Save the canvas state before we can begin to rotate it.
@@ -737,39 +1429,13 @@ public class AnalogComplicationWatchFaceService extends CanvasWatchFaceService {
              */
             canvas.save();
 
-            canvas.rotate(hoursRotation, mCenterX, mCenterY);
+            canvas.rotate(rotation, mCenterX, mCenterY);
             canvas.drawLine(
                     mCenterX,
                     mCenterY - CENTER_GAP_AND_CIRCLE_RADIUS,
                     mCenterX,
-                    mCenterY - mHourHandLength,
-                    mHourPaint);
-
-            canvas.rotate(minutesRotation - hoursRotation, mCenterX, mCenterY);
-            canvas.drawLine(
-                    mCenterX,
-                    mCenterY - CENTER_GAP_AND_CIRCLE_RADIUS,
-                    mCenterX,
-                    mCenterY - mMinuteHandLength,
-                    mMinutePaint);
-
-            /*
-             * Ensure the "seconds" hand is drawn only when we are in interactive mode.
-             * 대화 형 모드 일 때만 "초"가 그려지는지 확인하십시오.
-             * Otherwise, we only update the watch face once a minute.
-             * 그렇지 않은 경우 1 분에 한 번만 시계 모드를 업데이트합니다.
-             */
-            if (!mAmbient) {
-                canvas.rotate(secondsRotation - minutesRotation, mCenterX, mCenterY);
-                canvas.drawLine(
-                        mCenterX,
-                        mCenterY - CENTER_GAP_AND_CIRCLE_RADIUS,
-                        mCenterX,
-                        mCenterY - mSecondHandLength,
-                        mSecondAndHighlightPaint);
-            }
-            canvas.drawCircle(
-                    mCenterX, mCenterY, CENTER_GAP_AND_CIRCLE_RADIUS, mTickAndCirclePaint);
+                    mCenterY - length,
+                    paint);
 
             /* Restore the canvas' original orientation. */
             /* 캔버스의 원래 방향을 복원합니다. */
@@ -779,6 +1445,7 @@ public class AnalogComplicationWatchFaceService extends CanvasWatchFaceService {
         @Override
         public void onVisibilityChanged(boolean visible) {
             super.onVisibilityChanged(visible);
+            discardPreRenderedFrames();
 
             if (visible) {
 
@@ -800,10 +1467,11 @@ public class AnalogComplicationWatchFaceService extends CanvasWatchFaceService {
                 registerReceiver();
                 // Update time zone in case it changed while we weren't visible.
                 // 표시되지 않는 동안 변경된 경우 시간대를 업데이트하십시오.
-                mCalendar.setTimeZone(TimeZone.getDefault());
+                mWallClock.setTimeZone(TimeZone.getDefault());
                 invalidate();
             } else {
                 unregisterReceiver();
+                mInteractiveFramePipeline.releaseBuffers();
             }
 
             /* Check and trigger whether or not timer should be running (only in active mode). */
@@ -815,11 +1483,14 @@ public class AnalogComplicationWatchFaceService extends CanvasWatchFaceService {
         public void onUnreadCountChanged(int count) {
             Log.d(TAG, "onUnreadCountChanged(): " + count);
 
+            discardPreRenderedFrames();
+
             if (mUnreadNotificationsPreference) {
 
                 if (mNumberOfUnreadNotifications != count) {
                     mNumberOfUnreadNotifications = count;
-                    invalidate();
+                    mLayerCompositor.invalidateLayer(LAYER_UNREAD);
+                    mInvalidationScheduler.request(InvalidationScheduler.REASON_UNREAD);
                 }
             }
         }
@@ -847,11 +1518,25 @@ public class AnalogComplicationWatchFaceService extends CanvasWatchFaceService {
          */
         private void updateTimer() {
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
+            mNextTickMillis = -1;
+            mSweepFrameClock.stop();
             if (shouldTimerBeRunning()) {
-                mUpdateTimeHandler.sendEmptyMessage(MSG_UPDATE_TIME);
+                if (shouldSweep()) {
+                    mSweepFrameClock.start();
+                } else {
+                    mUpdateTimeHandler.sendEmptyMessage(MSG_UPDATE_TIME);
+                }
             }
         }
 
+        /*
+         * Returns whether the second hand should sweep smoothly instead of ticking once a second.
+         * 초침이 1 초에 한 번 움직이는 대신 부드럽게 움직여야 하는지 여부를 돌려줍니다.
+         */
+        private boolean shouldSweep() {
+            return mSmoothSweep && !mMuteMode && mQualityGovernor.isSweepEnabled();
+        }
+
         /**
          * Returns whether the {@link #mUpdateTimeHandler} timer should be running.
          * {@link #mUpdateTimeHandler} 타이머가 실행되고 있을지 어떨지를 돌려줍니다.
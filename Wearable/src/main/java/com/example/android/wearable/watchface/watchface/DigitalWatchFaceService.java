@@ -47,12 +47,24 @@ import com.google.android.gms.wearable.DataMap;
 import com.google.android.gms.wearable.DataMapItem;
 import com.google.android.gms.wearable.Wearable;
 
+import com.example.android.wearable.watchface.util.CellFrame;
+import com.example.android.wearable.watchface.util.DateLines;
+import com.example.android.wearable.watchface.util.DigitText;
 import com.example.android.wearable.watchface.util.DigitalWatchFaceUtil;
+import com.example.android.wearable.watchface.util.FrameTimeStats;
+import com.example.android.wearable.watchface.util.GlyphAtlas;
+import com.example.android.wearable.watchface.util.HardwareCanvasDrawer;
+import com.example.android.wearable.watchface.util.HourFormatSetting;
+import com.example.android.wearable.watchface.util.InvalidationScheduler;
+import com.example.android.wearable.watchface.util.QualityGovernor;
+import com.example.android.wearable.watchface.util.WallClock;
+import com.example.android.wearable.watchface.util.WorldClockRows;
 import com.example.android.wearable.watchface.R;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
-import java.util.Date;
 import java.util.Locale;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
@@ -86,13 +98,25 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
      */
     private static final long MUTE_UPDATE_RATE_MS = TimeUnit.MINUTES.toMillis(1);
 
+    /**
+     * Average interactive frame time above which the quality governor turns off anti-aliasing.
+     */
+    private static final long FRAME_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(16);
+
+    /**
+     * Largest glyph atlas for ambient mode, in bytes. The atlas holds one byte per pixel, and the
+     * digits, colon and AM/PM of this face take well under half of this on common screens.
+     */
+    private static final int GLYPH_ATLAS_MAX_BYTES = 256 * 1024;
+
     @Override
     public Engine onCreateEngine() {
         return new Engine();
     }
 
     private class Engine extends CanvasWatchFaceService.Engine implements DataApi.DataListener,
-            GoogleApiClient.ConnectionCallbacks, GoogleApiClient.OnConnectionFailedListener {
+            GoogleApiClient.ConnectionCallbacks, GoogleApiClient.OnConnectionFailedListener,
+            QualityGovernor.Listener, HardwareCanvasDrawer.Target, InvalidationScheduler.Target {
         static final String COLON_STRING = ":";
 
         /** Alpha value for drawing time when in mute mode. */
@@ -103,6 +127,34 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
 
         static final int MSG_UPDATE_TIME = 0;
 
+        /** Cells of {@link #mCellFrame}. */
+        static final int CELL_HOUR = 0;
+        static final int CELL_FIRST_COLON = 1;
+        static final int CELL_MINUTE = 2;
+        static final int CELL_SECOND_COLON = 3;
+        static final int CELL_SECOND = 4;
+        static final int CELL_AM_PM = 5;
+        static final int CELL_DAY_OF_WEEK = 6;
+        static final int CELL_DATE = 7;
+        static final int CELL_FIRST_WORLD_CLOCK = 8;
+        static final int CELL_COUNT = CELL_FIRST_WORLD_CLOCK + WorldClockRows.MAX_ZONES;
+
+        /** Time spent in onDraw, logged when {@link #TAG} is loggable at DEBUG. */
+        final FrameTimeStats mFrameTimeStats = new FrameTimeStats(TAG, "onDraw");
+
+        /**
+         * Turns anti-aliasing off when frames get too slow. This face has no shadows or sweeping
+         * hands, so that is the only level that changes anything here.
+         */
+        final QualityGovernor mQualityGovernor =
+                new QualityGovernor(TAG, FRAME_BUDGET_NANOS, this);
+
+        /** Draws through a hardware canvas when {@code R.bool.use_hardware_canvas} is set. */
+        HardwareCanvasDrawer mHardwareCanvasDrawer;
+
+        /** Coalesces redraw requests into one frame and counts them by reason. */
+        final InvalidationScheduler mInvalidationScheduler = new InvalidationScheduler(this);
+
         /** How often {@link #mUpdateTimeHandler} ticks in milliseconds. */
         long mInteractiveUpdateRateMs = NORMAL_UPDATE_RATE_MS;
 
@@ -115,7 +167,7 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
                         if (Log.isLoggable(TAG, Log.VERBOSE)) {
                             Log.v(TAG, "updating time");
                         }
-                        invalidate();
+                        mInvalidationScheduler.request(InvalidationScheduler.REASON_TIMER);
                         if (shouldTimerBeRunning()) {
                             long timeMs = System.currentTimeMillis();
                             long delayMs =
@@ -140,8 +192,22 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
             @Override
             public void onReceive(Context context, Intent intent) {
                 mCalendar.setTimeZone(TimeZone.getDefault());
+                mWallClock.setTimeZone(TimeZone.getDefault());
+                mWorldClockRows.invalidate();
+                initFormats();
+                mInvalidationScheduler.request(InvalidationScheduler.REASON_TIME_ZONE);
+            }
+        };
+
+        /**
+         * Handles changes to the 12/24-hour setting, so that {@link #onDraw} does not have to look
+         * it up in the settings provider on every frame.
+         */
+        final HourFormatSetting.Listener mHourFormatListener = new HourFormatSetting.Listener() {
+            @Override
+            public void onHourFormatChanged(boolean is24Hour) {
                 initFormats();
-                invalidate();
+                mInvalidationScheduler.request(InvalidationScheduler.REASON_SETTINGS);
             }
         };
 
@@ -159,17 +225,65 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
         Paint mAmPmPaint;
         Paint mColonPaint;
         float mColonWidth;
+
+        /** Widths of {@link #mAmString} and {@link #mPmString}, measured with the text size. */
+        float mAmWidth;
+        float mPmWidth;
+
+        /** Draw the digits of the hour, minute and second paints without allocating. */
+        DigitText mHourDigits;
+        DigitText mMinuteDigits;
+        DigitText mSecondDigits;
+
+        /**
+         * Digits, colon and AM/PM rasterized once, so that ambient frames are drawn as blits.
+         * Rebuilt when the text size, typeface or anti-aliasing of the paints changes.
+         */
+        final GlyphAtlas mGlyphAtlas = new GlyphAtlas(TAG, GLYPH_ATLAS_MAX_BYTES);
+        int mHourGlyphs;
+        int mMinuteGlyphs;
+        int mColonGlyphs;
+        int mAmPmGlyphs;
         boolean mMute;
 
         Calendar mCalendar;
-        Date mDate;
-        SimpleDateFormat mDayOfWeekFormat;
-        java.text.DateFormat mDateFormat;
+        WallClock mWallClock;
+        HourFormatSetting mHourFormatSetting;
+        boolean mIs24Hour;
+
+        /** The day of week and date lines, formatted and measured once per local day. */
+        DateLines mDateLines;
+
+        /** Extra time zones from the config, drawn below the date lines. */
+        WorldClockRows mWorldClockRows;
+
+        /**
+         * Right edge of the screen along each world clock row that fits, so that a row too long
+         * for a round screen is skipped rather than clipped. Set by {@link #fitWorldClockRows}.
+         */
+        final float[] mWorldClockRowRight = new float[WorldClockRows.MAX_ZONES];
+
+        boolean mIsRound;
+        int mSurfaceWidth;
+        int mSurfaceHeight;
 
         boolean mShouldDrawColons;
         float mXOffset;
         float mYOffset;
         float mLineHeight;
+
+        /**
+         * Keeps the last interactive frame, so that a tick only repaints the text that changed,
+         * usually a colon or the seconds. Not used with a hardware canvas, where text is cheap and
+         * uploading the whole frame is not.
+         */
+        CellFrame mCellFrame;
+
+        /** Extent of the time and date lines around their baselines, for {@link #mCellFrame}. */
+        float mTimeLineTop;
+        float mTimeLineBottom;
+        float mDateLineTop;
+        float mDateLineBottom;
         String mAmString;
         String mPmString;
         int mInteractiveBackgroundColor =
@@ -194,6 +308,9 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
             }
             super.onCreate(holder);
 
+            mHardwareCanvasDrawer = new HardwareCanvasDrawer(TAG,
+                    getResources().getBoolean(R.bool.use_hardware_canvas), this);
+
             setWatchFaceStyle(new WatchFaceStyle.Builder(DigitalWatchFaceService.this)
                     .setCardPeekMode(WatchFaceStyle.PEEK_MODE_VARIABLE)
                     .setBackgroundVisibility(WatchFaceStyle.BACKGROUND_VISIBILITY_INTERRUPTIVE)
@@ -207,6 +324,7 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
 
             mBackgroundPaint = new Paint();
             mBackgroundPaint.setColor(mInteractiveBackgroundColor);
+            mCellFrame = new CellFrame(TAG, CELL_COUNT, mBackgroundPaint);
             mDatePaint = createTextPaint(
                     ContextCompat.getColor(getApplicationContext(), R.color.digital_date));
             mHourPaint = createTextPaint(mInteractiveHourDigitsColor, BOLD_TYPEFACE);
@@ -216,15 +334,30 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
                     ContextCompat.getColor(getApplicationContext(), R.color.digital_am_pm));
             mColonPaint = createTextPaint(
                     ContextCompat.getColor(getApplicationContext(), R.color.digital_colons));
+            mHourDigits = new DigitText(mHourPaint);
+            mMinuteDigits = new DigitText(mMinutePaint);
+            mSecondDigits = new DigitText(mSecondPaint);
+            mHourGlyphs = mGlyphAtlas.addGlyphSet(mHourPaint, GlyphAtlas.DIGITS);
+            mMinuteGlyphs = mGlyphAtlas.addGlyphSet(mMinutePaint, GlyphAtlas.DIGITS);
+            mColonGlyphs = mGlyphAtlas.addGlyphSet(mColonPaint, COLON_STRING);
+            mAmPmGlyphs = mGlyphAtlas.addGlyphSet(mAmPmPaint, mAmString, mPmString);
 
             mCalendar = Calendar.getInstance();
-            mDate = new Date();
+            mWallClock = new WallClock();
+            mDateLines = new DateLines(TAG, mDatePaint);
+            mWorldClockRows = new WorldClockRows(TAG, mDatePaint, mAmString, mPmString);
+            mHourFormatSetting =
+                    new HourFormatSetting(DigitalWatchFaceService.this, mHourFormatListener);
             initFormats();
         }
 
         @Override
         public void onDestroy() {
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
+            mHardwareCanvasDrawer.cancel();
+            mInvalidationScheduler.cancel();
+            mGlyphAtlas.release();
+            mCellFrame.release();
             super.onDestroy();
         }
 
@@ -254,9 +387,11 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
 
                 // Update time zone and date formats, in case they changed while we weren't visible.
                 mCalendar.setTimeZone(TimeZone.getDefault());
+                mWallClock.setTimeZone(TimeZone.getDefault());
                 initFormats();
             } else {
                 unregisterReceiver();
+                mCellFrame.release();
 
                 if (mGoogleApiClient != null && mGoogleApiClient.isConnected()) {
                     Wearable.DataApi.removeListener(mGoogleApiClient, this);
@@ -269,11 +404,20 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
             updateTimer();
         }
 
+        /**
+         * Reads the date formats again and takes the 12/24-hour setting, and drops the date lines
+         * formatted with the old ones.
+         */
         private void initFormats() {
-            mDayOfWeekFormat = new SimpleDateFormat("EEEE", Locale.getDefault());
-            mDayOfWeekFormat.setCalendar(mCalendar);
-            mDateFormat = DateFormat.getDateFormat(DigitalWatchFaceService.this);
-            mDateFormat.setCalendar(mCalendar);
+            mIs24Hour = mHourFormatSetting.is24Hour();
+            SimpleDateFormat dayOfWeekFormat = new SimpleDateFormat("EEEE", Locale.getDefault());
+            dayOfWeekFormat.setCalendar(mCalendar);
+            java.text.DateFormat dateFormat =
+                    DateFormat.getDateFormat(DigitalWatchFaceService.this);
+            dateFormat.setCalendar(mCalendar);
+            mDateLines.setFormats(dayOfWeekFormat, dateFormat);
+            mWorldClockRows.invalidateText();
+            mCellFrame.invalidate();
         }
 
         private void registerReceiver() {
@@ -284,6 +428,7 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
             IntentFilter filter = new IntentFilter(Intent.ACTION_TIMEZONE_CHANGED);
             filter.addAction(Intent.ACTION_LOCALE_CHANGED);
             DigitalWatchFaceService.this.registerReceiver(mReceiver, filter);
+            mHourFormatSetting.register();
         }
 
         private void unregisterReceiver() {
@@ -292,6 +437,7 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
             }
             mRegisteredReceiver = false;
             DigitalWatchFaceService.this.unregisterReceiver(mReceiver);
+            mHourFormatSetting.unregister();
         }
 
         @Override
@@ -304,6 +450,7 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
             // Load resources that have alternate values for round watches.
             Resources resources = DigitalWatchFaceService.this.getResources();
             boolean isRound = insets.isRound();
+            mIsRound = isRound;
             mXOffset = resources.getDimension(isRound
                     ? R.dimen.digital_x_offset_round : R.dimen.digital_x_offset);
             float textSize = resources.getDimension(isRound
@@ -312,6 +459,8 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
                     ? R.dimen.digital_am_pm_size_round : R.dimen.digital_am_pm_size);
 
             mDatePaint.setTextSize(resources.getDimension(R.dimen.digital_date_text_size));
+            mDateLines.invalidate();
+            mWorldClockRows.invalidateText();
             mHourPaint.setTextSize(textSize);
             mMinutePaint.setTextSize(textSize);
             mSecondPaint.setTextSize(textSize);
@@ -319,6 +468,78 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
             mColonPaint.setTextSize(textSize);
 
             mColonWidth = mColonPaint.measureText(COLON_STRING);
+            mAmWidth = mAmPmPaint.measureText(mAmString);
+            mPmWidth = mAmPmPaint.measureText(mPmString);
+            mHourDigits.updateWidths();
+            mMinuteDigits.updateWidths();
+            mSecondDigits.updateWidths();
+            updateLineExtents();
+            fitWorldClockRows();
+        }
+
+        @Override
+        public void onSurfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+            super.onSurfaceChanged(holder, format, width, height);
+            mSurfaceWidth = width;
+            mSurfaceHeight = height;
+            fitWorldClockRows();
+        }
+
+        /**
+         * Limits the world clock rows to those that are wholly on the screen, i.e. above its
+         * bottom edge and, on a round screen, with their left end inside the circle. Rows below
+         * would never be seen, so they are not formatted either.
+         */
+        private void fitWorldClockRows() {
+            if (mSurfaceWidth == 0 || mSurfaceHeight == 0) {
+                return;
+            }
+            float centerX = mSurfaceWidth / 2f;
+            float centerY = mSurfaceHeight / 2f;
+            float radius = Math.min(mSurfaceWidth, mSurfaceHeight) / 2f;
+            int rows = 0;
+            while (rows < WorldClockRows.MAX_ZONES) {
+                float y = mYOffset + mLineHeight * (3 + rows);
+                float top = y + mDateLineTop;
+                float bottom = y + mDateLineBottom;
+                if (bottom > mSurfaceHeight) {
+                    break;
+                }
+                float right = mSurfaceWidth;
+                if (mIsRound) {
+                    // The row is narrowest at whichever edge is farther from the center.
+                    float dy = Math.max(Math.abs(top - centerY), Math.abs(bottom - centerY));
+                    if (dy >= radius) {
+                        break;
+                    }
+                    float halfChord = (float) Math.sqrt(radius * radius - dy * dy);
+                    if (mXOffset < centerX - halfChord) {
+                        break;
+                    }
+                    right = centerX + halfChord;
+                }
+                mWorldClockRowRight[rows] = right;
+                rows++;
+            }
+            mWorldClockRows.setMaxRows(rows);
+            mCellFrame.invalidate();
+        }
+
+        /** Returns whether a formatted world clock row ends inside the screen. */
+        private boolean worldClockRowFits(int row) {
+            return mXOffset + mWorldClockRows.getWidth(row) <= mWorldClockRowRight[row];
+        }
+
+        /** Measures how far the time and date lines reach above and below their baselines. */
+        private void updateLineExtents() {
+            Paint.FontMetrics hourMetrics = mHourPaint.getFontMetrics();
+            Paint.FontMetrics minuteMetrics = mMinutePaint.getFontMetrics();
+            mTimeLineTop = Math.min(hourMetrics.top, minuteMetrics.top);
+            mTimeLineBottom = Math.max(hourMetrics.bottom, minuteMetrics.bottom);
+            Paint.FontMetrics dateMetrics = mDatePaint.getFontMetrics();
+            mDateLineTop = dateMetrics.top;
+            mDateLineBottom = dateMetrics.bottom;
+            mCellFrame.invalidate();
         }
 
         @Override
@@ -327,6 +548,8 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
 
             boolean burnInProtection = properties.getBoolean(PROPERTY_BURN_IN_PROTECTION, false);
             mHourPaint.setTypeface(burnInProtection ? NORMAL_TYPEFACE : BOLD_TYPEFACE);
+            mHourDigits.updateWidths();
+            updateLineExtents();
 
             mLowBitAmbient = properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false);
 
@@ -342,7 +565,7 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
             if (Log.isLoggable(TAG, Log.DEBUG)) {
                 Log.d(TAG, "onTimeTick: ambient = " + isInAmbientMode());
             }
-            invalidate();
+            mInvalidationScheduler.request(InvalidationScheduler.REASON_TIME_TICK);
         }
 
         @Override
@@ -362,14 +585,9 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
             adjustPaintColorToCurrentMode(mSecondPaint, mInteractiveSecondDigitsColor,
                     DigitalWatchFaceUtil.COLOR_VALUE_DEFAULT_AND_AMBIENT_SECOND_DIGITS);
 
-            if (mLowBitAmbient) {
-                boolean antiAlias = !inAmbientMode;
-                mDatePaint.setAntiAlias(antiAlias);
-                mHourPaint.setAntiAlias(antiAlias);
-                mMinutePaint.setAntiAlias(antiAlias);
-                mSecondPaint.setAntiAlias(antiAlias);
-                mAmPmPaint.setAntiAlias(antiAlias);
-                mColonPaint.setAntiAlias(antiAlias);
+            updateAntiAlias();
+            if (inAmbientMode) {
+                mCellFrame.release();
             }
             invalidate();
 
@@ -402,7 +620,8 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
                 mMinutePaint.setAlpha(alpha);
                 mColonPaint.setAlpha(alpha);
                 mAmPmPaint.setAlpha(alpha);
-                invalidate();
+                mCellFrame.invalidate();
+                mInvalidationScheduler.request(InvalidationScheduler.REASON_SETTINGS);
             }
         }
 
@@ -421,6 +640,7 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
         private void updatePaintIfInteractive(Paint paint, int interactiveColor) {
             if (!isInAmbientMode() && paint != null) {
                 paint.setColor(interactiveColor);
+                mCellFrame.invalidate();
             }
         }
 
@@ -444,42 +664,117 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
             updatePaintIfInteractive(mSecondPaint, color);
         }
 
-        private String formatTwoDigitNumber(int hour) {
-            return String.format("%02d", hour);
-        }
-
         private String getAmPmString(int amPm) {
             return amPm == Calendar.AM ? mAmString : mPmString;
         }
 
+        private float getAmPmWidth(int amPm) {
+            return amPm == Calendar.AM ? mAmWidth : mPmWidth;
+        }
+
+        @Override
+        public void invalidate() {
+            mInvalidationScheduler.request(InvalidationScheduler.REASON_OTHER);
+        }
+
+        @Override // InvalidationScheduler.Target
+        public void onScheduleFrame() {
+            // The superclass invalidates before onCreate, when there is no drawer yet.
+            if (mHardwareCanvasDrawer != null && mHardwareCanvasDrawer.isEnabled()) {
+                mHardwareCanvasDrawer.invalidate(getSurfaceHolder());
+            } else {
+                super.invalidate();
+            }
+        }
+
+        @Override
+        public void onSurfaceRedrawNeeded(SurfaceHolder holder) {
+            if (!mHardwareCanvasDrawer.draw(holder)) {
+                super.onSurfaceRedrawNeeded(holder);
+            }
+        }
+
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
+            mFrameTimeStats.beginFrame();
+            mInvalidationScheduler.beginFrame();
+
             long now = System.currentTimeMillis();
-            mCalendar.setTimeInMillis(now);
-            mDate.setTime(now);
-            boolean is24Hour = DateFormat.is24HourFormat(DigitalWatchFaceService.this);
+            // The time fields come from mWallClock, which avoids recomputing every calendar field
+            // on each frame. The date lines only change at local midnight, see DateLines.
+            mWallClock.setTimeInMillis(now);
 
             // Show colons for the first half of each second so the colons blink on when the time
             // updates.
-            mShouldDrawColons = (System.currentTimeMillis() % 1000) < 500;
+            mShouldDrawColons = (now % 1000) < 500;
+
+            if (!isInAmbientMode() && !canvas.isHardwareAccelerated()) {
+                // Repaint only the cells that changed since the last interactive frame. If one of
+                // them moved, the whole frame is repainted instead.
+                mCellFrame.beginFrame(bounds.width(), bounds.height());
+                drawCells(now);
+                if (!mCellFrame.endFrame()) {
+                    mCellFrame.beginFrame(bounds.width(), bounds.height());
+                    drawCells(now);
+                    mCellFrame.endFrame();
+                }
+                mCellFrame.draw(canvas);
+            } else {
+                // Draw the background.
+                canvas.drawRect(0, 0, bounds.width(), bounds.height(), mBackgroundPaint);
+
+                // In ambient mode, the time is drawn from the glyph atlas if it fits its size
+                // limit.
+                if (isInAmbientMode() && mGlyphAtlas.prepare()) {
+                    drawAmbientTimeFromAtlas(canvas);
+                } else {
+                    drawTime(canvas);
+                }
+
+                // Only render the day of week and date if there is no peek card, so they do not
+                // bleed into each other in ambient mode.
+                if (getPeekCardPosition().isEmpty()) {
+                    mDateLines.update(mWallClock);
+                    // Day of week
+                    canvas.drawText(mDateLines.getDayOfWeek(), mXOffset, mYOffset + mLineHeight,
+                            mDatePaint);
+                    // Date
+                    canvas.drawText(mDateLines.getDate(), mXOffset, mYOffset + mLineHeight * 2,
+                            mDatePaint);
+                    // World clock
+                    mWorldClockRows.update(now, mIs24Hour);
+                    for (int i = 0; i < mWorldClockRows.size(); i++) {
+                        if (!worldClockRowFits(i)) {
+                            continue;
+                        }
+                        canvas.drawText(mWorldClockRows.getText(i), mXOffset,
+                                mYOffset + mLineHeight * (3 + i), mDatePaint);
+                    }
+                }
+            }
 
-            // Draw the background.
-            canvas.drawRect(0, 0, bounds.width(), bounds.height(), mBackgroundPaint);
+            long frameNanos = mFrameTimeStats.endFrame();
+            if (!isInAmbientMode()) {
+                mQualityGovernor.record(frameNanos);
+            }
+        }
 
-            // Draw the hours.
+        /**
+         * Draws the hours, minutes and, depending on the mode, the seconds or AM/PM. The digits are
+         * drawn from precomputed tables with cached widths, so no strings are formatted or measured
+         * here.
+         */
+        private void drawTime(Canvas canvas) {
             float x = mXOffset;
-            String hourString;
-            if (is24Hour) {
-                hourString = formatTwoDigitNumber(mCalendar.get(Calendar.HOUR_OF_DAY));
+            if (mIs24Hour) {
+                x += mHourDigits.drawPadded(canvas, mWallClock.getHourOfDay(), x, mYOffset);
             } else {
-                int hour = mCalendar.get(Calendar.HOUR);
+                int hour = mWallClock.getHour();
                 if (hour == 0) {
                     hour = 12;
                 }
-                hourString = String.valueOf(hour);
+                x += mHourDigits.draw(canvas, hour, x, mYOffset);
             }
-            canvas.drawText(hourString, x, mYOffset, mHourPaint);
-            x += mHourPaint.measureText(hourString);
 
             // In ambient and mute modes, always draw the first colon. Otherwise, draw the
             // first colon for the first half of each second.
@@ -489,9 +784,7 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
             x += mColonWidth;
 
             // Draw the minutes.
-            String minuteString = formatTwoDigitNumber(mCalendar.get(Calendar.MINUTE));
-            canvas.drawText(minuteString, x, mYOffset, mMinutePaint);
-            x += mMinutePaint.measureText(minuteString);
+            x += mMinuteDigits.drawPadded(canvas, mWallClock.getMinute(), x, mYOffset);
 
             // In unmuted interactive mode, draw a second blinking colon followed by the seconds.
             // Otherwise, if we're in 12-hour mode, draw AM/PM
@@ -500,28 +793,202 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
                     canvas.drawText(COLON_STRING, x, mYOffset, mColonPaint);
                 }
                 x += mColonWidth;
-                canvas.drawText(formatTwoDigitNumber(
-                        mCalendar.get(Calendar.SECOND)), x, mYOffset, mSecondPaint);
-            } else if (!is24Hour) {
+                mSecondDigits.drawPadded(canvas, mWallClock.getSecond(), x, mYOffset);
+            } else if (!mIs24Hour) {
                 x += mColonWidth;
                 canvas.drawText(getAmPmString(
-                        mCalendar.get(Calendar.AM_PM)), x, mYOffset, mAmPmPaint);
+                        mWallClock.getAmPm()), x, mYOffset, mAmPmPaint);
+            }
+        }
+
+        /**
+         * Draws what {@link #drawTime} and the date lines draw in interactive mode into
+         * {@link #mCellFrame}, one cell per piece of text. Each cell is only repainted if its
+         * content changed.
+         */
+        private void drawCells(long now) {
+            float top = mYOffset + mTimeLineTop;
+            float bottom = mYOffset + mTimeLineBottom;
+            Canvas canvas;
+
+            float x = mXOffset;
+            int hour = mIs24Hour ? mWallClock.getHourOfDay() : mWallClock.getHour();
+            if (!mIs24Hour && hour == 0) {
+                hour = 12;
+            }
+            float width = mIs24Hour ? mHourDigits.getPaddedWidth(hour) : mHourDigits.getWidth(hour);
+            canvas = mCellFrame.beginCell(CELL_HOUR, hour, x, top, x + width, bottom);
+            if (canvas != null) {
+                if (mIs24Hour) {
+                    mHourDigits.drawPadded(canvas, hour, x, mYOffset);
+                } else {
+                    mHourDigits.draw(canvas, hour, x, mYOffset);
+                }
+                mCellFrame.endCell();
+            }
+            x += width;
+
+            // In mute mode, always draw the first colon.
+            drawColonCell(CELL_FIRST_COLON, mMute || mShouldDrawColons, x, top, bottom);
+            x += mColonWidth;
+
+            int minute = mWallClock.getMinute();
+            width = mMinuteDigits.getPaddedWidth(minute);
+            canvas = mCellFrame.beginCell(CELL_MINUTE, minute, x, top, x + width, bottom);
+            if (canvas != null) {
+                mMinuteDigits.drawPadded(canvas, minute, x, mYOffset);
+                mCellFrame.endCell();
             }
+            x += width;
 
-            // Only render the day of week and date if there is no peek card, so they do not bleed
-            // into each other in ambient mode.
-            if (getPeekCardPosition().isEmpty()) {
-                // Day of week
-                canvas.drawText(
-                        mDayOfWeekFormat.format(mDate),
-                        mXOffset, mYOffset + mLineHeight, mDatePaint);
-                // Date
-                canvas.drawText(
-                        mDateFormat.format(mDate),
-                        mXOffset, mYOffset + mLineHeight * 2, mDatePaint);
+            if (!mMute) {
+                drawColonCell(CELL_SECOND_COLON, mShouldDrawColons, x, top, bottom);
+                x += mColonWidth;
+                int second = mWallClock.getSecond();
+                width = mSecondDigits.getPaddedWidth(second);
+                canvas = mCellFrame.beginCell(CELL_SECOND, second, x, top, x + width, bottom);
+                if (canvas != null) {
+                    mSecondDigits.drawPadded(canvas, second, x, mYOffset);
+                    mCellFrame.endCell();
+                }
+            } else if (!mIs24Hour) {
+                x += mColonWidth;
+                int amPm = mWallClock.getAmPm();
+                String amPmString = getAmPmString(amPm);
+                width = getAmPmWidth(amPm);
+                canvas = mCellFrame.beginCell(CELL_AM_PM, amPm, x, top, x + width, bottom);
+                if (canvas != null) {
+                    canvas.drawText(amPmString, x, mYOffset, mAmPmPaint);
+                    mCellFrame.endCell();
+                }
+            }
+
+            // While a peek card is shown, the date line cells are blank. Their content changes
+            // whenever the lines are formatted again.
+            boolean showDate = getPeekCardPosition().isEmpty();
+            if (showDate) {
+                mDateLines.update(mWallClock);
+            }
+            long dateContent = showDate ? mDateLines.getVersion() : -1;
+            drawDateLineCell(CELL_DAY_OF_WEEK, dateContent,
+                    showDate ? mDateLines.getDayOfWeek() : null,
+                    mDateLines.getDayOfWeekWidth(), mYOffset + mLineHeight);
+            drawDateLineCell(CELL_DATE, dateContent, showDate ? mDateLines.getDate() : null,
+                    mDateLines.getDateWidth(), mYOffset + mLineHeight * 2);
+
+            // The world clock rows change once a minute, all at once.
+            if (showDate) {
+                mWorldClockRows.update(now, mIs24Hour);
+            }
+            long worldClockContent = showDate ? mWorldClockRows.getVersion() : -1;
+            for (int i = 0; i < mWorldClockRows.size(); i++) {
+                drawDateLineCell(CELL_FIRST_WORLD_CLOCK + i, worldClockContent,
+                        showDate && worldClockRowFits(i) ? mWorldClockRows.getText(i) : null,
+                        mWorldClockRows.getWidth(i), mYOffset + mLineHeight * (3 + i));
+            }
+        }
+
+        private void drawColonCell(int cell, boolean visible, float x, float top, float bottom) {
+            Canvas canvas = mCellFrame.beginCell(cell, visible ? 1 : 0, x, top, x + mColonWidth,
+                    bottom);
+            if (canvas != null) {
+                if (visible) {
+                    canvas.drawText(COLON_STRING, x, mYOffset, mColonPaint);
+                }
+                mCellFrame.endCell();
+            }
+        }
+
+        private void drawDateLineCell(int cell, long content, String line, float width,
+                float y) {
+            Canvas canvas = mCellFrame.beginCell(cell, content, mXOffset, y + mDateLineTop,
+                    mXOffset + width, y + mDateLineBottom);
+            if (canvas != null) {
+                if (line != null) {
+                    canvas.drawText(line, mXOffset, y, mDatePaint);
+                }
+                mCellFrame.endCell();
             }
         }
 
+        /**
+         * Draws what {@link #drawTime} draws in ambient mode, i.e. the hours and minutes with a
+         * steady colon and AM/PM in 12-hour mode, from {@link #mGlyphAtlas}.
+         */
+        private void drawAmbientTimeFromAtlas(Canvas canvas) {
+            float x = mXOffset;
+            if (mIs24Hour) {
+                x += drawNumberFromAtlas(canvas, mHourGlyphs, mWallClock.getHourOfDay(), true, x);
+            } else {
+                int hour = mWallClock.getHour();
+                if (hour == 0) {
+                    hour = 12;
+                }
+                x += drawNumberFromAtlas(canvas, mHourGlyphs, hour, false, x);
+            }
+            x += mGlyphAtlas.draw(canvas, mColonGlyphs, 0, x, mYOffset);
+            x += drawNumberFromAtlas(canvas, mMinuteGlyphs, mWallClock.getMinute(), true, x);
+            if (!mIs24Hour) {
+                x += mColonWidth;
+                mGlyphAtlas.draw(canvas, mAmPmGlyphs,
+                        mWallClock.getAmPm() == Calendar.AM ? 0 : 1, x, mYOffset);
+            }
+        }
+
+        /**
+         * Draws {@code value} digit by digit from a set of {@link GlyphAtlas#DIGITS}.
+         *
+         * @param padded whether to draw a leading zero below ten
+         * @return the width drawn
+         */
+        private float drawNumberFromAtlas(Canvas canvas, int digits, int value, boolean padded,
+                float x) {
+            float width = 0;
+            if (padded || value >= 10) {
+                width += mGlyphAtlas.draw(canvas, digits, value / 10, x, mYOffset);
+            }
+            return width + mGlyphAtlas.draw(canvas, digits, value % 10, x + width, mYOffset);
+        }
+
+        /**
+         * Text is drawn without anti-aliasing in low-bit ambient mode, and when the quality
+         * governor turned it off.
+         */
+        private void updateAntiAlias() {
+            boolean antiAlias = mQualityGovernor.isAntiAliasEnabled()
+                    && !(mLowBitAmbient && isInAmbientMode());
+            mDatePaint.setAntiAlias(antiAlias);
+            mHourPaint.setAntiAlias(antiAlias);
+            mMinutePaint.setAntiAlias(antiAlias);
+            mSecondPaint.setAntiAlias(antiAlias);
+            mAmPmPaint.setAntiAlias(antiAlias);
+            mColonPaint.setAntiAlias(antiAlias);
+            mCellFrame.invalidate();
+        }
+
+        @Override // QualityGovernor.Listener
+        public void onQualityChanged(int quality) {
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, "onQualityChanged: " + mQualityGovernor.dump());
+            }
+            updateAntiAlias();
+            invalidate();
+        }
+
+        @Override
+        protected void dump(String prefix, FileDescriptor fd, PrintWriter out, String[] args) {
+            super.dump(prefix, fd, out, args);
+            out.println(prefix + "onDraw: " + mFrameTimeStats);
+            out.println(prefix + "canvas: " + mHardwareCanvasDrawer.dump());
+            out.println(prefix + "invalidations: " + mInvalidationScheduler.dump());
+            out.println(prefix + "governor: " + mQualityGovernor.dump());
+            out.println(prefix + "date lines: " + mDateLines.dump());
+            out.println(prefix + "12/24-hour setting: " + mHourFormatSetting.dump());
+            out.println(prefix + "glyph atlas: " + mGlyphAtlas.dump());
+            out.println(prefix + "cells: " + mCellFrame.dump());
+            out.println(prefix + "world clock: " + mWorldClockRows.dump());
+        }
+
         /**
          * Starts the {@link #mUpdateTimeHandler} timer if it should be running and isn't currently
          * or stops it if it shouldn't be running but currently is.
@@ -569,6 +1036,9 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
                     DigitalWatchFaceUtil.COLOR_VALUE_DEFAULT_AND_AMBIENT_MINUTE_DIGITS);
             addIntKeyIfMissing(config, DigitalWatchFaceUtil.KEY_SECONDS_COLOR,
                     DigitalWatchFaceUtil.COLOR_VALUE_DEFAULT_AND_AMBIENT_SECOND_DIGITS);
+            if (!config.containsKey(DigitalWatchFaceUtil.KEY_WORLD_CLOCK_ZONES)) {
+                config.putStringArray(DigitalWatchFaceUtil.KEY_WORLD_CLOCK_ZONES, new String[0]);
+            }
         }
 
         private void addIntKeyIfMissing(DataMap config, String key, int color) {
@@ -605,6 +1075,14 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
                 if (!config.containsKey(configKey)) {
                     continue;
                 }
+                if (configKey.equals(DigitalWatchFaceUtil.KEY_WORLD_CLOCK_ZONES)) {
+                    if (mWorldClockRows.setZones(config.getStringArray(configKey))) {
+                        // Rows that went away would linger in the kept frame.
+                        mCellFrame.invalidate();
+                        uiUpdated = true;
+                    }
+                    continue;
+                }
                 int color = config.getInt(configKey);
                 if (Log.isLoggable(TAG, Log.DEBUG)) {
                     Log.d(TAG, "Found watch face config key: " + configKey + " -> "
@@ -615,7 +1093,7 @@ public class DigitalWatchFaceService extends CanvasWatchFaceService {
                 }
             }
             if (uiUpdated) {
-                invalidate();
+                mInvalidationScheduler.request(InvalidationScheduler.REASON_SETTINGS);
             }
         }
 
@@ -30,6 +30,11 @@ import android.view.SurfaceHolder;
 import android.view.WindowInsets;
 
 import com.example.android.wearable.watchface.R;
+import com.example.android.wearable.watchface.util.HardwareCanvasDrawer;
+import com.example.android.wearable.watchface.util.InvalidationScheduler;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 
 /**
  * Demonstrates interactive watch face capabilities, i.e., touching the display and registering
@@ -52,7 +57,8 @@ public class InteractiveWatchFaceService extends CanvasWatchFaceService {
         return new Engine();
     }
 
-    private class Engine extends CanvasWatchFaceService.Engine {
+    private class Engine extends CanvasWatchFaceService.Engine
+            implements HardwareCanvasDrawer.Target, InvalidationScheduler.Target {
 
         private Paint mTextPaint;
         private final Paint mPeekCardBackgroundPaint = new Paint();
@@ -79,6 +85,19 @@ public class InteractiveWatchFaceService extends CanvasWatchFaceService {
          */
         private boolean mLowBitAmbient;
 
+        /**
+         * Draws frames through a hardware canvas when R.bool.use_hardware_canvas opts in.
+         * R.bool.use_hardware_canvas 가 허용하면 하드웨어 캔버스를 통해 프레임을 그립니다.
+         */
+        private HardwareCanvasDrawer mHardwareCanvasDrawer;
+
+        /**
+         * Coalesces redraw requests into one frame and counts them by reason.
+         * 다시 그리기 요청을 한 프레임으로 합치고 이유별로 셉니다.
+         */
+        private final InvalidationScheduler mInvalidationScheduler =
+                new InvalidationScheduler(this);
+
         @Override
         public void onCreate(SurfaceHolder holder) {
             if (Log.isLoggable(TAG, Log.DEBUG)) {
@@ -86,6 +105,9 @@ public class InteractiveWatchFaceService extends CanvasWatchFaceService {
             }
             super.onCreate(holder);
 
+            mHardwareCanvasDrawer = new HardwareCanvasDrawer(TAG,
+                    getResources().getBoolean(R.bool.use_hardware_canvas), this);
+
             /** Accepts tap events via WatchFaceStyle (setAcceptsTapEvents(true)). */
             /** WatchFaceStyle을 통해 탭 이벤트를 수용합니다 (setAcceptsTapEvents (true)).*/
             setWatchFaceStyle(new WatchFaceStyle.Builder(InteractiveWatchFaceService.this)
@@ -200,11 +222,41 @@ public class InteractiveWatchFaceService extends CanvasWatchFaceService {
                     break;
             }
 
-            invalidate();
+            mInvalidationScheduler.request(InvalidationScheduler.REASON_TAP);
+        }
+
+        @Override
+        public void onDestroy() {
+            mHardwareCanvasDrawer.cancel();
+            mInvalidationScheduler.cancel();
+            super.onDestroy();
+        }
+
+        @Override
+        public void invalidate() {
+            mInvalidationScheduler.request(InvalidationScheduler.REASON_OTHER);
+        }
+
+        @Override // InvalidationScheduler.Target
+        public void onScheduleFrame() {
+            if (mHardwareCanvasDrawer != null && mHardwareCanvasDrawer.isEnabled()) {
+                mHardwareCanvasDrawer.invalidate(getSurfaceHolder());
+            } else {
+                super.invalidate();
+            }
+        }
+
+        @Override
+        public void onSurfaceRedrawNeeded(SurfaceHolder holder) {
+            if (!mHardwareCanvasDrawer.draw(holder)) {
+                super.onSurfaceRedrawNeeded(holder);
+            }
         }
 
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
+            mInvalidationScheduler.beginFrame();
+
             /** Draws background */
             /** 배경을 그립니다. */
             canvas.drawColor(Color.BLACK);
@@ -240,5 +292,12 @@ public class InteractiveWatchFaceService extends CanvasWatchFaceService {
                 canvas.drawRect(mCardBounds, mPeekCardBackgroundPaint);
             }
         }
+
+        @Override
+        protected void dump(String prefix, FileDescriptor fd, PrintWriter out, String[] args) {
+            super.dump(prefix, fd, out, args);
+            out.println(prefix + "canvas: " + mHardwareCanvasDrawer.dump());
+            out.println(prefix + "invalidations: " + mInvalidationScheduler.dump());
+        }
     }
 }
@@ -22,15 +22,22 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.opengl.GLES20;
 import android.opengl.Matrix;
+import android.os.BatteryManager;
 import android.support.wearable.watchface.Gles2WatchFaceService;
+import android.support.wearable.watchface.WatchFaceService;
 import android.support.wearable.watchface.WatchFaceStyle;
 import android.util.Log;
 import android.view.Gravity;
 import android.view.SurfaceHolder;
 
+import com.example.android.wearable.watchface.util.FrameRateGovernor;
 import com.example.android.wearable.watchface.util.Gles2ColoredTriangleList;
+import com.example.android.wearable.watchface.util.InvalidationScheduler;
+import com.example.android.wearable.watchface.util.WallClock;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 
-import java.util.Calendar;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 
@@ -44,10 +51,22 @@ public class OpenGLWatchFaceService extends Gles2WatchFaceService {
 
     private static final String TAG = "OpenGLWatchFaceService";
 
-    /** Expected frame rate in interactive mode. */
-    /** 대화식 모드에서 예상 프레임 속도. */
+    /** Frame rate in interactive mode while the camera orbits. */
+    /** 대화식 모드에서 카메라가 궤도를 도는 동안의 프레임 속도. */
     private static final long FPS = 60;
 
+    /**
+     * Frame rate in interactive mode while only the hands move. Frames in which the tip of the
+     * second hand would not move by a pixel are skipped on top of this.
+     * 대화식 모드에서 바늘만 움직이는 동안의 프레임 속도. 여기에 더해 초침 끝이 1픽셀도
+     * 움직이지 않는 프레임은 건너뜁니다.
+     */
+    private static final int REDUCED_FPS = 30;
+
+    /** Battery level in percent at or below which the face ticks once a second, if unplugged. */
+    /** 충전 중이 아닐 때 시계 모드가 1초에 한 번씩 움직이게 되는 배터리 잔량(퍼센트). */
+    private static final int BATTERY_LOW_PERCENT = 15;
+
     /** Z distance from the camera to the watchface. */
     /** Z 카메라에서 시계면까지의 거리. */
     private static final float EYE_Z = -2.3f;
@@ -61,7 +80,8 @@ public class OpenGLWatchFaceService extends Gles2WatchFaceService {
         return new Engine();
     }
 
-    private class Engine extends Gles2WatchFaceService.Engine {
+    private class Engine extends Gles2WatchFaceService.Engine
+            implements InvalidationScheduler.Target, FrameRateGovernor.Target {
         /** Cycle time before the camera motion repeats. */
         /** 카메라 동작이 반복되기 전의 사이클 시간. */
         private static final long CYCLE_PERIOD_SECONDS = 5;
@@ -86,16 +106,6 @@ public class OpenGLWatchFaceService extends Gles2WatchFaceService {
         /** 주변 모드에서 사용할보기 변환 행렬 */
         private final float[] mAmbientViewMatrix = new float[16];
 
-        /**
-         * Model transformation matrices.
-         * 모델 변환 행렬.
-         * Converts from model-relative coordinates to world coordinates.
-         * 모델 기준 좌표에서 세계 좌표로 변환합니다. 
-         * One matrix per degree of rotation.
-         * 한 회전 당 하나의 매트릭스
-         */
-        private final float[][] mModelMatrices = new float[360][16];
-
         /**
          * Products of {@link #mViewMatrices} and {@link #mProjectionMatrix}. 
          * {@link #mViewMatrices} 및 {@link #mProjectionMatrix}의 제품.
@@ -108,33 +118,53 @@ public class OpenGLWatchFaceService extends Gles2WatchFaceService {
         /** {#link #mAmbientViewMatrix} 및 {@link #mProjectionMatrix}의 제품 */
         private final float[] mAmbientVpMatrix = new float[16];
 
+        /** Program for drawing all the triangles. */
+        /** 모든 삼각형을 그리기 위한 프로그램. */
+        private Gles2ColoredTriangleList.Program mTriangleProgram;
+
         /**
-         * Product of {@link #mModelMatrices}, {@link #mViewMatrices}, and {@link #mProjectionMatrix}.
-         * {@link #mModelMatrices}, {@link #mViewMatrices} 및 {@link #mProjectionMatrix}의 제품
+         * Triangles for the 4 major and 8 minor ticks, then the hour, minute and second hands,
+         * with per-vertex colors so that the whole face is drawn with a single call. The hands
+         * point to 12 o'clock and are rotated by the vertex shader.
+         * 4개의 주 눈금과 8개의 작은 눈금, 그다음 시침, 분침, 초침에 대한 삼각형. 정점마다
+         * 색상이 있어 시계 전체를 한 번의 호출로 그립니다. 바늘은 12시를 가리키며 정점
+         * 셰이더가 회전시킵니다.
          */
-        private final float[] mMvpMatrix = new float[16];
+        private Gles2ColoredTriangleList mTriangles;
 
-        /** Triangles for the 4 major ticks. These are grouped together to speed up rendering. */
-        /** 4 가지 주요 틱에 대한 삼각형. 이들은 렌더링을 가속화하기 위해 함께 그룹화됩니다. */
-        private Gles2ColoredTriangleList mMajorTickTriangles;
+        /** Angles of the hour, minute and second hands in radians, passed to the shader. */
+        /** 셰이더에 전달되는 시침, 분침, 초침의 각도(라디안). */
+        private final float[] mHandAngles = new float[3];
 
-        /** Triangles for the 8 minor ticks. These are grouped together to speed up rendering. */
-        /** 8 작은 틱에 대한 삼각형. 이들은 렌더링을 가속화하기 위해 함께 그룹화됩니다.
-        private Gles2ColoredTriangleList mMinorTickTriangles;
+        private WallClock mWallClock = new WallClock();
 
-        /** Triangle for the second hand. */
-        /** 초침 삼각형. */
-        private Gles2ColoredTriangleList mSecondHandTriangle;
+        /** Frames drawn, to report the vertex bytes sent per frame. */
+        /** 프레임당 전송된 정점 바이트를 보고하기 위해 그린 프레임 수. */
+        private long mFrameCount;
 
-        /** Triangle for the minute hand. */
-        /** 분침을위한 삼각형. */
-        private Gles2ColoredTriangleList mMinuteHandTriangle;
+        /** GL calls made by the triangle lists in the last frame. */
+        /** 마지막 프레임에서 삼각형 목록이 호출한 GL 호출 수. */
+        private long mLastFrameGlCalls;
 
-        /** Triangle for the hour hand. */
-        /** 시간당 삼각형. */
-        private Gles2ColoredTriangleList mHourHandTriangle;
+        /** Coalesces redraw requests into one frame and counts them by reason. */
+        /** 다시 그리기 요청을 한 프레임으로 합치고 이유별로 셉니다. */
+        private final InvalidationScheduler mInvalidationScheduler =
+                new InvalidationScheduler(this);
+
+        /**
+         * Paces interactive frames by what moves and the battery and interruption filter, and
+         * skips frames that would look the same as the last one.
+         * 무엇이 움직이는지와 배터리, 방해 금지 설정에 따라 대화식 프레임의 속도를 정하고,
+         * 이전 프레임과 똑같아 보일 프레임은 건너뜁니다.
+         */
+        private final FrameRateGovernor mFrameRateGovernor =
+                new FrameRateGovernor(TAG, (int) FPS, REDUCED_FPS, this);
 
-        private Calendar mCalendar = Calendar.getInstance();
+        /**
+         * How many pixels a millisecond moves the tip of the second hand, seen from overhead.
+         * 위에서 보았을 때 1밀리초 동안 초침 끝이 움직이는 픽셀 수.
+         */
+        private float mSecondHandTipPixelsPerMilli;
 
         /** Whether we've registered {@link #mTimeZoneReceiver}. */
         /** {@link #mTimeZoneReceiver} 등록 여부. */
@@ -143,8 +173,19 @@ public class OpenGLWatchFaceService extends Gles2WatchFaceService {
         private final BroadcastReceiver mTimeZoneReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                mCalendar.setTimeZone(TimeZone.getDefault());
-                invalidate();
+                mWallClock.setTimeZone(TimeZone.getDefault());
+                mInvalidationScheduler.request(InvalidationScheduler.REASON_TIME_ZONE);
+            }
+        };
+
+        /** Whether we've registered {@link #mBatteryReceiver}. */
+        /** {@link #mBatteryReceiver} 등록 여부. */
+        private boolean mRegisteredBatteryReceiver;
+
+        private final BroadcastReceiver mBatteryReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                updateBatteryLow(intent);
             }
         };
 
@@ -161,6 +202,8 @@ public class OpenGLWatchFaceService extends Gles2WatchFaceService {
                     .setHotwordIndicatorGravity(Gravity.LEFT | Gravity.TOP)
                     .setShowSystemUiTime(false)
                     .build());
+            mFrameRateGovernor.setMuted(
+                    getInterruptionFilter() == WatchFaceService.INTERRUPTION_FILTER_NONE);
         }
 
         @Override
@@ -172,8 +215,7 @@ public class OpenGLWatchFaceService extends Gles2WatchFaceService {
 
             // Create program for drawing triangles.
             // 삼각형을 그리기위한 프로그램을 만듭니다.
-            Gles2ColoredTriangleList.Program triangleProgram =
-                    new Gles2ColoredTriangleList.Program();
+            mTriangleProgram = new Gles2ColoredTriangleList.Program();
 
             // We only draw triangles which all use the same program so we don't need to switch programs mid-frame.
             // 모든 프로그램이 동일한 프로그램을 사용하는 삼각형을 그리기 때문에 프로그램을 중간 프레임으로 전환 할 필요가 없습니다.
@@ -181,54 +223,56 @@ public class OpenGLWatchFaceService extends Gles2WatchFaceService {
             // 이것은 우리가 OpenGL에게 각 프레임마다 그렇게하지 않고 한 번만이 프로그램을 사용하도록 말할 수 있음을 의미합니다.
             // This makes OpenGL draw faster.
             // 이렇게하면 OpenGL이 더 빨리 그려집니다.
-            triangleProgram.use();
-
-            // Create triangles for the ticks.
-            // 틱에 대한 삼각형을 만듭니다.
-            mMajorTickTriangles = createMajorTicks(triangleProgram);
-            mMajorTickTriangles = createMinorTicks(triangleProgram);
-
-            // Create triangles for the hands.
-            // 손으로 삼각형을 만듭니다.
-            mSecondHandTriangle = createHand(
-                    triangleProgram,
-                    0.02f /* width */,
-                    1.0f /* height */,
+            mTriangleProgram.use();
+
+            // The triangle lists upload their vertices into buffer objects owned by this context,
+            // so they are created again here whenever the context is recreated after a loss.
+            // 삼각형 목록은 이 컨텍스트가 소유한 버퍼 객체에 정점을 업로드하므로, 컨텍스트가
+            // 손실 후 다시 만들어질 때마다 여기에서 다시 만들어집니다.
+            // Create triangles for the ticks and hands, batched into one list. The second hand
+            // goes last so that ambient mode can leave it out by drawing fewer vertices.
+            // 틱과 손에 대한 삼각형을 하나의 목록으로 묶어 만듭니다. 초침은 마지막에 두어 주변
+            // 모드에서 더 적은 정점을 그려 생략할 수 있게 합니다.
+            Gles2ColoredTriangleList.Builder builder = new Gles2ColoredTriangleList.Builder();
+            addMajorTicks(builder);
+            addMinorTicks(builder);
+            builder.add(
+                    createHand(
+                            0.1f /* width */,
+                            0.6f /* height */),
                     new float[]{
-                            1.0f /* red */,
-                            0.0f /* green */,
-                            0.0f /* blue */,
+                            0.9f /* red */,
+                            0.9f /* green */,
+                            0.9f /* blue */,
                             1.0f /* alpha */
-                    }
+                    },
+                    1 /* rotation: mHandAngles[0] */
             );
-            mMinuteHandTriangle = createHand(
-                    triangleProgram,
-                    0.06f /* width */,
-                    1f /* height */,
+            builder.add(
+                    createHand(
+                            0.06f /* width */,
+                            1f /* height */),
                     new float[]{
                             0.7f /* red */,
                             0.7f /* green */,
                             0.7f /* blue */,
                             1.0f /* alpha */
-                    }
+                    },
+                    2 /* rotation: mHandAngles[1] */
             );
-            mHourHandTriangle = createHand(
-                    triangleProgram,
-                    0.1f /* width */,
-                    0.6f /* height */,
+            builder.add(
+                    createHand(
+                            0.02f /* width */,
+                            1.0f /* height */),
                     new float[]{
-                            0.9f /* red */,
-                            0.9f /* green */,
-                            0.9f /* blue */,
+                            1.0f /* red */,
+                            0.0f /* green */,
+                            0.0f /* blue */,
                             1.0f /* alpha */
-                    }
+                    },
+                    3 /* rotation: mHandAngles[2] */
             );
-
-            // Precompute the clock angles.
-            // 시계 각을 사전 계산하십시오.
-            for (int i = 0; i < mModelMatrices.length; ++i) {
-                Matrix.setRotateM(mModelMatrices[i], 0, i, 0, 0, 1);
-            }
+            mTriangles = builder.build(mTriangleProgram);
 
             // Precompute the camera angles.
             // 카메라 앵글을 미리 계산하십시오.
@@ -279,22 +323,26 @@ public class OpenGLWatchFaceService extends Gles2WatchFaceService {
             }
 
             Matrix.multiplyMM(mAmbientVpMatrix, 0, mProjectionMatrix, 0, mAmbientViewMatrix, 0);
+
+            // The tip of the second hand is 1 unit from the center, at the eye distance from the
+            // overhead camera, and goes around once a minute.
+            // 초침 끝은 중심에서 1단위 떨어져 있고, 위쪽 카메라에서 눈 거리만큼 떨어져 있으며,
+            // 1분에 한 바퀴 돕니다.
+            float tipRadiusPixels = height / 2f * 2 /* near */ / -EYE_Z;
+            mSecondHandTipPixelsPerMilli =
+                    (float) (2 * Math.PI * tipRadiusPixels / TimeUnit.MINUTES.toMillis(1));
+            mFrameRateGovernor.invalidate();
         }
 
         /**
-         * Creates a triangle for a hand on the watch face.
-         * 시계 모드에서 손 모양의 삼각형을 만듭니다.
-         * @param program program for drawing triangles
-         * 삼각형 그리기를위한 프로그램 프로그램 
+         * Creates the coordinates of a triangle for a hand on the watch face, pointing to 12.
+         * 시계 모드에서 12시를 가리키는 손 모양 삼각형의 좌표를 만듭니다.
          * @param width width of base of triangle
          * @param 삼각형의 기본 폭
          * @param length length of triangle
          * @param 길이 삼각형의 길이
-         * @param color color in RGBA order, each in the range [0, 1]
-         * @param [0, 1] 범위의 RGBA 순서로 된 색상 색상
          */
-        private Gles2ColoredTriangleList createHand(Gles2ColoredTriangleList.Program program,
-                float width, float length, float[] color) {
+        private float[] createHand(float width, float length) {
             // Create the data for the VBO.
             // VBO에 대한 데이터를 만듭니다.
             float[] triangleCoords = new float[]{
@@ -304,17 +352,16 @@ public class OpenGLWatchFaceService extends Gles2WatchFaceService {
                     -width / 2, 0, 0,   // bottom left // 아래 왼쪽
                     width / 2, 0, 0    // bottom right // 아래 오른쪽
             };
-            return new Gles2ColoredTriangleList(program, triangleCoords, color);
+            return triangleCoords;
         }
 
         /**
-         * Creates a triangle list for the major ticks on the watch face.
-         * 시계 모드에서 주 눈금에 대한 삼각형 목록을 만듭니다.
-         * @param program program for drawing triangles
-         * 삼각형 그리기를위한 @param 프로그램
+         * Adds triangles for the major ticks on the watch face.
+         * 시계 모드에서 주 눈금에 대한 삼각형을 추가합니다.
+         * @param builder list to add the triangles to
+         * @param builder 삼각형을 추가할 목록
          */
-        private Gles2ColoredTriangleList createMajorTicks(
-                Gles2ColoredTriangleList.Program program) {
+        private void addMajorTicks(Gles2ColoredTriangleList.Builder builder) {
             // Create the data for the VBO.
             // VBO에 대한 데이터를 만듭니다.
             float[] trianglesCoords = new float[9 * 4];
@@ -323,7 +370,7 @@ public class OpenGLWatchFaceService extends Gles2WatchFaceService {
                 System.arraycopy(triangleCoords, 0, trianglesCoords, i * 9, triangleCoords.length);
             }
 
-            return new Gles2ColoredTriangleList(program, trianglesCoords,
+            builder.add(trianglesCoords,
                     new float[]{
                             1.0f /* red */, //빨간색
                             1.0f /* green */, // 초록색
@@ -334,13 +381,12 @@ public class OpenGLWatchFaceService extends Gles2WatchFaceService {
         }
 
         /**
-         * Creates a triangle list for the minor ticks on the watch face.
-         * 시계 모드에서 작은 눈금에 대한 삼각형 목록을 만듭니다.
-         * @param program program for drawing triangles
-         * 삼각형 그리기를위한 @param 프로그램
+         * Adds triangles for the minor ticks on the watch face.
+         * 시계 모드에서 작은 눈금에 대한 삼각형을 추가합니다.
+         * @param builder list to add the triangles to
+         * @param builder 삼각형을 추가할 목록
          */
-        private Gles2ColoredTriangleList createMinorTicks(
-                Gles2ColoredTriangleList.Program program) {
+        private void addMinorTicks(Gles2ColoredTriangleList.Builder builder) {
             // Create the data for the VBO.
             // VBO에 대한 데이터를 만듭니다.
             float[] trianglesCoords = new float[9 * (12 - 4)];
@@ -356,7 +402,7 @@ public class OpenGLWatchFaceService extends Gles2WatchFaceService {
                 index += 9;
             }
 
-            return new Gles2ColoredTriangleList(program, trianglesCoords,
+            builder.add(trianglesCoords,
                     new float[]{
                             0.5f /* red */, //빨간색
                             0.5f /* green */, //초록색
@@ -417,9 +463,45 @@ public class OpenGLWatchFaceService extends Gles2WatchFaceService {
                 Log.d(TAG, "onAmbientModeChanged: " + inAmbientMode);
             }
             super.onAmbientModeChanged(inAmbientMode);
+            updateFrameRateGovernor();
             invalidate();
         }
 
+        @Override
+        public void onInterruptionFilterChanged(int interruptionFilter) {
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, "onInterruptionFilterChanged: " + interruptionFilter);
+            }
+            super.onInterruptionFilterChanged(interruptionFilter);
+            // Mute mode stops the camera and slows the frame rate.
+            // 음소거 모드는 카메라를 멈추고 프레임 속도를 낮춥니다.
+            mFrameRateGovernor.setMuted(
+                    interruptionFilter == WatchFaceService.INTERRUPTION_FILTER_NONE);
+            invalidate();
+        }
+
+        /** Animates only while visible and interactive. */
+        /** 보이고 대화식 모드일 때만 움직입니다. */
+        private void updateFrameRateGovernor() {
+            mFrameRateGovernor.setAnimating(isVisible() && !isInAmbientMode());
+        }
+
+        /** Reads the battery level and plug state from an {@code ACTION_BATTERY_CHANGED}. */
+        /** {@code ACTION_BATTERY_CHANGED}에서 배터리 잔량과 충전 상태를 읽습니다. */
+        private void updateBatteryLow(Intent intent) {
+            if (intent == null) {
+                return;
+            }
+            int level = intent.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+            int scale = intent.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+            boolean plugged = intent.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+            if (level < 0 || scale <= 0) {
+                return;
+            }
+            mFrameRateGovernor.setBatteryLow(
+                    !plugged && level * 100 / scale <= BATTERY_LOW_PERCENT);
+        }
+
         @Override
         public void onVisibilityChanged(boolean visible) {
             if (Log.isLoggable(TAG, Log.DEBUG)) {
@@ -431,12 +513,13 @@ public class OpenGLWatchFaceService extends Gles2WatchFaceService {
 
                 // Update time zone in case it changed while we were detached.
                 // 우리가 분리 된 동안 변경된 경우 시간대를 업데이트하십시오.
-                mCalendar.setTimeZone(TimeZone.getDefault());
+                mWallClock.setTimeZone(TimeZone.getDefault());
 
                 invalidate();
             } else {
                 unregisterReceiver();
             }
+            updateFrameRateGovernor();
         }
 
         private void registerReceiver() {
@@ -446,6 +529,12 @@ public class OpenGLWatchFaceService extends Gles2WatchFaceService {
             mRegisteredTimeZoneReceiver = true;
             IntentFilter filter = new IntentFilter(Intent.ACTION_TIMEZONE_CHANGED);
             OpenGLWatchFaceService.this.registerReceiver(mTimeZoneReceiver, filter);
+
+            // The battery broadcast is sticky, so registering returns the current state.
+            // 배터리 브로드캐스트는 고정되어 있으므로 등록하면 현재 상태가 반환됩니다.
+            mRegisteredBatteryReceiver = true;
+            updateBatteryLow(OpenGLWatchFaceService.this.registerReceiver(
+                    mBatteryReceiver, new IntentFilter(Intent.ACTION_BATTERY_CHANGED)));
         }
 
         private void unregisterReceiver() {
@@ -454,6 +543,10 @@ public class OpenGLWatchFaceService extends Gles2WatchFaceService {
             }
             mRegisteredTimeZoneReceiver = false;
             OpenGLWatchFaceService.this.unregisterReceiver(mTimeZoneReceiver);
+            if (mRegisteredBatteryReceiver) {
+                mRegisteredBatteryReceiver = false;
+                OpenGLWatchFaceService.this.unregisterReceiver(mBatteryReceiver);
+            }
         }
 
         @Override
@@ -462,7 +555,24 @@ public class OpenGLWatchFaceService extends Gles2WatchFaceService {
             if (Log.isLoggable(TAG, Log.DEBUG)) {
                 Log.d(TAG, "onTimeTick: ambient = " + isInAmbientMode());
             }
-            invalidate();
+            mInvalidationScheduler.request(InvalidationScheduler.REASON_TIME_TICK);
+        }
+
+        @Override
+        public void onDestroy() {
+            mFrameRateGovernor.stop();
+            mInvalidationScheduler.cancel();
+            super.onDestroy();
+        }
+
+        @Override
+        public void invalidate() {
+            mInvalidationScheduler.request(InvalidationScheduler.REASON_OTHER);
+        }
+
+        @Override // InvalidationScheduler.Target
+        public void onScheduleFrame() {
+            super.invalidate();
         }
 
         @Override
@@ -471,6 +581,9 @@ public class OpenGLWatchFaceService extends Gles2WatchFaceService {
                 Log.v(TAG, "onDraw");
             }
             super.onDraw();
+            mInvalidationScheduler.beginFrame();
+            mFrameCount++;
+            long glCallsBefore = Gles2ColoredTriangleList.getGlCallCount();
             final float[] vpMatrix;
 
             // Draw background color and select the appropriate view projection matrix.
@@ -479,11 +592,17 @@ public class OpenGLWatchFaceService extends Gles2WatchFaceService {
             // 배경은 주변 모드에서 항상 검은 색이어야합니다.
             // The view projection matrix used is overhead in ambient.
             // 사용 된 뷰 투영 행렬은 주변 환경의 오버 헤드입니다.
-            // In interactive mode, it's tilted depending on the current time.
-            // 대화 형 모드에서는 현재 시간에 따라 기울어집니다.
+            // In interactive mode, it's tilted depending on the current time, unless the frame rate
+            // governor holds the camera still overhead.
+            // 대화 형 모드에서는 현재 시간에 따라 기울어집니다. 단, 프레임 속도 조절기가 카메라를
+            // 위쪽에 고정한 경우는 예외입니다.
+            final int frameRateMode = mFrameRateGovernor.getMode();
             if (isInAmbientMode()) {
                 GLES20.glClearColor(0, 0, 0, 1);
                 vpMatrix = mAmbientVpMatrix;
+            } else if (frameRateMode != FrameRateGovernor.MODE_FULL) {
+                GLES20.glClearColor(0.5f, 0.2f, 0.2f, 1);
+                vpMatrix = mAmbientVpMatrix;
             } else {
                 GLES20.glClearColor(0.5f, 0.2f, 0.2f, 1);
                 final int cameraIndex =
@@ -492,54 +611,74 @@ public class OpenGLWatchFaceService extends Gles2WatchFaceService {
             }
             GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
 
-            // Compute angle indices for the three hands.
-            // 세 손에 대한 각도 인덱스를 계산합니다.
-            mCalendar.setTimeInMillis(System.currentTimeMillis());
-            float seconds =
-                    mCalendar.get(Calendar.SECOND) + mCalendar.get(Calendar.MILLISECOND) / 1000f;
-            float minutes = mCalendar.get(Calendar.MINUTE) + seconds / 60f;
-            float hours = mCalendar.get(Calendar.HOUR) + minutes / 60f;
-            final int secIndex = (int) (seconds / 60f * 360f);
-            final int minIndex = (int) (minutes / 60f * 360f);
-            final int hoursIndex = (int) (hours / 12f * 360f);
-
-            // Draw triangles from back to front. Don't draw the second hand in ambient mode.
-            // 삼각형을 뒤에서 앞으로 그립니다. 초침을 주변 모드로 그려서는 안됩니다.
-            // Combine the model matrix with the projection and camera view.
-            // 모델 매트릭스를 투영 및 카메라 뷰와 결합하십시오.
-            Matrix.multiplyMM(mMvpMatrix, 0, vpMatrix, 0, mModelMatrices[hoursIndex], 0);
-
-            // Draw the triangle.
-            // 삼각형을 그립니다.
-            mHourHandTriangle.draw(mMvpMatrix);
-
-            // Combine the model matrix with the projection and camera view.
-            // 모델 매트릭스를 투영 및 카메라 뷰와 결합하십시오.
-            Matrix.multiplyMM(mMvpMatrix, 0, vpMatrix, 0, mModelMatrices[minIndex], 0);
-
-            // Draw the triangle.
-            // 삼각형을 그립니다.
-            mMinuteHandTriangle.draw(mMvpMatrix);
-            if (!isInAmbientMode()) {
-                // Combine the model matrix with the projection and camera view.
-                // 모델 매트릭스를 투영 및 카메라 뷰와 결합하십시오.
-                Matrix.multiplyMM(mMvpMatrix, 0, vpMatrix, 0, mModelMatrices[secIndex], 0);
-
-                // Draw the triangle.
-                // 삼각형을 그립니다.
-                mSecondHandTriangle.draw(mMvpMatrix);
+            // Compute angles for the three hands. They are not rounded, so the hands move
+            // smoothly rather than a degree at a time, except that the second hand ticks in tick
+            // mode.
+            // 세 손에 대한 각도를 계산합니다. 반올림하지 않으므로 바늘이 1도씩이 아니라
+            // 부드럽게 움직입니다. 단, 틱 모드에서는 초침이 1초씩 움직입니다.
+            mWallClock.setTimeInMillis(System.currentTimeMillis());
+            float seconds = mWallClock.getSecond();
+            if (frameRateMode != FrameRateGovernor.MODE_TICK) {
+                seconds += mWallClock.getMillisecond() / 1000f;
             }
+            float minutes = mWallClock.getMinute() + seconds / 60f;
+            float hours = mWallClock.getHour() + minutes / 60f;
+            mHandAngles[0] = Gles2ColoredTriangleList.Program.turnsToRadians(hours / 12f);
+            mHandAngles[1] = Gles2ColoredTriangleList.Program.turnsToRadians(minutes / 60f);
+            mHandAngles[2] = Gles2ColoredTriangleList.Program.turnsToRadians(seconds / 60f);
+
+            // All triangles share the view projection matrix, so it is sent only once, along
+            // with the hand angles.
+            // 모든 삼각형이 뷰 투영 행렬을 공유하므로 바늘 각도와 함께 한 번만 전송합니다.
+            mTriangleProgram.setMvpMatrix(vpMatrix);
+            mTriangleProgram.setRotationAngles(mHandAngles);
+
+            // Draw triangles from back to front: the dial, then the hands. Don't draw the second
+            // hand, the last three vertices, in ambient mode.
+            // 삼각형을 뒤에서 앞으로 그립니다: 다이얼, 그다음 바늘. 주변 모드에서는 마지막 세
+            // 정점인 초침을 그려서는 안됩니다.
+            int vertexCount = mTriangles.getVertexCount();
+            mTriangles.draw(isInAmbientMode() ? vertexCount - 3 : vertexCount);
+            mLastFrameGlCalls = Gles2ColoredTriangleList.getGlCallCount() - glCallsBefore;
+        }
 
-            // Draw the major and minor ticks.
-            // 크고 작은 틱을 그립니다.
-            mMajorTickTriangles.draw(vpMatrix);
-            mMajorTickTriangles.draw(vpMatrix);
-
-            // Draw every frame as long as we're visible and in interactive mode.
-            // 우리가 볼 수 있고 대화식 모드 인 한 모든 프레임을 그립니다.
-            if (isVisible() && !isInAmbientMode()) {
-                invalidate();
+        @Override // FrameRateGovernor.Target
+        public long getFrameContent(int mode) {
+            long now = System.currentTimeMillis();
+            switch (mode) {
+                case FrameRateGovernor.MODE_FULL:
+                    // The camera moves on every frame period.
+                    // 카메라는 프레임 주기마다 움직입니다.
+                    return now / FRAME_PERIOD_MS;
+                case FrameRateGovernor.MODE_TICK:
+                    return now / TimeUnit.SECONDS.toMillis(1);
+                default:
+                    // Only the hands move, and the second hand fastest, so a frame looks
+                    // different once its tip has moved a pixel.
+                    // 바늘만 움직이고 초침이 가장 빠르므로, 초침 끝이 1픽셀 움직이면 프레임이
+                    // 달라 보입니다.
+                    return (long) (now * (double) mSecondHandTipPixelsPerMilli);
             }
         }
+
+        @Override // FrameRateGovernor.Target
+        public void onGovernedFrame() {
+            mInvalidationScheduler.request(InvalidationScheduler.REASON_ANIMATION);
+        }
+
+        @Override
+        protected void dump(String prefix, FileDescriptor fd, PrintWriter out, String[] args) {
+            super.dump(prefix, fd, out, args);
+            out.println(prefix + "invalidations: " + mInvalidationScheduler.dump());
+            out.println(prefix + "frame rate: " + mFrameRateGovernor.dump());
+            // Triangle lists in buffer objects are uploaded once per GL context; only lists that
+            // fell back to client memory send their vertices on every frame.
+            // 버퍼 객체에 있는 삼각형 목록은 GL 컨텍스트마다 한 번만 업로드되며, 클라이언트
+            // 메모리로 대체된 목록만 매 프레임 정점을 보냅니다.
+            out.println(prefix + "triangles: " + Gles2ColoredTriangleList.dumpStats()
+                    + " clientArrayBytesPerFrame=" + (mFrameCount > 0
+                            ? Gles2ColoredTriangleList.getClientArrayBytes() / mFrameCount : 0)
+                    + " lastFrameGlCalls=" + mLastFrameGlCalls);
+        }
     }
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Paint;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks that {@link DateLines} formats once per local day. {@code DateLinesBenchmark} times what
+ * that saves on a device.
+ */
+public class DateLinesTest {
+
+    private static final TimeZone ZONE = TimeZone.getTimeZone("America/New_York");
+
+    /** 2017-03-11 12:00 in New York, the day before daylight saving time starts. */
+    private static final long START = 1489251600000L;
+
+    private static final long FRAME_MILLIS = TimeUnit.SECONDS.toMillis(1);
+
+    private DateFormat mDayOfWeekFormat;
+    private DateFormat mDateFormat;
+    private WallClock mClock;
+    private DateLines mDateLines;
+
+    @Before
+    public void setUp() {
+        Calendar calendar = new GregorianCalendar(ZONE, Locale.US);
+        mDayOfWeekFormat = new SimpleDateFormat("EEEE", Locale.US);
+        mDayOfWeekFormat.setCalendar(calendar);
+        mDateFormat = new SimpleDateFormat("M/d/yyyy", Locale.US);
+        mDateFormat.setCalendar(calendar);
+        mClock = new WallClock(ZONE);
+        mDateLines = new DateLines("DateLinesTest", new Paint());
+        mDateLines.setFormats(mDayOfWeekFormat, mDateFormat);
+    }
+
+    @Test
+    public void formatsOncePerLocalDay() {
+        // Two days of frames, across two local midnights and a 23-hour day.
+        long end = START + TimeUnit.DAYS.toMillis(2);
+        for (long now = START; now < end; now += FRAME_MILLIS) {
+            mClock.setTimeInMillis(now);
+            mDateLines.update(mClock);
+            Date date = new Date(now);
+            assertEquals(mDayOfWeekFormat.format(date), mDateLines.getDayOfWeek());
+            assertEquals(mDateFormat.format(date), mDateLines.getDate());
+        }
+        assertEquals(3, mDateLines.getVersion());
+    }
+
+    @Test
+    public void formatsAgainWhenInvalidated() {
+        mClock.setTimeInMillis(START);
+        mDateLines.update(mClock);
+        mDateLines.update(mClock);
+        assertEquals(1, mDateLines.getVersion());
+
+        mDateLines.invalidate();
+        mDateLines.update(mClock);
+        assertEquals(2, mDateLines.getVersion());
+
+        mDateLines.setFormats(new SimpleDateFormat("EEE", Locale.US), mDateFormat);
+        mDateLines.update(mClock);
+        assertEquals(3, mDateLines.getVersion());
+        assertEquals("Sat", mDateLines.getDayOfWeek());
+    }
+
+    /** An hour of frames at 60 fps, all on one local day, formats the lines once. */
+    @Test
+    public void formatsOnceForAnHourOfFrames() {
+        long end = START + TimeUnit.HOURS.toMillis(1);
+        for (long now = START; now < end; now += FRAME_MILLIS / 60) {
+            mClock.setTimeInMillis(now);
+            mDateLines.update(mClock);
+        }
+        assertEquals(1, mDateLines.getVersion());
+        assertTrue(mDateLines.dump(), mDateLines.dump().startsWith("formats=1 "));
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/** Checks the digits, the cached widths and the allocation-free drawing of {@link DigitText}. */
+public class DigitTextTest {
+
+    /** Width of one character as measured by {@link FixedWidthPaint}, in its text size. */
+    private static final float CHAR_WIDTH = 10f;
+
+    private FixedWidthPaint mPaint;
+    private RecordingCanvas mCanvas;
+    private DigitText mDigitText;
+
+    @Before
+    public void setUp() {
+        mPaint = new FixedWidthPaint();
+        mCanvas = new RecordingCanvas();
+        mDigitText = new DigitText(mPaint);
+    }
+
+    @Test
+    public void drawsEveryValueWithAndWithoutPadding() {
+        for (int value = 0; value <= DigitText.MAX_VALUE; value++) {
+            mDigitText.drawPadded(mCanvas, value, 0, 0);
+            assertEquals(String.format("%02d", value), mCanvas.mLastText);
+
+            mDigitText.draw(mCanvas, value, 0, 0);
+            assertEquals(Integer.toString(value), mCanvas.mLastText);
+        }
+    }
+
+    @Test
+    public void returnsTheMeasuredWidths() {
+        for (int value = 0; value <= DigitText.MAX_VALUE; value++) {
+            float width = Integer.toString(value).length() * CHAR_WIDTH;
+            assertEquals(2 * CHAR_WIDTH, mDigitText.getPaddedWidth(value), 0f);
+            assertEquals(width, mDigitText.getWidth(value), 0f);
+            assertEquals(2 * CHAR_WIDTH, mDigitText.drawPadded(mCanvas, value, 0, 0), 0f);
+            assertEquals(width, mDigitText.draw(mCanvas, value, 0, 0), 0f);
+        }
+    }
+
+    @Test
+    public void measuresOnlyWhenAskedTo() {
+        int measureCount = mPaint.mMeasureCount;
+        mPaint.mScale = 2f;
+        for (int value = 0; value <= DigitText.MAX_VALUE; value++) {
+            mDigitText.draw(mCanvas, value, 0, 0);
+            mDigitText.getPaddedWidth(value);
+        }
+        assertEquals(measureCount, mPaint.mMeasureCount);
+        assertEquals(2 * CHAR_WIDTH, mDigitText.getPaddedWidth(42), 0f);
+
+        mDigitText.updateWidths();
+        assertTrue(mPaint.mMeasureCount > measureCount);
+        assertEquals(4 * CHAR_WIDTH, mDigitText.getPaddedWidth(42), 0f);
+        assertEquals(2 * CHAR_WIDTH, mDigitText.getWidth(7), 0f);
+    }
+
+    @Test
+    public void drawsWithoutAllocating() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(allocations.isThreadAllocatedMemorySupported());
+        allocations.setThreadAllocatedMemoryEnabled(true);
+
+        mCanvas.mRecordStrings = false;
+        long threadId = Thread.currentThread().getId();
+        drawEveryValue(100);
+        long before = allocations.getThreadAllocatedBytes(threadId);
+        drawEveryValue(100);
+        long allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+
+        // A string per draw would be over 200KB; leave room for the measuring call itself.
+        assertTrue("Allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    private void drawEveryValue(int times) {
+        for (int i = 0; i < times; i++) {
+            for (int value = 0; value <= DigitText.MAX_VALUE; value++) {
+                mDigitText.drawPadded(mCanvas, value, 0, 0);
+                mDigitText.draw(mCanvas, value, 0, 0);
+            }
+        }
+    }
+
+    /** Measures every character as {@link #CHAR_WIDTH} times {@link #mScale}. */
+    private static class FixedWidthPaint extends Paint {
+        float mScale = 1f;
+        int mMeasureCount;
+
+        @Override
+        public float measureText(char[] text, int index, int count) {
+            mMeasureCount++;
+            return count * CHAR_WIDTH * mScale;
+        }
+    }
+
+    /** Keeps the last text drawn as a string, unless told not to allocate. */
+    private static class RecordingCanvas extends Canvas {
+        String mLastText;
+        boolean mRecordStrings = true;
+
+        @Override
+        public void drawText(char[] text, int index, int count, float x, float y, Paint paint) {
+            if (mRecordStrings) {
+                mLastText = new String(text, index, count);
+            }
+        }
+    }
+}
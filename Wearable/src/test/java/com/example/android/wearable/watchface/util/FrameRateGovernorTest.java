@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks how {@link FrameRateGovernor} picks its mode and which frames it skips, with a stand-in
+ * for the display-driven {@link FrameClock}.
+ */
+public class FrameRateGovernorTest {
+
+    private static final int FULL_FPS = 60;
+    private static final int REDUCED_FPS = 30;
+    private static final int TICK_CHECK_FPS = 4;
+
+    private static final long MILLIS_PER_MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    private StandInFrameClock mFrameClock;
+    private FakeTarget mTarget;
+    private FrameRateGovernor mGovernor;
+
+    @Before
+    public void setUp() {
+        mFrameClock = new StandInFrameClock();
+        mTarget = new FakeTarget();
+        mGovernor = new FrameRateGovernor("FrameRateGovernorTest", FULL_FPS, REDUCED_FPS,
+                mTarget, mFrameClock);
+    }
+
+    @Test
+    public void picksTheModeFromWhatMovesAndTheBattery() {
+        assertEquals(FrameRateGovernor.MODE_STOPPED, mGovernor.getMode());
+        assertFalse(mFrameClock.mRunning);
+
+        mGovernor.setAnimating(true);
+        assertEquals(FrameRateGovernor.MODE_FULL, mGovernor.getMode());
+        assertTrue(mFrameClock.mRunning);
+        assertEquals(FULL_FPS, mFrameClock.mMaxFps);
+
+        mGovernor.setMuted(true);
+        assertEquals(FrameRateGovernor.MODE_REDUCED, mGovernor.getMode());
+        assertEquals(REDUCED_FPS, mFrameClock.mMaxFps);
+
+        // A low battery wins over mute.
+        mGovernor.setBatteryLow(true);
+        assertEquals(FrameRateGovernor.MODE_TICK, mGovernor.getMode());
+        assertEquals(TICK_CHECK_FPS, mFrameClock.mMaxFps);
+
+        mGovernor.setAnimating(false);
+        assertEquals(FrameRateGovernor.MODE_STOPPED, mGovernor.getMode());
+        assertFalse(mFrameClock.mRunning);
+
+        mGovernor.setBatteryLow(false);
+        mGovernor.setMuted(false);
+        mGovernor.setAnimating(true);
+        assertEquals(FrameRateGovernor.MODE_FULL, mGovernor.getMode());
+        mGovernor.stop();
+        assertFalse(mFrameClock.mRunning);
+    }
+
+    @Test
+    public void skipsFramesThatLookLikeTheLastOne() {
+        mGovernor.setAnimating(true);
+        mTarget.mContent = 1;
+        mGovernor.onFrame(0);
+        assertEquals(1, mTarget.mFrames);
+        assertEquals(FrameRateGovernor.MODE_FULL, mTarget.mLastMode);
+
+        mGovernor.onFrame(16);
+        mGovernor.onFrame(33);
+        assertEquals(1, mTarget.mFrames);
+
+        mTarget.mContent = 2;
+        mGovernor.onFrame(50);
+        assertEquals(2, mTarget.mFrames);
+
+        // Content is only compared with the last frame let through, not any earlier one.
+        mTarget.mContent = 1;
+        mGovernor.onFrame(66);
+        assertEquals(3, mTarget.mFrames);
+    }
+
+    @Test
+    public void drawsTheNextFrameAfterAModeChangeOrInvalidate() {
+        mGovernor.setAnimating(true);
+        mTarget.mContent = 7;
+        mGovernor.onFrame(0);
+        assertEquals(1, mTarget.mFrames);
+
+        mGovernor.setMuted(true);
+        mGovernor.onFrame(33);
+        assertEquals(2, mTarget.mFrames);
+        assertEquals(FrameRateGovernor.MODE_REDUCED, mTarget.mLastMode);
+        mGovernor.onFrame(66);
+        assertEquals(2, mTarget.mFrames);
+
+        mGovernor.invalidate();
+        mGovernor.onFrame(100);
+        assertEquals(3, mTarget.mFrames);
+
+        // Setting an input to what it already is does not change the mode.
+        mGovernor.setMuted(true);
+        mGovernor.onFrame(133);
+        assertEquals(3, mTarget.mFrames);
+    }
+
+    @Test
+    public void drawsOneFrameATickAndCountsThePerMinute() {
+        mGovernor.setAnimating(true);
+        mGovernor.setBatteryLow(true);
+
+        // A minute and a bit of checks at the tick rate, drawing whenever the second changes.
+        long checkMillis = TimeUnit.SECONDS.toMillis(1) / TICK_CHECK_FPS;
+        for (long now = 0; now <= MILLIS_PER_MINUTE; now += checkMillis) {
+            mTarget.mContent = now / TimeUnit.SECONDS.toMillis(1);
+            mGovernor.onFrame(now);
+        }
+        assertEquals(61, mTarget.mFrames);
+        assertEquals(FrameRateGovernor.MODE_TICK, mTarget.mLastMode);
+        assertEquals(60, mGovernor.getRenderedLastMinute());
+        assertEquals(60 * (TICK_CHECK_FPS - 1), mGovernor.getSkippedLastMinute());
+        assertTrue(mGovernor.dump(), mGovernor.dump().contains(" rendered=61 skipped=180 "));
+    }
+
+    @Test
+    public void leavesAnEmptyLastMinuteAfterAGap() {
+        mGovernor.setAnimating(true);
+        mTarget.mContent = 1;
+        mGovernor.onFrame(0);
+        mGovernor.onFrame(MILLIS_PER_MINUTE / 2);
+        mTarget.mContent = 2;
+        mGovernor.onFrame(MILLIS_PER_MINUTE + 1);
+        assertEquals(1, mGovernor.getRenderedLastMinute());
+        assertEquals(1, mGovernor.getSkippedLastMinute());
+
+        // Nothing for more than a minute, e.g. while stopped.
+        mTarget.mContent = 3;
+        mGovernor.onFrame(5 * MILLIS_PER_MINUTE);
+        assertEquals(0, mGovernor.getRenderedLastMinute());
+        assertEquals(0, mGovernor.getSkippedLastMinute());
+    }
+
+    /** Describes each frame by a number the test sets, and counts the frames let through. */
+    private static class FakeTarget implements FrameRateGovernor.Target {
+        long mContent;
+        int mFrames;
+        int mLastMode = -1;
+
+        @Override
+        public long getFrameContent(int mode) {
+            mLastMode = mode;
+            return mContent;
+        }
+
+        @Override
+        public void onGovernedFrame() {
+            mFrames++;
+        }
+    }
+
+    /**
+     * Records whether it runs and at what rate, instead of posting to the display. The test
+     * delivers the frames itself.
+     */
+    private static class StandInFrameClock extends FrameClock {
+        // No initializers: setMaxFps is first called from the superclass constructor.
+        int mMaxFps;
+        boolean mRunning;
+
+        StandInFrameClock() {
+            super("FrameRateGovernorTest", FULL_FPS, null /* callback */);
+        }
+
+        @Override
+        public void setMaxFps(int maxFps) {
+            super.setMaxFps(maxFps);
+            mMaxFps = maxFps;
+        }
+
+        @Override
+        public void start() {
+            mRunning = true;
+        }
+
+        @Override
+        public void stop() {
+            mRunning = false;
+        }
+
+        @Override
+        public boolean isRunning() {
+            return mRunning;
+        }
+    }
+}
@@ -0,0 +1,421 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.opengl.GLES20;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.Buffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+
+/**
+ * Checks the GL calls {@link Gles2ColoredTriangleList} makes, by drawing through a program whose
+ * GL calls are recorded instead of made.
+ */
+public class Gles2ColoredTriangleListTest {
+
+    private static final float[] TRIANGLE = {
+        0f, 1f, 0f,
+        -1f, -1f, 0f,
+        1f, -1f, 0f,
+    };
+
+    private static final float[] RED = {1f, 0f, 0f, 1f};
+    private static final float[] GRAY = {0.7f, 0.7f, 0.7f, 1f};
+
+    private static final float[] MVP_MATRIX = {
+        1f, 0f, 0f, 0f,
+        0f, 1f, 0f, 0f,
+        0f, 0f, 1f, 0f,
+        0f, 0f, 0f, 1f,
+    };
+
+    private static final int FRAMES = 100;
+
+    private static final float PI = (float) Math.PI;
+    private static final float HALF_PI = PI / 2;
+    private static final float DELTA = 1e-6f;
+
+    private RecordingGl mGl;
+    private Gles2ColoredTriangleList.Program mProgram;
+
+    @Before
+    public void setUp() {
+        mGl = new RecordingGl();
+        mProgram = new Gles2ColoredTriangleList.Program(mGl);
+        mProgram.use();
+    }
+
+    @Test
+    public void uploadsTheVerticesOnceAndDrawsFromTheBuffer() {
+        mGl.mCalls.clear();
+        Gles2ColoredTriangleList list = new Gles2ColoredTriangleList(mProgram, TRIANGLE, RED);
+        assertEquals(1, mGl.count("glGenBuffers"));
+        assertEquals(1, mGl.count("glBufferData"));
+        assertEquals(TRIANGLE.length * Gles2ColoredTriangleList.BYTES_PER_FLOAT,
+                mGl.mBufferDataBytes);
+
+        mGl.mCalls.clear();
+        for (int i = 0; i < FRAMES; i++) {
+            list.draw(MVP_MATRIX);
+        }
+        assertEquals(0, mGl.count("glBufferData"));
+        assertEquals(0, mGl.count("glVertexAttribPointer(client)"));
+        assertEquals(1, mGl.count("glVertexAttribPointer"));
+        assertEquals(FRAMES, mGl.count("glDrawArrays"));
+    }
+
+    @Test
+    public void drawsFromClientMemoryWithoutABuffer() {
+        mGl.mGenBuffersFails = true;
+        Gles2ColoredTriangleList list = new Gles2ColoredTriangleList(mProgram, TRIANGLE, RED);
+        assertEquals(0, mGl.count("glBufferData"));
+
+        mGl.mCalls.clear();
+        long clientArrayBytes = Gles2ColoredTriangleList.getClientArrayBytes();
+        for (int i = 0; i < FRAMES; i++) {
+            list.draw(MVP_MATRIX);
+        }
+        // Client memory can move, so the pointer is passed again on every draw.
+        assertEquals(FRAMES, mGl.count("glVertexAttribPointer(client)"));
+        assertEquals(FRAMES * TRIANGLE.length * Gles2ColoredTriangleList.BYTES_PER_FLOAT,
+                Gles2ColoredTriangleList.getClientArrayBytes() - clientArrayBytes);
+        assertEquals(0, mGl.mBoundBuffer);
+    }
+
+    @Test
+    public void drawsFromClientMemoryIfTheUploadRunsOutOfMemory() {
+        mGl.mBufferDataError = GLES20.GL_OUT_OF_MEMORY;
+        Gles2ColoredTriangleList list = new Gles2ColoredTriangleList(mProgram, TRIANGLE, RED);
+        assertEquals(1, mGl.count("glDeleteBuffers"));
+
+        mGl.mCalls.clear();
+        list.draw(MVP_MATRIX);
+        assertEquals(1, mGl.count("glVertexAttribPointer(client)"));
+        assertEquals(0, mGl.mBoundBuffer);
+    }
+
+    @Test
+    public void countsEveryGlCall() {
+        mGl.mCalls.clear();
+        long glCalls = Gles2ColoredTriangleList.getGlCallCount();
+        Gles2ColoredTriangleList.Program program = new Gles2ColoredTriangleList.Program(mGl);
+        program.use();
+        Gles2ColoredTriangleList single = new Gles2ColoredTriangleList(program, TRIANGLE, RED);
+        Gles2ColoredTriangleList.Builder builder = new Gles2ColoredTriangleList.Builder();
+        builder.add(TRIANGLE, RED);
+        builder.add(TRIANGLE, RED, 1 /* rotation */);
+        Gles2ColoredTriangleList batched = builder.build(program);
+        for (int i = 0; i < FRAMES; i++) {
+            program.setMvpMatrix(MVP_MATRIX);
+            program.setRotationAngles(new float[] {i});
+            single.draw(single.getVertexCount());
+            batched.draw(batched.getVertexCount());
+        }
+        assertEquals(mGl.mCalls.size(), Gles2ColoredTriangleList.getGlCallCount() - glCalls);
+    }
+
+    @Test
+    public void batchedFrameMakesThreeCalls() {
+        Gles2ColoredTriangleList batched = buildBatchedFace();
+        drawBatchedFrame(batched, 0);
+
+        for (int frame = 1; frame <= FRAMES; frame++) {
+            mGl.mCalls.clear();
+            drawBatchedFrame(batched, frame);
+            assertEquals(Arrays.asList("glUniformMatrix4fv", "glUniform1fv", "glDrawArrays"),
+                    mGl.mCalls);
+        }
+    }
+
+    /**
+     * Draws the ticks and hands the way the OpenGL face did before batching, one single-color
+     * list at a time with a matrix per hand, and the same triangles as one batched list.
+     */
+    @Test
+    public void batchingMakesAThirdOfTheCalls() {
+        Gles2ColoredTriangleList[] unbatched = {
+            new Gles2ColoredTriangleList(mProgram, TRIANGLE, RED),
+            new Gles2ColoredTriangleList(mProgram, TRIANGLE, GRAY),
+            new Gles2ColoredTriangleList(mProgram, TRIANGLE, RED),
+            new Gles2ColoredTriangleList(mProgram, TRIANGLE, GRAY),
+            new Gles2ColoredTriangleList(mProgram, TRIANGLE, RED),
+        };
+        Gles2ColoredTriangleList batched = buildBatchedFace();
+
+        // Each way is counted from its second frame on, after its first has set the state up.
+        drawUnbatchedFrame(unbatched, 0);
+        mGl.mCalls.clear();
+        for (int frame = 1; frame <= FRAMES; frame++) {
+            drawUnbatchedFrame(unbatched, frame);
+        }
+        int unbatchedCalls = mGl.mCalls.size();
+
+        drawBatchedFrame(batched, 0);
+        mGl.mCalls.clear();
+        for (int frame = 1; frame <= FRAMES; frame++) {
+            drawBatchedFrame(batched, frame);
+        }
+        int batchedCalls = mGl.mCalls.size();
+
+        System.out.println("Gles2ColoredTriangleList: " + unbatchedCalls / FRAMES
+                + " GL calls per frame unbatched, " + batchedCalls / FRAMES + " batched");
+        assertEquals(3 * FRAMES, batchedCalls);
+        assertTrue(unbatchedCalls >= 3 * batchedCalls);
+    }
+
+    @Test
+    public void turnsToRadiansWrapsWholeTurns() {
+        assertEquals(0f, Gles2ColoredTriangleList.Program.turnsToRadians(0f), 0f);
+        assertEquals(HALF_PI, Gles2ColoredTriangleList.Program.turnsToRadians(0.25f), DELTA);
+        assertEquals(PI, Gles2ColoredTriangleList.Program.turnsToRadians(0.5f), DELTA);
+        assertEquals(3 * HALF_PI, Gles2ColoredTriangleList.Program.turnsToRadians(0.75f), DELTA);
+        assertEquals(0f, Gles2ColoredTriangleList.Program.turnsToRadians(1f), 0f);
+        assertEquals(HALF_PI, Gles2ColoredTriangleList.Program.turnsToRadians(1.25f), DELTA);
+        assertEquals(3 * HALF_PI, Gles2ColoredTriangleList.Program.turnsToRadians(-0.25f),
+                DELTA);
+        // A float this large has only four bits after the point, but the quarter survives.
+        assertEquals(HALF_PI, Gles2ColoredTriangleList.Program.turnsToRadians(1000000.25f),
+                DELTA);
+    }
+
+    @Test
+    public void turnsToRadiansStaysWithinOneTurn() {
+        for (int i = -1000; i <= 1000; i++) {
+            float turns = i / 60f;
+            float radians = Gles2ColoredTriangleList.Program.turnsToRadians(turns);
+            assertTrue(radians >= 0f && radians <= 2 * PI);
+            assertEquals(Math.sin(2 * Math.PI * turns), Math.sin(radians), DELTA);
+            assertEquals(Math.cos(2 * Math.PI * turns), Math.cos(radians), DELTA);
+        }
+    }
+
+    /** Major ticks, minor ticks and three hands in one list, like the OpenGL face. */
+    private Gles2ColoredTriangleList buildBatchedFace() {
+        Gles2ColoredTriangleList.Builder builder = new Gles2ColoredTriangleList.Builder();
+        builder.add(TRIANGLE, RED);
+        builder.add(TRIANGLE, GRAY);
+        builder.add(TRIANGLE, RED, 1 /* rotation */);
+        builder.add(TRIANGLE, GRAY, 2 /* rotation */);
+        builder.add(TRIANGLE, RED, 3 /* rotation */);
+        return builder.build(mProgram);
+    }
+
+    /** Draws a frame like OpenGLWatchFaceService.onDraw: the camera and the hands move. */
+    private void drawBatchedFrame(Gles2ColoredTriangleList batched, int frame) {
+        mProgram.use();
+        mProgram.setMvpMatrix(getMatrix(frame));
+        mProgram.setRotationAngles(new float[] {frame, 2 * frame, 3 * frame});
+        batched.draw(batched.getVertexCount());
+    }
+
+    private void drawUnbatchedFrame(Gles2ColoredTriangleList[] unbatched, int frame) {
+        mProgram.use();
+        // The ticks share the camera matrix; each hand has its own, rotated.
+        unbatched[0].draw(getMatrix(frame));
+        unbatched[1].draw(getMatrix(frame));
+        for (int hand = 2; hand < unbatched.length; hand++) {
+            unbatched[hand].draw(getMatrix(frame * hand));
+        }
+    }
+
+    /** Returns a matrix that differs for every {@code seed}. */
+    private static float[] getMatrix(int seed) {
+        float[] matrix = MVP_MATRIX.clone();
+        matrix[12] = seed;
+        return matrix;
+    }
+
+    /**
+     * Records the name of each GL call, and keeps just enough state to answer the program and
+     * lists: new names for shaders, programs and buffers, and attribute locations.
+     */
+    static class RecordingGl implements Gles2ColoredTriangleList.Gl {
+        final ArrayList<String> mCalls = new ArrayList<>();
+
+        /** Whether glGenBuffers returns no buffer, as if the driver had none to give. */
+        boolean mGenBuffersFails;
+
+        /** Error for glGetError to return after the next glBufferData. */
+        int mBufferDataError = GLES20.GL_NO_ERROR;
+
+        int mBufferDataBytes;
+        int mBoundBuffer;
+
+        private final HashMap<String, Integer> mLocations = new HashMap<>();
+        private int mNextName = 1;
+        private int mError = GLES20.GL_NO_ERROR;
+
+        /** Returns how many times the named call was made since {@link #mCalls} was cleared. */
+        int count(String call) {
+            return Collections.frequency(mCalls, call);
+        }
+
+        private int getLocation(String name) {
+            Integer location = mLocations.get(name);
+            if (location == null) {
+                location = mLocations.size();
+                mLocations.put(name, location);
+            }
+            return location;
+        }
+
+        @Override
+        public int glCreateShader(int type) {
+            mCalls.add("glCreateShader");
+            return mNextName++;
+        }
+
+        @Override
+        public void glShaderSource(int shader, String string) {
+            mCalls.add("glShaderSource");
+        }
+
+        @Override
+        public void glCompileShader(int shader) {
+            mCalls.add("glCompileShader");
+        }
+
+        @Override
+        public int glCreateProgram() {
+            mCalls.add("glCreateProgram");
+            return mNextName++;
+        }
+
+        @Override
+        public void glAttachShader(int program, int shader) {
+            mCalls.add("glAttachShader");
+        }
+
+        @Override
+        public void glLinkProgram(int program) {
+            mCalls.add("glLinkProgram");
+        }
+
+        @Override
+        public int glGetUniformLocation(int program, String name) {
+            mCalls.add("glGetUniformLocation");
+            return getLocation(name);
+        }
+
+        @Override
+        public int glGetAttribLocation(int program, String name) {
+            mCalls.add("glGetAttribLocation");
+            return getLocation(name);
+        }
+
+        @Override
+        public void glEnableVertexAttribArray(int index) {
+            mCalls.add("glEnableVertexAttribArray");
+        }
+
+        @Override
+        public void glDisableVertexAttribArray(int index) {
+            mCalls.add("glDisableVertexAttribArray");
+        }
+
+        @Override
+        public void glUseProgram(int program) {
+            mCalls.add("glUseProgram");
+        }
+
+        @Override
+        public void glUniformMatrix4fv(int location, int count, boolean transpose,
+                float[] value, int offset) {
+            mCalls.add("glUniformMatrix4fv");
+        }
+
+        @Override
+        public void glUniform1fv(int location, int count, float[] v, int offset) {
+            mCalls.add("glUniform1fv");
+        }
+
+        @Override
+        public void glBindBuffer(int target, int buffer) {
+            mCalls.add("glBindBuffer");
+            mBoundBuffer = buffer;
+        }
+
+        @Override
+        public void glGenBuffers(int n, int[] buffers, int offset) {
+            mCalls.add("glGenBuffers");
+            for (int i = 0; i < n; i++) {
+                buffers[offset + i] = mGenBuffersFails ? 0 : mNextName++;
+            }
+        }
+
+        @Override
+        public void glBufferData(int target, int size, Buffer data, int usage) {
+            mCalls.add("glBufferData");
+            mBufferDataBytes = size;
+            mError = mBufferDataError;
+        }
+
+        @Override
+        public void glDeleteBuffers(int n, int[] buffers, int offset) {
+            mCalls.add("glDeleteBuffers");
+            for (int i = 0; i < n; i++) {
+                if (buffers[offset + i] == mBoundBuffer) {
+                    mBoundBuffer = 0;
+                }
+            }
+        }
+
+        @Override
+        public int glGetError() {
+            mCalls.add("glGetError");
+            int error = mError;
+            mError = GLES20.GL_NO_ERROR;
+            return error;
+        }
+
+        @Override
+        public void glVertexAttrib1f(int index, float x) {
+            mCalls.add("glVertexAttrib1f");
+        }
+
+        @Override
+        public void glVertexAttrib4fv(int index, float[] values, int offset) {
+            mCalls.add("glVertexAttrib4fv");
+        }
+
+        @Override
+        public void glVertexAttribPointer(int index, int size, int type, boolean normalized,
+                int stride, int offset) {
+            mCalls.add("glVertexAttribPointer");
+        }
+
+        @Override
+        public void glVertexAttribPointer(int index, int size, int type, boolean normalized,
+                int stride, Buffer ptr) {
+            mCalls.add("glVertexAttribPointer(client)");
+        }
+
+        @Override
+        public void glDrawArrays(int mode, int first, int count) {
+            mCalls.add("glDrawArrays");
+        }
+    }
+}
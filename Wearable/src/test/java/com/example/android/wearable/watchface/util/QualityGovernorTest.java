@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Checks the windowing and stepping of {@link QualityGovernor}. */
+public class QualityGovernorTest {
+
+    private static final long BUDGET = 16000000L;
+    private static final long SLOW = BUDGET * 2;
+    private static final long OK = BUDGET * 3 / 4;
+    private static final long FAST = BUDGET / 4;
+    private static final int WINDOW = FrameTimeStats.DEFAULT_WINDOW_SIZE;
+
+    private final List<Integer> mChanges = new ArrayList<>();
+    private QualityGovernor mGovernor;
+
+    @Before
+    public void setUp() {
+        mGovernor = new QualityGovernor("QualityGovernorTest", BUDGET,
+                new QualityGovernor.Listener() {
+                    @Override
+                    public void onQualityChanged(int quality) {
+                        mChanges.add(quality);
+                    }
+                });
+    }
+
+    @Test
+    public void waitsForAFullWindow() {
+        record(SLOW, WINDOW - 1);
+        assertEquals(QualityGovernor.QUALITY_FULL, mGovernor.getQuality());
+        assertTrue(mChanges.isEmpty());
+
+        record(SLOW, 1);
+        assertEquals(QualityGovernor.QUALITY_NO_SHADOWS, mGovernor.getQuality());
+        assertEquals(1, mChanges.size());
+    }
+
+    @Test
+    public void decidesOnlyOnFramesRenderedAtTheCurrentLevel() {
+        record(SLOW, WINDOW);
+        assertEquals(QualityGovernor.QUALITY_NO_SHADOWS, mGovernor.getQuality());
+
+        // The window is still full of slow frames, but they were rendered with shadows.
+        record(SLOW, WINDOW - 1);
+        assertEquals(QualityGovernor.QUALITY_NO_SHADOWS, mGovernor.getQuality());
+
+        record(SLOW, 1);
+        assertEquals(QualityGovernor.QUALITY_NO_ANTI_ALIAS, mGovernor.getQuality());
+    }
+
+    @Test
+    public void stepsDownOneLevelAtATimeAndStopsAtTheCheapest() {
+        record(SLOW, WINDOW * 10);
+        assertEquals(QualityGovernor.QUALITY_NO_SWEEP, mGovernor.getQuality());
+        assertEquals(3, mChanges.size());
+        assertEquals(QualityGovernor.QUALITY_NO_SHADOWS, (int) mChanges.get(0));
+        assertEquals(QualityGovernor.QUALITY_NO_ANTI_ALIAS, (int) mChanges.get(1));
+        assertEquals(QualityGovernor.QUALITY_NO_SWEEP, (int) mChanges.get(2));
+        assertFalse(mGovernor.isShadowEnabled());
+        assertFalse(mGovernor.isAntiAliasEnabled());
+        assertFalse(mGovernor.isSweepEnabled());
+    }
+
+    @Test
+    public void stepsUpOnlyWithHeadroom() {
+        record(SLOW, WINDOW * 2);
+        assertEquals(QualityGovernor.QUALITY_NO_ANTI_ALIAS, mGovernor.getQuality());
+
+        // Within budget but above half of it: stay.
+        record(OK, WINDOW * 3);
+        assertEquals(QualityGovernor.QUALITY_NO_ANTI_ALIAS, mGovernor.getQuality());
+
+        record(FAST, WINDOW);
+        assertEquals(QualityGovernor.QUALITY_NO_SHADOWS, mGovernor.getQuality());
+        record(FAST, WINDOW);
+        assertEquals(QualityGovernor.QUALITY_FULL, mGovernor.getQuality());
+        assertTrue(mGovernor.isShadowEnabled());
+        assertTrue(mGovernor.isAntiAliasEnabled());
+    }
+
+    @Test
+    public void averagesOverTheWindow() {
+        // Half the frames at twice the budget, half at none: exactly on budget, no change.
+        for (int i = 0; i < WINDOW; i++) {
+            mGovernor.record(i % 2 == 0 ? SLOW : 0);
+        }
+        assertEquals(QualityGovernor.QUALITY_FULL, mGovernor.getQuality());
+
+        // One slow frame replacing a free one tips the average over.
+        record(SLOW, WINDOW / 2);
+        record(0, WINDOW / 2 - 1);
+        record(SLOW, 1);
+        assertEquals(QualityGovernor.QUALITY_NO_SHADOWS, mGovernor.getQuality());
+    }
+
+    @Test
+    public void resetRestoresFullQualityAndWaitsForANewWindow() {
+        record(SLOW, WINDOW * 2);
+        mGovernor.reset();
+        assertEquals(QualityGovernor.QUALITY_FULL, mGovernor.getQuality());
+        assertEquals(QualityGovernor.QUALITY_FULL, (int) mChanges.get(mChanges.size() - 1));
+
+        record(SLOW, WINDOW - 1);
+        assertEquals(QualityGovernor.QUALITY_FULL, mGovernor.getQuality());
+        record(SLOW, 1);
+        assertEquals(QualityGovernor.QUALITY_NO_SHADOWS, mGovernor.getQuality());
+    }
+
+    private void record(long frameNanos, int count) {
+        for (int i = 0; i < count; i++) {
+            mGovernor.record(frameNanos);
+        }
+    }
+}
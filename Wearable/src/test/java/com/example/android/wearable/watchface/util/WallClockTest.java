@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/** Checks {@link WallClock} field for field against {@link Calendar}. */
+public class WallClockTest {
+
+    /**
+     * Zones with daylight saving time, offsets of half and three quarters of an hour, and a
+     * daylight saving shift of half an hour (Lord Howe).
+     */
+    private static final String[] ZONE_IDS = {
+        "UTC",
+        "America/New_York",
+        "Europe/London",
+        "America/St_Johns",
+        "Asia/Kolkata",
+        "Asia/Kathmandu",
+        "Australia/Adelaide",
+        "Australia/Lord_Howe",
+        "Pacific/Chatham",
+    };
+
+    private static final long START_2017 = 1483228800000L;
+    private static final long START_2019 = 1546300800000L;
+
+    @Test
+    public void matchesCalendarAcrossTransitions() {
+        for (String zoneId : ZONE_IDS) {
+            TimeZone zone = TimeZone.getTimeZone(zoneId);
+            WallClock clock = new WallClock(zone);
+            Calendar calendar = new GregorianCalendar(zone);
+
+            // Every minute for three hours either side of every transition in 2017 and 2018.
+            long time = START_2017;
+            while (time < START_2019) {
+                clock.setTimeInMillis(time);
+                long transition = clock.getOffsetValidUntil();
+                if (transition >= START_2019) {
+                    break;
+                }
+                long end = transition + TimeUnit.HOURS.toMillis(3);
+                for (long t = transition - TimeUnit.HOURS.toMillis(3); t < end;
+                        t += TimeUnit.MINUTES.toMillis(1)) {
+                    assertSameFields(zoneId, clock, calendar, t);
+                }
+                assertSameFields(zoneId, clock, calendar, transition - 1);
+                assertSameFields(zoneId, clock, calendar, transition);
+                time = end;
+            }
+        }
+    }
+
+    @Test
+    public void matchesCalendarAtRandomTimes() {
+        Random random = new Random(42);
+        for (String zoneId : ZONE_IDS) {
+            TimeZone zone = TimeZone.getTimeZone(zoneId);
+            WallClock clock = new WallClock(zone);
+            Calendar calendar = new GregorianCalendar(zone);
+            for (int i = 0; i < 10000; i++) {
+                // 1901 to 2099, in either direction, so the cached window is also left backwards.
+                long time = (long) ((random.nextDouble() * 2 - 1) * 4_000_000_000_000L);
+                assertSameFields(zoneId, clock, calendar, time);
+            }
+        }
+    }
+
+    @Test
+    public void matchesCalendarForEveryHourOfAYear() {
+        for (String zoneId : ZONE_IDS) {
+            TimeZone zone = TimeZone.getTimeZone(zoneId);
+            WallClock clock = new WallClock(zone);
+            Calendar calendar = new GregorianCalendar(zone);
+            for (long t = START_2017; t < START_2019; t += TimeUnit.MINUTES.toMillis(37)) {
+                assertSameFields(zoneId, clock, calendar, t);
+            }
+        }
+    }
+
+    @Test
+    public void findsTransitionToTheMillisecond() {
+        TimeZone zone = TimeZone.getTimeZone("America/New_York");
+        WallClock clock = new WallClock(zone);
+        clock.setTimeInMillis(START_2017);
+
+        // 2017-03-12 02:00 EST is 07:00 UTC.
+        assertEquals(1489302000000L, clock.getOffsetValidUntil());
+        assertEquals(zone.getOffset(START_2017), clock.getOffsetMillis());
+    }
+
+    @Test
+    public void onlyLooksUpOffsetAtTransitions() {
+        WallClock clock = new WallClock(TimeZone.getTimeZone("Australia/Lord_Howe"));
+        for (long t = START_2017; t < START_2019; t += TimeUnit.SECONDS.toMillis(30)) {
+            clock.setTimeInMillis(t);
+        }
+        // One lookup to start with and one per transition: two a year in Lord Howe.
+        assertEquals(5, clock.getOffsetLookups());
+    }
+
+    @Test
+    public void nextMidnightMatchesCalendar() {
+        for (String zoneId : new String[] {"America/Sao_Paulo", "America/New_York",
+                "Asia/Kolkata", "Australia/Lord_Howe"}) {
+            TimeZone zone = TimeZone.getTimeZone(zoneId);
+            WallClock clock = new WallClock(zone);
+            Calendar calendar = new GregorianCalendar(zone);
+            for (long t = START_2017; t < START_2019; t += TimeUnit.HOURS.toMillis(5)) {
+                clock.setTimeInMillis(t);
+                calendar.setTimeInMillis(t);
+                calendar.add(Calendar.DAY_OF_MONTH, 1);
+                calendar.set(Calendar.HOUR_OF_DAY, 0);
+                calendar.set(Calendar.MINUTE, 0);
+                calendar.set(Calendar.SECOND, 0);
+                calendar.set(Calendar.MILLISECOND, 0);
+                assertEquals(zoneId + " at " + t,
+                        calendar.getTimeInMillis(), clock.getNextMidnightMillis());
+            }
+        }
+    }
+
+    @Test
+    public void nextMidnightInForwardGapIsTheTransition() {
+        // Sao Paulo skipped from 2017-10-15 00:00 to 01:00, which is 03:00 UTC.
+        TimeZone zone = TimeZone.getTimeZone("America/Sao_Paulo");
+        WallClock clock = new WallClock(zone);
+        clock.setTimeInMillis(1508036400000L - TimeUnit.HOURS.toMillis(2));
+
+        assertEquals(1508036400000L, clock.getNextMidnightMillis());
+    }
+
+    @Test
+    public void setTimeZoneDropsCachedOffset() {
+        WallClock clock = new WallClock(TimeZone.getTimeZone("UTC"));
+        clock.setTimeInMillis(START_2017);
+        assertEquals(0, clock.getHourOfDay());
+
+        clock.setTimeZone(TimeZone.getTimeZone("Asia/Kathmandu"));
+        clock.setTimeInMillis(START_2017);
+        assertEquals(5, clock.getHourOfDay());
+        assertEquals(45, clock.getMinute());
+        assertTrue(clock.getOffsetLookups() >= 2);
+    }
+
+    private static void assertSameFields(String zoneId, WallClock clock, Calendar calendar,
+            long timeMillis) {
+        clock.setTimeInMillis(timeMillis);
+        calendar.setTimeInMillis(timeMillis);
+        String message = zoneId + " at " + timeMillis;
+        assertEquals(message, calendar.get(Calendar.YEAR), clock.getYear());
+        assertEquals(message, calendar.get(Calendar.MONTH), clock.getMonth());
+        assertEquals(message, calendar.get(Calendar.DAY_OF_MONTH), clock.getDayOfMonth());
+        assertEquals(message, calendar.get(Calendar.DAY_OF_WEEK), clock.getDayOfWeek());
+        assertEquals(message, calendar.get(Calendar.HOUR_OF_DAY), clock.getHourOfDay());
+        assertEquals(message, calendar.get(Calendar.HOUR), clock.getHour());
+        assertEquals(message, calendar.get(Calendar.AM_PM), clock.getAmPm());
+        assertEquals(message, calendar.get(Calendar.MINUTE), clock.getMinute());
+        assertEquals(message, calendar.get(Calendar.SECOND), clock.getSecond());
+        assertEquals(message, calendar.get(Calendar.MILLISECOND), clock.getMillisecond());
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Paint;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks that {@link WorldClockRows} formats once per minute and only the rows shown.
+ * {@code WorldClockRowsBenchmark} times what that saves on a device.
+ */
+public class WorldClockRowsTest {
+
+    private static final String[] ZONE_IDS = {
+        "Asia/Tokyo",
+        "Europe/London",
+        "America/New_York",
+        "America/Los_Angeles",
+        "Asia/Kolkata",
+        "Australia/Sydney",
+        "Europe/Berlin",
+        "Asia/Shanghai",
+        "America/Sao_Paulo",
+        "Africa/Cairo",
+        "Pacific/Auckland",
+        "Asia/Kathmandu",
+    };
+
+    /** 2017-03-11 17:00 UTC. */
+    private static final long START = 1489251600000L;
+
+    private static final long FRAME_MILLIS = TimeUnit.SECONDS.toMillis(1) / 60;
+
+    private WorldClockRows mRows;
+
+    @Before
+    public void setUp() {
+        mRows = new WorldClockRows("WorldClockRowsTest", new Paint(), "AM", "PM");
+    }
+
+    @Test
+    public void formatsTheZones() {
+        mRows.setZones(new String[] {"Asia/Tokyo", "Not/A_Zone", "America/New_York"});
+        mRows.update(START, true);
+        assertEquals(2, mRows.size());
+        assertEquals("Tokyo 02:00", mRows.getText(0));
+        assertEquals("New York 12:00", mRows.getText(1));
+
+        mRows.update(START, false);
+        assertEquals("Tokyo 2:00 AM", mRows.getText(0));
+        assertEquals("New York 12:00 PM", mRows.getText(1));
+    }
+
+    @Test
+    public void formatsOncePerMinute() {
+        mRows.setZones(ZONE_IDS);
+        long end = START + TimeUnit.MINUTES.toMillis(3);
+        for (long now = START; now < end; now += FRAME_MILLIS) {
+            mRows.update(now, true);
+        }
+        assertEquals(3, mRows.getVersion());
+    }
+
+    @Test
+    public void formatsOnlyTheRowsShown() {
+        mRows.setZones(ZONE_IDS);
+        mRows.setMaxRows(2);
+        mRows.update(START, true);
+        assertEquals(2, mRows.size());
+        assertEquals("London 17:00", mRows.getText(1));
+        assertTrue(mRows.dump(), mRows.dump().contains("shown=2 "));
+
+        mRows.setMaxRows(2);
+        mRows.update(START, true);
+        assertEquals(1, mRows.getVersion());
+
+        mRows.setMaxRows(WorldClockRows.MAX_ZONES + 1);
+        mRows.update(START, true);
+        assertEquals(2, mRows.getVersion());
+        assertEquals(ZONE_IDS.length, mRows.size());
+        assertEquals("Kathmandu 22:45", mRows.getText(ZONE_IDS.length - 1));
+    }
+
+    /** An hour of frames at 60 fps formats the rows once a minute, however many zones. */
+    @Test
+    public void formatsOncePerMinuteForAnHourOfFrames() {
+        int[] zoneCounts = {1, 6, 12};
+        for (int zones : zoneCounts) {
+            mRows = new WorldClockRows("WorldClockRowsTest", new Paint(), "AM", "PM");
+            mRows.setZones(Arrays.copyOf(ZONE_IDS, zones));
+            long end = START + TimeUnit.HOURS.toMillis(1);
+            for (long now = START; now < end; now += FRAME_MILLIS) {
+                mRows.update(now, true);
+            }
+            assertEquals(60, mRows.getVersion());
+            assertTrue(mRows.dump(), mRows.dump().contains(" formats=60 "));
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Icon;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes a photo-sized background through {@link BackgroundImageLoader} and checks the ambient
+ * variants. Also times a frame drawn from each variant against one drawn through a drawable that
+ * scales the source image every frame, and samples the heaps while decoding; read the figures
+ * from logcat.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BackgroundImageLoaderTest {
+    private static final String TAG = "BackgroundImageLoaderTest";
+
+    private static final int SIZE = 400;
+    private static final int SOURCE_SIZE = 1600;
+
+    private static final long DECODE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private static final int TIMED_FRAMES = 120;
+
+    private final CountDownLatch mReady = new CountDownLatch(1);
+    private Context mContext;
+    private Bitmap mSource;
+    private BackgroundImageLoader mLoader;
+    private Bitmap mFrame;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+
+        // Dark on the left, bright on the right.
+        mSource = Bitmap.createBitmap(SOURCE_SIZE, SOURCE_SIZE, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(mSource);
+        canvas.drawColor(Color.rgb(32, 32, 32));
+        Paint paint = new Paint();
+        paint.setColor(Color.rgb(240, 220, 200));
+        canvas.drawRect(SOURCE_SIZE / 2, 0, SOURCE_SIZE, SOURCE_SIZE, paint);
+
+        mFrame = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mLoader = new BackgroundImageLoader(mContext, new BackgroundImageLoader.Listener() {
+                    @Override
+                    public void onBackgroundImageReplacing() {
+                    }
+
+                    @Override
+                    public void onBackgroundImageReady() {
+                        mReady.countDown();
+                    }
+                });
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mLoader.release();
+            }
+        });
+        mSource.recycle();
+        mFrame.recycle();
+    }
+
+    @Test
+    public void lowBitVariantIsSparseAndFullyOnOrOff() throws InterruptedException {
+        decode();
+        assertTrue(mLoader.draw(new Canvas(mFrame), true /* ambient */, true /* lowBit */));
+
+        int[] row = new int[SIZE];
+        int lit = 0;
+        for (int y = 0; y < SIZE; y++) {
+            mFrame.getPixels(row, 0, SIZE, 0, y, SIZE, 1);
+            for (int x = 0; x < SIZE; x++) {
+                int pixel = row[x];
+                assertTrue("pixel (" + x + ", " + y + ") is " + Integer.toHexString(pixel),
+                        pixel == Color.BLACK || pixel == Color.WHITE);
+                if (pixel == Color.WHITE) {
+                    // The scaled edge may blur into the last dark column.
+                    assertTrue("lit in the dark half at " + x, x >= SIZE / 2 - 1);
+                    assertFalse("neighbours lit at " + x, x > 0 && row[x - 1] == Color.WHITE);
+                    lit++;
+                }
+            }
+        }
+        // Every other pixel of the bright half, give or take the edge column.
+        assertEquals(SIZE * SIZE / 4, lit, SIZE / 2);
+    }
+
+    @Test
+    public void measureDecodeMemoryAndFrameCost() throws InterruptedException {
+        long usedBefore = usedMemory();
+        long peakUsed = decode();
+        int retained = mLoader.getAllocationByteCount();
+        assertTrue(retained > 0 && retained < mSource.getAllocationByteCount());
+
+        // What drawing the complication's drawable amounts to: scaling the source every frame.
+        BitmapDrawable drawable = new BitmapDrawable(mContext.getResources(), mSource);
+        drawable.setFilterBitmap(true);
+        drawable.setBounds(-SIZE / 2, -SIZE / 2, SIZE * 3 / 2, SIZE * 3 / 2);
+        Canvas canvas = new Canvas(mFrame);
+        for (int i = 0; i < TIMED_FRAMES; i++) {
+            drawable.draw(canvas);
+        }
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < TIMED_FRAMES; i++) {
+            drawable.draw(canvas);
+        }
+        long scaledNanos = (SystemClock.elapsedRealtimeNanos() - start) / TIMED_FRAMES;
+
+        long interactiveNanos = timeLoaderFrames(canvas, false, false);
+        long ambientNanos = timeLoaderFrames(canvas, true, false);
+        long lowBitNanos = timeLoaderFrames(canvas, true, true);
+
+        Log.i(TAG, "decode peak=+" + (peakUsed - usedBefore) / 1024 + "KB"
+                + " retained=" + retained / 1024 + "KB"
+                + " source=" + mSource.getAllocationByteCount() / 1024 + "KB");
+        Log.i(TAG, "scaled drawable=" + scaledNanos / 1000 + "us"
+                + " interactive=" + interactiveNanos / 1000 + "us"
+                + " ambient=" + ambientNanos / 1000 + "us"
+                + " low-bit=" + lowBitNanos / 1000 + "us");
+    }
+
+    private long timeLoaderFrames(Canvas canvas, boolean ambient, boolean lowBit) {
+        for (int i = 0; i < TIMED_FRAMES; i++) {
+            assertTrue(mLoader.draw(canvas, ambient, lowBit));
+        }
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < TIMED_FRAMES; i++) {
+            mLoader.draw(canvas, ambient, lowBit);
+        }
+        return (SystemClock.elapsedRealtimeNanos() - start) / TIMED_FRAMES;
+    }
+
+    /**
+     * Starts decoding {@link #mSource} and waits for it.
+     *
+     * @return the most memory seen in use while waiting
+     */
+    private long decode() throws InterruptedException {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mLoader.setSize(SIZE, SIZE);
+                mLoader.setImage(Icon.createWithBitmap(mSource));
+            }
+        });
+        long peakUsed = usedMemory();
+        long deadline = SystemClock.elapsedRealtime() + DECODE_TIMEOUT_MILLIS;
+        while (!mReady.await(1, TimeUnit.MILLISECONDS)) {
+            peakUsed = Math.max(peakUsed, usedMemory());
+            assertTrue("decode timed out", SystemClock.elapsedRealtime() < deadline);
+        }
+        return peakUsed;
+    }
+
+    /** Bitmap pixels live in the Java heap before API 26 and in the native heap from then on. */
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory() + Debug.getNativeHeapAllocatedSize();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+/**
+ * Pixel comparisons for the tests that draw the same thing two ways, e.g. directly and from a
+ * cache, where anti-aliasing may shift edges by a pixel.
+ */
+final class BitmapAssert {
+
+    private BitmapAssert() {
+    }
+
+    /**
+     * Asserts that the bitmaps, of the same size, look alike both ways round: every pixel of
+     * each matches a pixel of the other no more than {@code pixelTolerance} away, within
+     * {@code channelTolerance} in every channel. A bitmap missing something the other has drawn
+     * fails as well as one with something extra.
+     */
+    static void assertSimilar(String message, Bitmap expected, Bitmap actual,
+            int pixelTolerance, int channelTolerance) {
+        int width = expected.getWidth();
+        int height = expected.getHeight();
+        if (actual.getWidth() != width || actual.getHeight() != height) {
+            throw new AssertionError(message + ": size is " + actual.getWidth() + "x"
+                    + actual.getHeight() + ", expected " + width + "x" + height);
+        }
+        int[] expectedPixels = new int[width * height];
+        int[] actualPixels = new int[width * height];
+        expected.getPixels(expectedPixels, 0, width, 0, 0, width, height);
+        actual.getPixels(actualPixels, 0, width, 0, 0, width, height);
+        assertCovered(message + ", extra in actual", expectedPixels, actualPixels, width, height,
+                pixelTolerance, channelTolerance);
+        assertCovered(message + ", missing from actual", actualPixels, expectedPixels, width,
+                height, pixelTolerance, channelTolerance);
+    }
+
+    /** Asserts that every pixel of {@code pixels} has a similar neighbour in {@code reference}. */
+    private static void assertCovered(String message, int[] reference, int[] pixels, int width,
+            int height, int pixelTolerance, int channelTolerance) {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int pixel = pixels[y * width + x];
+                if (!hasSimilarNeighbour(reference, width, height, x, y, pixel, pixelTolerance,
+                        channelTolerance)) {
+                    throw new AssertionError(message + ": pixel (" + x + ", " + y + ") is "
+                            + Integer.toHexString(pixel) + ", other is about "
+                            + Integer.toHexString(reference[y * width + x]));
+                }
+            }
+        }
+    }
+
+    private static boolean hasSimilarNeighbour(int[] pixels, int width, int height, int x, int y,
+            int pixel, int pixelTolerance, int channelTolerance) {
+        for (int dy = -pixelTolerance; dy <= pixelTolerance; dy++) {
+            for (int dx = -pixelTolerance; dx <= pixelTolerance; dx++) {
+                int nx = x + dx;
+                int ny = y + dy;
+                if (nx >= 0 && ny >= 0 && nx < width && ny < height
+                        && isSimilar(pixels[ny * width + nx], pixel, channelTolerance)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSimilar(int first, int second, int channelTolerance) {
+        return Math.abs(Color.alpha(first) - Color.alpha(second)) <= channelTolerance
+                && Math.abs(Color.red(first) - Color.red(second)) <= channelTolerance
+                && Math.abs(Color.green(first) - Color.green(second)) <= channelTolerance
+                && Math.abs(Color.blue(first) - Color.blue(second)) <= channelTolerance;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import android.graphics.Paint;
+import android.os.SystemClock;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times {@link DateLines} on a device, where the lines are really measured, against formatting
+ * and measuring them on every frame as onDraw used to. Read the figures from logcat; nothing is
+ * asserted, {@code DateLinesTest} checks the behavior.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DateLinesBenchmark {
+    private static final String TAG = "DateLinesBenchmark";
+
+    private static final TimeZone ZONE = TimeZone.getTimeZone("America/New_York");
+
+    /** 2017-03-11 12:00 in New York. */
+    private static final long START = 1489251600000L;
+
+    /** Ten minutes at 60 fps. */
+    private static final int FRAMES = 10 * 60 * 60;
+    private static final long FRAME_MILLIS = TimeUnit.SECONDS.toMillis(1) / 60;
+
+    @Test
+    public void measureFormattingSaved() {
+        DateFormat dayOfWeekFormat = new SimpleDateFormat("EEEE", Locale.US);
+        dayOfWeekFormat.setTimeZone(ZONE);
+        DateFormat dateFormat = new SimpleDateFormat("M/d/yyyy", Locale.US);
+        dateFormat.setTimeZone(ZONE);
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setTextSize(24f);
+        DateLines dateLines = new DateLines(TAG, paint);
+        dateLines.setFormats(dayOfWeekFormat, dateFormat);
+        WallClock clock = new WallClock(ZONE);
+
+        // Warm up both paths first.
+        run(dateLines, clock, true);
+        run(dateLines, clock, false);
+
+        long formatNanos = run(dateLines, clock, true);
+        long updateNanos = run(dateLines, clock, false);
+        Log.i(TAG, "formatting every frame " + formatNanos / FRAMES + " ns/frame, update() "
+                + updateNanos / FRAMES + " ns/frame");
+    }
+
+    /**
+     * Updates the lines for {@link #FRAMES} frames, invalidating them first on each frame if
+     * {@code everyFrame} is set.
+     *
+     * @return the time taken, in nanoseconds
+     */
+    private static long run(DateLines dateLines, WallClock clock, boolean everyFrame) {
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < FRAMES; i++) {
+            clock.setTimeInMillis(START + i * FRAME_MILLIS);
+            if (everyFrame) {
+                dateLines.invalidate();
+            }
+            dateLines.update(clock);
+        }
+        return SystemClock.elapsedRealtimeNanos() - start;
+    }
+}
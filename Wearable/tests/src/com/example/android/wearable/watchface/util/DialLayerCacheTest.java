@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.os.SystemClock;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Times the dial part of the analog face's frame with and without a {@link DialLayerCache}: the
+ * background fill followed by the shadowed hour ticks drawn directly, or by one blit of the cached
+ * layer. Runs on a device because only the real software canvas renders blurred shadows; read the
+ * figures from logcat.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DialLayerCacheTest {
+    private static final String TAG = "DialLayerCacheTest";
+
+    private static final int SIZE = 320;
+    private static final int BACKGROUND_COLOR = Color.DKGRAY;
+    private static final int SHADOW_COLOR = Color.BLACK;
+    private static final float SHADOW_RADIUS = 6f;
+
+    private static final int WARM_UP_FRAMES = 30;
+    private static final int TIMED_FRAMES = 300;
+
+    private final Paint mTickPaint = new Paint();
+    private final DialLayerCache mCache = new DialLayerCache();
+    private Bitmap mFrame;
+    private Canvas mCanvas;
+
+    @Before
+    public void setUp() {
+        // Styled like the analog face's mTickAndCirclePaint in interactive mode.
+        mTickPaint.setColor(Color.WHITE);
+        mTickPaint.setStrokeWidth(2f);
+        mTickPaint.setAntiAlias(true);
+        mTickPaint.setStyle(Paint.Style.STROKE);
+        mTickPaint.setShadowLayer(SHADOW_RADIUS, 0, 0, SHADOW_COLOR);
+        mFrame = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        mCanvas = new Canvas(mFrame);
+    }
+
+    @After
+    public void tearDown() {
+        mCache.release();
+        mFrame.recycle();
+    }
+
+    @Test
+    public void rasterizesOncePerConfiguration() {
+        assertTrue(update());
+        assertFalse(update());
+        assertEquals(1, mCache.getRebuildCount());
+
+        mTickPaint.setColor(Color.LTGRAY);
+        assertTrue(update());
+        assertEquals(2, mCache.getRebuildCount());
+    }
+
+    @Test
+    public void measureDialFrameCost() {
+        for (int i = 0; i < WARM_UP_FRAMES; i++) {
+            drawDirect();
+            drawCached();
+        }
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < TIMED_FRAMES; i++) {
+            drawDirect();
+        }
+        long directNanos = (SystemClock.elapsedRealtimeNanos() - start) / TIMED_FRAMES;
+
+        start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < TIMED_FRAMES; i++) {
+            drawCached();
+        }
+        long cachedNanos = (SystemClock.elapsedRealtimeNanos() - start) / TIMED_FRAMES;
+
+        // Every cached frame was a blit; the layer was only rasterized for the first one.
+        assertEquals(1, mCache.getRebuildCount());
+        Log.i(TAG, "direct=" + directNanos / 1000 + "us cached=" + cachedNanos / 1000 + "us");
+    }
+
+    /** The dial the way the analog face drew it before it had the cache. */
+    private void drawDirect() {
+        mCanvas.drawColor(BACKGROUND_COLOR);
+        DialLayerCache.drawTicks(mCanvas, SIZE / 2f, SIZE / 2f, mTickPaint);
+    }
+
+    /** The dial the way the analog face draws it now: an update check and one blit. */
+    private void drawCached() {
+        update();
+        mCanvas.drawColor(BACKGROUND_COLOR);
+        assertTrue(mCache.draw(mCanvas));
+    }
+
+    private boolean update() {
+        return mCache.update(SIZE, SIZE, BACKGROUND_COLOR, false /* ambient */,
+                false /* lowBitAmbient */, false /* burnInProtection */, mTickPaint,
+                SHADOW_COLOR);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import static org.junit.Assert.assertTrue;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the analog face's two second hand modes on the main thread of a device: the sweep,
+ * driven by a {@link FrameClock}, and the once-a-second tick, driven by delayed messages the way
+ * the face's update handler does it. Logs the wake-ups per second and the jitter of each; read
+ * the figures from logcat.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FrameClockTest {
+    private static final String TAG = "FrameClockTest";
+
+    /** The analog face's sweep rate. */
+    private static final int SWEEP_FPS = 30;
+
+    private static final int MEASURED_SECONDS = 5;
+
+    private static final long SECOND_MILLIS = TimeUnit.SECONDS.toMillis(1);
+
+    @Test
+    public void compareSweepWithTick() throws InterruptedException {
+        final SweepRecorder sweep = new SweepRecorder();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                sweep.start();
+            }
+        });
+        SystemClock.sleep(TimeUnit.SECONDS.toMillis(MEASURED_SECONDS));
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                sweep.mClock.stop();
+            }
+        });
+
+        TickRecorder tick = new TickRecorder();
+        tick.sendEmptyMessage(0);
+        assertTrue("ticks stopped", tick.mDone.await(MEASURED_SECONDS + 2, TimeUnit.SECONDS));
+
+        // The clock caps the rate, and a tick comes once a second, give or take the first one.
+        assertTrue(sweep.mFrames > MEASURED_SECONDS);
+        assertTrue(sweep.mFrames <= (MEASURED_SECONDS + 1) * SWEEP_FPS);
+        assertTrue(tick.mJitterStats.getTotalFrames() >= MEASURED_SECONDS - 1);
+
+        Log.i(TAG, "sweep: " + sweep.mFrames / MEASURED_SECONDS + " wake-ups/s, "
+                + sweep.mClock.getJitterStats());
+        Log.i(TAG, "tick: 1 wake-up/s, " + tick.mJitterStats);
+    }
+
+    /** Counts the frames the sweep clock delivers. Must be used on the main thread. */
+    private static class SweepRecorder implements FrameClock.Callback {
+        FrameClock mClock;
+        int mFrames;
+
+        void start() {
+            mClock = new FrameClock(TAG, SWEEP_FPS, this);
+            mClock.start();
+        }
+
+        @Override
+        public void onFrame() {
+            mFrames++;
+        }
+    }
+
+    /** Ticks on each second like the face's update handler and records how late each tick is. */
+    private static class TickRecorder extends Handler {
+        final FrameTimeStats mJitterStats = new FrameTimeStats(TAG, "tick jitter");
+        final CountDownLatch mDone = new CountDownLatch(1);
+        private long mNextTickMillis = -1;
+        private int mTicks;
+
+        TickRecorder() {
+            super(Looper.getMainLooper());
+        }
+
+        @Override
+        public void handleMessage(Message message) {
+            long timeMs = System.currentTimeMillis();
+            if (mNextTickMillis >= 0) {
+                mJitterStats.record(
+                        TimeUnit.MILLISECONDS.toNanos(Math.abs(timeMs - mNextTickMillis)));
+            }
+            if (++mTicks > MEASURED_SECONDS) {
+                mDone.countDown();
+                return;
+            }
+            long delayMs = SECOND_MILLIS - (timeMs % SECOND_MILLIS);
+            mNextTickMillis = timeMs + delayMs;
+            sendEmptyMessageDelayed(0, delayMs);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.os.SystemClock;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks that {@link FramePipeline#discard()} keeps the worker off the state while it changes,
+ * and compares the frame time and tap latency of pipelined frames with those of composing every
+ * frame on the calling thread, for a frame about as expensive as the analog face's. Read the
+ * figures from logcat.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FramePipelineTest {
+    private static final String TAG = "FramePipelineTest";
+
+    private static final int SIZE = 320;
+    private static final int FRAME_MILLIS = 33;
+    private static final int TIMED_FRAMES = 60;
+
+    private static final long WAIT_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    private final Object mLock = new Object();
+    private Renderer mRenderer;
+    private FramePipeline mPipeline;
+    private Bitmap mScreen;
+    private Canvas mScreenCanvas;
+
+    @Before
+    public void setUp() {
+        mRenderer = new Renderer();
+        mPipeline = new FramePipeline(TAG, mLock, mRenderer);
+        mPipeline.setSize(SIZE, SIZE);
+        mScreen = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        mScreenCanvas = new Canvas(mScreen);
+    }
+
+    @After
+    public void tearDown() {
+        mPipeline.release();
+        mScreen.recycle();
+    }
+
+    @Test
+    public void discardWaitsForTheRenderInProgress() throws InterruptedException {
+        mRenderer.mStarted = new CountDownLatch(1);
+        mRenderer.mDelayMillis = 100;
+        mPipeline.scheduleFrame(0);
+        assertTrue(mRenderer.mStarted.await(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+
+        mPipeline.discard();
+        // The state may change now: no render is running, and the one that ran is not drawn.
+        assertFalse(mRenderer.mRendering);
+        mRenderer.mColor = Color.BLUE;
+        assertFalse(mPipeline.drawFrame(mScreenCanvas, 0, 0));
+    }
+
+    @Test
+    public void drawsOnlyFramesRenderedAfterTheLastDiscard() throws InterruptedException {
+        renderAndWait(0);
+        assertTrue(mPipeline.drawFrame(mScreenCanvas, 0, 0));
+
+        renderAndWait(FRAME_MILLIS);
+        mPipeline.discard();
+        assertFalse(mPipeline.drawFrame(mScreenCanvas, FRAME_MILLIS, FRAME_MILLIS));
+
+        renderAndWait(2 * FRAME_MILLIS);
+        assertTrue(mPipeline.drawFrame(mScreenCanvas, 2 * FRAME_MILLIS, 2 * FRAME_MILLIS));
+        assertEquals(2, mPipeline.getHitCount());
+    }
+
+    @Test
+    public void measureFrameTimeAndTapLatency() throws InterruptedException {
+        // Composing every frame on the calling thread, as the face does without the pipeline. A
+        // tap is drawn by the next frame, so its latency is the frame time.
+        FrameTimeStats composed = new FrameTimeStats(TAG, "composed");
+        for (int i = 0; i < TIMED_FRAMES; i++) {
+            composed.beginFrame();
+            synchronized (mLock) {
+                mRenderer.renderFrame(mScreenCanvas, i * FRAME_MILLIS);
+            }
+            composed.endFrame();
+        }
+
+        // Pipelined: blit the frame the worker rendered ahead, then schedule the next one.
+        FrameTimeStats pipelined = new FrameTimeStats(TAG, "pipelined");
+        renderAndWait(0);
+        int hits = 0;
+        for (int i = 0; i < TIMED_FRAMES; i++) {
+            long frameTime = i * FRAME_MILLIS;
+            pipelined.beginFrame();
+            boolean hit = mPipeline.drawFrame(mScreenCanvas, frameTime, frameTime);
+            if (!hit) {
+                synchronized (mLock) {
+                    mRenderer.renderFrame(mScreenCanvas, frameTime);
+                }
+            }
+            mPipeline.scheduleFrame(frameTime + FRAME_MILLIS);
+            pipelined.endFrame();
+            if (hit) {
+                hits++;
+            }
+            SystemClock.sleep(FRAME_MILLIS);
+        }
+        assertTrue(hits > 0);
+
+        // A pipelined tap: discard, which waits for a render in progress, change the state and
+        // compose the next frame, since the one rendered ahead is out of date.
+        FrameTimeStats tapped = new FrameTimeStats(TAG, "pipelined tap");
+        long discardNanos = 0;
+        for (int i = 0; i < TIMED_FRAMES; i++) {
+            mPipeline.scheduleFrame(i * FRAME_MILLIS);
+            // Tap part way into the worker's render.
+            SystemClock.sleep(mRenderer.mLastRenderMillis / 2);
+            tapped.beginFrame();
+            long start = SystemClock.elapsedRealtimeNanos();
+            mPipeline.discard();
+            discardNanos += SystemClock.elapsedRealtimeNanos() - start;
+            mRenderer.mColor = i % 2 == 0 ? Color.RED : Color.WHITE;
+            assertFalse(mPipeline.drawFrame(mScreenCanvas, i * FRAME_MILLIS, i * FRAME_MILLIS));
+            synchronized (mLock) {
+                mRenderer.renderFrame(mScreenCanvas, i * FRAME_MILLIS);
+            }
+            tapped.endFrame();
+        }
+
+        Log.i(TAG, "frame: " + composed + " / " + pipelined + " (hits=" + hits + ")");
+        Log.i(TAG, "tap to frame: composed=" + composed.getAverageNanos() / 1000 + "us"
+                + " pipelined=" + tapped.getAverageNanos() / 1000 + "us"
+                + " of which discard=" + discardNanos / TIMED_FRAMES / 1000 + "us");
+    }
+
+    private void renderAndWait(long frameTimeMillis) throws InterruptedException {
+        mRenderer.mRendered = new CountDownLatch(1);
+        mPipeline.scheduleFrame(frameTimeMillis);
+        assertTrue(mRenderer.mRendered.await(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+        // The frame is published right after the render returns.
+        SystemClock.sleep(10);
+    }
+
+    /**
+     * Draws about what the analog face draws: a background, sixty shadowed ticks and three
+     * shadowed hands. Called with the lock held.
+     */
+    private static class Renderer implements FramePreRenderer.FrameRenderer {
+        private final Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+        // State the test changes between renders, with the lock held or after a discard.
+        int mColor = Color.WHITE;
+        int mDelayMillis;
+
+        volatile boolean mRendering;
+        volatile long mLastRenderMillis;
+        volatile CountDownLatch mStarted;
+        volatile CountDownLatch mRendered;
+
+        Renderer() {
+            mPaint.setStrokeWidth(3f);
+            mPaint.setStrokeCap(Paint.Cap.ROUND);
+            mPaint.setShadowLayer(6f, 0, 0, Color.BLACK);
+        }
+
+        @Override
+        public void renderFrame(Canvas canvas, long frameTimeMillis) {
+            mRendering = true;
+            long start = SystemClock.elapsedRealtime();
+            if (mStarted != null) {
+                mStarted.countDown();
+            }
+            if (mDelayMillis > 0) {
+                SystemClock.sleep(mDelayMillis);
+            }
+
+            float center = canvas.getWidth() / 2f;
+            canvas.drawColor(Color.DKGRAY);
+            mPaint.setColor(mColor);
+            for (int i = 0; i < 60; i++) {
+                canvas.save();
+                canvas.rotate(i * 6f, center, center);
+                canvas.drawLine(center, 4, center, i % 5 == 0 ? 20 : 10, mPaint);
+                canvas.restore();
+            }
+            float seconds = frameTimeMillis / 1000f;
+            float[] degrees = {seconds / 120f, seconds / 10f, seconds * 6f};
+            for (int i = 0; i < degrees.length; i++) {
+                canvas.save();
+                canvas.rotate(degrees[i], center, center);
+                canvas.drawLine(center, center, center, center * (0.5f - i * 0.15f), mPaint);
+                canvas.restore();
+            }
+
+            mLastRenderMillis = SystemClock.elapsedRealtime() - start;
+            mRendering = false;
+            if (mRendered != null) {
+                mRendered.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.os.SystemClock;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Compares hands drawn from a {@link HandSprite} with hands drawn the way the analog face used
+ * to, a rotated line with a shadow layer. Runs on a device because only the real software canvas
+ * renders blurred shadows.
+ */
+@RunWith(AndroidJUnit4.class)
+public class HandSpriteTest {
+    private static final String TAG = "HandSpriteTest";
+
+    private static final int SIZE = 320;
+    private static final float CENTER = SIZE / 2f;
+    private static final float INNER_RADIUS = 4f;
+    private static final float LENGTH = CENTER * 0.875f;
+    private static final float SHADOW_RADIUS = 6f;
+
+    /** Largest difference allowed in any color channel. */
+    private static final int CHANNEL_TOLERANCE = 48;
+
+    /** How far, in pixels, a sprite pixel may be from its matching directly drawn pixel. */
+    private static final int PIXEL_TOLERANCE = 1;
+
+    private static final float[] ANGLES = {0f, 6f, 37.5f, 90f, 213f, 359f};
+
+    private static final int TIMED_FRAMES = 200;
+
+    private final Paint mPaint = new Paint();
+    private final HandSprite mSprite = new HandSprite();
+    private Bitmap mExpected;
+    private Bitmap mActual;
+
+    @Before
+    public void setUp() {
+        mPaint.setColor(Color.WHITE);
+        mPaint.setStrokeWidth(2f);
+        mPaint.setAntiAlias(true);
+        mPaint.setStrokeCap(Paint.Cap.ROUND);
+        mExpected = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        mActual = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+    }
+
+    @After
+    public void tearDown() {
+        mSprite.release();
+        mExpected.recycle();
+        mActual.recycle();
+    }
+
+    @Test
+    public void rotatedSpriteMatchesDirectDrawing() {
+        assertTrue(mSprite.update(mPaint, INNER_RADIUS, LENGTH, SHADOW_RADIUS, Color.BLACK));
+        for (float angle : ANGLES) {
+            drawDirect(new Canvas(clear(mExpected)), angle, SHADOW_RADIUS);
+            assertTrue(mSprite.draw(new Canvas(clear(mActual)), angle, CENTER, CENTER));
+            assertSimilar("angle " + angle, mExpected, mActual);
+        }
+    }
+
+    @Test
+    public void bucketedSpriteMatchesDirectDrawingAtBucketAngles() {
+        mSprite.setAngleBuckets(60);
+        mSprite.update(mPaint, INNER_RADIUS, LENGTH, SHADOW_RADIUS, Color.BLACK);
+        for (int second = 0; second < 60; second += 7) {
+            float angle = second * 6f;
+            drawDirect(new Canvas(clear(mExpected)), angle, SHADOW_RADIUS);
+            mSprite.draw(new Canvas(clear(mActual)), angle, CENTER, CENTER);
+            assertSimilar("second " + second, mExpected, mActual);
+        }
+    }
+
+    @Test
+    public void spriteWithoutShadowMatchesDirectDrawing() {
+        mSprite.update(mPaint, INNER_RADIUS, LENGTH, 0, Color.BLACK);
+        drawDirect(new Canvas(clear(mExpected)), 37.5f, 0);
+        mSprite.draw(new Canvas(clear(mActual)), 37.5f, CENTER, CENTER);
+        assertSimilar("no shadow", mExpected, mActual);
+    }
+
+    @Test
+    public void updateOnlyRendersWhenConfigurationChanges() {
+        mSprite.update(mPaint, INNER_RADIUS, LENGTH, SHADOW_RADIUS, Color.BLACK);
+        mSprite.update(mPaint, INNER_RADIUS, LENGTH, SHADOW_RADIUS, Color.BLACK);
+        assertEquals(1, mSprite.getRenderCount());
+
+        mPaint.setColor(Color.RED);
+        mSprite.update(mPaint, INNER_RADIUS, LENGTH, SHADOW_RADIUS, Color.BLACK);
+        assertEquals(2, mSprite.getRenderCount());
+    }
+
+    @Test
+    public void blankSpriteDoesNotMatchDirectDrawing() {
+        drawDirect(new Canvas(clear(mExpected)), 37.5f, SHADOW_RADIUS);
+        clear(mActual);
+        try {
+            assertSimilar("blank", mExpected, mActual);
+        } catch (AssertionError expected) {
+            return;
+        }
+        fail("a blank frame matched the hand");
+    }
+
+    /**
+     * Times a hand drawn directly and from the sprite; read the figures from logcat. Every sprite
+     * frame must be a blit of the one rendering.
+     */
+    @Test
+    public void measureRenderCost() {
+        mSprite.update(mPaint, INNER_RADIUS, LENGTH, SHADOW_RADIUS, Color.BLACK);
+        Canvas canvas = new Canvas(mActual);
+        // Warm up both paths so that neither is timed cold.
+        for (int i = 0; i < TIMED_FRAMES; i++) {
+            drawDirect(canvas, i * 6f, SHADOW_RADIUS);
+            assertTrue(mSprite.draw(canvas, i * 6f, CENTER, CENTER));
+        }
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < TIMED_FRAMES; i++) {
+            drawDirect(canvas, i * 6f, SHADOW_RADIUS);
+        }
+        long directNanos = (SystemClock.elapsedRealtimeNanos() - start) / TIMED_FRAMES;
+
+        start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < TIMED_FRAMES; i++) {
+            mSprite.draw(canvas, i * 6f, CENTER, CENTER);
+        }
+        long spriteNanos = (SystemClock.elapsedRealtimeNanos() - start) / TIMED_FRAMES;
+        assertEquals(1, mSprite.getRenderCount());
+
+        Log.i(TAG, "direct=" + directNanos / 1000 + "us sprite=" + spriteNanos / 1000 + "us");
+    }
+
+    /** Draws the hand the way the analog face did before it had sprites. */
+    private void drawDirect(Canvas canvas, float angle, float shadowRadius) {
+        Paint paint = new Paint(mPaint);
+        if (shadowRadius > 0) {
+            paint.setShadowLayer(shadowRadius, 0, 0, Color.BLACK);
+        } else {
+            paint.clearShadowLayer();
+        }
+        canvas.save();
+        canvas.rotate(angle, CENTER, CENTER);
+        canvas.drawLine(CENTER, CENTER - INNER_RADIUS, CENTER, CENTER - LENGTH, paint);
+        canvas.restore();
+    }
+
+    private static Bitmap clear(Bitmap bitmap) {
+        bitmap.eraseColor(Color.TRANSPARENT);
+        return bitmap;
+    }
+
+    private static void assertSimilar(String message, Bitmap expected, Bitmap actual) {
+        BitmapAssert.assertSimilar(message, expected, actual, PIXEL_TOLERANCE, CHANNEL_TOLERANCE);
+    }
+}
@@ -0,0 +1,399 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.media.Image;
+import android.media.ImageReader;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Draws the analog face's interactive frame through {@link HardwareCanvasDrawer} and through a
+ * software canvas and compares the pixels, shadows included. Headless: the hardware frames go to
+ * an {@link ImageReader} surface.
+ */
+@RunWith(AndroidJUnit4.class)
+public class HardwareCanvasDrawerTest {
+    private static final String TAG = "HardwareCanvasDrawerTest";
+
+    private static final int SIZE = 320;
+
+    /** Largest difference allowed in any color channel; GPU and Skia anti-alias differently. */
+    private static final int CHANNEL_TOLERANCE = 64;
+
+    /** How far, in pixels, a hardware pixel may be from its matching software pixel. */
+    private static final int PIXEL_TOLERANCE = 1;
+
+    /**
+     * How much darker than the background the hour hand's shadow is, at least, just beside the
+     * hand.
+     */
+    private static final int MIN_SHADOW_DEPTH = 12;
+
+    private static final int TIMED_FRAMES = 120;
+
+    private ImageReader mImageReader;
+    private FaceScene mScene;
+
+    @Before
+    public void setUp() {
+        assumeTrue(HardwareCanvasDrawer.isSupported());
+        mImageReader = ImageReader.newInstance(SIZE, SIZE, PixelFormat.RGBA_8888, 2);
+        mScene = new FaceScene(true /* shadows */);
+    }
+
+    @After
+    public void tearDown() {
+        if (mImageReader != null) {
+            mImageReader.close();
+        }
+        if (mScene != null) {
+            mScene.release();
+        }
+    }
+
+    @Test
+    public void hardwareFrameMatchesSoftwareFrame() {
+        Bitmap expected = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        mScene.onDraw(new Canvas(expected), new Rect(0, 0, SIZE, SIZE));
+
+        final SurfaceHolder holder = new ReaderSurfaceHolder(mImageReader.getSurface());
+        final boolean[] drawn = new boolean[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                HardwareCanvasDrawer drawer = new HardwareCanvasDrawer(TAG, true, mScene);
+                drawn[0] = drawer.draw(holder);
+            }
+        });
+        assertTrue("hardware canvas unavailable", drawn[0]);
+
+        Bitmap actual = acquireFrame();
+        assertTrue(mScene.mHardwareAccelerated);
+        assertSimilar("hardware", expected, actual);
+        // Mostly within the channel tolerance, so checked on its own.
+        assertTrue("shadow dropped", FaceScene.shadowDepth(actual) >= MIN_SHADOW_DEPTH);
+        expected.recycle();
+        actual.recycle();
+    }
+
+    /** The shadow probe tells a frame with shadows from one without. */
+    @Test
+    public void probeSeesTheShadow() {
+        Rect bounds = new Rect(0, 0, SIZE, SIZE);
+        Bitmap frame = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        mScene.onDraw(new Canvas(frame), bounds);
+        assertTrue(FaceScene.shadowDepth(frame) >= MIN_SHADOW_DEPTH);
+
+        FaceScene withoutShadows = new FaceScene(false /* shadows */);
+        withoutShadows.onDraw(new Canvas(frame), bounds);
+        withoutShadows.release();
+        assertTrue(FaceScene.shadowDepth(frame) < MIN_SHADOW_DEPTH / 2);
+        frame.recycle();
+    }
+
+    @Test
+    public void drawsRightAwayOnVsync() {
+        final SurfaceHolder holder = new ReaderSurfaceHolder(mImageReader.getSurface());
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                HardwareCanvasDrawer drawer = new HardwareCanvasDrawer(TAG, true, mScene);
+                drawer.invalidate(holder, true);
+                assertEquals(1, mScene.mDrawCount);
+
+                // Not on a vsync: only drawn once the next one comes.
+                drawer.invalidate(holder, false);
+                assertEquals(1, mScene.mDrawCount);
+                drawer.cancel();
+            }
+        });
+    }
+
+    /** Logs the per-frame cost of both paths, for the commit message. */
+    @Test
+    public void measureFrameCost() {
+        Bitmap software = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        Canvas softwareCanvas = new Canvas(software);
+        Rect bounds = new Rect(0, 0, SIZE, SIZE);
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < TIMED_FRAMES; i++) {
+            mScene.onDraw(softwareCanvas, bounds);
+        }
+        final long softwareNanos = (SystemClock.elapsedRealtimeNanos() - start) / TIMED_FRAMES;
+        software.recycle();
+
+        final SurfaceHolder holder = new ReaderSurfaceHolder(mImageReader.getSurface());
+        final long[] hardwareNanos = new long[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                HardwareCanvasDrawer drawer = new HardwareCanvasDrawer(TAG, true, mScene);
+                long start = SystemClock.elapsedRealtimeNanos();
+                for (int i = 0; i < TIMED_FRAMES; i++) {
+                    drawer.draw(holder);
+                    Image image = mImageReader.acquireLatestImage();
+                    if (image != null) {
+                        image.close();
+                    }
+                }
+                hardwareNanos[0] = (SystemClock.elapsedRealtimeNanos() - start) / TIMED_FRAMES;
+            }
+        });
+
+        Log.i(TAG, "software=" + softwareNanos / 1000 + "us"
+                + " hardware=" + hardwareNanos[0] / 1000 + "us");
+    }
+
+    private Bitmap acquireFrame() {
+        Image image = null;
+        for (int i = 0; i < 50 && image == null; i++) {
+            image = mImageReader.acquireLatestImage();
+            if (image == null) {
+                SystemClock.sleep(10);
+            }
+        }
+        assertTrue("no frame posted", image != null);
+        try {
+            Image.Plane plane = image.getPlanes()[0];
+            ByteBuffer buffer = plane.getBuffer();
+            int rowPixels = plane.getRowStride() / plane.getPixelStride();
+            Bitmap padded = Bitmap.createBitmap(rowPixels, SIZE, Bitmap.Config.ARGB_8888);
+            padded.copyPixelsFromBuffer(buffer);
+            Bitmap frame = Bitmap.createBitmap(padded, 0, 0, SIZE, SIZE);
+            if (frame != padded) {
+                padded.recycle();
+            }
+            return frame;
+        } finally {
+            image.close();
+        }
+    }
+
+    private static void assertSimilar(String message, Bitmap expected, Bitmap actual) {
+        BitmapAssert.assertSimilar(message, expected, actual, PIXEL_TOLERANCE, CHANNEL_TOLERANCE);
+    }
+
+    /**
+     * The interactive analog face as its hardware path draws it: a mid-gray background, standing
+     * in for a background image so that the shadows show, the cached dial, the unread indicator,
+     * the hands and the center circle. Paints, sizes and shadows are the face's; every shadow
+     * comes from a {@link DialLayerCache}, {@link HandSprite} or {@link CircleSprite}.
+     */
+    private static class FaceScene implements HardwareCanvasDrawer.Target {
+        private static final float HOUR_STROKE_WIDTH = 5f;
+        private static final float MINUTE_STROKE_WIDTH = 3f;
+        private static final float SECOND_TICK_STROKE_WIDTH = 2f;
+        private static final float CENTER_GAP_AND_CIRCLE_RADIUS = 4f;
+        private static final float UNREAD_RING_RADIUS = 10f;
+        private static final float UNREAD_DOT_RADIUS = 4f;
+        private static final int UNREAD_BOTTOM_OFFSET = 40;
+        private static final int SHADOW_RADIUS = 6;
+        private static final int BACKGROUND_COLOR = Color.GRAY;
+        private static final int SHADOW_COLOR = Color.BLACK;
+        private static final float HOUR_DEGREES = 304f;
+        private static final float MINUTE_DEGREES = 48f;
+        private static final float SECOND_DEGREES = 222f;
+
+        private final Paint mHourPaint = new Paint();
+        private final Paint mMinutePaint = new Paint();
+        private final Paint mSecondAndHighlightPaint = new Paint();
+        private final Paint mTickAndCirclePaint = new Paint();
+
+        private final DialLayerCache mDial = new DialLayerCache();
+        private final HandSprite mHourHand = new HandSprite();
+        private final HandSprite mMinuteHand = new HandSprite();
+        private final HandSprite mSecondHand = new HandSprite();
+        private final CircleSprite mCenterCircle = new CircleSprite();
+        private final CircleSprite mUnreadRing = new CircleSprite();
+        private final CircleSprite mUnreadDot = new CircleSprite();
+
+        boolean mHardwareAccelerated;
+        int mDrawCount;
+
+        /** @param shadows whether to draw the shadows, or to leave them out as if dropped */
+        FaceScene(boolean shadows) {
+            int shadowRadius = shadows ? SHADOW_RADIUS : 0;
+            style(mHourPaint, Color.WHITE, HOUR_STROKE_WIDTH);
+            style(mMinutePaint, Color.WHITE, MINUTE_STROKE_WIDTH);
+            style(mSecondAndHighlightPaint, Color.RED, SECOND_TICK_STROKE_WIDTH);
+            style(mTickAndCirclePaint, Color.WHITE, SECOND_TICK_STROKE_WIDTH);
+            mTickAndCirclePaint.setStyle(Paint.Style.STROKE);
+
+            float center = SIZE / 2f;
+            Paint tickPaint = new Paint(mTickAndCirclePaint);
+            if (shadows) {
+                tickPaint.setShadowLayer(SHADOW_RADIUS, 0, 0, SHADOW_COLOR);
+            }
+            mDial.update(SIZE, SIZE, BACKGROUND_COLOR, false, false, false, tickPaint,
+                    shadows ? SHADOW_COLOR : Color.TRANSPARENT);
+            mHourHand.update(mHourPaint, CENTER_GAP_AND_CIRCLE_RADIUS, center * 0.5f,
+                    shadowRadius, SHADOW_COLOR);
+            mMinuteHand.update(mMinutePaint, CENTER_GAP_AND_CIRCLE_RADIUS, center * 0.75f,
+                    shadowRadius, SHADOW_COLOR);
+            mSecondHand.update(mSecondAndHighlightPaint, CENTER_GAP_AND_CIRCLE_RADIUS,
+                    center * 0.875f, shadowRadius, SHADOW_COLOR);
+            mCenterCircle.update(mTickAndCirclePaint, CENTER_GAP_AND_CIRCLE_RADIUS, shadowRadius,
+                    SHADOW_COLOR);
+            mUnreadRing.update(mTickAndCirclePaint, UNREAD_RING_RADIUS, shadowRadius,
+                    SHADOW_COLOR);
+            mUnreadDot.update(mSecondAndHighlightPaint, UNREAD_DOT_RADIUS, shadowRadius,
+                    SHADOW_COLOR);
+        }
+
+        private static void style(Paint paint, int color, float strokeWidth) {
+            paint.setColor(color);
+            paint.setStrokeWidth(strokeWidth);
+            paint.setAntiAlias(true);
+            paint.setStrokeCap(Paint.Cap.ROUND);
+        }
+
+        @Override
+        public void onDraw(Canvas canvas, Rect bounds) {
+            mHardwareAccelerated = canvas.isHardwareAccelerated();
+            mDrawCount++;
+            float center = bounds.width() / 2f;
+            canvas.drawColor(BACKGROUND_COLOR);
+            assertTrue(mDial.draw(canvas));
+            float unreadY = bounds.height() - UNREAD_BOTTOM_OFFSET;
+            assertTrue(mUnreadRing.draw(canvas, center, unreadY));
+            assertTrue(mUnreadDot.draw(canvas, center, unreadY));
+            // 10:08:37
+            assertTrue(mHourHand.draw(canvas, HOUR_DEGREES, center, center));
+            assertTrue(mMinuteHand.draw(canvas, MINUTE_DEGREES, center, center));
+            assertTrue(mSecondHand.draw(canvas, SECOND_DEGREES, center, center));
+            assertTrue(mCenterCircle.draw(canvas, center, center));
+        }
+
+        @Override
+        public void invalidate() {
+        }
+
+        /**
+         * Returns how much darker than the background the frame is half way along the hour hand,
+         * a couple of pixels clear of its anti-aliased edge, where only the shadow reaches.
+         */
+        static int shadowDepth(Bitmap frame) {
+            double angle = Math.toRadians(HOUR_DEGREES);
+            float along = SIZE / 2f * 0.3f;
+            float aside = HOUR_STROKE_WIDTH / 2 + 2;
+            int x = Math.round(SIZE / 2f + (float) Math.sin(angle) * along
+                    + (float) Math.cos(angle) * aside);
+            int y = Math.round(SIZE / 2f - (float) Math.cos(angle) * along
+                    + (float) Math.sin(angle) * aside);
+            return Color.red(BACKGROUND_COLOR) - Color.red(frame.getPixel(x, y));
+        }
+
+        void release() {
+            mDial.release();
+            mHourHand.release();
+            mMinuteHand.release();
+            mSecondHand.release();
+            mCenterCircle.release();
+            mUnreadRing.release();
+            mUnreadDot.release();
+        }
+    }
+
+    /** Just enough of a {@link SurfaceHolder} for {@link HardwareCanvasDrawer#draw}. */
+    private static class ReaderSurfaceHolder implements SurfaceHolder {
+        private final Surface mSurface;
+
+        ReaderSurfaceHolder(Surface surface) {
+            mSurface = surface;
+        }
+
+        @Override
+        public Surface getSurface() {
+            return mSurface;
+        }
+
+        @Override
+        public Rect getSurfaceFrame() {
+            return new Rect(0, 0, SIZE, SIZE);
+        }
+
+        @Override
+        public void addCallback(Callback callback) {
+        }
+
+        @Override
+        public void removeCallback(Callback callback) {
+        }
+
+        @Override
+        public boolean isCreating() {
+            return false;
+        }
+
+        @Override
+        public void setType(int type) {
+        }
+
+        @Override
+        public void setFixedSize(int width, int height) {
+        }
+
+        @Override
+        public void setSizeFromLayout() {
+        }
+
+        @Override
+        public void setFormat(int format) {
+        }
+
+        @Override
+        public void setKeepScreenOn(boolean screenOn) {
+        }
+
+        @Override
+        public Canvas lockCanvas() {
+            return mSurface.lockCanvas(null);
+        }
+
+        @Override
+        public Canvas lockCanvas(Rect dirty) {
+            return mSurface.lockCanvas(dirty);
+        }
+
+        @Override
+        public void unlockCanvasAndPost(Canvas canvas) {
+            mSurface.unlockCanvasAndPost(canvas);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.wearable.watchface.CanvasWatchFaceService;
+import android.text.format.DateFormat;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.example.android.wearable.watchface.watchface.DigitalWatchFaceService;
+
+/**
+ * Checks that {@link HourFormatSetting} only goes to the settings provider when created,
+ * registered or told of a change, and never when checked on a frame, including the frames of the
+ * digital face that uses it.
+ */
+@RunWith(AndroidJUnit4.class)
+public class HourFormatSettingTest {
+
+    private static final int FRAMES = 1000;
+
+    private static final int FACE_SIZE = 320;
+
+    private CountingContext mContext;
+    private HourFormatSetting mSetting;
+    private int mChangeCount;
+
+    @Before
+    public void setUp() {
+        mContext = new CountingContext(InstrumentationRegistry.getTargetContext());
+        // The observer needs the main looper.
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mSetting = new HourFormatSetting(mContext, new HourFormatSetting.Listener() {
+                    @Override
+                    public void onHourFormatChanged(boolean is24Hour) {
+                        mChangeCount++;
+                    }
+                });
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        mSetting.unregister();
+    }
+
+    @Test
+    public void readsTheSettingOnceForManyFrames() {
+        assertEquals(1, mSetting.getLookupCount());
+        int resolverCalls = mContext.mResolverCalls;
+
+        boolean expected = DateFormat.is24HourFormat(InstrumentationRegistry.getTargetContext());
+        for (int i = 0; i < FRAMES; i++) {
+            assertEquals(expected, mSetting.is24Hour());
+        }
+
+        assertEquals(1, mSetting.getLookupCount());
+        assertEquals(resolverCalls, mContext.mResolverCalls);
+    }
+
+    @Test
+    public void readsTheSettingAgainWhenRegisteredOrChanged() {
+        mSetting.register();
+        assertEquals(2, mSetting.getLookupCount());
+        mSetting.register();
+        assertEquals(2, mSetting.getLookupCount());
+
+        int resolverCalls = mContext.mResolverCalls;
+        mSetting.mObserver.onChange(false);
+        assertEquals(3, mSetting.getLookupCount());
+        assertTrue(mContext.mResolverCalls > resolverCalls);
+        // The setting itself did not change.
+        assertEquals(0, mChangeCount);
+
+        for (int i = 0; i < FRAMES; i++) {
+            mSetting.is24Hour();
+        }
+        assertEquals(3, mSetting.getLookupCount());
+    }
+
+    @Test
+    public void digitalFaceFramesDoNotReadTheSetting() {
+        final DigitalWatchFaceService service = new TestService(mContext);
+        final Bitmap bitmap = Bitmap.createBitmap(FACE_SIZE, FACE_SIZE, Bitmap.Config.ARGB_8888);
+        final Canvas canvas = new Canvas(bitmap);
+        final Rect bounds = new Rect(0, 0, FACE_SIZE, FACE_SIZE);
+        final int[] resolverCalls = new int[2];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                CanvasWatchFaceService.Engine engine = service.onCreateEngine();
+                engine.onCreate(engine.getSurfaceHolder());
+                resolverCalls[0] = mContext.mResolverCalls;
+                for (int i = 0; i < FRAMES; i++) {
+                    engine.onDraw(canvas, bounds);
+                }
+                resolverCalls[1] = mContext.mResolverCalls;
+                engine.onDestroy();
+            }
+        });
+        bitmap.recycle();
+
+        assertTrue(resolverCalls[0] > 0);
+        assertEquals(resolverCalls[0], resolverCalls[1]);
+    }
+
+    /**
+     * The digital face's service, attached to a counting context instead of by the framework. Its
+     * engine is never made visible, so it does not connect to Google Play services.
+     */
+    private static class TestService extends DigitalWatchFaceService {
+        TestService(Context base) {
+            attachBaseContext(base);
+        }
+    }
+
+    /** Counts every use of the content resolver, through which all settings lookups go. */
+    private static class CountingContext extends ContextWrapper {
+        int mResolverCalls;
+
+        CountingContext(Context base) {
+            super(base);
+        }
+
+        @Override
+        public ContentResolver getContentResolver() {
+            mResolverCalls++;
+            return super.getContentResolver();
+        }
+    }
+}
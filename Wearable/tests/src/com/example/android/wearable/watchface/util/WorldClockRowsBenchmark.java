@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.util;
+
+import android.graphics.Paint;
+import android.os.SystemClock;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times {@link WorldClockRows} on a device, where the rows are really measured, against
+ * formatting and measuring them on every frame, for 1, 6 and 12 zones. Read the figures from
+ * logcat; nothing is asserted, {@code WorldClockRowsTest} checks the behavior.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WorldClockRowsBenchmark {
+    private static final String TAG = "WorldClockRowsBenchmark";
+
+    private static final String[] ZONE_IDS = {
+        "Asia/Tokyo",
+        "Europe/London",
+        "America/New_York",
+        "America/Los_Angeles",
+        "Asia/Kolkata",
+        "Australia/Sydney",
+        "Europe/Berlin",
+        "Asia/Shanghai",
+        "America/Sao_Paulo",
+        "Africa/Cairo",
+        "Pacific/Auckland",
+        "Asia/Kathmandu",
+    };
+
+    /** 2017-03-11 17:00 UTC. */
+    private static final long START = 1489251600000L;
+
+    /** Ten minutes at 60 fps. */
+    private static final int FRAMES = 10 * 60 * 60;
+    private static final long FRAME_MILLIS = TimeUnit.SECONDS.toMillis(1) / 60;
+
+    @Test
+    public void measureFormattingSaved() {
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setTextSize(24f);
+        WorldClockRows rows = new WorldClockRows(TAG, paint, "AM", "PM");
+        int[] zoneCounts = {1, 6, 12};
+
+        // Warm up both paths first, with every count, so that the first is not timed cold.
+        for (int zones : zoneCounts) {
+            rows.setZones(Arrays.copyOf(ZONE_IDS, zones));
+            run(rows, true);
+            run(rows, false);
+        }
+
+        for (int zones : zoneCounts) {
+            rows.setZones(Arrays.copyOf(ZONE_IDS, zones));
+            long formatNanos = run(rows, true);
+            long updateNanos = run(rows, false);
+            Log.i(TAG, zones + " zones: formatting every frame " + formatNanos / FRAMES
+                    + " ns/frame, update() " + updateNanos / FRAMES + " ns/frame");
+        }
+    }
+
+    /**
+     * Updates the rows for {@link #FRAMES} frames, invalidating their text first on each frame if
+     * {@code everyFrame} is set.
+     *
+     * @return the time taken, in nanoseconds
+     */
+    private static long run(WorldClockRows rows, boolean everyFrame) {
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < FRAMES; i++) {
+            if (everyFrame) {
+                rows.invalidateText();
+            }
+            rows.update(START + i * FRAME_MILLIS, true);
+        }
+        return SystemClock.elapsedRealtimeNanos() - start;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.wearable.watchface.watchface;
+
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.wearable.watchface.CanvasWatchFaceService;
+import android.support.wearable.watchface.WatchFaceService;
+import android.text.format.DateFormat;
+import android.util.Log;
+import android.view.WindowInsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Drives the digital face's engine on the main thread, outside the wallpaper framework, and
+ * checks that its interactive frames do not allocate. The frames are drawn on a software canvas,
+ * so they go through the cells; the engine is never made visible, so it does not connect to
+ * Google Play services or start its timer.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DigitalWatchFaceServiceTest {
+    private static final String TAG = "DigitalWatchFaceServiceTest";
+
+    private static final int SIZE = 320;
+    private static final int WARM_UP_FRAMES = 100;
+    private static final int FRAMES = 300;
+
+    private TestService mService;
+    private CanvasWatchFaceService.Engine mEngine;
+    private Bitmap mBitmap;
+    private Canvas mCanvas;
+    private final Rect mBounds = new Rect(0, 0, SIZE, SIZE);
+
+    @Before
+    public void setUp() {
+        mBitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        mCanvas = new Canvas(mBitmap);
+        mService = new TestService(InstrumentationRegistry.getTargetContext());
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mEngine = mService.onCreateEngine();
+                mEngine.onCreate(mEngine.getSurfaceHolder());
+                mEngine.onApplyWindowInsets(createSquareInsets());
+                mEngine.onSurfaceChanged(mEngine.getSurfaceHolder(), PixelFormat.RGBA_8888, SIZE,
+                        SIZE);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mEngine.onDestroy();
+            }
+        });
+        mBitmap.recycle();
+    }
+
+    @Test
+    public void drawsInteractiveFramesWithoutAllocating() {
+        assertFewAllocations("interactive");
+    }
+
+    /** Muted frames draw the AM/PM instead of the seconds in 12-hour mode. */
+    @Test
+    public void drawsMutedFramesWithoutAllocating() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mEngine.onInterruptionFilterChanged(WatchFaceService.INTERRUPTION_FILTER_NONE);
+            }
+        });
+        assertFewAllocations("muted");
+    }
+
+    private void assertFewAllocations(String mode) {
+        final int[] allocations = new int[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                drawFrames(WARM_UP_FRAMES);
+                Debug.startAllocCounting();
+                Debug.resetThreadAllocCount();
+                drawFrames(FRAMES);
+                allocations[0] = Debug.getThreadAllocCount();
+                Debug.stopAllocCounting();
+            }
+        });
+        boolean is24Hour = DateFormat.is24HourFormat(InstrumentationRegistry.getTargetContext());
+        Log.i(TAG, mode + (is24Hour ? " 24-hour" : " 12-hour") + ": " + allocations[0]
+                + " allocations in " + FRAMES + " frames");
+
+        // Leaves room for the world clock rows, which are formatted again once a minute.
+        assertTrue(mode + ": " + allocations[0] + " allocations in " + FRAMES + " frames",
+                allocations[0] < FRAMES / 10);
+    }
+
+    /** Must be called on the main thread. */
+    private void drawFrames(int frames) {
+        for (int i = 0; i < frames; i++) {
+            mEngine.onDraw(mCanvas, mBounds);
+        }
+    }
+
+    /**
+     * There is no public way to create insets before API 28, so this uses the constructor the
+     * framework uses.
+     */
+    private static WindowInsets createSquareInsets() {
+        try {
+            return WindowInsets.class.getConstructor(Rect.class).newInstance(new Rect());
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError("Cannot create window insets", e);
+        }
+    }
+
+    /** The face's service, attached to the test's context instead of by the framework. */
+    private static class TestService extends DigitalWatchFaceService {
+        TestService(Context base) {
+            attachBaseContext(base);
+        }
+    }
+}